@@ -0,0 +1,13 @@
+package com.logistics.DTO.CustomerDTOs;
+
+import lombok.*;
+
+// Поля клиента, по которым работает поиск администратора
+@Getter
+@AllArgsConstructor
+public class CustomerRowDTO {
+    private Integer customerId;
+    private String fullName;
+    private String email;
+    private String phone;
+}
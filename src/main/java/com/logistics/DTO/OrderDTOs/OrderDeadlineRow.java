@@ -0,0 +1,10 @@
+package com.logistics.DTO.OrderDTOs;
+
+import java.time.LocalDateTime;
+
+// Заказ с крайним сроком нахождения в статусе (очередь SlaWatchdogService)
+public interface OrderDeadlineRow {
+    Integer getId();
+    String getStatus();
+    LocalDateTime getSlaDeadline();
+}
@@ -0,0 +1,19 @@
+package com.logistics.DTO.OrderDTOs;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// Строка заказа для списков и выгрузок: только отображаемые поля, без загрузки сущностей
+@Getter
+@AllArgsConstructor
+public class OrderRowDTO {
+    private Integer id;
+    private String deliveryAddress;
+    private Integer totalWeight;
+    private String status;
+    private Integer customerId;
+    private Integer vehicleId;
+    private LocalDateTime createTime;
+    private LocalDateTime statusChangedAt;
+}
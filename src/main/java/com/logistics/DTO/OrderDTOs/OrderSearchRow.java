@@ -0,0 +1,11 @@
+package com.logistics.DTO.OrderDTOs;
+
+// Результат поиска заказов по адресу (проекция нативного запроса)
+public interface OrderSearchRow {
+    Integer getId();
+    String getDeliveryAddress();
+    Integer getTotalWeight();
+    String getStatus();
+    Integer getCustomerId();
+    Float getScore();
+}
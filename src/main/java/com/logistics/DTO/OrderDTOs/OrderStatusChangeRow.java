@@ -0,0 +1,8 @@
+package com.logistics.DTO.OrderDTOs;
+
+// Результат изменения статуса заказа одним UPDATE ... RETURNING (проекция нативного запроса)
+public interface OrderStatusChangeRow {
+    Integer getId();
+    String getOldStatus();
+    Integer getCustomerId();
+}
@@ -0,0 +1,14 @@
+package com.logistics.DTO.VehicleDTOs;
+
+import lombok.*;
+
+// Строка транспорта для списков: только отображаемые поля, без загрузки сущностей
+@Getter
+@AllArgsConstructor
+public class VehicleRowDTO {
+    private Integer vehicleId;
+    private String model;
+    private String licensePlate;
+    private Double capacityTon;
+    private String status;
+}
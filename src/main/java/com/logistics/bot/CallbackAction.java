@@ -0,0 +1,38 @@
+package com.logistics.bot;
+
+/**
+ * Действия inline-кнопок. Код действия хранится в callback_data уже отправленных кнопок,
+ * поэтому коды не меняются и не переиспользуются; новое действие получает следующий свободный код.
+ */
+public enum CallbackAction {
+    // аргументы: id заказа, версия, номер статуса в списке
+    ORDER_STATUS(1, 3),
+    // аргументы: id транспорта, версия, номер статуса в списке
+    VEHICLE_STATUS(2, 3),
+    MY_ORDERS_NEXT(3, 0),
+    ORDER_SEARCH_NEXT(4, 0);
+
+    private static final CallbackAction[] BY_CODE = new CallbackAction[256];
+
+    static {
+        for (CallbackAction action : values()) {
+            BY_CODE[action.code] = action;
+        }
+    }
+
+    private final int code;
+    private final int argCount;
+
+    CallbackAction(int code, int argCount) {
+        this.code = code;
+        this.argCount = argCount;
+    }
+
+    public int getCode() { return code; }
+    public int getArgCount() { return argCount; }
+
+    // null - кнопка неизвестного действия
+    public static CallbackAction byCode(int code) {
+        return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+}
@@ -1,26 +1,63 @@
 package com.logistics.bot;
 
+import com.logistics.DTO.CustomerDTOs.CustomerRowDTO;
+import com.logistics.DTO.OrderDTOs.OrderRowDTO;
+import com.logistics.DTO.OrderDTOs.OrderSearchRow;
+import com.logistics.DTO.VehicleDTOs.VehicleRowDTO;
+import com.logistics.component.BotMetrics;
+import com.logistics.component.Bulkhead;
+import com.logistics.component.Bulkheads;
+import com.logistics.component.CallbackCodec;
+import com.logistics.component.CustomerSearchIndex;
+import com.logistics.component.DatabaseCircuitBreaker;
+import com.logistics.component.IngressDispatcher;
+import com.logistics.component.MessageTemplates;
+import com.logistics.component.OrderPageCache;
+import com.logistics.component.PendingOrderJournal;
+import com.logistics.component.UpdateBudget;
+import com.logistics.component.UpdateDeduplicator;
+import com.logistics.flow.Flow;
+import com.logistics.flow.Flow.Transition;
 import com.logistics.model.*;
 import com.logistics.service.*;
 import com.logistics.service.SessionService;
 import com.logistics.session.UserSession;
 import jakarta.annotation.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.*;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Component;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
+import org.telegram.telegrambots.meta.api.methods.GetFile;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Document;
 import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.KeyboardRow;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
 
 @Component
 public class TelegramBot extends TelegramLongPollingBot {
 
+    private static final Logger log = LoggerFactory.getLogger(TelegramBot.class);
+
+    // Сбои действий администратора, завершенных сообщением об ошибке
+    private final LongAdder failures = new LongAdder();
+
     @Autowired
     private OrderService orderService;
 
@@ -36,9 +73,95 @@ public class TelegramBot extends TelegramLongPollingBot {
     @Autowired
     private AdminService adminService;
 
+    @Autowired
+    private CustomerImportService customerImportService;
+
+    @Autowired
+    private OrderImportService orderImportService;
+
+    @Autowired
+    private OrderExportService orderExportService;
+
+    @Autowired
+    private CustomerStatsService customerStatsService;
+
+    @Autowired
+    private MessageTemplates messageTemplates;
+
+    @Autowired
+    private CallbackCodec callbackCodec;
+
+    @Autowired
+    private UpdateDeduplicator updateDeduplicator;
+
+    @Autowired
+    private IngressDispatcher ingressDispatcher;
+
+    @Autowired
+    private Bulkheads bulkheads;
+
+    @Autowired
+    private UpdateBudget updateBudget;
+
+    @Autowired
+    private DatabaseCircuitBreaker databaseCircuitBreaker;
+
+    @Autowired
+    private PendingOrderJournal pendingOrderJournal;
+
+    @Autowired
+    private BotMetrics botMetrics;
+
+    // Справочные команды: первыми отбрасываются при перегрузке
+    private static final Set<String> LOW_PRIORITY_COMMANDS = Set.of("/help", "❓ Помощь", "ℹ️ О боте");
+
+    private static final String BULKHEAD_BUSY = "⏳ Выполняется слишком много тяжелых запросов. Повторите через минуту.";
+
+    private static final String DATABASE_UNAVAILABLE = "⚠️ База данных временно недоступна.\n\n" +
+            "Профиль и уже открытые страницы «Мои заказы» доступны, новые заказы принимаются и будут оформлены " +
+            "после восстановления. Остальное, пожалуйста, повторите позже.";
+
+    // Статусы, предлагаемые кнопками; в кнопке хранится номер статуса в списке
+    @Value("${orders.statuses:создан,в пути,доставлен,отменен}")
+    private List<String> orderStatuses;
+
+    @Value("${vehicles.statuses:свободен,занят,на ремонте}")
+    private List<String> vehicleStatuses;
+
     // Добавьте эти константы в начало класса
     private static final String ADMIN_MODE = "ADMIN_MODE";
-    private final Map<Long, String> adminActionState = new HashMap<>();
+    // Действия администратора, ожидающие ввода; данные шага - заказ или транспорт, статус которого меняется
+    private final Flow<AdminAction, ActionTarget> adminActions = Flow.builder(AdminAction.class, ActionTarget::new)
+            .cancelOn("❌ Отмена", "❌ Действие администратора отменено.")
+            .step(AdminAction.AWAITING_ORDER_ID_FOR_STATUS)
+                .handle(this::handleOrderIdForStatus)
+            .step(AdminAction.AWAITING_NEW_ORDER_STATUS)
+                .handle(this::applyOrderStatus)
+            .step(AdminAction.AWAITING_VEHICLE_ID_FOR_STATUS)
+                .handle(this::handleVehicleIdForStatus)
+            .step(AdminAction.AWAITING_NEW_VEHICLE_STATUS)
+                .handle(this::applyVehicleStatus)
+            .step(AdminAction.AWAITING_ORDER_SEARCH)
+                .accept(input -> input.trim().length() >= 3, "❌ Введите минимум 3 символа адреса:")
+                .handle(this::handleOrderSearchQuery)
+            .step(AdminAction.AWAITING_BULK_ORDER_STATUS)
+                .handle(this::handleBulkOrderStatus)
+            .step(AdminAction.AWAITING_STUCK_QUERY)
+                .handle(this::handleStuckQuery)
+            .step(AdminAction.AWAITING_CUSTOMER_SEARCH)
+                .accept(input -> input.trim().length() >= CustomerSearchIndex.MIN_QUERY_LENGTH,
+                        "❌ Введите минимум 3 символа имени, email или телефона:")
+                .handle(this::handleCustomerSearchQuery)
+            .step(AdminAction.AWAITING_CUSTOMERS_FILE)
+                .handle(this::handleCustomersFilePath)
+            .build();
+    // Обработчики inline-кнопок по порядковому номеру действия
+    private final CallbackHandler[] callbackHandlers = new CallbackHandler[CallbackAction.values().length];
+    // Последний поиск заказов администратора: запрос и текущая страница
+    private final Map<Long, String> adminSearchQuery = new HashMap<>();
+    private final Map<Long, Integer> adminSearchPage = new HashMap<>();
+    // Позиция следующей страницы «Мои заказы» для каждого чата
+    private final Map<Long, OrderPageCache.Cursor> userOrdersNextPage = new HashMap<>();
     private final RegistrationService registrationService;
     private final MessageSender messageSender;
     private final SessionService sessionService;
@@ -59,6 +182,15 @@ public class TelegramBot extends TelegramLongPollingBot {
     @PostConstruct
     public void init() {
         MessageSender.setBot(this);
+
+        callbackHandlers[CallbackAction.ORDER_STATUS.ordinal()] = this::handleOrderStatusCallback;
+        callbackHandlers[CallbackAction.VEHICLE_STATUS.ordinal()] = this::handleVehicleStatusCallback;
+        callbackHandlers[CallbackAction.MY_ORDERS_NEXT.ordinal()] = (chatId, callback) -> showUserOrders(chatId, true);
+        callbackHandlers[CallbackAction.ORDER_SEARCH_NEXT.ordinal()] = (chatId, callback) -> showNextOrderSearchPage(chatId);
+    }
+
+    public long getFailureCount() {
+        return failures.sum();
     }
 
     @Override
@@ -68,12 +200,212 @@ public class TelegramBot extends TelegramLongPollingBot {
 
     @Override
     public void onUpdateReceived(Update update) {
+        botMetrics.updateReceived(typeOf(update));
+        if (isRedelivery(update)) {
+            return;
+        }
+        Long chatId = chatIdOf(update);
+        if (chatId == null) {
+            return;
+        }
+
+        // Поток получения обновлений только ставит их в очередь; обработка - в потоке диспетчера
+        IngressDispatcher.Admission admission =
+                ingressDispatcher.submit(chatId, laneOf(update, chatId), () -> handleUpdate(update));
+        if (admission == IngressDispatcher.Admission.ACCEPTED) {
+            return;
+        }
+        if (update.hasCallbackQuery()) {
+            messageSender.answerCallback(update.getCallbackQuery().getId(), "⏳ Бот занят, попробуйте позже");
+        }
+        if (admission == IngressDispatcher.Admission.RATE_LIMITED) {
+            messageSender.sendMessage(chatId, "⏳ Слишком много сообщений подряд. Подождите немного и повторите.");
+        } else if (admission == IngressDispatcher.Admission.SHED) {
+            messageSender.sendMessage(chatId, "⏳ Сейчас бот обрабатывает много запросов. Повторите, пожалуйста, через минуту.");
+        }
+    }
+
+    private Long chatIdOf(Update update) {
+        if (update.hasMessage()) {
+            return update.getMessage().getChatId();
+        }
+        if (update.hasCallbackQuery()) {
+            CallbackQuery callbackQuery = update.getCallbackQuery();
+            return callbackQuery.getMessage() != null
+                    ? callbackQuery.getMessage().getChatId()
+                    : callbackQuery.getFrom().getId();
+        }
+        return null;
+    }
+
+    // Администратор и подтверждение заказа обрабатываются первыми, справка - последней
+    private IngressDispatcher.Lane laneOf(Update update, Long chatId) {
+        if (adminService.isAdminAuthenticated(chatId) || adminService.isAdminInLoginProcess(chatId)
+                || orderCreationService.getCurrentState(chatId) == OrderCreationService.OrderCreationState.AWAITING_CONFIRMATION) {
+            return IngressDispatcher.Lane.HIGH;
+        }
+        if (update.hasMessage() && update.getMessage().hasText()
+                && LOW_PRIORITY_COMMANDS.contains(update.getMessage().getText())) {
+            return IngressDispatcher.Lane.LOW;
+        }
+        return IngressDispatcher.Lane.NORMAL;
+    }
+
+    private void handleUpdate(Update update) {
+        // Все ответы на одно обновление отправляются вместе: подряд идущие сообщения в чат склеиваются
+        messageSender.beginUpdate();
+        Long chatId = chatIdOf(update);
+        String handler = handlerOf(update, chatId);
+        String outcome = "ok";
+        long startNanos = System.nanoTime();
+        try {
+            if (!updateBudget.run(handler, () -> dispatchUpdate(update))) {
+                // Обработчик прерван по бюджету: вместо частичных ответов - стандартный
+                outcome = "overrun";
+                messageSender.discardUpdate();
+                if (chatId != null) {
+                    sendMessage(chatId, "⏳ Запрос обрабатывается слишком долго, попробуйте позже.");
+                }
+            }
+        } catch (RuntimeException e) {
+            // База недоступна: обработчик, не имеющий данных в памяти, отвечает предупреждением
+            if (!DatabaseCircuitBreaker.isUnavailable(e)) {
+                outcome = "error";
+                throw e;
+            }
+            outcome = "unavailable";
+            messageSender.discardUpdate();
+            if (chatId != null) {
+                sendMessage(chatId, DATABASE_UNAVAILABLE);
+            }
+        } finally {
+            botMetrics.recordHandler(handler, outcome, System.nanoTime() - startNanos);
+            messageSender.flushUpdate();
+        }
+    }
+
+    private static String typeOf(Update update) {
+        if (update.hasCallbackQuery()) {
+            return "callback";
+        }
+        if (update.hasMessage() && update.getMessage().hasText()) {
+            return "text";
+        }
+        if (update.hasMessage() && update.getMessage().hasDocument()) {
+            return "document";
+        }
+        return "other";
+    }
+
+    private void dispatchUpdate(Update update) {
         if (update.hasMessage() && update.getMessage().hasText()) {
             String messageText = update.getMessage().getText();
             Long chatId = update.getMessage().getChatId();
 
             processMessage(messageText, chatId);
+        } else if (update.hasMessage() && update.getMessage().hasDocument()) {
+            Document document = update.getMessage().getDocument();
+            Long chatId = update.getMessage().getChatId();
+
+            processDocument(document, chatId);
+        } else if (update.hasCallbackQuery()) {
+            processCallback(update.getCallbackQuery());
+        }
+    }
+
+    // Имя обработчика для учета превышений бюджета: активный процесс, команда или действие кнопки.
+    // Свободный текст вне процессов не записывается дословно, чтобы имена не копили ввод пользователей
+    private String handlerOf(Update update, Long chatId) {
+        if (update.hasCallbackQuery()) {
+            CallbackCodec.Callback callback = callbackCodec.decode(update.getCallbackQuery().getData());
+            CallbackAction action = callback != null ? CallbackAction.byCode(callback.getAction()) : null;
+            return "callback:" + (action != null ? action.name() : "unknown");
+        }
+        if (chatId == null || !update.hasMessage()) {
+            return "other";
+        }
+        if (adminService.isAdminInLoginProcess(chatId)) {
+            return "flow:admin-login";
+        }
+        if (adminService.isAdminAuthenticated(chatId) && adminActions.isActive(chatId)) {
+            return "flow:admin:" + adminActions.getStep(chatId);
+        }
+        if (registrationService.isUserInRegistrationProcess(chatId)) {
+            return "flow:registration";
+        }
+        if (loginService.isUserInLoginProcess(chatId)) {
+            return "flow:login";
+        }
+        if (orderCreationService.isUserInOrderCreationProcess(chatId)) {
+            return "flow:order-creation:" + orderCreationService.getCurrentState(chatId);
+        }
+        if (update.getMessage().hasDocument()) {
+            return "document";
+        }
+        String text = update.getMessage().hasText() ? update.getMessage().getText() : "";
+        return text.startsWith("/") ? text.split("\\s+", 2)[0] : "text";
+    }
+
+    // Повторная доставка того же обновления или того же сообщения чата (повторное «да» не создаст второй заказ).
+    // Нажатия кнопок отсеиваются только по update_id: одну кнопку можно нажимать несколько раз
+    private boolean isRedelivery(Update update) {
+        if (!updateDeduplicator.firstDelivery(update.getUpdateId())) {
+            return true;
+        }
+        return update.hasMessage()
+                && !updateDeduplicator.firstMessage(update.getMessage().getChatId(), update.getMessage().getMessageId());
+    }
+
+    // Нажатие inline-кнопки: действие и аргументы читаются из callback_data без разбора строк
+    private void processCallback(CallbackQuery callbackQuery) {
+        CallbackCodec.Callback callback = callbackCodec.decode(callbackQuery.getData());
+        CallbackAction action = callback != null ? CallbackAction.byCode(callback.getAction()) : null;
+        boolean valid = action != null && callback.getArgCount() == action.getArgCount();
+        messageSender.answerCallback(callbackQuery.getId(), valid ? null : "⚠️ Кнопка устарела");
+
+        if (!valid || callbackQuery.getMessage() == null) {
+            return;
+        }
+        Long chatId = callbackQuery.getMessage().getChatId();
+        if (!sessionService.isSessionActive(chatId)) {
+            sendSessionExpiredMessage(chatId);
+            return;
         }
+
+        try {
+            callbackHandlers[action.ordinal()].handle(chatId, callback);
+        } catch (ArithmeticException e) {
+            // Аргумент не помещается в int - кнопка подделана
+            sendMessage(chatId, "⚠️ Кнопка устарела. Повторите действие через меню.");
+        }
+    }
+
+    // Обработка загруженных файлов (импорт)
+    private void processDocument(Document document, Long chatId) {
+        if (!sessionService.isSessionActive(chatId)) {
+            sendSessionExpiredMessage(chatId);
+            return;
+        }
+
+        if (adminService.isAdminAuthenticated(chatId)
+                && adminActions.getStep(chatId) == AdminAction.AWAITING_CUSTOMERS_FILE) {
+            adminActions.cancel(chatId);
+            customerImportService.importAsync(chatId, () -> downloadDocument(document));
+            sendMessage(chatId, "⏳ Файл получен, импорт клиентов запущен. Результат придет отдельным сообщением.");
+        } else if (authService.isAuthenticated(chatId) && orderImportService.isAwaitingFile(chatId)) {
+            Customer customer = authService.getAuthenticatedCustomer(chatId);
+            orderImportService.importAsync(chatId, customer.getCustomerId(), document.getFileName(),
+                    () -> downloadDocument(document));
+            sendMessage(chatId, "⏳ Файл получен, заказы загружаются. Итог придет отдельным сообщением.");
+        } else {
+            sendMessage(chatId, "❌ Файл не ожидается. Для импорта сначала выберите команду импорта.");
+        }
+    }
+
+    private InputStream downloadDocument(Document document) throws TelegramApiException {
+        GetFile getFile = new GetFile(document.getFileId());
+        org.telegram.telegrambots.meta.api.objects.File file = execute(getFile);
+        return downloadFileAsStream(file);
     }
 
     // Обновите метод processMessage
@@ -101,7 +433,7 @@ public class TelegramBot extends TelegramLongPollingBot {
         if (adminService.isAdminInLoginProcess(chatId)) {
             String response = adminService.processAdminLoginInput(chatId, text);
             sendMessage(chatId, response);
-        } else if (adminService.isAdminAuthenticated(chatId) && adminActionState.containsKey(chatId)) {
+        } else if (adminService.isAdminAuthenticated(chatId) && adminActions.isActive(chatId)) {
             handleAdminActionInput(chatId, text);
         } else if (registrationService.isUserInRegistrationProcess(chatId)) {
             registrationService.processInput(chatId, text);
@@ -132,7 +464,9 @@ public class TelegramBot extends TelegramLongPollingBot {
 
     private void handleAdminLogout(Long chatId) {
         adminService.logoutAdmin(chatId);
-        adminActionState.remove(chatId);
+        adminActions.cancel(chatId);
+        adminSearchQuery.remove(chatId);
+        adminSearchPage.remove(chatId);
         sendMessage(chatId, "✅ Вы вышли из режима администратора.");
     }
 
@@ -142,28 +476,34 @@ public class TelegramBot extends TelegramLongPollingBot {
             return;
         }
 
-        List<Order> orders = adminService.getAllOrders();
+        runInBulkhead(bulkheads.getAdmin(), chatId, () -> sendAllOrders(chatId));
+    }
+
+    private void sendAllOrders(Long chatId) {
+        List<OrderRowDTO> orders = adminService.getAllOrders();
         if (orders.isEmpty()) {
             sendMessage(chatId, "📦 Заказов нет.");
             return;
         }
 
         StringBuilder ordersText = new StringBuilder("📋 Все заказы:\n\n");
-        for (Order order : orders) {
+        for (OrderRowDTO order : orders) {
             ordersText.append(String.format(
                     "Заказ #%d\n" +
                             "• Адрес: %s\n" +
                             "• Вес: %d кг\n" +
                             "• Статус: %s\n" +
-                            "• Клиент ID: %d\n" +
+                            "• В статусе: %s\n" +
+                            "• Клиент ID: %s\n" +
                             "• Транспорт ID: %s\n" +
                             "• Дата: %s\n\n",
                     order.getId(),
                     order.getDeliveryAddress(),
                     order.getTotalWeight(),
                     order.getStatus(),
-                    order.getCustomer() != null ? order.getCustomer().getCustomerId() : "N/A",
-                    order.getVehicle() != null ? order.getVehicle().getVehicleId() : "N/A",
+                    AdminService.formatTimeInStatus(order.getStatusChangedAt()),
+                    order.getCustomerId() != null ? order.getCustomerId() : "N/A",
+                    order.getVehicleId() != null ? order.getVehicleId() : "N/A",
                     order.getCreateTime()
             ));
         }
@@ -177,14 +517,18 @@ public class TelegramBot extends TelegramLongPollingBot {
             return;
         }
 
-        List<Vehicle> vehicles = adminService.getAllVehicles();
+        runInBulkhead(bulkheads.getAdmin(), chatId, () -> sendAllVehicles(chatId));
+    }
+
+    private void sendAllVehicles(Long chatId) {
+        List<VehicleRowDTO> vehicles = adminService.getAllVehicles();
         if (vehicles.isEmpty()) {
             sendMessage(chatId, "🚗 Транспорта нет.");
             return;
         }
 
         StringBuilder vehiclesText = new StringBuilder("🚗 Весь транспорт:\n\n");
-        for (Vehicle vehicle : vehicles) {
+        for (VehicleRowDTO vehicle : vehicles) {
             vehiclesText.append(String.format(
                     "Транспорт #%d\n" +
                             "• Модель: %s\n" +
@@ -202,13 +546,26 @@ public class TelegramBot extends TelegramLongPollingBot {
         sendMessage(chatId, vehiclesText.toString());
     }
 
+    private void exportOrders(Long chatId, boolean gzip) {
+        if (!adminService.isAdminAuthenticated(chatId)) {
+            sendMessage(chatId, "❌ Доступ только для администратора.");
+            return;
+        }
+
+        if (!orderExportService.exportAsync(chatId, gzip)) {
+            sendMessage(chatId, BULKHEAD_BUSY);
+            return;
+        }
+        sendMessage(chatId, "⏳ Готовим выгрузку заказов" + (gzip ? " (gzip)" : "") + ". Файл придет отдельным сообщением.");
+    }
+
     private void startUpdateOrderStatus(Long chatId) {
         if (!adminService.isAdminAuthenticated(chatId)) {
             sendMessage(chatId, "❌ Доступ только для администратора.");
             return;
         }
 
-        adminActionState.put(chatId, "AWAITING_ORDER_ID_FOR_STATUS");
+        adminActions.startAt(chatId, AdminAction.AWAITING_ORDER_ID_FOR_STATUS);
         sendMessage(chatId, "✏️ Изменение статуса заказа\n\nВведите ID заказа:");
     }
 
@@ -218,108 +575,485 @@ public class TelegramBot extends TelegramLongPollingBot {
             return;
         }
 
-        adminActionState.put(chatId, "AWAITING_VEHICLE_ID_FOR_STATUS");
+        adminActions.startAt(chatId, AdminAction.AWAITING_VEHICLE_ID_FOR_STATUS);
         sendMessage(chatId, "🔄 Изменение статуса транспорта\n\nВведите ID транспорта:");
     }
 
     private void handleAdminActionInput(Long chatId, String input) {
-        String actionState = adminActionState.get(chatId);
+        Flow.Reply reply = adminActions.process(chatId, input);
 
-        if (actionState == null) {
+        if (reply == null) {
             sendMessage(chatId, "❌ Неизвестное действие администратора.");
             return;
         }
+        // null - шаг уже отправил ответ сам (с кнопками или результатами поиска)
+        if (reply.getText() != null) {
+            sendMessage(chatId, reply.getText());
+        }
+    }
 
-        switch (actionState) {
-            case "AWAITING_ORDER_ID_FOR_STATUS":
-                try {
-                    Integer orderId = Integer.parseInt(input);
-                    Order order = adminService.getOrderById(orderId);
-                    if (order != null) {
-                        adminActionState.put(chatId, "AWAITING_NEW_ORDER_STATUS:" + orderId);
-                        sendMessage(chatId, String.format(
-                                "✏️ Изменение статуса заказа #%d\n\nТекущий статус: %s\n\nВведите новый статус:",
-                                orderId, order.getStatus()
-                        ));
-                    } else {
-                        adminActionState.remove(chatId);
-                        sendMessage(chatId, "❌ Заказ с таким ID не найден.");
-                    }
-                } catch (NumberFormatException e) {
-                    adminActionState.remove(chatId);
-                    sendMessage(chatId, "❌ Неверный формат ID. Должно быть число.");
-                }
-                break;
+    private Transition<AdminAction> handleOrderIdForStatus(Long chatId, ActionTarget target, String input) {
+        try {
+            Integer orderId = Integer.parseInt(input);
+            Order order = adminService.getOrderById(orderId);
+            if (order == null) {
+                return Transition.finish("❌ Заказ с таким ID не найден.");
+            }
+            promptOrderStatus(chatId, target, order, String.format(
+                    "✏️ Изменение статуса заказа #%d\n\nТекущий статус: %s (%s)\n\nВыберите новый статус или введите его:",
+                    orderId, order.getStatus(), AdminService.formatTimeInStatus(order.getStatusChangedAt())
+            ));
+            return Transition.to(AdminAction.AWAITING_NEW_ORDER_STATUS);
+        } catch (NumberFormatException e) {
+            return Transition.finish("❌ Неверный формат ID. Должно быть число.");
+        }
+    }
 
-            case "AWAITING_NEW_ORDER_STATUS":
-                try {
-                    Integer orderId = extractIdFromState(adminActionState.get(chatId));
-                    if (orderId != null && adminService.updateOrderStatus(orderId, input)) {
-                        adminActionState.remove(chatId);
-                        sendMessage(chatId, "✅ Статус заказа успешно обновлен!");
-                    } else {
-                        adminActionState.remove(chatId);
-                        sendMessage(chatId, "❌ Ошибка при обновлении статуса заказа.");
-                    }
-                } catch (NumberFormatException e) {
-                    adminActionState.remove(chatId);
-                    sendMessage(chatId, "❌ Ошибка при обработке ID заказа.");
-                }
-                break;
+    private Transition<AdminAction> handleVehicleIdForStatus(Long chatId, ActionTarget target, String input) {
+        try {
+            Integer vehicleId = Integer.parseInt(input);
+            Vehicle vehicle = adminService.getVehicleById(vehicleId);
+            if (vehicle == null) {
+                return Transition.finish("❌ Транспорт с таким ID не найден.");
+            }
+            promptVehicleStatus(chatId, target, vehicle, String.format(
+                    "🔄 Изменение статуса транспорта #%d\n\nТекущий статус: %s\n\nВыберите новый статус или введите его:",
+                    vehicleId, vehicle.getStatus()
+            ));
+            return Transition.to(AdminAction.AWAITING_NEW_VEHICLE_STATUS);
+        } catch (NumberFormatException e) {
+            return Transition.finish("❌ Неверный формат ID. Должно быть число.");
+        }
+    }
 
-            case "AWAITING_VEHICLE_ID_FOR_STATUS":
-                try {
-                    Integer vehicleId = Integer.parseInt(input);
-                    Vehicle vehicle = adminService.getVehicleById(vehicleId);
-                    if (vehicle != null) {
-                        adminActionState.put(chatId, "AWAITING_NEW_VEHICLE_STATUS:" + vehicleId);
-                        sendMessage(chatId, String.format(
-                                "🔄 Изменение статуса транспорта #%d\n\nТекущий статус: %s\n\nВведите новый статус:",
-                                vehicleId, vehicle.getStatus()
-                        ));
-                    } else {
-                        adminActionState.remove(chatId);
-                        sendMessage(chatId, "❌ Транспорт с таким ID не найден.");
-                    }
-                } catch (NumberFormatException e) {
-                    adminActionState.remove(chatId);
-                    sendMessage(chatId, "❌ Неверный формат ID. Должно быть число.");
-                }
-                break;
+    private Transition<AdminAction> handleOrderSearchQuery(Long chatId, ActionTarget target, String input) {
+        adminSearchQuery.put(chatId, input.trim());
+        adminSearchPage.put(chatId, 0);
+        showOrderSearchPage(chatId);
+        return Transition.finish(null);
+    }
 
-            case "AWAITING_NEW_VEHICLE_STATUS":
-                try {
-                    Integer vehicleId = extractIdFromState(adminActionState.get(chatId));
-                    if (vehicleId != null && adminService.updateVehicleStatus(vehicleId, input)) {
-                        adminActionState.remove(chatId);
-                        sendMessage(chatId, "✅ Статус транспорта успешно обновлен!");
-                    } else {
-                        adminActionState.remove(chatId);
-                        sendMessage(chatId, "❌ Ошибка при обновлении статуса транспорта.");
-                    }
-                } catch (NumberFormatException e) {
-                    adminActionState.remove(chatId);
-                    sendMessage(chatId, "❌ Ошибка при обработке ID транспорта.");
-                }
-                break;
+    private Transition<AdminAction> handleBulkOrderStatus(Long chatId, ActionTarget target, String input) {
+        try {
+            AdminService.BulkUpdateResult result = adminService.bulkUpdateOrderStatus(input);
+            return Transition.finish(formatBulkUpdateResult(result));
+        } catch (IllegalArgumentException e) {
+            return Transition.stay("❌ " + e.getMessage() + "\n\nПример: 12,15,20-80 → доставлен");
+        } catch (DataAccessException e) {
+            // Как и при смене статуса одного заказа: ответ и завершение действия, а не зависший шаг
+            if (DatabaseCircuitBreaker.isUnavailable(e)) {
+                return Transition.finish(DATABASE_UNAVAILABLE);
+            }
+            failures.increment();
+            log.error("Массовое обновление статусов не удалось", e);
+            return Transition.finish("❌ Ошибка при массовом обновлении статусов. Попробуйте позже.");
+        }
+    }
 
-            default:
-                adminActionState.remove(chatId);
-                sendMessage(chatId, "❌ Неизвестное действие администратора.");
-                break;
+    // Формат "<статус> <часы>": статус может состоять из нескольких слов
+    private Transition<AdminAction> handleStuckQuery(Long chatId, ActionTarget target, String input) {
+        int separator = input.trim().lastIndexOf(' ');
+        try {
+            if (separator <= 0) {
+                throw new NumberFormatException();
+            }
+            String status = input.trim().substring(0, separator).trim();
+            long hours = Long.parseLong(input.trim().substring(separator + 1));
+            if (hours < 0) {
+                throw new NumberFormatException();
+            }
+            runInBulkhead(bulkheads.getAdmin(), chatId, () -> showStuckOrders(chatId, status, hours));
+            return Transition.finish(null);
+        } catch (NumberFormatException e) {
+            return Transition.stay("❌ Введите статус и количество часов, например: создан 24");
         }
     }
 
-    // Добавьте этот метод в класс TelegramBot
-    private Integer extractIdFromState(String state) {
-        if (state != null && state.contains(":")) {
-            try {
-                return Integer.parseInt(state.split(":")[1]);
-            } catch (NumberFormatException e) {
-                return null;
+    private Transition<AdminAction> handleCustomerSearchQuery(Long chatId, ActionTarget target, String input) {
+        showCustomerSearchResults(chatId, input.trim());
+        return Transition.finish(null);
+    }
+
+    // Вместо загрузки документа можно указать путь к файлу на сервере
+    private Transition<AdminAction> handleCustomersFilePath(Long chatId, ActionTarget target, String input) {
+        // Только файлы из каталога импорта (import.customers.dir), без путей за его пределы
+        Path path = customerImportService.resolveImportFile(input);
+        if (path == null) {
+            return Transition.stay("❌ Файл не найден в каталоге импорта. Отправьте CSV-файл документом " +
+                    "или укажите имя файла в каталоге импорта на сервере:");
+        }
+        customerImportService.importAsync(chatId, () -> Files.newInputStream(path));
+        return Transition.finish("⏳ Импорт клиентов из " + path.getFileName() + " запущен. Результат придет отдельным сообщением.");
+    }
+
+    private void startOrderSearch(Long chatId) {
+        if (!adminService.isAdminAuthenticated(chatId)) {
+            sendMessage(chatId, "❌ Доступ только для администратора.");
+            return;
+        }
+
+        adminActions.startAt(chatId, AdminAction.AWAITING_ORDER_SEARCH);
+        sendMessage(chatId, "🔍 Поиск заказов\n\nВведите часть адреса доставки:");
+    }
+
+    private void showNextOrderSearchPage(Long chatId) {
+        if (!adminSearchQuery.containsKey(chatId)) {
+            sendMessage(chatId, "❌ Сначала выполните поиск: /admin_search");
+            return;
+        }
+        adminSearchPage.merge(chatId, 1, Integer::sum);
+        showOrderSearchPage(chatId);
+    }
+
+    private void showOrderSearchPage(Long chatId) {
+        String query = adminSearchQuery.get(chatId);
+        int page = adminSearchPage.getOrDefault(chatId, 0);
+
+        List<OrderSearchRow> rows = adminService.searchOrdersByAddress(query, page);
+        if (rows.isEmpty()) {
+            sendMessage(chatId, page == 0
+                    ? "🔍 По запросу «" + query + "» ничего не найдено."
+                    : "🔍 Больше результатов нет.");
+            return;
+        }
+
+        boolean hasNext = rows.size() > AdminService.SEARCH_PAGE_SIZE;
+        StringBuilder text = new StringBuilder("🔍 Заказы по запросу «" + query + "» (стр. " + (page + 1) + "):\n\n");
+        for (OrderSearchRow row : rows.subList(0, Math.min(rows.size(), AdminService.SEARCH_PAGE_SIZE))) {
+            text.append("Заказ #").append(row.getId()).append("\n")
+                    .append("• Адрес: ").append(row.getDeliveryAddress()).append("\n")
+                    .append("• Вес: ").append(row.getTotalWeight()).append(" кг\n")
+                    .append("• Статус: ").append(row.getStatus()).append("\n")
+                    .append("• Клиент ID: ").append(row.getCustomerId() != null ? row.getCustomerId() : "N/A")
+                    .append("\n\n");
+        }
+        if (hasNext) {
+            text.append("➡️ Следующая страница: /admin_search_next");
+            sendMessage(chatId, text.toString(),
+                    createSingleButtonKeyboard("➡️ Следующая страница", CallbackAction.ORDER_SEARCH_NEXT));
+            return;
+        }
+
+        sendMessage(chatId, text.toString());
+    }
+
+    private void startBulkOrderStatus(Long chatId) {
+        if (!adminService.isAdminAuthenticated(chatId)) {
+            sendMessage(chatId, "❌ Доступ только для администратора.");
+            return;
+        }
+
+        adminActions.startAt(chatId, AdminAction.AWAITING_BULK_ORDER_STATUS);
+        sendMessage(chatId, "📦 Массовая смена статуса заказов\n\n" +
+                "Введите ID заказов (списком и диапазонами) и новый статус:\n" +
+                "12,15,20-80 → доставлен");
+    }
+
+    private String formatBulkUpdateResult(AdminService.BulkUpdateResult result) {
+        StringBuilder text = new StringBuilder("📦 Массовая смена статуса на «" + result.getNewStatus() + "»\n\n")
+                .append("• Указано заказов: ").append(result.getRequested()).append("\n")
+                .append("• Обновлено: ").append(result.getUpdated()).append("\n");
+        List<Integer> skipped = result.getSkippedIds();
+        if (!skipped.isEmpty()) {
+            text.append("• Пропущено: ").append(skipped.size())
+                    .append(" (не найдены, уже в этом статусе или изменены параллельно)\n");
+            List<Integer> shown = skipped.subList(0, Math.min(skipped.size(), 30));
+            text.append("  ").append(shown.stream().map(String::valueOf).collect(Collectors.joining(", ")));
+            if (skipped.size() > shown.size()) {
+                text.append(" и еще ").append(skipped.size() - shown.size());
             }
         }
-        return null;
+        return text.toString();
+    }
+
+    private void startStuckOrders(Long chatId) {
+        if (!adminService.isAdminAuthenticated(chatId)) {
+            sendMessage(chatId, "❌ Доступ только для администратора.");
+            return;
+        }
+
+        adminActions.startAt(chatId, AdminAction.AWAITING_STUCK_QUERY);
+        sendMessage(chatId, "⏳ Зависшие заказы\n\n" +
+                "Введите статус и сколько часов заказ в нем находится:\n" +
+                "создан 24");
+    }
+
+    private void showStuckOrders(Long chatId, String status, long hours) {
+        List<OrderRowDTO> orders = adminService.findStuckOrders(status, hours);
+        if (orders.isEmpty()) {
+            sendMessage(chatId, "⏳ Заказов в статусе «" + status + "» дольше " + hours + " ч нет.");
+            return;
+        }
+
+        StringBuilder text = new StringBuilder("⏳ В статусе «" + status + "» дольше " + hours + " ч:\n\n");
+        for (OrderRowDTO order : orders) {
+            text.append("Заказ #").append(order.getId())
+                    .append(" - ").append(AdminService.formatTimeInStatus(order.getStatusChangedAt()))
+                    .append(", клиент ID: ").append(order.getCustomerId() != null ? order.getCustomerId() : "N/A")
+                    .append("\n");
+        }
+        if (orders.size() == AdminService.STUCK_ORDERS_LIMIT) {
+            text.append("\nПоказаны первые ").append(AdminService.STUCK_ORDERS_LIMIT).append(" заказов.");
+        }
+
+        sendMessage(chatId, text.toString());
+    }
+
+    private void startCustomerSearch(Long chatId) {
+        if (!adminService.isAdminAuthenticated(chatId)) {
+            sendMessage(chatId, "❌ Доступ только для администратора.");
+            return;
+        }
+
+        adminActions.startAt(chatId, AdminAction.AWAITING_CUSTOMER_SEARCH);
+        sendMessage(chatId, "👥 Поиск клиентов\n\nВведите часть имени, email или телефона:");
+    }
+
+    private void showCustomerSearchResults(Long chatId, String query) {
+        if (!adminService.isCustomerIndexReady()) {
+            sendMessage(chatId, "⏳ Индекс клиентов еще загружается. Попробуйте через минуту.");
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+        List<CustomerRowDTO> customers = adminService.findCustomers(query);
+        long elapsedMicros = (System.nanoTime() - startNanos) / 1000;
+
+        if (customers.isEmpty()) {
+            sendMessage(chatId, "👥 По запросу «" + query + "» клиенты не найдены.");
+            return;
+        }
+
+        StringBuilder text = new StringBuilder("👥 Клиенты по запросу «" + query + "»:\n\n");
+        for (CustomerRowDTO customer : customers) {
+            text.append("Клиент #").append(customer.getCustomerId()).append("\n")
+                    .append("• Имя: ").append(customer.getFullName()).append("\n")
+                    .append("• Email: ").append(customer.getEmail()).append("\n")
+                    .append("• Телефон: ").append(customer.getPhone() != null ? customer.getPhone() : "N/A")
+                    .append("\n\n");
+        }
+        if (customers.size() == AdminService.CUSTOMER_SEARCH_LIMIT) {
+            text.append("Показаны первые ").append(AdminService.CUSTOMER_SEARCH_LIMIT)
+                    .append(" совпадений, уточните запрос.\n");
+        }
+        text.append("⏱ ").append(elapsedMicros).append(" мкс");
+
+        sendMessage(chatId, text.toString());
+    }
+
+    private void showCustomerIndexStats(Long chatId) {
+        CustomerSearchIndex.MemoryReport report = adminService.getCustomerIndexReport();
+        sendMessage(chatId, "🧠 Индекс поиска клиентов\n\n" +
+                "• Клиентов: " + report.getCustomers() + "\n" +
+                "• Триграмм: " + report.getGrams() + "\n" +
+                "• Ссылок в списках: " + report.getPostingRefs() + "\n" +
+                "• Память: ≈ " + report.getTotalBytes() / 1024 + " КБ\n" +
+                "• Оценка на 1 млн клиентов: ≈ " + report.projectBytes(1_000_000) / (1024 * 1024) + " МБ");
+    }
+
+    private void showIngressStats(Long chatId) {
+        StringBuilder text = new StringBuilder("📥 Входная очередь\n\n")
+                .append("• В очереди: ").append(ingressDispatcher.getQueued())
+                .append(" из ").append(ingressDispatcher.getCapacity()).append("\n")
+                .append("• Среднее ожидание: ").append(String.format("%.1f", ingressDispatcher.getAverageWaitMillis()))
+                .append(" мс\n")
+                .append("• Отклонено по лимиту чата: ").append(ingressDispatcher.getRateLimitedCount()).append("\n\n");
+        for (IngressDispatcher.Lane lane : IngressDispatcher.Lane.values()) {
+            text.append(lane).append(": в очереди ").append(ingressDispatcher.getQueued(lane))
+                    .append(", принято ").append(ingressDispatcher.getAcceptedCount(lane))
+                    .append(", отброшено ").append(ingressDispatcher.getShedCount(lane)).append("\n");
+        }
+        text.append("\nПовторных обновлений отброшено: ").append(updateDeduplicator.getDroppedUpdates())
+                .append(", повторных сообщений: ").append(updateDeduplicator.getDroppedMessages())
+                .append(", сбросов update_id: ").append(updateDeduplicator.getSequenceResets()).append("\n\n");
+        text.append("🧱 Пулы тяжелых запросов\n");
+        for (Bulkhead bulkhead : bulkheads.getAll()) {
+            text.append(bulkhead.getName()).append(": занято ").append(bulkhead.getActiveCount())
+                    .append(" из ").append(bulkhead.getThreads())
+                    .append(", в очереди ").append(bulkhead.getQueued()).append(" из ").append(bulkhead.getQueueCapacity())
+                    .append(", загрузка ").append(Math.round(bulkhead.getSaturation() * 100)).append("%")
+                    .append(", выполнено ").append(bulkhead.getCompletedCount())
+                    .append(", отклонено ").append(bulkhead.getRejectedCount())
+                    .append(", ошибок ").append(bulkhead.getFailedCount()).append("\n");
+        }
+        text.append("\n⏱ Бюджет обновления ").append(updateBudget.getBudgetMillis()).append(" мс, превышений: ")
+                .append(updateBudget.getOverrunCount()).append("\n");
+        updateBudget.getOverrunsByHandler().forEach((handler, count) ->
+                text.append("• ").append(handler).append(" - ").append(count).append("\n"));
+        text.append("\n🗄 База данных: ").append(databaseCircuitBreaker.getState())
+                .append(", ошибок соединения ").append(databaseCircuitBreaker.getFailureCount())
+                .append(", отказов без обращения ").append(databaseCircuitBreaker.getRejectedCount())
+                .append(", размыканий ").append(databaseCircuitBreaker.getOpenedCount()).append("\n")
+                .append("Заказов в журнале до восстановления базы: ").append(pendingOrderJournal.getPendingCount())
+                .append(", отклонено при оформлении: ").append(pendingOrderJournal.getDeadLetterCount()).append("\n")
+                .append("Сбоев подписчиков смены статуса: ").append(adminService.getStatusListenerFailures());
+        sendMessage(chatId, text.toString());
+    }
+
+    private void startCustomerImport(Long chatId) {
+        if (!adminService.isAdminAuthenticated(chatId)) {
+            sendMessage(chatId, "❌ Доступ только для администратора.");
+            return;
+        }
+
+        adminActions.startAt(chatId, AdminAction.AWAITING_CUSTOMERS_FILE);
+        sendMessage(chatId, "📥 Импорт клиентов\n\n" +
+                "Отправьте CSV-файл документом или укажите имя файла в каталоге импорта на сервере.\n" +
+                "Формат строки: email,имя,телефон,адрес,пароль (заголовок необязателен)");
+    }
+
+    // Смена статуса заказа из текста или кнопки; при конфликте версий показывает актуальный статус
+    private Transition<AdminAction> applyOrderStatus(Long chatId, ActionTarget target, String input) {
+        String status = adminService.findOrderStatus(input);
+        if (status == null) {
+            return Transition.stay("❌ Неизвестный статус «" + input.trim() + "».\n\nВыберите кнопкой или введите один из: "
+                    + String.join(", ", orderStatuses));
+        }
+        AdminService.StatusUpdate result = adminService.updateOrderStatus(target.id, target.version, status);
+        if (result == AdminService.StatusUpdate.UPDATED) {
+            sendMessage(chatId, "✅ Статус заказа успешно обновлен!");
+            return Transition.finish(null);
+        }
+        if (result == AdminService.StatusUpdate.FAILED) {
+            sendMessage(chatId, "❌ Ошибка при обновлении статуса заказа. Попробуйте позже.");
+            return Transition.finish(null);
+        }
+        Order order = adminService.getOrderById(target.id);
+        if (order == null) {
+            sendMessage(chatId, "❌ Заказ #" + target.id + " не найден.");
+            return Transition.finish(null);
+        }
+        // Заказ изменили после того, как администратор увидел статус - показываем актуальный
+        promptOrderStatus(chatId, target, order, String.format(
+                "⚠️ Заказ #%d уже изменен другим администратором.\n\nТекущий статус: %s\n\nВыберите или введите новый статус еще раз:",
+                order.getId(), order.getStatus()
+        ));
+        return Transition.to(AdminAction.AWAITING_NEW_ORDER_STATUS);
+    }
+
+    private Transition<AdminAction> applyVehicleStatus(Long chatId, ActionTarget target, String input) {
+        String status = adminService.findVehicleStatus(input);
+        if (status == null) {
+            return Transition.stay("❌ Неизвестный статус «" + input.trim() + "».\n\nВыберите кнопкой или введите один из: "
+                    + String.join(", ", vehicleStatuses));
+        }
+        AdminService.StatusUpdate result = adminService.updateVehicleStatus(target.id, target.version, status);
+        if (result == AdminService.StatusUpdate.UPDATED) {
+            sendMessage(chatId, "✅ Статус транспорта успешно обновлен!");
+            return Transition.finish(null);
+        }
+        if (result == AdminService.StatusUpdate.FAILED) {
+            sendMessage(chatId, "❌ Ошибка при обновлении статуса транспорта. Попробуйте позже.");
+            return Transition.finish(null);
+        }
+        Vehicle vehicle = adminService.getVehicleById(target.id);
+        if (vehicle == null) {
+            sendMessage(chatId, "❌ Транспорт #" + target.id + " не найден.");
+            return Transition.finish(null);
+        }
+        promptVehicleStatus(chatId, target, vehicle, String.format(
+                "⚠️ Транспорт #%d уже изменен другим администратором.\n\nТекущий статус: %s\n\nВыберите или введите новый статус еще раз:",
+                vehicle.getVehicleId(), vehicle.getStatus()
+        ));
+        return Transition.to(AdminAction.AWAITING_NEW_VEHICLE_STATUS);
+    }
+
+    private void promptOrderStatus(Long chatId, ActionTarget target, Order order, String text) {
+        target.id = order.getId();
+        target.version = order.getVersion();
+        sendMessage(chatId, text, createStatusKeyboard(CallbackAction.ORDER_STATUS, order.getId(), order.getVersion(),
+                orderStatuses, order.getStatus()));
+    }
+
+    private void promptVehicleStatus(Long chatId, ActionTarget target, Vehicle vehicle, String text) {
+        target.id = vehicle.getVehicleId();
+        target.version = vehicle.getVersion();
+        sendMessage(chatId, text, createStatusKeyboard(CallbackAction.VEHICLE_STATUS, vehicle.getVehicleId(),
+                vehicle.getVersion(), vehicleStatuses, vehicle.getStatus()));
+    }
+
+    // Кнопка статуса нажата вне диалога: при конфликте версий начинается ожидание ввода статуса,
+    // после смены статуса ожидание снимается, только если оно относится к этому же заказу или транспорту
+    private void resumeStatusAction(Long chatId, AdminAction step, ActionTarget target, Transition<AdminAction> result) {
+        if (!result.isFinished()) {
+            adminActions.startAt(chatId, step, target);
+            return;
+        }
+        ActionTarget current = adminActions.getContext(chatId);
+        if (adminActions.getStep(chatId) == step && current.id.equals(target.id)) {
+            adminActions.cancel(chatId);
+        }
+    }
+
+    private void handleOrderStatusCallback(Long chatId, CallbackCodec.Callback callback) {
+        if (!adminService.isAdminAuthenticated(chatId)) {
+            sendMessage(chatId, "❌ Доступ только для администратора.");
+            return;
+        }
+        String status = statusAt(orderStatuses, callback.getInt(2));
+        if (status == null) {
+            sendMessage(chatId, "⚠️ Кнопка устарела. Повторите действие через меню.");
+            return;
+        }
+        ActionTarget target = new ActionTarget(callback.getInt(0), decodeVersion(callback.getLong(1)));
+        resumeStatusAction(chatId, AdminAction.AWAITING_NEW_ORDER_STATUS, target, applyOrderStatus(chatId, target, status));
+    }
+
+    private void handleVehicleStatusCallback(Long chatId, CallbackCodec.Callback callback) {
+        if (!adminService.isAdminAuthenticated(chatId)) {
+            sendMessage(chatId, "❌ Доступ только для администратора.");
+            return;
+        }
+        String status = statusAt(vehicleStatuses, callback.getInt(2));
+        if (status == null) {
+            sendMessage(chatId, "⚠️ Кнопка устарела. Повторите действие через меню.");
+            return;
+        }
+        ActionTarget target = new ActionTarget(callback.getInt(0), decodeVersion(callback.getLong(1)));
+        resumeStatusAction(chatId, AdminAction.AWAITING_NEW_VEHICLE_STATUS, target, applyVehicleStatus(chatId, target, status));
+    }
+
+    // Кнопки статусов (по два в ряд), кроме текущего
+    private InlineKeyboardMarkup createStatusKeyboard(CallbackAction action, Integer id, Long version,
+                                                      List<String> statuses, String currentStatus) {
+        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
+        List<InlineKeyboardButton> row = new ArrayList<>();
+        for (int i = 0; i < statuses.size(); i++) {
+            if (statuses.get(i).equals(currentStatus)) {
+                continue;
+            }
+            row.add(createCallbackButton(statuses.get(i),
+                    callbackCodec.encode(action.getCode(), id, version != null ? version : -1, i)));
+            if (row.size() == 2) {
+                rows.add(row);
+                row = new ArrayList<>();
+            }
+        }
+        if (!row.isEmpty()) {
+            rows.add(row);
+        }
+        return new InlineKeyboardMarkup(rows);
+    }
+
+    private InlineKeyboardMarkup createSingleButtonKeyboard(String text, CallbackAction action) {
+        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
+        rows.add(List.of(createCallbackButton(text, callbackCodec.encode(action.getCode()))));
+        return new InlineKeyboardMarkup(rows);
+    }
+
+    private InlineKeyboardButton createCallbackButton(String text, String callbackData) {
+        InlineKeyboardButton button = new InlineKeyboardButton();
+        button.setText(text);
+        button.setCallbackData(callbackData);
+        return button;
+    }
+
+    private static String statusAt(List<String> statuses, int index) {
+        return index >= 0 && index < statuses.size() ? statuses.get(index) : null;
+    }
+
+    private static Long decodeVersion(long version) {
+        return version >= 0 ? version : null;
     }
 
     // Обновите метод handleCommands
@@ -343,6 +1077,49 @@ public class TelegramBot extends TelegramLongPollingBot {
                 case "🔄 Изменить статус транспорта":
                     startUpdateVehicleStatus(chatId);
                     return;
+                case "/admin_import_customers":
+                case "📥 Импорт клиентов":
+                    startCustomerImport(chatId);
+                    return;
+                case "/admin_export_orders":
+                case "📤 Экспорт заказов":
+                    exportOrders(chatId, false);
+                    return;
+                case "/admin_export_orders_gz":
+                    exportOrders(chatId, true);
+                    return;
+                case "/admin_search":
+                case "🔍 Поиск заказов":
+                    startOrderSearch(chatId);
+                    return;
+                case "/admin_search_next":
+                    showNextOrderSearchPage(chatId);
+                    return;
+                case "/admin_find":
+                case "👥 Поиск клиентов":
+                    startCustomerSearch(chatId);
+                    return;
+                case "/admin_bulk_status":
+                case "📦 Массовая смена статуса":
+                    startBulkOrderStatus(chatId);
+                    return;
+                case "/admin_stuck":
+                case "⏳ Зависшие заказы":
+                    startStuckOrders(chatId);
+                    return;
+                case "/admin_summary":
+                case "📊 Сводка":
+                    sendMessage(chatId, adminService.getStatusSummary());
+                    return;
+                case "/admin_find_stats":
+                    showCustomerIndexStats(chatId);
+                    return;
+                case "/admin_ingress_stats":
+                    showIngressStats(chatId);
+                    return;
+                case "/admin_rebuild_stats":
+                    rebuildCustomerStats(chatId);
+                    return;
                 case "/admin_logout":
                 case "🚪 Выход":
                     handleAdminLogout(chatId);
@@ -392,7 +1169,14 @@ public class TelegramBot extends TelegramLongPollingBot {
                 break;
             case "/my_orders":
             case "📋 Мои заказы":
-                showUserOrders(chatId);
+                showUserOrders(chatId, false);
+                break;
+            case "/my_orders_next":
+                showUserOrders(chatId, true);
+                break;
+            case "/import_orders":
+            case "📥 Импорт заказов":
+                handleImportOrders(chatId);
                 break;
             case "ℹ️ О боте":
                 sendAboutMessage(chatId);
@@ -406,23 +1190,11 @@ public class TelegramBot extends TelegramLongPollingBot {
         }
     }
 
-    // Обновите метод handleCancel
+    // Диалоги (вход, регистрация, создание заказа, действия администратора) обрабатывают отмену сами
     private void handleCancel(Long chatId) {
-        if (adminService.isAdminInLoginProcess(chatId)) {
-            adminService.cancelAdminLogin(chatId);
-            sendMessage(chatId, "❌ Вход администратора отменен.");
-        } else if (adminActionState.containsKey(chatId)) {
-            adminActionState.remove(chatId);
-            sendMessage(chatId, "❌ Действие администратора отменено.");
-        } else if (registrationService.isUserInRegistrationProcess(chatId)) {
-            registrationService.cancelRegistration(chatId);
-            sendMessage(chatId, "❌ Регистрация отменена.");
-        } else if (loginService.isUserInLoginProcess(chatId)) {
-            loginService.cancelLoginProcess(chatId);
-            sendMessage(chatId, "❌ Вход отменен.");
-        } else if (orderCreationService.isUserInOrderCreationProcess(chatId)) {
-            orderCreationService.cancelOrderCreation(chatId);
-            sendMessage(chatId, "❌ Создание заказа отменено.");
+        if (orderImportService.isAwaitingFile(chatId)) {
+            orderImportService.cancelImport(chatId);
+            sendMessage(chatId, "❌ Импорт заказов отменен.");
         } else {
             sendMessage(chatId, "❌ Нечего отменять.");
         }
@@ -442,17 +1214,30 @@ public class TelegramBot extends TelegramLongPollingBot {
             KeyboardRow row1 = new KeyboardRow();
             row1.add("📋 Все заказы");
             row1.add("🚗 Весь транспорт");
+            row1.add("📊 Сводка");
 
             KeyboardRow row2 = new KeyboardRow();
             row2.add("✏️ Изменить статус заказа");
             row2.add("🔄 Изменить статус транспорта");
+            row2.add("📦 Массовая смена статуса");
 
             KeyboardRow row3 = new KeyboardRow();
-            row3.add("🚪 Выход");
+            row3.add("🔍 Поиск заказов");
+            row3.add("👥 Поиск клиентов");
+            row3.add("⏳ Зависшие заказы");
+
+            KeyboardRow row4 = new KeyboardRow();
+            row4.add("📥 Импорт клиентов");
+            row4.add("📤 Экспорт заказов");
+
+            KeyboardRow row5 = new KeyboardRow();
+            row5.add("🚪 Выход");
 
             keyboard.add(row1);
             keyboard.add(row2);
             keyboard.add(row3);
+            keyboard.add(row4);
+            keyboard.add(row5);
         } else if (authService.isAuthenticated(chatId)) {
             // Меню для авторизованных пользователей
             KeyboardRow row1 = new KeyboardRow();
@@ -461,9 +1246,10 @@ public class TelegramBot extends TelegramLongPollingBot {
 
             KeyboardRow row2 = new KeyboardRow();
             row2.add("👤 Профиль");
-            row2.add("❓ Помощь");
+            row2.add("📥 Импорт заказов");
 
             KeyboardRow row3 = new KeyboardRow();
+            row3.add("❓ Помощь");
             row3.add("ℹ️ О боте");
             row3.add("🚪 Выход");
 
@@ -536,6 +1322,7 @@ public class TelegramBot extends TelegramLongPollingBot {
                     "• Email: " + customer.getEmail() + "\n" +
                     "• Телефон: " + customer.getPhone() + "\n" +
                     "• Адрес: " + customer.getAddress() + "\n\n" +
+                    formatCustomerStats(customerStatsService.getStats(customer.getCustomerId())) + "\n" +
                     "Статус: ✅ Авторизован";
             sendMessage(chatId, profile);
         } else {
@@ -544,6 +1331,54 @@ public class TelegramBot extends TelegramLongPollingBot {
     }
 
 
+    // Статистика из customer_stats: одна строка на клиента, без агрегатов по заказам
+    private String formatCustomerStats(CustomerStats stats) {
+        if (stats == null || stats.getOrdersTotal() == null || stats.getOrdersTotal() == 0) {
+            return "📊 Заказов пока нет\n";
+        }
+        StringBuilder text = new StringBuilder("📊 Ваши заказы:\n")
+                .append("• Всего: ").append(stats.getOrdersTotal()).append("\n")
+                .append("• Общий вес: ").append(stats.getTotalWeightKg()).append(" кг\n");
+        if (stats.getLastOrderAt() != null) {
+            text.append("• Последний заказ: ")
+                    .append(stats.getLastOrderAt().format(DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm"))).append("\n");
+        }
+        if (stats.getStatusCounts() != null && !stats.getStatusCounts().isEmpty()) {
+            text.append("• По статусам: ").append(new TreeMap<>(stats.getStatusCounts()).entrySet().stream()
+                    .map(entry -> entry.getKey() + " - " + entry.getValue())
+                    .collect(Collectors.joining(", "))).append("\n");
+        }
+        return text.toString();
+    }
+
+    private void rebuildCustomerStats(Long chatId) {
+        if (!adminService.isAdminAuthenticated(chatId)) {
+            sendMessage(chatId, "❌ Доступ только для администратора.");
+            return;
+        }
+
+        runInBulkhead(bulkheads.getReporting(), chatId, () -> {
+            try {
+                long startNanos = System.nanoTime();
+                int customers = customerStatsService.rebuild();
+                sendMessage(chatId, "✅ Статистика клиентов пересобрана: " + customers + " клиентов за "
+                        + (System.nanoTime() - startNanos) / 1_000_000 + " мс.");
+            } catch (Exception e) {
+                failures.increment();
+                log.error("Не удалось пересобрать статистику клиентов", e);
+                sendMessage(chatId, "❌ Не удалось пересобрать статистику клиентов.");
+            }
+        });
+    }
+
+    // Тяжелый запрос выполняется в своем пуле, а не потоком входной очереди: клиенты его не ждут.
+    // Ответ из пула уходит сразу, мимо буфера ответов обновления
+    private void runInBulkhead(Bulkhead bulkhead, Long chatId, Runnable task) {
+        if (!bulkhead.trySubmit(task)) {
+            sendMessage(chatId, BULKHEAD_BUSY);
+        }
+    }
+
     private void startSession(Long chatId) {
         sessionService.createSession(chatId);
     }
@@ -589,11 +1424,7 @@ public class TelegramBot extends TelegramLongPollingBot {
 
         sendMessage.setReplyMarkup(keyboard);
 
-        try {
-            execute(sendMessage);
-        } catch (TelegramApiException e) {
-            e.printStackTrace();
-        }
+        messageSender.send(sendMessage);
     }
 
 
@@ -631,49 +1462,29 @@ public class TelegramBot extends TelegramLongPollingBot {
         ReplyKeyboardMarkup keyboardMarkup = createMainMenuKeyboard(chatId);
         message.setReplyMarkup(keyboardMarkup);
 
-        try {
-            execute(message);
-        } catch (TelegramApiException e) {
-            e.printStackTrace();
-        }
+        messageSender.send(message);
     }
 
     private void sendMessage(Long chatId, String text) {
+        sendMessage(chatId, text, null);
+    }
+
+    private void sendMessage(Long chatId, String text, InlineKeyboardMarkup keyboard) {
         SendMessage message = new SendMessage();
         message.setChatId(chatId.toString());
         message.setText(text);
+        message.setReplyMarkup(keyboard);
 
-        try {
-            execute(message);
-        } catch (TelegramApiException e) {
-            e.printStackTrace();
-        }
+        messageSender.send(message);
     }
 
     // Обновляем метод sendHelpMessage:
     private void sendHelpMessage(Long chatId) {
-        String helpText = "📋 Доступные команды:\n\n";
-
-        if (authService.isAuthenticated(chatId)) {
-            helpText += "• 👤 Профиль - посмотреть свой профиль\n";
-        } else {
-            helpText += "• 📝 Регистрация - зарегистрироваться в системе\n";
-            helpText += "• 🔐 Вход - войти в систему\n";
-        }
+        StringBuilder helpText = messageTemplates.renderTo(new StringBuilder(512), "help.header");
+        messageTemplates.renderTo(helpText, authService.isAuthenticated(chatId) ? "help.authenticated" : "help.guest");
+        messageTemplates.renderTo(helpText, "help.common");
 
-        helpText += "• ❓ Помощь - показать это сообщение\n" +
-                "• ℹ️ О боте - информация о боте\n" +
-                "• 📊 Статус сессии - показать статус текущей сессии\n" +
-                "• 🚪 Выход - завершить текущую сессию\n\n" +
-                "Или используйте команды:\n" +
-                "/sign - регистрация\n" +
-                "/login - вход\n" +
-                "/profile - профиль\n" +
-                "/help - помощь\n" +
-                "/session - статус сессии\n" +
-                "/logout - выход";
-
-        sendMessageWithMenu(chatId, helpText);
+        sendMessageWithMenu(chatId, helpText.toString());
     }
 
 
@@ -687,38 +1498,74 @@ public class TelegramBot extends TelegramLongPollingBot {
         sendMessage(chatId, "📦 Создание нового заказа\n\nПожалуйста, введите адрес доставки:");
     }
 
-    private void showUserOrders(Long chatId) {
+    private void handleImportOrders(Long chatId) {
         if (!authService.isAuthenticated(chatId)) {
-            sendMessage(chatId, "❌ Для просмотра заказов необходимо войти в систему.");
+            sendMessage(chatId, "❌ Для импорта заказов необходимо войти в систему.");
             return;
         }
 
-        Customer customer = authService.getAuthenticatedCustomer(chatId);
-        List<Order> orders = orderService.getUserOrders(customer.getCustomerId());
+        orderImportService.startImport(chatId);
+        sendMessage(chatId, "📥 Импорт заказов\n\n" +
+                "Отправьте файл документом:\n" +
+                "• CSV - строка: адрес,вес (кг)\n" +
+                "• NDJSON (.ndjson/.jsonl) - строка: {\"address\": \"...\", \"weight\": 2500}\n" +
+                "• JSON (.json) - массив таких объектов\n\n" +
+                "Для отмены нажмите ❌ Отмена");
+    }
 
-        if (orders.isEmpty()) {
-            sendMessage(chatId, "📦 У вас пока нет заказов.\n\nСоздайте первый заказ с помощью команды /new_order");
+    private void showUserOrders(Long chatId, boolean nextPage) {
+        if (!authService.isAuthenticated(chatId)) {
+            sendMessage(chatId, "❌ Для просмотра заказов необходимо войти в систему.");
             return;
         }
 
-        StringBuilder ordersText = new StringBuilder("📋 Ваши заказы:\n\n");
-        for (Order order : orders) {
-            ordersText.append(String.format(
-                    "Заказ #%d\n" +
-                            "• Адрес: %s\n" +
-                            "• Вес: %d кг\n" +
-                            "• Статус: %s\n" +
-                            "• Дата: %s\n\n",
-                    order.getId(),
-                    order.getDeliveryAddress(),
-                    order.getTotalWeight(),
-                    order.getStatus(),
-                    order.getCreateTime()
-            ));
+        OrderPageCache.Cursor cursor = null;
+        if (nextPage) {
+            cursor = userOrdersNextPage.get(chatId);
+            if (cursor == null) {
+                sendMessage(chatId, "📦 Больше заказов нет. Первая страница: /my_orders");
+                return;
+            }
         }
 
-        sendMessage(chatId, ordersText.toString());
+        Customer customer = authService.getAuthenticatedCustomer(chatId);
+        OrderPageCache.RenderedPage page = orderService.getUserOrdersPage(customer.getCustomerId(), cursor);
+        if (page.getNext() != null) {
+            userOrdersNextPage.put(chatId, page.getNext());
+            sendMessage(chatId, page.getText(),
+                    createSingleButtonKeyboard("➡️ Следующая страница", CallbackAction.MY_ORDERS_NEXT));
+        } else {
+            userOrdersNextPage.remove(chatId);
+            sendMessage(chatId, page.getText());
+        }
     }
 
+    private interface CallbackHandler {
+        void handle(Long chatId, CallbackCodec.Callback callback);
+    }
+
+    private enum AdminAction {
+        AWAITING_ORDER_ID_FOR_STATUS,
+        AWAITING_NEW_ORDER_STATUS,
+        AWAITING_VEHICLE_ID_FOR_STATUS,
+        AWAITING_NEW_VEHICLE_STATUS,
+        AWAITING_ORDER_SEARCH,
+        AWAITING_BULK_ORDER_STATUS,
+        AWAITING_STUCK_QUERY,
+        AWAITING_CUSTOMER_SEARCH,
+        AWAITING_CUSTOMERS_FILE
+    }
 
-}
\ No newline at end of file
+    static class ActionTarget {
+        private Integer id;
+        private Long version;
+
+        ActionTarget() {
+        }
+
+        ActionTarget(Integer id, Long version) {
+            this.id = id;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.logistics.component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Метрики конвейера бота (Micrometer, выдаются на /actuator/prometheus): входящие обновления по типам,
+ * время обработчиков и отправки в Telegram. Показатели компонентов (сессии, диалоги, очереди) регистрируются
+ * в MetricsConfig, время вызовов репозиториев - стандартной метрикой spring.data.repository.invocations.
+ *
+ * Имя обработчика становится тегом, поэтому число различных имен ограничено: сверх MAX_HANDLERS
+ * время записывается под именем «other».
+ */
+@Component
+public class BotMetrics {
+
+    static final int MAX_HANDLERS = 200;
+    static final String OTHER = "other";
+
+    private final MeterRegistry registry;
+    private final Map<String, Counter> updates = new ConcurrentHashMap<>();
+    private final Set<String> handlerNames = ConcurrentHashMap.newKeySet();
+    private final Map<String, Timer> handlers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> sends = new ConcurrentHashMap<>();
+
+    public BotMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Входящее обновление: text, document, callback или other
+     */
+    public void updateReceived(String type) {
+        updates.computeIfAbsent(type, key -> Counter.builder("bot.updates")
+                .description("Входящие обновления Telegram")
+                .tag("type", key)
+                .register(registry)).increment();
+    }
+
+    /**
+     * Время обработчика обновления; outcome - ok, overrun (бюджет исчерпан), unavailable (база недоступна), error
+     */
+    public void recordHandler(String handler, String outcome, long nanos) {
+        String name = handlerNames.contains(handler)
+                || (handlerNames.size() < MAX_HANDLERS && handlerNames.add(handler)) ? handler : OTHER;
+        timer(handlers, name, outcome, () -> Timer.builder("bot.handler.latency")
+                .description("Время обработки обновления")
+                .tag("handler", name)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Время запроса к Telegram; outcome - ok, код ошибки Telegram (429, 403, ...) или error
+     */
+    public void recordSend(String method, String outcome, long nanos) {
+        timer(sends, method, outcome, () -> Timer.builder("bot.telegram.send")
+                .description("Время запросов к Telegram Bot API")
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static Timer timer(Map<String, Timer> timers, String name, String outcome, Supplier<Timer> factory) {
+        return timers.computeIfAbsent(name + '|' + outcome, key -> factory.get());
+    }
+}
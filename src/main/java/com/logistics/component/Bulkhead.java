@@ -0,0 +1,88 @@
+package com.logistics.component;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Изолированный пул для одного вида работы: фиксированное число потоков и ограниченная очередь.
+ * Каждый поток держит не больше одного соединения с базой, поэтому число потоков - это и доля
+ * пула соединений, которую эта работа может занять. Переполненный пул отказывает сразу,
+ * а не копит задачи.
+ */
+public class Bulkhead {
+
+    private static final Logger log = LoggerFactory.getLogger(Bulkhead.class);
+
+    private final String name;
+    private final int threads;
+    private final int queueCapacity;
+    private final ThreadPoolExecutor executor;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public Bulkhead(String name, int threads, int queueCapacity) {
+        if (threads <= 0 || queueCapacity < 0) {
+            throw new IllegalArgumentException("Некорректный размер пула " + name);
+        }
+        this.name = name;
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                queueCapacity > 0 ? new ArrayBlockingQueue<>(queueCapacity) : new SynchronousQueue<>(),
+                threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Постановка задачи; false - пул и его очередь заполнены
+     */
+    public boolean trySubmit(Runnable task) {
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    failed.increment();
+                    log.error("Задача пула {} завершилась ошибкой", name, e);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return false;
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public String getName() { return name; }
+    public int getThreads() { return threads; }
+    public int getQueueCapacity() { return queueCapacity; }
+    public int getActiveCount() { return executor.getActiveCount(); }
+    public int getQueued() { return executor.getQueue().size(); }
+    public long getCompletedCount() { return executor.getCompletedTaskCount(); }
+    public long getRejectedCount() { return rejected.sum(); }
+    public long getFailedCount() { return failed.sum(); }
+
+    // Заполненность: выполняемые и ожидающие задачи относительно потоков и очереди (1.0 - новые задачи отклоняются)
+    public double getSaturation() {
+        return (double) (getActiveCount() + getQueued()) / (threads + queueCapacity);
+    }
+}
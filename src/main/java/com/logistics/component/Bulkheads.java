@@ -0,0 +1,46 @@
+package com.logistics.component;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Пулы, отделяющие тяжелую работу администратора от диалогов клиентов, которые обрабатываются
+ * потоком входной очереди: admin - полные списки и сканирование заказов по статусам,
+ * reporting - выгрузки и пересборка статистики. Потоки пулов вместе занимают не больше
+ * admin.threads + reporting.threads соединений, остальная часть пула соединений остается клиентам.
+ */
+@Component
+public class Bulkheads {
+
+    private final Bulkhead admin;
+    private final Bulkhead reporting;
+
+    public Bulkheads(@Value("${bulkhead.admin.threads:2}") int adminThreads,
+                     @Value("${bulkhead.admin.queue:10}") int adminQueue,
+                     @Value("${bulkhead.reporting.threads:1}") int reportingThreads,
+                     @Value("${bulkhead.reporting.queue:5}") int reportingQueue) {
+        this.admin = new Bulkhead("admin", adminThreads, adminQueue);
+        this.reporting = new Bulkhead("reporting", reportingThreads, reportingQueue);
+    }
+
+    public Bulkhead getAdmin() {
+        return admin;
+    }
+
+    public Bulkhead getReporting() {
+        return reporting;
+    }
+
+    public List<Bulkhead> getAll() {
+        return List.of(admin, reporting);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        admin.shutdown();
+        reporting.shutdown();
+    }
+}
@@ -0,0 +1,103 @@
+package com.logistics.component;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Упаковка данных inline-кнопки (callback_data, не длиннее 64 байт) в компактный вид:
+ * байт действия и аргументы-числа в zigzag-varint, затем base64url без выравнивания.
+ * Разбор - чтение байтов, без split и parseInt; в 64 символа помещается 48 байт,
+ * то есть действие и до шести аргументов любой величины (id и версия заказа - 3-6 байт).
+ */
+@Component
+public class CallbackCodec {
+
+    // Ограничение Telegram на callback_data
+    public static final int MAX_CALLBACK_DATA_LENGTH = 64;
+    private static final int MAX_BYTES = MAX_CALLBACK_DATA_LENGTH / 4 * 3;
+    private static final int MAX_VARINT_BYTES = 10;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    public String encode(int action, long... args) {
+        if (action < 0 || action > 255) {
+            throw new IllegalArgumentException("Код действия вне диапазона 0-255: " + action);
+        }
+        byte[] buffer = new byte[1 + args.length * MAX_VARINT_BYTES];
+        buffer[0] = (byte) action;
+        int length = 1;
+        for (long arg : args) {
+            long value = (arg << 1) ^ (arg >> 63);
+            while ((value & ~0x7FL) != 0) {
+                buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[length++] = (byte) value;
+        }
+        if (length > MAX_BYTES) {
+            throw new IllegalArgumentException("Данные кнопки длиннее " + MAX_CALLBACK_DATA_LENGTH + " символов");
+        }
+        return ENCODER.encodeToString(Arrays.copyOf(buffer, length));
+    }
+
+    /**
+     * Разбор callback_data; null - данные не этого формата (старая или подделанная кнопка)
+     */
+    public Callback decode(String data) {
+        if (data == null || data.isEmpty() || data.length() > MAX_CALLBACK_DATA_LENGTH) {
+            return null;
+        }
+        byte[] bytes;
+        try {
+            bytes = DECODER.decode(data);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (bytes.length == 0) {
+            return null;
+        }
+
+        long[] args = new long[bytes.length - 1];
+        int count = 0;
+        int position = 1;
+        while (position < bytes.length) {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (position == bytes.length || shift >= 64) {
+                    return null;
+                }
+                b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            args[count++] = (value >>> 1) ^ -(value & 1);
+        }
+        return new Callback(bytes[0] & 0xFF, Arrays.copyOf(args, count));
+    }
+
+    public static class Callback {
+        private final int action;
+        private final long[] args;
+
+        Callback(int action, long[] args) {
+            this.action = action;
+            this.args = args;
+        }
+
+        public int getAction() { return action; }
+        public int getArgCount() { return args.length; }
+
+        public long getLong(int index) {
+            return args[index];
+        }
+
+        public int getInt(int index) {
+            return Math.toIntExact(args[index]);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.logistics.component;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+public class CsvParser {
+
+    /**
+     * Определение разделителя по первой строке файла (Excel в русской локали сохраняет через ';')
+     */
+    public char detectDelimiter(String firstLine) {
+        if (firstLine != null && firstLine.indexOf(';') >= 0 && firstLine.indexOf(',') < 0) {
+            return ';';
+        }
+        return ',';
+    }
+
+    /**
+     * Разбор одной строки CSV. Поддерживаются поля в кавычках и экранирование "" внутри них,
+     * переносы строк внутри полей не поддерживаются (одна запись - одна строка файла).
+     */
+    public List<String> parseLine(String line, char delimiter) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean inQuotes = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (inQuotes) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else {
+                        inQuotes = false;
+                    }
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                inQuotes = true;
+            } else if (c == delimiter) {
+                fields.add(current.toString().trim());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString().trim());
+        return fields;
+    }
+
+    /**
+     * Экранирование значения для записи в CSV-отчет
+     */
+    public String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
+}
@@ -0,0 +1,345 @@
+package com.logistics.component;
+
+import com.logistics.DTO.CustomerDTOs.CustomerRowDTO;
+import com.logistics.event.CustomerChangedEvent;
+import com.logistics.event.CustomersImportedEvent;
+import com.logistics.repositories.CustomerRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Индекс поиска клиентов по триграммам имени, email и телефона.
+ * Для каждой триграммы хранится отсортированный массив ID клиентов; запрос пересекает
+ * списки своих триграмм и проверяет подстроку только у оставшихся кандидатов.
+ */
+@Component
+public class CustomerSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerSearchIndex.class);
+
+    public static final int MIN_QUERY_LENGTH = 3;
+
+    private final CustomerRepository customerRepository;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, Document> documents = new HashMap<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+    // Импорты, завершившиеся до готовности индекса: дочитываются после первичной загрузки
+    private final List<CustomersImportedEvent> pendingImports = new ArrayList<>();
+    private final LongAdder failures = new LongAdder();
+    private volatile boolean ready;
+
+    public CustomerSearchIndex(CustomerRepository customerRepository,
+                               PlatformTransactionManager transactionManager) {
+        this.customerRepository = customerRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    // Неудачные загрузки индекса
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    // Первичная загрузка в отдельном потоке, чтобы не задерживать запуск бота
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        Thread loader = new Thread(() -> {
+            try {
+                loadAll();
+                List<CustomersImportedEvent> imports;
+                synchronized (pendingImports) {
+                    ready = true;
+                    imports = new ArrayList<>(pendingImports);
+                    pendingImports.clear();
+                }
+                imports.forEach(this::loadImported);
+            } catch (Exception e) {
+                failures.increment();
+                log.error("Не удалось загрузить индекс поиска клиентов", e);
+            }
+        }, "customer-index-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    @EventListener
+    public void onCustomerChanged(CustomerChangedEvent event) {
+        put(event.getCustomer());
+    }
+
+    // После импорта дочитываются клиенты из диапазона номеров импорта. Отметка «максимальный ID
+    // в индексе» не подходит: регистрация во время импорта получает номер больше импортированных
+    @EventListener
+    public void onCustomersImported(CustomersImportedEvent event) {
+        synchronized (pendingImports) {
+            if (!ready) {
+                pendingImports.add(event);
+                return;
+            }
+        }
+        loadImported(event);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void loadAll() {
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<CustomerRowDTO> stream = customerRepository.streamCustomerRowsAfter(0)) {
+                stream.forEach(this::put);
+            }
+        });
+    }
+
+    private void loadImported(CustomersImportedEvent event) {
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<CustomerRowDTO> stream =
+                         customerRepository.streamCustomerRowsBetween(event.getFromId(), event.getToId())) {
+                stream.forEach(this::put);
+            }
+        });
+    }
+
+    /**
+     * Добавление или обновление клиента в индексе
+     */
+    public void put(CustomerRowDTO customer) {
+        Document document = new Document(customer);
+        lock.writeLock().lock();
+        try {
+            Document previous = documents.put(customer.getCustomerId(), document);
+            if (previous != null) {
+                for (long gram : previous.grams()) {
+                    Postings list = postings.get(gram);
+                    if (list != null) {
+                        list.remove(customer.getCustomerId());
+                        if (list.size == 0) {
+                            postings.remove(gram);
+                        }
+                    }
+                }
+            }
+            for (long gram : document.grams()) {
+                postings.computeIfAbsent(gram, g -> new Postings()).add(customer.getCustomerId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Поиск по подстроке имени, email или телефона (для телефона учитываются только цифры).
+     * Возвращает не более limit клиентов в порядке ID.
+     */
+    public List<CustomerRowDTO> search(String query, int limit) {
+        String text = normalize(query);
+        String digits = digitsOnly(query);
+        boolean phoneQuery = digits.length() >= MIN_QUERY_LENGTH && text.replaceAll("[\\d\\s+()\\-]", "").isEmpty();
+        String needle = phoneQuery ? digits : text;
+        if (needle.length() < MIN_QUERY_LENGTH) {
+            return Collections.emptyList();
+        }
+
+        lock.readLock().lock();
+        try {
+            int[] candidates = intersect(needle);
+            List<CustomerRowDTO> result = new ArrayList<>();
+            for (int i = 0; i < candidates.length && result.size() < limit; i++) {
+                Document document = documents.get(candidates[i]);
+                if (document != null && document.matches(needle, phoneQuery)) {
+                    result.add(document.row);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int[] intersect(String needle) {
+        Set<Long> grams = new HashSet<>();
+        addGrams(needle, grams);
+
+        List<Postings> lists = new ArrayList<>(grams.size());
+        for (long gram : grams) {
+            Postings list = postings.get(gram);
+            if (list == null) {
+                return new int[0];
+            }
+            lists.add(list);
+        }
+        // Начинаем с самого короткого списка, чтобы промежуточный результат был минимальным
+        lists.sort(Comparator.comparingInt(list -> list.size));
+
+        int[] result = Arrays.copyOf(lists.get(0).ids, lists.get(0).size);
+        int resultSize = result.length;
+        for (int l = 1; l < lists.size() && resultSize > 0; l++) {
+            Postings list = lists.get(l);
+            int i = 0, j = 0, k = 0;
+            while (i < resultSize && j < list.size) {
+                if (result[i] < list.ids[j]) {
+                    i++;
+                } else if (result[i] > list.ids[j]) {
+                    j++;
+                } else {
+                    result[k++] = result[i];
+                    i++;
+                    j++;
+                }
+            }
+            resultSize = k;
+        }
+        return Arrays.copyOf(result, resultSize);
+    }
+
+    /**
+     * Отчет о занимаемой памяти (оценка по размерам объектов 64-битной JVM со сжатыми ссылками)
+     */
+    public MemoryReport memoryReport() {
+        lock.readLock().lock();
+        try {
+            long postingRefs = 0;
+            long postingBytes = 0;
+            for (Postings list : postings.values()) {
+                postingRefs += list.size;
+                postingBytes += 16 + 4L * list.ids.length + 16;
+            }
+            // Узел HashMap (32) + Long-ключ (16)
+            postingBytes += postings.size() * 48L;
+
+            long documentBytes = 0;
+            for (Document document : documents.values()) {
+                documentBytes += document.estimateBytes();
+            }
+            // Узел HashMap (32) + Integer-ключ (16)
+            documentBytes += documents.size() * 48L;
+
+            return new MemoryReport(documents.size(), postings.size(), postingRefs, postingBytes, documentBytes);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT).replace('ё', 'е');
+    }
+
+    private static String digitsOnly(String value) {
+        return value == null ? "" : value.replaceAll("\\D", "");
+    }
+
+    private static void addGrams(String value, Set<Long> grams) {
+        for (int i = 0; i + MIN_QUERY_LENGTH <= value.length(); i++) {
+            grams.add(((long) value.charAt(i) << 32) | ((long) value.charAt(i + 1) << 16) | value.charAt(i + 2));
+        }
+    }
+
+    // Нормализованные поля клиента, по которым строятся триграммы
+    private static class Document {
+        private final CustomerRowDTO row;
+        private final String name;
+        private final String email;
+        private final String phone;
+
+        Document(CustomerRowDTO row) {
+            this.row = row;
+            this.name = normalize(row.getFullName());
+            this.email = normalize(row.getEmail());
+            this.phone = digitsOnly(row.getPhone());
+        }
+
+        Set<Long> grams() {
+            Set<Long> grams = new HashSet<>();
+            addGrams(name, grams);
+            addGrams(email, grams);
+            addGrams(phone, grams);
+            return grams;
+        }
+
+        boolean matches(String needle, boolean phoneQuery) {
+            return (phoneQuery && phone.contains(needle)) || name.contains(needle) || email.contains(needle);
+        }
+
+        long estimateBytes() {
+            return 24 + 24 + stringBytes(name) + stringBytes(email) + stringBytes(phone)
+                    + stringBytes(row.getFullName()) + stringBytes(row.getEmail()) + stringBytes(row.getPhone());
+        }
+
+        private static long stringBytes(String value) {
+            if (value == null) {
+                return 0;
+            }
+            boolean latin1 = value.chars().allMatch(c -> c < 256);
+            return 24 + 16 + (long) value.length() * (latin1 ? 1 : 2);
+        }
+    }
+
+    // Отсортированный массив ID клиентов, содержащих триграмму
+    private static class Postings {
+        private int[] ids = new int[2];
+        private int size;
+
+        void add(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = id;
+            size++;
+        }
+
+        void remove(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position < 0) {
+                return;
+            }
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            size--;
+        }
+    }
+
+    public static class MemoryReport {
+        private final int customers;
+        private final int grams;
+        private final long postingRefs;
+        private final long postingBytes;
+        private final long documentBytes;
+
+        MemoryReport(int customers, int grams, long postingRefs, long postingBytes, long documentBytes) {
+            this.customers = customers;
+            this.grams = grams;
+            this.postingRefs = postingRefs;
+            this.postingBytes = postingBytes;
+            this.documentBytes = documentBytes;
+        }
+
+        public int getCustomers() { return customers; }
+        public int getGrams() { return grams; }
+        public long getPostingRefs() { return postingRefs; }
+        public long getTotalBytes() { return postingBytes + documentBytes; }
+
+        // Линейная экстраполяция на заданное число клиентов
+        public long projectBytes(long targetCustomers) {
+            return customers > 0 ? getTotalBytes() * targetCustomers / customers : 0;
+        }
+    }
+}
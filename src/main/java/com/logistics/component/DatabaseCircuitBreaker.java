@@ -0,0 +1,148 @@
+package com.logistics.component;
+
+import com.logistics.event.DatabaseRecoveredEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Автомат защиты базы данных. Каждое соединение запрашивается через него (CircuitBreakerDataSource),
+ * поэтому под защитой все репозитории и транзакции.
+ *
+ * CLOSED - соединения выдаются как обычно; после failureThreshold неудачных попыток подряд автомат
+ * размыкается (OPEN) и openSeconds отказывает сразу, не дожидаясь таймаута пула. Затем одна попытка
+ * пропускается для проверки (HALF_OPEN): успех замыкает автомат и публикует DatabaseRecoveredEvent,
+ * неудача снова размыкает.
+ */
+@Component
+public class DatabaseCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier clock;
+    private final Runnable onRecovery;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder openings = new LongAdder();
+
+    public DatabaseCircuitBreaker(@Value("${db.breaker.failure-threshold:5}") int failureThreshold,
+                                  @Value("${db.breaker.open-seconds:30}") int openSeconds,
+                                  ApplicationEventPublisher eventPublisher) {
+        this(failureThreshold, openSeconds, System::nanoTime,
+                () -> eventPublisher.publishEvent(new DatabaseRecoveredEvent()));
+    }
+
+    DatabaseCircuitBreaker(int failureThreshold, int openSeconds, LongSupplier clock, Runnable onRecovery) {
+        if (failureThreshold <= 0 || openSeconds <= 0) {
+            throw new IllegalArgumentException("Некорректные параметры автомата защиты базы");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.SECONDS.toNanos(openSeconds);
+        this.clock = clock;
+        this.onRecovery = onRecovery;
+    }
+
+    /**
+     * Разрешение на попытку обращения к базе; false - автомат разомкнут, обращаться не нужно
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.OPEN && clock.getAsLong() - openedAt >= openNanos) {
+            // Пропускается одна проверочная попытка, остальные ждут ее результата
+            state = State.HALF_OPEN;
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    public void onSuccess() {
+        synchronized (this) {
+            consecutiveFailures = 0;
+            if (state != State.HALF_OPEN) {
+                return;
+            }
+            state = State.CLOSED;
+        }
+        // Вне блокировки: слушатели восстановления сами обращаются к базе
+        onRecovery.run();
+    }
+
+    public synchronized void onFailure() {
+        failures.increment();
+        if (state == State.HALF_OPEN || ++consecutiveFailures >= failureThreshold) {
+            if (state != State.OPEN) {
+                openings.increment();
+            }
+            state = State.OPEN;
+            openedAt = clock.getAsLong();
+            consecutiveFailures = 0;
+        }
+    }
+
+    /**
+     * Попытка оборвана прерыванием потока, а не отказом базы: она не учитывается,
+     * а проверочную попытку получает следующий запрос
+     */
+    public synchronized void onAbandoned() {
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public boolean isAvailable() {
+        return getState() == State.CLOSED;
+    }
+
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getOpenedCount() {
+        return openings.sum();
+    }
+
+    /**
+     * Ошибка вызвана недоступностью базы (нет соединения или автомат разомкнут), а не самим запросом
+     */
+    public static boolean isUnavailable(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransientConnectionException || cause instanceof SQLNonTransientConnectionException) {
+                return true;
+            }
+            // SQLSTATE класса 08 - ошибки соединения
+            if (cause instanceof SQLException && ((SQLException) cause).getSQLState() != null
+                    && ((SQLException) cause).getSQLState().startsWith("08")) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+}
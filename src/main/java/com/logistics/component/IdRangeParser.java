@@ -0,0 +1,69 @@
+package com.logistics.component;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+@Component
+public class IdRangeParser {
+
+    // Ограничение на количество ID в одной массовой команде
+    public static final int MAX_IDS = 5000;
+
+    /**
+     * Разбор списка ID и диапазонов: "12,15,20-80" (допускаются пробелы и ';').
+     * Возвращает отсортированные ID без повторов.
+     */
+    public int[] parse(String input) {
+        if (input == null || input.isBlank()) {
+            throw new IllegalArgumentException("Список ID пуст");
+        }
+
+        int[] ids = new int[16];
+        int size = 0;
+        for (String part : input.split("[,;\\s]+")) {
+            if (part.isEmpty()) {
+                continue;
+            }
+            int dash = part.indexOf('-', 1);
+            int from = parseId(dash > 0 ? part.substring(0, dash) : part);
+            int to = dash > 0 ? parseId(part.substring(dash + 1)) : from;
+            if (from > to) {
+                throw new IllegalArgumentException("Неверный диапазон: " + part);
+            }
+            if ((long) size + (to - from + 1) > MAX_IDS) {
+                throw new IllegalArgumentException("Слишком много ID, максимум " + MAX_IDS);
+            }
+            if (size + (to - from + 1) > ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(ids.length * 2, size + (to - from + 1)));
+            }
+            for (int id = from; id <= to; id++) {
+                ids[size++] = id;
+            }
+        }
+        if (size == 0) {
+            throw new IllegalArgumentException("Список ID пуст");
+        }
+
+        Arrays.sort(ids, 0, size);
+        int unique = 1;
+        for (int i = 1; i < size; i++) {
+            if (ids[i] != ids[unique - 1]) {
+                ids[unique++] = ids[i];
+            }
+        }
+        return Arrays.copyOf(ids, unique);
+    }
+
+    private int parseId(String value) {
+        try {
+            int id = Integer.parseInt(value.trim());
+            if (id <= 0) {
+                throw new IllegalArgumentException("ID должен быть положительным: " + value);
+            }
+            return id;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Неверный ID: " + value);
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.logistics.component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Входная очередь обновлений бота: поток получения обновлений только ставит их в очередь,
+ * обработку выполняет отдельный поток.
+ *
+ * Очередь общая и ограниченная, разделена на полосы приоритета: HIGH (администратор,
+ * подтверждение заказа) обрабатывается первым и принимается до полной емкости, NORMAL - до емкости
+ * за вычетом резерва для HIGH, LOW (справка, «О боте») отбрасывается уже при заполнении до порога.
+ * Каждому чату (кроме полосы HIGH) выделено ведро токенов, поэтому один чат не займет всю очередь.
+ *
+ * Обработчик один, как и прежде: сообщения одного чата выполняются по порядку, и пока у чата есть
+ * необработанные сообщения, новые ставятся в ту же полосу - ответы не обгоняют друг друга.
+ */
+@Component
+public class IngressDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(IngressDispatcher.class);
+
+    public enum Lane { HIGH, NORMAL, LOW }
+
+    public enum Admission {
+        ACCEPTED,
+        // Ведро чата пусто
+        RATE_LIMITED,
+        // Очередь заполнена для этой полосы
+        SHED,
+        // Отклонено, но чат уже недавно получил ответ «занято» - повторно не уведомляем
+        SUPPRESSED
+    }
+
+    private static final long NOTICE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final long IDLE_BUCKET_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private final int capacity;
+    private final int highReserve;
+    private final int shedThreshold;
+    private final int burst;
+    private final long nanosPerToken;
+    private final LongSupplier clock;
+
+    private final Object lock = new Object();
+    private final ArrayDeque<Task>[] lanes;
+    private final Map<Long, PendingChat> pendingChats = new HashMap<>();
+    private int queued;
+    private boolean running;
+
+    private final Map<Long, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    private final LongAdder[] accepted = newAdders();
+    private final LongAdder[] shed = newAdders();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    private Thread worker;
+    private ScheduledExecutorService cleaner;
+
+    public IngressDispatcher(@Value("${ingress.queue.capacity:1000}") int capacity,
+                             @Value("${ingress.queue.high-reserve:100}") int highReserve,
+                             @Value("${ingress.queue.shed-threshold:500}") int shedThreshold,
+                             @Value("${ingress.chat.burst:10}") int burst,
+                             @Value("${ingress.chat.refill-per-second:2}") double refillPerSecond) {
+        this(capacity, highReserve, shedThreshold, burst, refillPerSecond, System::nanoTime);
+    }
+
+    @SuppressWarnings("unchecked")
+    IngressDispatcher(int capacity, int highReserve, int shedThreshold, int burst, double refillPerSecond,
+                      LongSupplier clock) {
+        if (capacity <= 0 || highReserve < 0 || highReserve >= capacity || shedThreshold <= 0
+                || burst <= 0 || refillPerSecond <= 0) {
+            throw new IllegalArgumentException("Некорректные параметры входной очереди");
+        }
+        this.capacity = capacity;
+        this.highReserve = highReserve;
+        this.shedThreshold = Math.min(shedThreshold, capacity - highReserve);
+        this.burst = burst;
+        this.nanosPerToken = (long) (TimeUnit.SECONDS.toNanos(1) / refillPerSecond);
+        this.clock = clock;
+        this.lanes = new ArrayDeque[Lane.values().length];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new ArrayDeque<>();
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        synchronized (lock) {
+            running = true;
+        }
+        worker = new Thread(this::runWorker, "ingress-worker");
+        worker.setDaemon(true);
+        worker.start();
+
+        // Ведра чатов, которые давно не писали, удаляются
+        cleaner = Executors.newSingleThreadScheduledExecutor();
+        cleaner.scheduleAtFixedRate(this::removeIdleBuckets, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+        }
+        if (cleaner != null) {
+            cleaner.shutdownNow();
+        }
+    }
+
+    /**
+     * Постановка обновления чата в очередь; при отказе вызывающий решает, отвечать ли «занято»
+     */
+    public Admission submit(long chatId, Lane lane, Runnable task) {
+        long now = clock.getAsLong();
+        TokenBucket bucket = null;
+        if (lane != Lane.HIGH) {
+            bucket = buckets.computeIfAbsent(chatId, id -> new TokenBucket(burst, now));
+            if (!bucket.tryAcquire(now)) {
+                rateLimited.increment();
+                return bucket.notice(now) ? Admission.RATE_LIMITED : Admission.SUPPRESSED;
+            }
+        }
+
+        synchronized (lock) {
+            if (queued >= limitFor(lane)) {
+                shed[lane.ordinal()].increment();
+                if (bucket == null) {
+                    return Admission.SHED;
+                }
+                return bucket.notice(now) ? Admission.SHED : Admission.SUPPRESSED;
+            }
+            PendingChat pending = pendingChats.get(chatId);
+            if (pending == null) {
+                pending = new PendingChat(lane);
+                pendingChats.put(chatId, pending);
+            }
+            pending.count++;
+            lanes[pending.lane.ordinal()].addLast(new Task(chatId, task, now));
+            queued++;
+            accepted[lane.ordinal()].increment();
+            lock.notifyAll();
+        }
+        return Admission.ACCEPTED;
+    }
+
+    private int limitFor(Lane lane) {
+        switch (lane) {
+            case HIGH:
+                return capacity;
+            case NORMAL:
+                return capacity - highReserve;
+            default:
+                return shedThreshold;
+        }
+    }
+
+    private void runWorker() {
+        Task task;
+        while ((task = take()) != null) {
+            waitNanos.add(clock.getAsLong() - task.enqueuedAt);
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                failures.increment();
+                log.error("Ошибка обработки обновления чата {}", task.chatId, e);
+            }
+            processed.increment();
+        }
+    }
+
+    // Следующая задача из самой приоритетной непустой полосы; null - диспетчер остановлен и очередь пуста
+    Task take() {
+        synchronized (lock) {
+            while (queued == 0 && running) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+            for (ArrayDeque<Task> lane : lanes) {
+                Task task = lane.pollFirst();
+                if (task != null) {
+                    queued--;
+                    PendingChat pending = pendingChats.get(task.chatId);
+                    if (--pending.count == 0) {
+                        pendingChats.remove(task.chatId);
+                    }
+                    return task;
+                }
+            }
+            return null;
+        }
+    }
+
+    private void removeIdleBuckets() {
+        long now = clock.getAsLong();
+        buckets.values().removeIf(bucket -> bucket.isIdle(now));
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getQueued() {
+        synchronized (lock) {
+            return queued;
+        }
+    }
+
+    public int getQueued(Lane lane) {
+        synchronized (lock) {
+            return lanes[lane.ordinal()].size();
+        }
+    }
+
+    public long getAcceptedCount(Lane lane) {
+        return accepted[lane.ordinal()].sum();
+    }
+
+    public long getShedCount(Lane lane) {
+        return shed[lane.ordinal()].sum();
+    }
+
+    public long getRateLimitedCount() {
+        return rateLimited.sum();
+    }
+
+    // Обновления, обработка которых завершилась ошибкой
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    public long getProcessedCount() {
+        return processed.sum();
+    }
+
+    // Среднее время ожидания в очереди по обработанным обновлениям
+    public double getAverageWaitMillis() {
+        long count = processed.sum();
+        return count == 0 ? 0 : waitNanos.sum() / 1_000_000.0 / count;
+    }
+
+    private static LongAdder[] newAdders() {
+        LongAdder[] adders = new LongAdder[Lane.values().length];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    static final class Task {
+        private final long chatId;
+        private final Runnable runnable;
+        private final long enqueuedAt;
+
+        Task(long chatId, Runnable runnable, long enqueuedAt) {
+            this.chatId = chatId;
+            this.runnable = runnable;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        void run() {
+            runnable.run();
+        }
+    }
+
+    private static final class PendingChat {
+        private final Lane lane;
+        private int count;
+
+        PendingChat(Lane lane) {
+            this.lane = lane;
+        }
+    }
+
+    // Ведро токенов чата: burst сообщений подряд, затем одно сообщение за nanosPerToken
+    private final class TokenBucket {
+        private double tokens;
+        private long updatedAt;
+        private long notifiedAt = Long.MIN_VALUE;
+
+        TokenBucket(int tokens, long now) {
+            this.tokens = tokens;
+            this.updatedAt = now;
+        }
+
+        synchronized boolean tryAcquire(long now) {
+            tokens = Math.min(burst, tokens + (double) (now - updatedAt) / nanosPerToken);
+            updatedAt = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+
+        // true - пора уведомить чат об отказе (не чаще раза в NOTICE_INTERVAL_NANOS)
+        synchronized boolean notice(long now) {
+            if (notifiedAt != Long.MIN_VALUE && now - notifiedAt < NOTICE_INTERVAL_NANOS) {
+                return false;
+            }
+            notifiedAt = now;
+            return true;
+        }
+
+        synchronized boolean isIdle(long now) {
+            return now - updatedAt > IDLE_BUCKET_NANOS;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.logistics.component;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Каталог текстов бота (messages/messages.properties, UTF-8). Шаблоны разбираются один раз
+ * при запуске в массивы сегментов, поэтому отрисовка - только дописывание частей в переиспользуемый
+ * StringBuilder потока, без разбора строки формата на каждый ответ, как у String.format.
+ *
+ * Синтаксис: {0} - параметр как есть, {0:1} - число с одним знаком после разделителя
+ * (format.decimal_separator), {{ - символ '{'. Переводы лежат в messages_<язык>.properties
+ * и перечисляются в свойстве messages.languages; недостающие ключи берутся из основного каталога.
+ */
+@Component
+public class MessageTemplates {
+
+    public static final String DEFAULT_LANGUAGE = "ru";
+
+    private static final String BASE_NAME = "messages/messages";
+    private static final String DECIMAL_SEPARATOR_KEY = "format.decimal_separator";
+    private static final int MAX_SCALE = 9;
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L
+    };
+    // Больший буфер после длинного ответа не держим в потоке
+    private static final int MAX_RETAINED_CAPACITY = 8192;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(512));
+
+    private final Map<String, Catalog> catalogs = new HashMap<>();
+    private final Catalog defaultCatalog;
+
+    public MessageTemplates(@Value("${messages.languages:}") String languages) {
+        this.defaultCatalog = new Catalog(load(BASE_NAME + ".properties", true), null);
+        catalogs.put(DEFAULT_LANGUAGE, defaultCatalog);
+        for (String language : languages.split(",")) {
+            String code = language.trim().toLowerCase(Locale.ROOT);
+            if (!code.isEmpty() && !catalogs.containsKey(code)) {
+                catalogs.put(code, new Catalog(load(BASE_NAME + "_" + code + ".properties", false), defaultCatalog));
+            }
+        }
+    }
+
+    public String render(String key, Object... args) {
+        return render(defaultCatalog, key, args);
+    }
+
+    /**
+     * Текст на языке locale; для языка без каталога - на языке по умолчанию
+     */
+    public String render(Locale locale, String key, Object... args) {
+        return render(catalog(locale), key, args);
+    }
+
+    /**
+     * Дописывает текст в target - для ответов, собираемых из нескольких шаблонов
+     */
+    public StringBuilder renderTo(StringBuilder target, String key, Object... args) {
+        defaultCatalog.template(key).render(target, args, defaultCatalog.decimalSeparator);
+        return target;
+    }
+
+    public StringBuilder renderTo(StringBuilder target, Locale locale, String key, Object... args) {
+        Catalog catalog = catalog(locale);
+        catalog.template(key).render(target, args, catalog.decimalSeparator);
+        return target;
+    }
+
+    public boolean supports(Locale locale) {
+        return locale != null && catalogs.containsKey(locale.getLanguage());
+    }
+
+    private String render(Catalog catalog, String key, Object[] args) {
+        Template template = catalog.template(key);
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        template.render(buffer, args, catalog.decimalSeparator);
+        String result = buffer.toString();
+        if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+            BUFFER.remove();
+        }
+        return result;
+    }
+
+    private Catalog catalog(Locale locale) {
+        if (locale == null) {
+            return defaultCatalog;
+        }
+        Catalog catalog = catalogs.get(locale.getLanguage());
+        return catalog != null ? catalog : defaultCatalog;
+    }
+
+    private static Map<String, Template> load(String resource, boolean required) {
+        Properties properties = new Properties();
+        try (InputStream input = MessageTemplates.class.getClassLoader().getResourceAsStream(resource)) {
+            if (input == null) {
+                if (required) {
+                    throw new IllegalStateException("Не найден каталог сообщений: " + resource);
+                }
+                return Collections.emptyMap();
+            }
+            try (Reader reader = new InputStreamReader(input, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось прочитать каталог сообщений: " + resource, e);
+        }
+
+        Map<String, Template> templates = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            try {
+                templates.put(key, compile(properties.getProperty(key)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(resource + ", ключ " + key + ": " + e.getMessage(), e);
+            }
+        }
+        return templates;
+    }
+
+    /**
+     * Разбор шаблона в сегменты: литералы и ссылки на параметры чередуются
+     */
+    static Template compile(String pattern) {
+        List<String> literals = new ArrayList<>();
+        List<int[]> args = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            if (c != '{') {
+                literal.append(c);
+                i++;
+                continue;
+            }
+            if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '{') {
+                literal.append('{');
+                i += 2;
+                continue;
+            }
+            int close = pattern.indexOf('}', i);
+            if (close < 0) {
+                throw new IllegalArgumentException("Незакрытая скобка в позиции " + i);
+            }
+            String spec = pattern.substring(i + 1, close);
+            int colon = spec.indexOf(':');
+            int index = parseNumber(colon >= 0 ? spec.substring(0, colon) : spec, spec);
+            int scale = colon >= 0 ? parseNumber(spec.substring(colon + 1), spec) : -1;
+            if (scale > MAX_SCALE) {
+                throw new IllegalArgumentException("Слишком много знаков после запятой: {" + spec + "}");
+            }
+            literals.add(literal.toString());
+            literal.setLength(0);
+            args.add(new int[]{index, scale});
+            i = close + 1;
+        }
+        literals.add(literal.toString());
+
+        int[] indexes = new int[args.size()];
+        int[] scales = new int[args.size()];
+        for (int n = 0; n < args.size(); n++) {
+            indexes[n] = args.get(n)[0];
+            scales[n] = args.get(n)[1];
+        }
+        return new Template(literals.toArray(new String[0]), indexes, scales);
+    }
+
+    private static int parseNumber(String value, String spec) {
+        if (value.isEmpty() || value.length() > 3) {
+            throw new IllegalArgumentException("Неверный параметр {" + spec + "}");
+        }
+        int result = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Неверный параметр {" + spec + "}");
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    // Число с scale знаками после разделителя, округление половины вверх (как у %.Nf)
+    static void appendDecimal(StringBuilder target, double value, int scale, String separator) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            target.append(value);
+            return;
+        }
+        long power = POWERS_OF_TEN[scale];
+        double scaled = Math.abs(value) * power;
+        if (scaled >= 1e15) {
+            String text = BigDecimal.valueOf(value).setScale(scale, RoundingMode.HALF_UP).toPlainString();
+            target.append(scale > 0 ? text.replace(".", separator) : text);
+            return;
+        }
+        long units = Math.round(scaled);
+        if (value < 0 && units != 0) {
+            target.append('-');
+        }
+        target.append(units / power);
+        if (scale > 0) {
+            target.append(separator);
+            String fraction = Long.toString(units % power);
+            for (int i = fraction.length(); i < scale; i++) {
+                target.append('0');
+            }
+            target.append(fraction);
+        }
+    }
+
+    // Скомпилированный шаблон: literals[0], параметр 0, literals[1], ..., literals[n]
+    static final class Template {
+        private final String[] literals;
+        private final int[] indexes;
+        private final int[] scales;
+
+        Template(String[] literals, int[] indexes, int[] scales) {
+            this.literals = literals;
+            this.indexes = indexes;
+            this.scales = scales;
+        }
+
+        void render(StringBuilder target, Object[] args, String decimalSeparator) {
+            target.append(literals[0]);
+            for (int i = 0; i < indexes.length; i++) {
+                int index = indexes[i];
+                if (index >= args.length) {
+                    throw new IllegalArgumentException("Не передан параметр {" + index + "}");
+                }
+                appendArg(target, args[index], scales[i], decimalSeparator);
+                target.append(literals[i + 1]);
+            }
+        }
+
+        int getArgumentCount() {
+            return indexes.length;
+        }
+
+        private static void appendArg(StringBuilder target, Object arg, int scale, String decimalSeparator) {
+            if (scale >= 0 && arg instanceof Number) {
+                appendDecimal(target, ((Number) arg).doubleValue(), scale, decimalSeparator);
+            } else if (arg instanceof Integer || arg instanceof Long || arg instanceof Short || arg instanceof Byte) {
+                target.append(((Number) arg).longValue());
+            } else if (arg instanceof CharSequence) {
+                target.append((CharSequence) arg);
+            } else {
+                target.append(arg);
+            }
+        }
+    }
+
+    private static final class Catalog {
+        private final Map<String, Template> templates;
+        private final Catalog fallback;
+        private final String decimalSeparator;
+
+        Catalog(Map<String, Template> templates, Catalog fallback) {
+            this.templates = templates;
+            this.fallback = fallback;
+            Template separator = templates.get(DECIMAL_SEPARATOR_KEY);
+            if (separator != null) {
+                this.decimalSeparator = separator.literals[0];
+            } else {
+                this.decimalSeparator = fallback != null ? fallback.decimalSeparator : ".";
+            }
+        }
+
+        Template template(String key) {
+            Template template = templates.get(key);
+            if (template == null && fallback != null) {
+                template = fallback.template(key);
+            }
+            if (template == null) {
+                throw new IllegalArgumentException("Нет сообщения с ключом " + key);
+            }
+            return template;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.logistics.component;
+
+import com.logistics.event.OrderCreatedEvent;
+import com.logistics.event.OrderStatusChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Кэш готовых страниц «Мои заказы»: ключ - клиент и позиция страницы, значение - отформатированный текст.
+ * Размер ограничен, при переполнении вытесняется страница, которую дольше всех не читали (LRU).
+ * Страницы клиента сбрасываются, когда один из его заказов создан или сменил статус.
+ */
+@Component
+public class OrderPageCache {
+
+    private final int maxEntries;
+
+    // LinkedHashMap в порядке доступа: первая запись - наиболее давно прочитанная
+    private final LinkedHashMap<PageKey, RenderedPage> pages;
+    private final Map<Integer, Set<PageKey>> customerPages = new HashMap<>();
+    // Поколение клиента растет при каждом сбросе; страница, отрисованная до сброса, не сохраняется
+    private final Map<Integer, Long> generations = new HashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public OrderPageCache(@Value("${orders.page.cache.max.entries:5000}") int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.pages = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Страница из кэша или отрисованная renderer (вызывается без блокировки)
+     */
+    public RenderedPage getOrRender(Integer customerId, Cursor cursor, Supplier<RenderedPage> renderer) {
+        PageKey key = new PageKey(customerId, cursor);
+        long generation;
+        synchronized (this) {
+            RenderedPage cached = pages.get(key);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+            generation = generations.getOrDefault(customerId, 0L);
+        }
+        misses.increment();
+
+        RenderedPage page = renderer.get();
+        synchronized (this) {
+            if (generation == generations.getOrDefault(customerId, 0L)) {
+                put(key, page);
+            }
+        }
+        return page;
+    }
+
+    public synchronized void invalidateCustomer(Integer customerId) {
+        generations.merge(customerId, 1L, Long::sum);
+        Set<PageKey> keys = customerPages.remove(customerId);
+        if (keys != null) {
+            for (PageKey key : keys) {
+                pages.remove(key);
+            }
+            invalidations.add(keys.size());
+        }
+    }
+
+    @EventListener
+    public void onOrderCreated(OrderCreatedEvent event) {
+        if (event.getCustomerId() != null) {
+            invalidateCustomer(event.getCustomerId());
+        }
+    }
+
+    @EventListener
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        Set<Integer> customers = new HashSet<>();
+        for (OrderStatusChangedEvent.Change change : event.getChanges()) {
+            if (change.getCustomerId() != null) {
+                customers.add(change.getCustomerId());
+            }
+        }
+        for (Integer customerId : customers) {
+            invalidateCustomer(customerId);
+        }
+    }
+
+    // Вызывается под блокировкой
+    private void put(PageKey key, RenderedPage page) {
+        pages.put(key, page);
+        customerPages.computeIfAbsent(key.customerId, id -> new HashSet<>()).add(key);
+
+        Iterator<Map.Entry<PageKey, RenderedPage>> eldest = pages.entrySet().iterator();
+        while (pages.size() > maxEntries && eldest.hasNext()) {
+            PageKey evicted = eldest.next().getKey();
+            eldest.remove();
+            Set<PageKey> keys = customerPages.get(evicted.customerId);
+            if (keys != null) {
+                keys.remove(evicted);
+                if (keys.isEmpty()) {
+                    customerPages.remove(evicted.customerId);
+                }
+            }
+            evictions.increment();
+        }
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(pages.size(), hits.sum(), misses.sum(), invalidations.sum(), evictions.sum());
+    }
+
+    // Позиция страницы: последний заказ предыдущей страницы (null - первая страница)
+    public static class Cursor {
+        private final LocalDateTime createTime;
+        private final Integer orderId;
+        private final int pageNumber;
+
+        public Cursor(LocalDateTime createTime, Integer orderId, int pageNumber) {
+            this.createTime = createTime;
+            this.orderId = orderId;
+            this.pageNumber = pageNumber;
+        }
+
+        public LocalDateTime getCreateTime() { return createTime; }
+        public Integer getOrderId() { return orderId; }
+        public int getPageNumber() { return pageNumber; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Cursor)) return false;
+            Cursor other = (Cursor) o;
+            return pageNumber == other.pageNumber && Objects.equals(createTime, other.createTime)
+                    && Objects.equals(orderId, other.orderId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(createTime, orderId, pageNumber);
+        }
+    }
+
+    // Отформатированная страница и позиция следующей (null - страница последняя)
+    public static class RenderedPage {
+        private final String text;
+        private final Cursor next;
+
+        public RenderedPage(String text, Cursor next) {
+            this.text = text;
+            this.next = next;
+        }
+
+        public String getText() { return text; }
+        public Cursor getNext() { return next; }
+    }
+
+    private static class PageKey {
+        private final Integer customerId;
+        private final Cursor cursor;
+
+        PageKey(Integer customerId, Cursor cursor) {
+            this.customerId = customerId;
+            this.cursor = cursor;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof PageKey)) return false;
+            PageKey other = (PageKey) o;
+            return customerId.equals(other.customerId) && Objects.equals(cursor, other.cursor);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * customerId.hashCode() + Objects.hashCode(cursor);
+        }
+    }
+
+    public static class Stats {
+        private final int size;
+        private final long hits;
+        private final long misses;
+        private final long invalidations;
+        private final long evictions;
+
+        Stats(int size, long hits, long misses, long invalidations, long evictions) {
+            this.size = size;
+            this.hits = hits;
+            this.misses = misses;
+            this.invalidations = invalidations;
+            this.evictions = evictions;
+        }
+
+        public int getSize() { return size; }
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getInvalidations() { return invalidations; }
+        public long getEvictions() { return evictions; }
+
+        public long getHitRatePercent() {
+            long total = hits + misses;
+            return total > 0 ? hits * 100 / total : 0;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.logistics.component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Локальный журнал заказов, подтвержденных, пока база была недоступна (NDJSON: одна строка - один заказ).
+ * Строка сбрасывается на диск до ответа клиенту, поэтому принятый заказ переживает перезапуск бота.
+ * После оформления в базе заказ удаляется из журнала: файл переписывается во временный и атомарно заменяется.
+ * Заказ, который оформить нельзя (клиент удален, данные отклонены базой), переносится в соседний файл
+ * отклоненных заказов (*.dead.ndjson) с причиной, чтобы не повторяться при каждом восстановлении базы.
+ */
+@Component
+public class PendingOrderJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(PendingOrderJournal.class);
+
+    private final Path file;
+    private final Path deadLetterFile;
+    private final ObjectMapper objectMapper;
+    private final LongAdder failures = new LongAdder();
+    private int pendingCount;
+    private int deadLetterCount;
+
+    public PendingOrderJournal(@Value("${orders.journal.path:data/pending-orders.ndjson}") String path,
+                               ObjectMapper objectMapper) throws IOException {
+        this.file = Path.of(path);
+        // data/pending-orders.ndjson -> data/pending-orders.dead.ndjson
+        this.deadLetterFile = file.resolveSibling(
+                file.getFileName().toString().replaceFirst("(\\.ndjson)?$", ".dead.ndjson"));
+        this.objectMapper = objectMapper;
+        this.pendingCount = readAll().size();
+        this.deadLetterCount = read(deadLetterFile).size();
+    }
+
+    public synchronized void append(PendingOrder order) throws IOException {
+        createParent();
+        write(file, objectMapper.writeValueAsString(order) + "\n", true);
+        pendingCount++;
+    }
+
+    /**
+     * Заказы журнала в порядке подтверждения
+     */
+    public synchronized List<PendingOrder> readAll() throws IOException {
+        return read(file);
+    }
+
+    /**
+     * Отклоненные заказы, с причиной в поле failure
+     */
+    public synchronized List<PendingOrder> readDeadLetters() throws IOException {
+        return read(deadLetterFile);
+    }
+
+    private List<PendingOrder> read(Path source) throws IOException {
+        List<PendingOrder> orders = new ArrayList<>();
+        if (!Files.exists(source)) {
+            return orders;
+        }
+        for (String line : Files.readAllLines(source, StandardCharsets.UTF_8)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                orders.add(objectMapper.readValue(line, PendingOrder.class));
+            } catch (JsonProcessingException e) {
+                // Строка, оборванная при сбое записи: заказ не был подтвержден клиенту
+                failures.increment();
+                log.warn("Пропущена поврежденная строка журнала {}", source, e);
+            }
+        }
+        return orders;
+    }
+
+    // Пропущенные поврежденные строки журнала
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    public synchronized void remove(String id) throws IOException {
+        StringBuilder remaining = new StringBuilder();
+        int count = 0;
+        for (PendingOrder order : readAll()) {
+            if (!order.getId().equals(id)) {
+                remaining.append(objectMapper.writeValueAsString(order)).append('\n');
+                count++;
+            }
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        write(temp, remaining.toString(), false);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        pendingCount = count;
+    }
+
+    /**
+     * Перенос заказа в отклоненные. Сначала запись в файл отклоненных, затем удаление из журнала:
+     * при сбое между ними заказ окажется в обоих файлах, но не потеряется
+     */
+    public synchronized void deadLetter(PendingOrder order, String failure) throws IOException {
+        order.setFailure(failure);
+        createParent();
+        write(deadLetterFile, objectMapper.writeValueAsString(order) + "\n", true);
+        deadLetterCount++;
+        remove(order.getId());
+    }
+
+    private void createParent() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+    }
+
+    // Запись со сбросом на диск. Поток, а не FileChannel: канал закрывается при прерывании потока,
+    // а обработчик обновления может прервать сторож бюджета как раз во время записи заказа
+    private static void write(Path target, String content, boolean append) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(target.toFile(), append)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+    }
+
+    public synchronized int getPendingCount() {
+        return pendingCount;
+    }
+
+    public synchronized int getDeadLetterCount() {
+        return deadLetterCount;
+    }
+
+    // Заказ, ожидающий оформления: данные диалога и время подтверждения; id сохраняется в заказе
+    // (orders.journal_id), поэтому повторное оформление после сбоя не создает второй заказ
+    public static class PendingOrder {
+        private String id;
+        private Long chatId;
+        private Integer customerId;
+        private String deliveryAddress;
+        private Integer totalWeight;
+        private Integer vehicleId;
+        private LocalDateTime createTime;
+        private String failure;
+
+        public PendingOrder() {
+        }
+
+        public PendingOrder(String id, Long chatId, Integer customerId, String deliveryAddress,
+                            Integer totalWeight, Integer vehicleId, LocalDateTime createTime) {
+            this.id = id;
+            this.chatId = chatId;
+            this.customerId = customerId;
+            this.deliveryAddress = deliveryAddress;
+            this.totalWeight = totalWeight;
+            this.vehicleId = vehicleId;
+            this.createTime = createTime;
+        }
+
+        public String getId() { return id; }
+        public void setId(String id) { this.id = id; }
+
+        public Long getChatId() { return chatId; }
+        public void setChatId(Long chatId) { this.chatId = chatId; }
+
+        public Integer getCustomerId() { return customerId; }
+        public void setCustomerId(Integer customerId) { this.customerId = customerId; }
+
+        public String getDeliveryAddress() { return deliveryAddress; }
+        public void setDeliveryAddress(String deliveryAddress) { this.deliveryAddress = deliveryAddress; }
+
+        public Integer getTotalWeight() { return totalWeight; }
+        public void setTotalWeight(Integer totalWeight) { this.totalWeight = totalWeight; }
+
+        public Integer getVehicleId() { return vehicleId; }
+        public void setVehicleId(Integer vehicleId) { this.vehicleId = vehicleId; }
+
+        public LocalDateTime getCreateTime() { return createTime; }
+        public void setCreateTime(LocalDateTime createTime) { this.createTime = createTime; }
+
+        public String getFailure() { return failure; }
+        public void setFailure(String failure) { this.failure = failure; }
+    }
+}
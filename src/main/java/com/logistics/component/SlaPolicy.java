@@ -0,0 +1,66 @@
+package com.logistics.component;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Допустимое время нахождения заказа в статусе (SLA). Настраивается свойством
+ * sla.thresholds.hours в виде "создан=48,назначен=24"; для статусов без порога срок не задается.
+ */
+@Component
+public class SlaPolicy {
+
+    private final Map<String, Duration> thresholds;
+
+    public SlaPolicy(@Value("${sla.thresholds.hours:создан=48}") String thresholds) {
+        this.thresholds = Collections.unmodifiableMap(parse(thresholds));
+    }
+
+    /**
+     * Крайний срок для заказа, перешедшего в статус в момент changedAt; null - статус без SLA
+     */
+    public LocalDateTime deadline(String status, LocalDateTime changedAt) {
+        Duration threshold = status != null ? thresholds.get(status) : null;
+        return threshold != null && changedAt != null ? changedAt.plus(threshold) : null;
+    }
+
+    // Порог статуса в минутах для SQL-запросов; null - статус без SLA
+    public Integer thresholdMinutes(String status) {
+        Duration threshold = status != null ? thresholds.get(status) : null;
+        return threshold != null ? (int) threshold.toMinutes() : null;
+    }
+
+    public Map<String, Duration> getThresholds() {
+        return thresholds;
+    }
+
+    private static Map<String, Duration> parse(String value) {
+        Map<String, Duration> result = new LinkedHashMap<>();
+        if (value == null || value.isBlank()) {
+            return result;
+        }
+        for (String part : value.split(",")) {
+            int separator = part.lastIndexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Неверный порог SLA: " + part.trim());
+            }
+            String status = part.substring(0, separator).trim();
+            try {
+                double hours = Double.parseDouble(part.substring(separator + 1).trim());
+                if (hours <= 0) {
+                    throw new NumberFormatException();
+                }
+                result.put(status, Duration.ofMinutes(Math.round(hours * 60)));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Неверный порог SLA для статуса «" + status + "»: " + part.trim());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,303 @@
+package com.logistics.component;
+
+import com.logistics.event.OrderStatusChangedEvent;
+import com.logistics.repositories.OrderRepository;
+import com.logistics.repositories.VehicleRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Счетчики заказов и транспорта по статусам, которые обновляются при каждом сохранении,
+ * поэтому сводка не требует GROUP BY по таблицам. Периодически сверяются с базой,
+ * чтобы исправить расхождения от изменений в обход приложения.
+ *
+ * Сверка не подменяет счетчики: изменения, сделанные, пока выполнялся запрос к базе, копятся отдельно,
+ * и каждый счетчик под блокировкой сдвигается на разницу до «значение базы + эти изменения».
+ * До первой сверки счетчики не заполнены, поэтому первое чтение выполняет ее само.
+ */
+@Component
+public class StatusCounters {
+
+    private static final Logger log = LoggerFactory.getLogger(StatusCounters.class);
+
+    private final OrderRepository orderRepository;
+    private final VehicleRepository vehicleRepository;
+
+    private final Map<String, LongAdder> orderCounts = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> vehicleCounts = new ConcurrentHashMap<>();
+    private final Map<Integer, Map<String, LongAdder>> customerOrderCounts = new ConcurrentHashMap<>();
+    private final LongAdder failures = new LongAdder();
+
+    // Изменения счетчиков - под блокировкой чтения (параллельно друг другу), применение сверки - под записью
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Изменения с начала запроса текущей сверки; null - сверка не идет
+    private Counts sinceQuery;
+
+    private volatile LocalDateTime lastReconciledAt;
+    private volatile long lastCorrections;
+
+    private ScheduledExecutorService scheduler;
+
+    @Value("${counters.reconcile.interval.minutes:10}")
+    private int reconcileIntervalMinutes;
+
+    public StatusCounters(OrderRepository orderRepository, VehicleRepository vehicleRepository) {
+        this.orderRepository = orderRepository;
+        this.vehicleRepository = vehicleRepository;
+    }
+
+    @PostConstruct
+    public void init() {
+        // Первая сверка сразу после запуска заполняет счетчики
+        scheduler = Executors.newScheduledThreadPool(1);
+        scheduler.scheduleAtFixedRate(
+                this::reconcileSafely,
+                0,
+                reconcileIntervalMinutes,
+                TimeUnit.MINUTES
+        );
+    }
+
+    public void orderCreated(Integer customerId, String status) {
+        ordersCreated(customerId, status, 1);
+    }
+
+    public void ordersCreated(Integer customerId, String status, long count) {
+        lock.readLock().lock();
+        try {
+            addOrders(customerId, status, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void orderStatusChanged(Integer customerId, String oldStatus, String newStatus) {
+        if (oldStatus != null && oldStatus.equals(newStatus)) {
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            if (oldStatus != null) {
+                addOrders(customerId, oldStatus, -1);
+            }
+            addOrders(customerId, newStatus, 1);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        for (OrderStatusChangedEvent.Change change : event.getChanges()) {
+            orderStatusChanged(change.getCustomerId(), change.getOldStatus(), event.getNewStatus());
+        }
+    }
+
+    public void vehicleStatusChanged(String oldStatus, String newStatus) {
+        if (oldStatus != null && oldStatus.equals(newStatus)) {
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            Counts pending = sinceQuery;
+            if (oldStatus != null) {
+                adder(vehicleCounts, oldStatus).decrement();
+                if (pending != null) {
+                    adder(pending.vehicles, oldStatus).decrement();
+                }
+            }
+            adder(vehicleCounts, newStatus).increment();
+            if (pending != null) {
+                adder(pending.vehicles, newStatus).increment();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Вызывается под блокировкой чтения
+    private void addOrders(Integer customerId, String status, long count) {
+        Counts pending = sinceQuery;
+        adder(orderCounts, status).add(count);
+        if (pending != null) {
+            adder(pending.orders, status).add(count);
+        }
+        if (customerId != null) {
+            adder(customerOrderCounts.computeIfAbsent(customerId, id -> new ConcurrentHashMap<>()), status).add(count);
+            if (pending != null) {
+                adder(pending.customers.computeIfAbsent(customerId, id -> new ConcurrentHashMap<>()), status).add(count);
+            }
+        }
+    }
+
+    public Map<String, Long> getOrderCounts() {
+        ensureReconciled();
+        return snapshot(orderCounts);
+    }
+
+    public Map<String, Long> getVehicleCounts() {
+        ensureReconciled();
+        return snapshot(vehicleCounts);
+    }
+
+    public long getCustomerOrderCount(Integer customerId, String status) {
+        ensureReconciled();
+        Map<String, LongAdder> counts = customerOrderCounts.get(customerId);
+        LongAdder adder = counts != null ? counts.get(status) : null;
+        return adder != null ? adder.sum() : 0;
+    }
+
+    // Неудачные сверки
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    public LocalDateTime getLastReconciledAt() {
+        return lastReconciledAt;
+    }
+
+    public long getLastCorrections() {
+        return lastCorrections;
+    }
+
+    /**
+     * Пересчет по базе: запрос выполняется без блокировки, затем каждый счетчик сдвигается
+     * на разницу с базой, не теряя изменений, сделанных во время запроса
+     */
+    public synchronized void reconcile() {
+        lock.writeLock().lock();
+        try {
+            sinceQuery = new Counts();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        try {
+            Counts fresh = new Counts();
+            for (Object[] row : orderRepository.countOrdersByCustomerAndStatus()) {
+                Integer customerId = (Integer) row[0];
+                String status = (String) row[1];
+                long count = ((Number) row[2]).longValue();
+                adder(fresh.orders, status).add(count);
+                if (customerId != null) {
+                    adder(fresh.customers.computeIfAbsent(customerId, id -> new ConcurrentHashMap<>()), status).add(count);
+                }
+            }
+            for (Object[] row : vehicleRepository.countVehiclesByStatus()) {
+                adder(fresh.vehicles, (String) row[0]).add(((Number) row[1]).longValue());
+            }
+
+            lock.writeLock().lock();
+            try {
+                long corrections = applyDifferences(orderCounts, fresh.orders, sinceQuery.orders)
+                        + applyDifferences(vehicleCounts, fresh.vehicles, sinceQuery.vehicles);
+                Set<Integer> customers = new HashSet<>(customerOrderCounts.keySet());
+                customers.addAll(fresh.customers.keySet());
+                for (Integer customerId : customers) {
+                    applyDifferences(customerOrderCounts.computeIfAbsent(customerId, id -> new ConcurrentHashMap<>()),
+                            fresh.customers.getOrDefault(customerId, Map.of()),
+                            sinceQuery.customers.getOrDefault(customerId, Map.of()));
+                }
+                lastCorrections = corrections;
+                lastReconciledAt = LocalDateTime.now();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            lock.writeLock().lock();
+            try {
+                sinceQuery = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void reconcileSafely() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            failures.increment();
+            log.error("Сверка счетчиков статусов не удалась", e);
+        }
+    }
+
+    // Чтение до первой сверки (например, сразу после запуска) выполняет сверку само
+    private void ensureReconciled() {
+        if (lastReconciledAt == null) {
+            synchronized (this) {
+                if (lastReconciledAt == null) {
+                    reconcileSafely();
+                }
+            }
+        }
+    }
+
+    // Счетчик приводится к значению базы плюс изменения во время запроса; возвращает число исправленных
+    private static long applyDifferences(Map<String, LongAdder> live, Map<String, LongAdder> fresh,
+                                         Map<String, LongAdder> duringQuery) {
+        Set<String> statuses = new HashSet<>(live.keySet());
+        statuses.addAll(fresh.keySet());
+        long differences = 0;
+        for (String status : statuses) {
+            long target = sum(fresh, status) + sum(duringQuery, status);
+            long delta = target - sum(live, status);
+            if (delta != 0) {
+                adder(live, status).add(delta);
+                differences++;
+            }
+        }
+        return differences;
+    }
+
+    private static long sum(Map<String, LongAdder> counts, String status) {
+        LongAdder adder = counts.get(status);
+        return adder != null ? adder.sum() : 0;
+    }
+
+    private static LongAdder adder(Map<String, LongAdder> counts, String status) {
+        return counts.computeIfAbsent(status != null ? status : "без статуса", s -> new LongAdder());
+    }
+
+    private static Map<String, Long> snapshot(Map<String, LongAdder> counts) {
+        Map<String, Long> result = new TreeMap<>();
+        counts.forEach((status, adder) -> {
+            long value = adder.sum();
+            if (value != 0) {
+                result.put(status, value);
+            }
+        });
+        return result;
+    }
+
+    @PreDestroy
+    public void cleanup() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    private static final class Counts {
+        private final Map<String, LongAdder> orders = new ConcurrentHashMap<>();
+        private final Map<String, LongAdder> vehicles = new ConcurrentHashMap<>();
+        private final Map<Integer, Map<String, LongAdder>> customers = new ConcurrentHashMap<>();
+    }
+}
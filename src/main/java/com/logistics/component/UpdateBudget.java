@@ -0,0 +1,240 @@
+package com.logistics.component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Бюджет времени на обработку одного обновления.
+ *
+ * Пока обработчик выполняется, каждому SQL-запросу ставится таймаут по остатку бюджета
+ * (см. BudgetedDataSource), поэтому зависший запрос отменяет сама база. Если бюджет все же
+ * исчерпан, сторож прерывает поток обработчика, а превышение записывается на имя обработчика.
+ * Пока поток ждет соединение из пула, прерывание откладывается: иначе пул ответил бы ошибкой
+ * соединения, и автомат защиты базы счел бы ее отказом работающей базы.
+ *
+ * Отмененным считается обработчик, завершившийся исключением после исчерпания бюджета, и обработчик,
+ * чье обращение к базе отменено по бюджету (markCancelled), даже если он сам перехватил ошибку: его
+ * ответы заменяются стандартным. Успевший закончить работу обработчик сохраняет свои ответы,
+ * превышение лишь учитывается.
+ */
+@Component
+public class UpdateBudget {
+
+    private static final Logger log = LoggerFactory.getLogger(UpdateBudget.class);
+
+    private final long budgetNanos;
+    private final LongSupplier clock;
+
+    private final ThreadLocal<Deadline> current = new ThreadLocal<>();
+    private final Map<String, LongAdder> overruns = new ConcurrentHashMap<>();
+    private final LongAdder overrunTotal = new LongAdder();
+
+    private ScheduledExecutorService watchdog;
+
+    public UpdateBudget(@Value("${updates.budget-ms:5000}") long budgetMillis) {
+        this(budgetMillis, System::nanoTime);
+    }
+
+    UpdateBudget(long budgetMillis, LongSupplier clock) {
+        if (budgetMillis <= 0) {
+            throw new IllegalArgumentException("Бюджет обработки должен быть положительным");
+        }
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    public void start() {
+        watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "update-budget-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (watchdog != null) {
+            watchdog.shutdownNow();
+        }
+    }
+
+    /**
+     * Выполнение обработчика в пределах бюджета; false - бюджет исчерпан и работа прервана.
+     * Исключение, вызванное отменой (таймаут запроса, прерывание), не пробрасывается
+     */
+    public boolean run(String handler, Runnable task) {
+        Deadline deadline = new Deadline(Thread.currentThread(), clock.getAsLong() + budgetNanos);
+        current.set(deadline);
+        ScheduledFuture<?> alarm = watchdog != null
+                ? watchdog.schedule(deadline::expire, budgetNanos, TimeUnit.NANOSECONDS)
+                : null;
+        boolean cancelled = false;
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            if (!isOver(deadline)) {
+                throw e;
+            }
+            cancelled = true;
+        } finally {
+            cancelled |= deadline.isCancelled();
+            if (alarm != null) {
+                alarm.cancel(false);
+            }
+            current.remove();
+            deadline.finish();
+        }
+
+        if (isOver(deadline)) {
+            overrunTotal.increment();
+            overruns.computeIfAbsent(handler, name -> new LongAdder()).increment();
+            log.warn("Обработчик «{}» превысил бюджет {} мс{}", handler, TimeUnit.NANOSECONDS.toMillis(budgetNanos),
+                    cancelled ? " и был прерван" : ", но завершил работу");
+        }
+        return !cancelled;
+    }
+
+    /**
+     * Остаток бюджета текущего обновления в миллисекундах; Long.MAX_VALUE - поток не обрабатывает
+     * обновление (фоновые задачи и пулы тяжелых запросов бюджетом не ограничены)
+     */
+    public long remainingMillis() {
+        Deadline deadline = current.get();
+        if (deadline == null) {
+            return Long.MAX_VALUE;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(deadline.at - clock.getAsLong());
+    }
+
+    /**
+     * Бюджет текущего обновления исчерпан; вне обработки обновления - всегда false
+     */
+    public boolean isExhausted() {
+        Deadline deadline = current.get();
+        return deadline != null && isOver(deadline);
+    }
+
+    /**
+     * Обращение к базе отменено по бюджету: обработчик считается прерванным, что бы он ни ответил сам
+     */
+    public void markCancelled() {
+        Deadline deadline = current.get();
+        if (deadline != null) {
+            deadline.cancel();
+        }
+    }
+
+    /**
+     * Начало ожидания соединения из пула: прерывание по бюджету откладывается до его окончания.
+     * false - бюджет уже исчерпан, соединение запрашивать не нужно
+     */
+    public boolean beginConnectionAcquisition() {
+        Deadline deadline = current.get();
+        return deadline == null || (!isOver(deadline) && deadline.beginAcquiring());
+    }
+
+    /**
+     * Окончание ожидания соединения; true - бюджет исчерпан, пока поток ждал пул,
+     * и отложенное прерывание доставлено
+     */
+    public boolean endConnectionAcquisition() {
+        Deadline deadline = current.get();
+        return deadline != null && deadline.endAcquiring();
+    }
+
+    private boolean isOver(Deadline deadline) {
+        return deadline.isExpired() || clock.getAsLong() - deadline.at >= 0;
+    }
+
+    public long getBudgetMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(budgetNanos);
+    }
+
+    public long getOverrunCount() {
+        return overrunTotal.sum();
+    }
+
+    // Превышения по обработчикам, по алфавиту
+    public Map<String, Long> getOverrunsByHandler() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        overruns.forEach((handler, count) -> snapshot.put(handler, count.sum()));
+        return snapshot;
+    }
+
+    // Срок обработки обновления; прерывание от сторожа не переживает обработчик
+    private static final class Deadline {
+        private final Thread thread;
+        private final long at;
+        private boolean expired;
+        private boolean finished;
+        private boolean acquiring;
+        private boolean cancelled;
+
+        Deadline(Thread thread, long at) {
+            this.thread = thread;
+            this.at = at;
+        }
+
+        synchronized void expire() {
+            if (!finished) {
+                expired = true;
+                if (!acquiring) {
+                    thread.interrupt();
+                }
+            }
+        }
+
+        synchronized boolean beginAcquiring() {
+            if (expired) {
+                return false;
+            }
+            acquiring = true;
+            return true;
+        }
+
+        // Возвращает true, если бюджет истек во время ожидания пула
+        synchronized boolean endAcquiring() {
+            acquiring = false;
+            if (expired && !finished) {
+                thread.interrupt();
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+        }
+
+        synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        synchronized void finish() {
+            finished = true;
+            if (expired) {
+                // Флаг прерывания не должен достаться следующему обновлению
+                Thread.interrupted();
+            }
+        }
+
+        synchronized boolean isExpired() {
+            return expired;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.logistics.component;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Отсев повторно доставленных обновлений (Telegram повторяет их после сбоев сети и при повторах webhook).
+ *
+ * update_id растет на единицу для каждого обновления бота, поэтому последние window номеров хранятся
+ * скользящей битовой картой: проверка и отметка - один бит, память фиксирована. Номера чуть старше окна
+ * считаются повтором: Telegram доставляет обновления по порядку, и настолько старое обновление
+ * может прийти только повторно. Исключение - номер старше окна после простоя (обновлений не было
+ * resetIdleMinutes): Telegram после долгого простоя бота начинает update_id заново, поэтому это сброс
+ * последовательности - окно привязывается к новому номеру, иначе бот отбрасывал бы все обновления.
+ *
+ * Второй ключ - message_id, который растет внутри каждого чата: для чата хранится последний
+ * обработанный номер сообщения в таблице фиксированного размера. Повтор того же сообщения
+ * (например, «да» при подтверждении заказа) отбрасывается, даже если пришел с новым update_id.
+ * При совпадении ячейки двух чатов старая запись вытесняется - в худшем случае повтор не распознается.
+ */
+@Component
+public class UpdateDeduplicator {
+
+    private static final Logger log = LoggerFactory.getLogger(UpdateDeduplicator.class);
+
+    private static final long EMPTY_CHAT = Long.MIN_VALUE;
+
+    private final long[] seenUpdates;
+    private final int window;
+    private long highestUpdateId = -1;
+    private final long resetIdleNanos;
+    private final LongSupplier clock;
+    private long lastDeliveryAt;
+
+    private final long[] chatIds;
+    private final int[] lastMessageIds;
+    private final int chatMask;
+
+    private final LongAdder droppedUpdates = new LongAdder();
+    private final LongAdder droppedMessages = new LongAdder();
+    private final LongAdder sequenceResets = new LongAdder();
+
+    public UpdateDeduplicator(@Value("${updates.dedup.window:4096}") int window,
+                              @Value("${updates.dedup.chats:4096}") int chats,
+                              @Value("${updates.dedup.reset-idle-minutes:60}") int resetIdleMinutes) {
+        this(window, chats, resetIdleMinutes, System::nanoTime);
+    }
+
+    UpdateDeduplicator(int window, int chats, int resetIdleMinutes, LongSupplier clock) {
+        if (window <= 0 || chats <= 0 || resetIdleMinutes <= 0) {
+            throw new IllegalArgumentException("Размеры окна, таблицы чатов и время простоя должны быть положительными");
+        }
+        this.resetIdleNanos = TimeUnit.MINUTES.toNanos(resetIdleMinutes);
+        this.clock = clock;
+        // Окно кратно 64 битам, таблица чатов - степень двойки (ячейка выбирается маской)
+        this.seenUpdates = new long[(window + 63) / 64];
+        this.window = seenUpdates.length * 64;
+        int slots = Integer.highestOneBit(Math.max(chats - 1, 1)) << 1;
+        this.chatIds = new long[slots];
+        this.lastMessageIds = new int[slots];
+        this.chatMask = slots - 1;
+        Arrays.fill(chatIds, EMPTY_CHAT);
+    }
+
+    /**
+     * Отметка update_id; false - обновление уже обрабатывалось
+     */
+    public synchronized boolean firstDelivery(int updateId) {
+        long now = clock.getAsLong();
+        boolean idle = highestUpdateId >= 0 && now - lastDeliveryAt >= resetIdleNanos;
+        lastDeliveryAt = now;
+
+        if (updateId > highestUpdateId) {
+            advanceTo(updateId);
+            setBit(updateId);
+            return true;
+        }
+        if (idle && updateId <= highestUpdateId - window) {
+            log.warn("Сброс последовательности update_id после простоя: {} -> {}", highestUpdateId, updateId);
+            Arrays.fill(seenUpdates, 0L);
+            highestUpdateId = updateId;
+            setBit(updateId);
+            sequenceResets.increment();
+            return true;
+        }
+        if (updateId <= highestUpdateId - window || isSet(updateId)) {
+            droppedUpdates.increment();
+            return false;
+        }
+        setBit(updateId);
+        return true;
+    }
+
+    /**
+     * Отметка сообщения чата; false - это сообщение (или более раннее) уже обработано
+     */
+    public synchronized boolean firstMessage(long chatId, int messageId) {
+        int slot = slot(chatId);
+        if (chatIds[slot] == chatId && messageId <= lastMessageIds[slot]) {
+            droppedMessages.increment();
+            return false;
+        }
+        chatIds[slot] = chatId;
+        lastMessageIds[slot] = messageId;
+        return true;
+    }
+
+    public long getDroppedUpdates() {
+        return droppedUpdates.sum();
+    }
+
+    public long getDroppedMessages() {
+        return droppedMessages.sum();
+    }
+
+    public long getSequenceResets() {
+        return sequenceResets.sum();
+    }
+
+    // Биты номеров, выходящих из окна, очищаются; каждый номер очищается один раз
+    private void advanceTo(int updateId) {
+        if (highestUpdateId < 0 || updateId - highestUpdateId >= window) {
+            Arrays.fill(seenUpdates, 0L);
+        } else {
+            for (long id = highestUpdateId + 1; id < updateId; id++) {
+                clearBit(id);
+            }
+        }
+        highestUpdateId = updateId;
+    }
+
+    private boolean isSet(long id) {
+        int bit = (int) (id % window);
+        return (seenUpdates[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    private void setBit(long id) {
+        int bit = (int) (id % window);
+        seenUpdates[bit >>> 6] |= 1L << bit;
+    }
+
+    private void clearBit(long id) {
+        int bit = (int) (id % window);
+        seenUpdates[bit >>> 6] &= ~(1L << bit);
+    }
+
+    private int slot(long chatId) {
+        long hash = chatId * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & chatMask;
+    }
+}
@@ -0,0 +1,272 @@
+package com.logistics.component;
+
+import com.logistics.model.Vehicle;
+import com.logistics.repositories.VehicleRepository;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кэш транспорта: парк небольшой и читается при каждом заказе, поэтому целиком держится в памяти.
+ * Загружается при запуске, промахи дочитываются из базы, любое сохранение Vehicle
+ * (через JPA-слушатель) сбрасывает запись и после коммита кладет в кэш сохраненное состояние.
+ */
+@Component
+public class VehicleCache {
+
+    private static final Logger log = LoggerFactory.getLogger(VehicleCache.class);
+
+    // Слушатель сущности создается Hibernate, поэтому кэш передается через статическое поле
+    private static volatile VehicleCache instance;
+
+    private final VehicleRepository vehicleRepository;
+
+    private final Map<Integer, Vehicle> vehicles = new ConcurrentHashMap<>();
+    // Все известные ID: запись может быть временно удалена из vehicles на время перечитывания
+    private final Set<Integer> knownIds = ConcurrentHashMap.newKeySet();
+    // Поколение записи растет при каждой инвалидации; загрузка, начатая до нее, результат не сохраняет
+    private final Map<Integer, Long> generations = new HashMap<>();
+    private final Object lock = new Object();
+    private volatile boolean fullyLoaded;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public VehicleCache(VehicleRepository vehicleRepository) {
+        this.vehicleRepository = vehicleRepository;
+        instance = this;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            loadAll();
+        } catch (Exception e) {
+            failures.increment();
+            log.error("Не удалось загрузить кэш транспорта", e);
+        }
+    }
+
+    // Неудачные загрузки кэша
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    public void loadAll() {
+        long generation;
+        synchronized (lock) {
+            generation = totalGeneration();
+        }
+        List<Vehicle> all = vehicleRepository.findAll();
+        synchronized (lock) {
+            // Если во время загрузки что-то изменилось, недостающие записи дочитаются по одной
+            boolean unchanged = generation == totalGeneration();
+            for (Vehicle vehicle : all) {
+                knownIds.add(vehicle.getVehicleId());
+                if (unchanged) {
+                    vehicles.put(vehicle.getVehicleId(), copy(vehicle));
+                }
+            }
+            fullyLoaded = true;
+        }
+    }
+
+    /**
+     * Транспорт по ID (копия, изменения не влияют на кэш)
+     */
+    public Vehicle get(Integer vehicleId) {
+        Vehicle cached = vehicles.get(vehicleId);
+        if (cached != null) {
+            hits.increment();
+            return copy(cached);
+        }
+        misses.increment();
+        Vehicle loaded = load(vehicleId);
+        return loaded != null ? copy(loaded) : null;
+    }
+
+    public List<Vehicle> getAll() {
+        if (!fullyLoaded) {
+            loadAll();
+        }
+        List<Vehicle> result = new ArrayList<>(knownIds.size());
+        for (Integer vehicleId : knownIds) {
+            Vehicle vehicle = get(vehicleId);
+            if (vehicle != null) {
+                result.add(vehicle);
+            }
+        }
+        result.sort(Comparator.comparing(Vehicle::getVehicleId));
+        return result;
+    }
+
+    // То же, что VehicleRepository.findAvailableVehiclesWithCapacity, но без запроса к базе
+    public List<Vehicle> findAvailableWithCapacity(double requiredCapacity) {
+        List<Vehicle> result = new ArrayList<>();
+        for (Vehicle vehicle : getAll()) {
+            if ("свободен".equals(vehicle.getStatus())
+                    && vehicle.getCapacityTon() != null && vehicle.getCapacityTon() >= requiredCapacity) {
+                result.add(vehicle);
+            }
+        }
+        result.sort(Comparator.comparing(Vehicle::getCapacityTon).reversed());
+        return result;
+    }
+
+    /**
+     * Сброс записи; возвращает новое поколение, с которым можно сохранить значение после коммита
+     */
+    public long invalidate(Integer vehicleId) {
+        long generation;
+        synchronized (lock) {
+            generation = generations.merge(vehicleId, 1L, Long::sum);
+            vehicles.remove(vehicleId);
+        }
+        invalidations.increment();
+        return generation;
+    }
+
+    /**
+     * Сохранение зафиксированного состояния, если после инвалидации запись больше не менялась.
+     * Иначе значение устарело: его заменит более позднее изменение или чтение из базы.
+     * Поколение увеличивается, чтобы чтение, начатое до коммита, не перезаписало новое значение.
+     */
+    public void install(Vehicle vehicle, long generation) {
+        synchronized (lock) {
+            if (generation == generations.getOrDefault(vehicle.getVehicleId(), 0L)) {
+                knownIds.add(vehicle.getVehicleId());
+                vehicles.put(vehicle.getVehicleId(), copy(vehicle));
+                generations.put(vehicle.getVehicleId(), generation + 1);
+            }
+        }
+    }
+
+    public void remove(Integer vehicleId, long generation) {
+        synchronized (lock) {
+            if (generation == generations.getOrDefault(vehicleId, 0L)) {
+                knownIds.remove(vehicleId);
+                generations.put(vehicleId, generation + 1);
+            }
+        }
+    }
+
+    private Vehicle load(Integer vehicleId) {
+        long generation;
+        synchronized (lock) {
+            generation = generations.getOrDefault(vehicleId, 0L);
+        }
+        Vehicle vehicle = vehicleRepository.findById(vehicleId).orElse(null);
+        synchronized (lock) {
+            if (generation == generations.getOrDefault(vehicleId, 0L)) {
+                if (vehicle != null) {
+                    knownIds.add(vehicleId);
+                    vehicles.put(vehicleId, copy(vehicle));
+                } else {
+                    knownIds.remove(vehicleId);
+                }
+            }
+        }
+        return vehicle;
+    }
+
+    private long totalGeneration() {
+        long total = 0;
+        for (long generation : generations.values()) {
+            total += generation;
+        }
+        return total;
+    }
+
+    public CacheStats getStats() {
+        return new CacheStats(vehicles.size(), hits.sum(), misses.sum(), invalidations.sum());
+    }
+
+    private static Vehicle copy(Vehicle source) {
+        Vehicle vehicle = new Vehicle();
+        vehicle.setVehicleId(source.getVehicleId());
+        vehicle.setModel(source.getModel());
+        vehicle.setLicensePlate(source.getLicensePlate());
+        vehicle.setCapacityTon(source.getCapacityTon());
+        vehicle.setStatus(source.getStatus());
+        vehicle.setVersion(source.getVersion());
+        return vehicle;
+    }
+
+    // JPA-слушатель сущности Vehicle: обновляет кэш после коммита (или сразу, если транзакции нет).
+    // При откате запись остается сброшенной и будет перечитана из базы при следующем обращении
+    public static class Listener {
+
+        @PostPersist
+        @PostUpdate
+        public void onSave(Vehicle vehicle) {
+            VehicleCache cache = instance;
+            if (cache == null) {
+                return;
+            }
+            long generation = cache.invalidate(vehicle.getVehicleId());
+            Vehicle saved = copy(vehicle);
+            afterCommit(() -> cache.install(saved, generation));
+        }
+
+        @PostRemove
+        public void onRemove(Vehicle vehicle) {
+            VehicleCache cache = instance;
+            if (cache == null) {
+                return;
+            }
+            Integer vehicleId = vehicle.getVehicleId();
+            long generation = cache.invalidate(vehicleId);
+            afterCommit(() -> cache.remove(vehicleId, generation));
+        }
+
+        private void afterCommit(Runnable action) {
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        action.run();
+                    }
+                });
+            } else {
+                action.run();
+            }
+        }
+    }
+
+    public static class CacheStats {
+        private final int size;
+        private final long hits;
+        private final long misses;
+        private final long invalidations;
+
+        CacheStats(int size, long hits, long misses, long invalidations) {
+            this.size = size;
+            this.hits = hits;
+            this.misses = misses;
+            this.invalidations = invalidations;
+        }
+
+        public int getSize() { return size; }
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getInvalidations() { return invalidations; }
+
+        public long getHitRatePercent() {
+            long total = hits + misses;
+            return total > 0 ? hits * 100 / total : 0;
+        }
+    }
+}
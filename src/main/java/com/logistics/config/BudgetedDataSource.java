@@ -0,0 +1,142 @@
+package com.logistics.config;
+
+import com.logistics.component.UpdateBudget;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Источник соединений, который ставит каждому запросу таймаут по остатку бюджета обновления.
+ * Таймаут JDBC задается в секундах, поэтому остаток округляется вверх; при исчерпанном бюджете
+ * запрос не выполняется вовсе. Вне обработки обновления таймаут не ставится.
+ *
+ * Пока поток ждет соединение из пула, сторож бюджета его не прерывает: прерванное ожидание пул
+ * выдал бы за ошибку соединения. Любая ошибка запроса после исчерпания бюджета отмечается
+ * в бюджете как отмена, чтобы обработчик, перехвативший ее сам, ответил стандартным сообщением.
+ */
+public class BudgetedDataSource extends DelegatingDataSource {
+
+    private static final Set<String> STATEMENT_FACTORIES = Set.of("createStatement", "prepareStatement", "prepareCall");
+
+    private final Supplier<UpdateBudget> updateBudget;
+
+    public BudgetedDataSource(DataSource target, Supplier<UpdateBudget> updateBudget) {
+        super(target);
+        this.updateBudget = updateBudget;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return budgeted(acquire(super::getConnection));
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return budgeted(acquire(() -> super.getConnection(username, password)));
+    }
+
+    private Connection acquire(ConnectionSource pool) throws SQLException {
+        UpdateBudget budget = updateBudget.get();
+        if (!budget.beginConnectionAcquisition()) {
+            throw exhausted(budget);
+        }
+        Connection connection;
+        try {
+            connection = pool.get();
+        } finally {
+            if (budget.endConnectionAcquisition()) {
+                budget.markCancelled();
+            }
+        }
+        if (budget.isExhausted()) {
+            // Бюджет истек, пока поток ждал пул: соединение возвращается неиспользованным
+            connection.close();
+            throw exhausted(budget);
+        }
+        return connection;
+    }
+
+    private Connection budgeted(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            break;
+                    }
+                    Object result = invoke(connection, method, args);
+                    if (result instanceof Statement && STATEMENT_FACTORIES.contains(method.getName())) {
+                        applyTimeout((Statement) result);
+                        return watched((Statement) result, method.getReturnType());
+                    }
+                    return result;
+                });
+    }
+
+    // Запрос, отмененный базой по таймауту бюджета, отмечается в бюджете
+    private Object watched(Statement statement, Class<?> type) {
+        return Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            break;
+                    }
+                    try {
+                        return invoke(statement, method, args);
+                    } catch (SQLException e) {
+                        UpdateBudget budget = updateBudget.get();
+                        if (budget.isExhausted()) {
+                            budget.markCancelled();
+                        }
+                        throw e;
+                    }
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void applyTimeout(Statement statement) throws SQLException {
+        UpdateBudget budget = updateBudget.get();
+        long remainingMillis = budget.remainingMillis();
+        if (remainingMillis == Long.MAX_VALUE) {
+            return;
+        }
+        if (remainingMillis <= 0) {
+            statement.close();
+            throw exhausted(budget);
+        }
+        statement.setQueryTimeout((int) Math.min(Integer.MAX_VALUE, (remainingMillis + 999) / 1000));
+    }
+
+    private static SQLTimeoutException exhausted(UpdateBudget budget) {
+        budget.markCancelled();
+        return new SQLTimeoutException("Бюджет обработки обновления исчерпан");
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSource {
+        Connection get() throws SQLException;
+    }
+}
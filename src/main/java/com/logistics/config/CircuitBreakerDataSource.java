@@ -0,0 +1,76 @@
+package com.logistics.config;
+
+import com.logistics.component.DatabaseCircuitBreaker;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.function.Supplier;
+
+/**
+ * Источник соединений под автоматом защиты: пока база недоступна, соединение не запрашивается у пула,
+ * а отказ приходит сразу. Результат каждой попытки получить соединение передается автомату;
+ * ожидание, оборванное прерыванием потока, отказом базы не считается.
+ */
+public class CircuitBreakerDataSource extends DelegatingDataSource {
+
+    private final Supplier<DatabaseCircuitBreaker> circuitBreaker;
+
+    public CircuitBreakerDataSource(DataSource target, Supplier<DatabaseCircuitBreaker> circuitBreaker) {
+        super(target);
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        DatabaseCircuitBreaker breaker = acquire();
+        try {
+            Connection connection = super.getConnection();
+            breaker.onSuccess();
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            onFailure(breaker, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        DatabaseCircuitBreaker breaker = acquire();
+        try {
+            Connection connection = super.getConnection(username, password);
+            breaker.onSuccess();
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            onFailure(breaker, e);
+            throw e;
+        }
+    }
+
+    private static void onFailure(DatabaseCircuitBreaker breaker, Exception e) {
+        if (Thread.currentThread().isInterrupted() || causedByInterrupt(e)) {
+            breaker.onAbandoned();
+        } else {
+            breaker.onFailure();
+        }
+    }
+
+    private static boolean causedByInterrupt(Throwable error) {
+        for (Throwable cause = error; cause != null && cause.getCause() != cause; cause = cause.getCause()) {
+            if (cause instanceof InterruptedException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private DatabaseCircuitBreaker acquire() throws SQLException {
+        DatabaseCircuitBreaker breaker = circuitBreaker.get();
+        if (!breaker.tryAcquire()) {
+            throw new SQLTransientConnectionException("База данных недоступна: автомат защиты разомкнут", "08001");
+        }
+        return breaker;
+    }
+}
@@ -0,0 +1,31 @@
+package com.logistics.config;
+
+import com.logistics.component.DatabaseCircuitBreaker;
+import com.logistics.component.UpdateBudget;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class DataSourceConfig {
+
+    // Все соединения (JPA и репозитории) выдаются через BudgetedDataSource и автомат защиты базы;
+    // компоненты берутся лениво, чтобы постпроцессор не создавал их раньше времени
+    @Bean
+    public static BeanPostProcessor guardedDataSourcePostProcessor(ObjectProvider<UpdateBudget> updateBudget,
+                                                                    ObjectProvider<DatabaseCircuitBreaker> circuitBreaker) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource && !(bean instanceof BudgetedDataSource)) {
+                    DataSource guarded = new CircuitBreakerDataSource((DataSource) bean, circuitBreaker::getObject);
+                    return new BudgetedDataSource(guarded, updateBudget::getObject);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,142 @@
+package com.logistics.config;
+
+import com.logistics.bot.TelegramBot;
+import com.logistics.component.Bulkhead;
+import com.logistics.component.Bulkheads;
+import com.logistics.component.CustomerSearchIndex;
+import com.logistics.component.DatabaseCircuitBreaker;
+import com.logistics.component.IngressDispatcher;
+import com.logistics.component.PendingOrderJournal;
+import com.logistics.component.StatusCounters;
+import com.logistics.component.UpdateBudget;
+import com.logistics.component.UpdateDeduplicator;
+import com.logistics.component.VehicleCache;
+import com.logistics.flow.Flow;
+import com.logistics.service.AdminService;
+import com.logistics.service.CustomerImportService;
+import com.logistics.service.CustomerStatsService;
+import com.logistics.service.LoginService;
+import com.logistics.service.OrderCreationService;
+import com.logistics.service.OrderExportService;
+import com.logistics.service.OrderImportService;
+import com.logistics.service.RegistrationService;
+import com.logistics.service.SessionService;
+import com.logistics.service.SlaWatchdogService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.function.ToDoubleFunction;
+
+@Configuration
+public class MetricsConfig {
+
+    // Показатели компонентов читаются при съеме метрик; связывание идет после создания всех компонентов,
+    // поэтому зависимость от сервисов не образует цикла с BotMetrics
+    @Bean
+    public MeterBinder botPipelineMetrics(SessionService sessionService,
+                                          RegistrationService registrationService,
+                                          LoginService loginService,
+                                          OrderCreationService orderCreationService,
+                                          IngressDispatcher ingressDispatcher,
+                                          UpdateDeduplicator updateDeduplicator,
+                                          UpdateBudget updateBudget,
+                                          Bulkheads bulkheads,
+                                          DatabaseCircuitBreaker databaseCircuitBreaker,
+                                          PendingOrderJournal pendingOrderJournal,
+                                          AdminService adminService) {
+        return registry -> {
+            Gauge.builder("bot.sessions.active", sessionService, SessionService::getActiveSessionCount)
+                    .description("Активные сессии")
+                    .register(registry);
+
+            bindFlow(registry, "registration", registrationService.getFlow());
+            bindFlow(registry, "login", loginService.getFlow());
+            bindFlow(registry, "order_creation", orderCreationService.getFlow());
+
+            for (IngressDispatcher.Lane lane : IngressDispatcher.Lane.values()) {
+                String tag = lane.name().toLowerCase();
+                Gauge.builder("bot.ingress.queued", ingressDispatcher, dispatcher -> dispatcher.getQueued(lane))
+                        .tag("lane", tag).register(registry);
+                counter(registry, "bot.ingress.accepted", ingressDispatcher, dispatcher -> dispatcher.getAcceptedCount(lane), "lane", tag);
+                counter(registry, "bot.ingress.shed", ingressDispatcher, dispatcher -> dispatcher.getShedCount(lane), "lane", tag);
+            }
+            counter(registry, "bot.ingress.rate_limited", ingressDispatcher, IngressDispatcher::getRateLimitedCount);
+            counter(registry, "bot.updates.duplicates", updateDeduplicator, UpdateDeduplicator::getDroppedUpdates, "key", "update_id");
+            counter(registry, "bot.updates.duplicates", updateDeduplicator, UpdateDeduplicator::getDroppedMessages, "key", "message_id");
+            counter(registry, "bot.updates.sequence_resets", updateDeduplicator, UpdateDeduplicator::getSequenceResets);
+            counter(registry, "bot.updates.budget_overruns", updateBudget, UpdateBudget::getOverrunCount);
+
+            for (Bulkhead bulkhead : bulkheads.getAll()) {
+                Gauge.builder("bot.bulkhead.active", bulkhead, Bulkhead::getActiveCount).tag("bulkhead", bulkhead.getName()).register(registry);
+                Gauge.builder("bot.bulkhead.queued", bulkhead, Bulkhead::getQueued).tag("bulkhead", bulkhead.getName()).register(registry);
+                Gauge.builder("bot.bulkhead.saturation", bulkhead, Bulkhead::getSaturation).tag("bulkhead", bulkhead.getName()).register(registry);
+                counter(registry, "bot.bulkhead.rejected", bulkhead, Bulkhead::getRejectedCount, "bulkhead", bulkhead.getName());
+                counter(registry, "bot.bulkhead.failed", bulkhead, Bulkhead::getFailedCount, "bulkhead", bulkhead.getName());
+            }
+
+            // Состояние автомата: 0 - CLOSED, 1 - OPEN, 2 - HALF_OPEN
+            Gauge.builder("bot.db.breaker.state", databaseCircuitBreaker, breaker -> breaker.getState().ordinal())
+                    .description("Автомат защиты базы: 0 - замкнут, 1 - разомкнут, 2 - проверка")
+                    .register(registry);
+            counter(registry, "bot.db.breaker.rejected", databaseCircuitBreaker, DatabaseCircuitBreaker::getRejectedCount);
+            Gauge.builder("bot.orders.journal.pending", pendingOrderJournal, PendingOrderJournal::getPendingCount)
+                    .register(registry);
+            Gauge.builder("bot.orders.journal.dead", pendingOrderJournal, PendingOrderJournal::getDeadLetterCount)
+                    .register(registry);
+            counter(registry, "bot.orders.status_listener_failures", adminService, AdminService::getStatusListenerFailures);
+        };
+    }
+
+    // Сбои, после которых работа продолжается (фоновые задачи, слушатели событий, асинхронные операции):
+    // подробности пишутся в журнал, а число сбоев по компонентам - в метрику bot.failures
+    @Bean
+    public MeterBinder failureMetrics(TelegramBot telegramBot,
+                                      IngressDispatcher ingressDispatcher,
+                                      StatusCounters statusCounters,
+                                      VehicleCache vehicleCache,
+                                      CustomerSearchIndex customerSearchIndex,
+                                      PendingOrderJournal pendingOrderJournal,
+                                      OrderCreationService orderCreationService,
+                                      AdminService adminService,
+                                      CustomerStatsService customerStatsService,
+                                      SlaWatchdogService slaWatchdogService,
+                                      CustomerImportService customerImportService,
+                                      OrderImportService orderImportService,
+                                      OrderExportService orderExportService) {
+        return registry -> {
+            failures(registry, "admin_actions", telegramBot, TelegramBot::getFailureCount);
+            failures(registry, "ingress", ingressDispatcher, IngressDispatcher::getFailureCount);
+            failures(registry, "status_counters", statusCounters, StatusCounters::getFailureCount);
+            failures(registry, "vehicle_cache", vehicleCache, VehicleCache::getFailureCount);
+            failures(registry, "customer_search_index", customerSearchIndex, CustomerSearchIndex::getFailureCount);
+            failures(registry, "orders_journal", pendingOrderJournal, PendingOrderJournal::getFailureCount);
+            failures(registry, "order_creation", orderCreationService, OrderCreationService::getFailureCount);
+            failures(registry, "status_update", adminService, AdminService::getStatusUpdateFailures);
+            failures(registry, "customer_stats", customerStatsService, CustomerStatsService::getFailureCount);
+            failures(registry, "sla_watchdog", slaWatchdogService, SlaWatchdogService::getFailureCount);
+            failures(registry, "customer_import", customerImportService, CustomerImportService::getFailureCount);
+            failures(registry, "order_import", orderImportService, OrderImportService::getFailureCount);
+            failures(registry, "order_export", orderExportService, OrderExportService::getFailureCount);
+        };
+    }
+
+    private static <T> void failures(MeterRegistry registry, String component, T source, ToDoubleFunction<T> count) {
+        counter(registry, "bot.failures", source, count, "component", component);
+    }
+
+    private static void bindFlow(MeterRegistry registry, String name, Flow<?, ?> flow) {
+        Gauge.builder("bot.flow.active", flow, Flow::getActiveCount).tag("flow", name).register(registry);
+        counter(registry, "bot.flow.events", flow, Flow::getStartedCount, "flow", name, "event", "started");
+        counter(registry, "bot.flow.events", flow, Flow::getCompletedCount, "flow", name, "event", "completed");
+        counter(registry, "bot.flow.events", flow, Flow::getCancelledCount, "flow", name, "event", "cancelled");
+        counter(registry, "bot.flow.events", flow, Flow::getFailedCount, "flow", name, "event", "failed");
+    }
+
+    private static <T> void counter(MeterRegistry registry, String name, T source, ToDoubleFunction<T> count, String... tags) {
+        FunctionCounter.builder(name, source, count).tags(tags).register(registry);
+    }
+}
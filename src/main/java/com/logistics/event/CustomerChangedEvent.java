@@ -0,0 +1,11 @@
+package com.logistics.event;
+
+import com.logistics.DTO.CustomerDTOs.CustomerRowDTO;
+import lombok.*;
+
+// Клиент зарегистрирован или его данные изменены
+@Getter
+@AllArgsConstructor
+public class CustomerChangedEvent {
+    private final CustomerRowDTO customer;
+}
@@ -0,0 +1,13 @@
+package com.logistics.event;
+
+import lombok.*;
+
+// Завершен пакетный импорт клиентов. Номера новых клиентов заранее неизвестны, но все они лежат
+// строго между fromId и toId - номерами последовательности, взятыми до и после импорта
+@Getter
+@AllArgsConstructor
+public class CustomersImportedEvent {
+    private final long importedCount;
+    private final int fromId;
+    private final int toId;
+}
@@ -0,0 +1,5 @@
+package com.logistics.event;
+
+// База данных снова доступна: автомат защиты замкнулся после успешной проверочной попытки
+public class DatabaseRecoveredEvent {
+}
@@ -0,0 +1,17 @@
+package com.logistics.event;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// Клиент создал заказ в диалоге или импортом из файла (публикуется после сохранения)
+@Getter
+@AllArgsConstructor
+public class OrderCreatedEvent {
+    private final Integer orderId;
+    private final Integer customerId;
+    private final String status;
+    private final Integer totalWeight;
+    private final LocalDateTime createTime;
+    private final LocalDateTime slaDeadline;
+}
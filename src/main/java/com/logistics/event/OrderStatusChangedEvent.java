@@ -0,0 +1,21 @@
+package com.logistics.event;
+
+import lombok.*;
+
+import java.util.List;
+
+// Статус одного или нескольких заказов изменен (массовое изменение публикуется одним событием)
+@Getter
+@AllArgsConstructor
+public class OrderStatusChangedEvent {
+    private final String newStatus;
+    private final List<Change> changes;
+
+    @Getter
+    @AllArgsConstructor
+    public static class Change {
+        private final Integer orderId;
+        private final Integer customerId;
+        private final String oldStatus;
+    }
+}
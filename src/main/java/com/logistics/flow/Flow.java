@@ -0,0 +1,489 @@
+package com.logistics.flow;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Пошаговый диалог с пользователем (регистрация, вход, создание заказа, действия администратора).
+ *
+ * Шаги - константы enum. Диалог объявляется один раз (шаг, проверки ввода, сохранение, следующий шаг,
+ * подсказка) и при сборке превращается в массивы по ordinal шага: обработчик и подсказка. Переход -
+ * смена номера шага, без сравнения строк состояний. Отмена, ошибки обработчиков и асинхронные этапы
+ * (ответ приходит позже через asyncReplies) обрабатываются одинаково для всех диалогов.
+ */
+public final class Flow<S extends Enum<S>, C> {
+
+    private static final Logger log = LoggerFactory.getLogger(Flow.class);
+
+    private static final String PART_SEPARATOR = "\n\n";
+
+    private final S[] steps;
+    private final StepHandler<S, C>[] handlers;
+    private final String[] prompts;
+    private final S initialStep;
+    private final String intro;
+    private final Supplier<C> contextFactory;
+    private final String cancelInput;
+    private final String cancelReply;
+    private final Consumer<Long> cancelHook;
+    private final String errorReply;
+    private final String pendingReply;
+    private final BiConsumer<Long, Reply> asyncReplies;
+
+    private final Map<Long, State<C>> states = new ConcurrentHashMap<>();
+
+    // Счетчики диалогов для метрик: начатые, завершенные, отмененные, прерванные ошибкой
+    private final LongAdder started = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private Flow(Builder<S, C> builder, StepHandler<S, C>[] handlers, String[] prompts) {
+        this.steps = builder.stepType.getEnumConstants();
+        this.handlers = handlers;
+        this.prompts = prompts;
+        this.initialStep = builder.initialStep;
+        this.intro = builder.intro;
+        this.contextFactory = builder.contextFactory;
+        this.cancelInput = builder.cancelInput;
+        this.cancelReply = builder.cancelReply;
+        this.cancelHook = builder.cancelHook;
+        this.errorReply = builder.errorReply;
+        this.pendingReply = builder.pendingReply;
+        this.asyncReplies = builder.asyncReplies;
+    }
+
+    public static <S extends Enum<S>, C> Builder<S, C> builder(Class<S> stepType, Supplier<C> contextFactory) {
+        return new Builder<>(stepType, contextFactory);
+    }
+
+    /**
+     * Начало диалога с начального шага; возвращает приветствие и подсказку первого шага
+     */
+    public String start(Long chatId) {
+        if (initialStep == null) {
+            throw new IllegalStateException("У диалога нет начального шага");
+        }
+        states.put(chatId, new State<>(initialStep.ordinal(), contextFactory.get()));
+        started.increment();
+        return join(intro, prompts[initialStep.ordinal()]);
+    }
+
+    /**
+     * Начало диалога с произвольного шага; возвращает новый контекст для заполнения
+     */
+    public C startAt(Long chatId, S step) {
+        C context = contextFactory.get();
+        startAt(chatId, step, context);
+        return context;
+    }
+
+    public void startAt(Long chatId, S step, C context) {
+        states.put(chatId, new State<>(step.ordinal(), context));
+        started.increment();
+    }
+
+    /**
+     * Обработка ввода; null - у чата нет этого диалога
+     */
+    public Reply process(Long chatId, String input) {
+        State<C> state = states.get(chatId);
+        if (state == null) {
+            return null;
+        }
+        synchronized (state) {
+            if (states.get(chatId) != state) {
+                return null;
+            }
+            if (cancelInput != null && cancelInput.equals(input)) {
+                states.remove(chatId, state);
+                cancelled.increment();
+                if (cancelHook != null) {
+                    cancelHook.accept(chatId);
+                }
+                return new Reply(cancelReply, true);
+            }
+            if (state.pending) {
+                return new Reply(pendingReply, false);
+            }
+
+            Transition<S> transition;
+            try {
+                transition = handlers[state.step].handle(chatId, state.context, input);
+            } catch (RuntimeException e) {
+                if (errorReply == null) {
+                    throw e;
+                }
+                log.error("Ошибка шага диалога, чат {}", chatId, e);
+                states.remove(chatId, state);
+                failed.increment();
+                return new Reply(errorReply, true);
+            }
+            return apply(chatId, state, transition);
+        }
+    }
+
+    // Вызывается под блокировкой state
+    private Reply apply(Long chatId, State<C> state, Transition<S> transition) {
+        switch (transition.kind) {
+            case MOVE:
+                state.step = transition.next.ordinal();
+                return new Reply(transition.promptNext ? prompts[state.step] : transition.reply, false);
+            case FINISH:
+                states.remove(chatId, state);
+                completed.increment();
+                return new Reply(transition.reply, true);
+            case ASYNC:
+                state.pending = true;
+                transition.stage.whenComplete((result, error) -> complete(chatId, state, result, error));
+                return new Reply(transition.reply, false);
+            default:
+                return new Reply(transition.reply, false);
+        }
+    }
+
+    private void complete(Long chatId, State<C> state, Transition<S> result, Throwable error) {
+        Reply reply;
+        synchronized (state) {
+            state.pending = false;
+            // Диалог отменили, пока шел асинхронный этап
+            if (states.get(chatId) != state) {
+                return;
+            }
+            if (error != null || result == null) {
+                if (error != null) {
+                    log.error("Ошибка асинхронного этапа диалога, чат {}", chatId, error);
+                }
+                states.remove(chatId, state);
+                failed.increment();
+                reply = new Reply(errorReply, true);
+            } else {
+                reply = apply(chatId, state, result);
+            }
+        }
+        if (asyncReplies != null && reply.getText() != null) {
+            asyncReplies.accept(chatId, reply);
+        }
+    }
+
+    /**
+     * Завершение диалога без ответа и без onCancel (отмену вызывает сам сервис); false - диалога не было
+     */
+    public boolean cancel(Long chatId) {
+        if (states.remove(chatId) == null) {
+            return false;
+        }
+        cancelled.increment();
+        return true;
+    }
+
+    public boolean isActive(Long chatId) {
+        return states.containsKey(chatId);
+    }
+
+    public S getStep(Long chatId) {
+        State<C> state = states.get(chatId);
+        return state != null ? steps[state.step] : null;
+    }
+
+    public C getContext(Long chatId) {
+        State<C> state = states.get(chatId);
+        return state != null ? state.context : null;
+    }
+
+    public int getActiveCount() {
+        return states.size();
+    }
+
+    public long getStartedCount() {
+        return started.sum();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    public long getCancelledCount() {
+        return cancelled.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    private static String join(String first, String second) {
+        if (first == null) {
+            return second;
+        }
+        return second != null ? first + PART_SEPARATOR + second : first;
+    }
+
+    /**
+     * Обработчик шага: ввод пользователя и данные диалога -> переход
+     */
+    @FunctionalInterface
+    public interface StepHandler<S extends Enum<S>, C> {
+        Transition<S> handle(Long chatId, C context, String input);
+    }
+
+    /**
+     * Результат шага: остаться, перейти, завершить диалог или дождаться асинхронного этапа
+     */
+    public static final class Transition<S extends Enum<S>> {
+        private enum Kind { STAY, MOVE, FINISH, ASYNC }
+
+        private final Kind kind;
+        private final S next;
+        private final String reply;
+        private final boolean promptNext;
+        private final CompletionStage<Transition<S>> stage;
+
+        private Transition(Kind kind, S next, String reply, boolean promptNext, CompletionStage<Transition<S>> stage) {
+            this.kind = kind;
+            this.next = next;
+            this.reply = reply;
+            this.promptNext = promptNext;
+            this.stage = stage;
+        }
+
+        public static <S extends Enum<S>> Transition<S> stay(String reply) {
+            return new Transition<>(Kind.STAY, null, reply, false, null);
+        }
+
+        // Ответ - подсказка следующего шага
+        public static <S extends Enum<S>> Transition<S> to(S next) {
+            return new Transition<>(Kind.MOVE, next, null, true, null);
+        }
+
+        public static <S extends Enum<S>> Transition<S> to(S next, String reply) {
+            return new Transition<>(Kind.MOVE, next, reply, false, null);
+        }
+
+        public static <S extends Enum<S>> Transition<S> finish(String reply) {
+            return new Transition<>(Kind.FINISH, null, reply, false, null);
+        }
+
+        /**
+         * Асинхронный этап: пользователь сразу получает reply, ввод до завершения этапа отклоняется,
+         * итоговый переход применяется по завершении, а его ответ уходит через asyncReplies
+         */
+        public static <S extends Enum<S>> Transition<S> async(CompletionStage<Transition<S>> stage, String reply) {
+            return new Transition<>(Kind.ASYNC, null, reply, false, stage);
+        }
+
+        public boolean isFinished() { return kind == Kind.FINISH; }
+        public S getNext() { return next; }
+        public String getReply() { return reply; }
+    }
+
+    /**
+     * Ответ пользователю; finished - диалог завершен (успешно, отменой или ошибкой)
+     */
+    public static final class Reply {
+        private final String text;
+        private final boolean finished;
+
+        Reply(String text, boolean finished) {
+            this.text = text;
+            this.finished = finished;
+        }
+
+        public String getText() { return text; }
+        public boolean isFinished() { return finished; }
+    }
+
+    private static final class State<C> {
+        private int step;
+        private final C context;
+        private boolean pending;
+
+        State(int step, C context) {
+            this.step = step;
+            this.context = context;
+        }
+    }
+
+    public static final class Builder<S extends Enum<S>, C> {
+        private final Class<S> stepType;
+        private final Supplier<C> contextFactory;
+        private final StepSpec<S, C>[] specs;
+        private S initialStep;
+        private String intro;
+        private String cancelInput;
+        private String cancelReply;
+        private Consumer<Long> cancelHook;
+        private String errorReply;
+        private String pendingReply = "⏳ Подождите, предыдущий шаг еще выполняется.";
+        private BiConsumer<Long, Reply> asyncReplies;
+
+        @SuppressWarnings("unchecked")
+        private Builder(Class<S> stepType, Supplier<C> contextFactory) {
+            this.stepType = stepType;
+            this.contextFactory = contextFactory;
+            this.specs = new StepSpec[stepType.getEnumConstants().length];
+        }
+
+        // Начальный шаг и текст перед его подсказкой
+        public Builder<S, C> start(S step, String intro) {
+            this.initialStep = step;
+            this.intro = intro;
+            return this;
+        }
+
+        public Builder<S, C> cancelOn(String input, String reply) {
+            this.cancelInput = input;
+            this.cancelReply = reply;
+            return this;
+        }
+
+        public Builder<S, C> onCancel(Consumer<Long> hook) {
+            this.cancelHook = hook;
+            return this;
+        }
+
+        // Исключение обработчика завершает диалог с этим ответом (без onError исключение пробрасывается)
+        public Builder<S, C> onError(String reply) {
+            this.errorReply = reply;
+            return this;
+        }
+
+        public Builder<S, C> whilePending(String reply) {
+            this.pendingReply = reply;
+            return this;
+        }
+
+        public Builder<S, C> asyncReplies(BiConsumer<Long, Reply> sink) {
+            this.asyncReplies = sink;
+            return this;
+        }
+
+        public StepBuilder<S, C> step(S step) {
+            return step(step, null);
+        }
+
+        public StepBuilder<S, C> step(S step, String prompt) {
+            if (specs[step.ordinal()] != null) {
+                throw new IllegalStateException("Шаг " + step + " объявлен дважды");
+            }
+            StepSpec<S, C> spec = new StepSpec<>(prompt);
+            specs[step.ordinal()] = spec;
+            return new StepBuilder<>(this, spec);
+        }
+
+        /**
+         * Сборка таблиц переходов; ошибки объявления (пропущенный шаг) выявляются при запуске
+         */
+        @SuppressWarnings("unchecked")
+        public Flow<S, C> build() {
+            S[] constants = stepType.getEnumConstants();
+            StepHandler<S, C>[] handlers = new StepHandler[constants.length];
+            String[] prompts = new String[constants.length];
+            for (S step : constants) {
+                StepSpec<S, C> spec = specs[step.ordinal()];
+                if (spec == null || (spec.handler == null && spec.next == null)) {
+                    throw new IllegalStateException("Шаг " + step + " не объявлен или не завершен");
+                }
+                prompts[step.ordinal()] = spec.prompt;
+            }
+            for (S step : constants) {
+                handlers[step.ordinal()] = compile(specs[step.ordinal()], prompts);
+            }
+            return new Flow<>(this, handlers, prompts);
+        }
+
+        @SuppressWarnings("unchecked")
+        private StepHandler<S, C> compile(StepSpec<S, C> spec, String[] prompts) {
+            StepHandler<S, C> then = spec.handler;
+            if (then == null) {
+                S next = spec.next;
+                String reply = join(spec.accepted, prompts[next.ordinal()]);
+                then = (chatId, context, input) -> Transition.to(next, reply);
+            }
+            if (spec.validators.isEmpty() && spec.store == null) {
+                return then;
+            }
+
+            Predicate<String>[] validators = spec.validators.toArray(new Predicate[0]);
+            String[] errors = spec.errors.toArray(new String[0]);
+            BiConsumer<C, String> store = spec.store;
+            StepHandler<S, C> handler = then;
+            return (chatId, context, input) -> {
+                for (int i = 0; i < validators.length; i++) {
+                    if (!validators[i].test(input)) {
+                        return Transition.stay(errors[i]);
+                    }
+                }
+                if (store != null) {
+                    store.accept(context, input);
+                }
+                return handler.handle(chatId, context, input);
+            };
+        }
+    }
+
+    public static final class StepBuilder<S extends Enum<S>, C> {
+        private final Builder<S, C> owner;
+        private final StepSpec<S, C> spec;
+
+        private StepBuilder(Builder<S, C> owner, StepSpec<S, C> spec) {
+            this.owner = owner;
+            this.spec = spec;
+        }
+
+        // Проверка ввода; при неудаче шаг повторяется с ответом errorReply
+        public StepBuilder<S, C> accept(Predicate<String> validator, String errorReply) {
+            spec.validators.add(validator);
+            spec.errors.add(errorReply);
+            return this;
+        }
+
+        // Сохранение проверенного ввода в данные диалога
+        public StepBuilder<S, C> store(BiConsumer<C, String> store) {
+            spec.store = store;
+            return this;
+        }
+
+        // Переход к следующему шагу с его подсказкой
+        public Builder<S, C> next(S next) {
+            return next(next, null);
+        }
+
+        // Переход с подтверждением ввода: "accepted\n\nподсказка следующего шага"
+        public Builder<S, C> next(S next, String accepted) {
+            spec.next = next;
+            spec.accepted = accepted;
+            return owner;
+        }
+
+        // Свой обработчик (выполняется после проверок и сохранения)
+        public Builder<S, C> handle(StepHandler<S, C> handler) {
+            spec.handler = handler;
+            return owner;
+        }
+    }
+
+    private static final class StepSpec<S extends Enum<S>, C> {
+        private final String prompt;
+        private final List<Predicate<String>> validators = new ArrayList<>();
+        private final List<String> errors = new ArrayList<>();
+        private BiConsumer<C, String> store;
+        private S next;
+        private String accepted;
+        private StepHandler<S, C> handler;
+
+        StepSpec(String prompt) {
+            this.prompt = prompt;
+        }
+    }
+}
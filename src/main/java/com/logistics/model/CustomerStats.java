@@ -0,0 +1,41 @@
+package com.logistics.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+// Накопительная статистика клиента: обновляется при создании заказов и смене статусов,
+// поэтому профиль читает одну строку вместо агрегатов по orders
+@Getter
+@Setter
+@Entity
+@Table(name = "customer_stats")
+public class CustomerStats {
+
+    @Id
+    @Column(name = "customer_id")
+    private Integer customerId;
+
+    @Column(name = "orders_total", columnDefinition = "bigint default 0 not null")
+    private Long ordersTotal;
+
+    @Column(name = "total_weight_kg", columnDefinition = "bigint default 0 not null")
+    private Long totalWeightKg;
+
+    @Column(name = "last_order_at")
+    private LocalDateTime lastOrderAt;
+
+    // Количество заказов по статусам: {"создан": 2, "доставлен": 5}
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "status_counts", columnDefinition = "jsonb default '{}'::jsonb not null")
+    private Map<String, Long> statusCounts;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public CustomerStats() {}
+}
@@ -7,7 +7,12 @@ import java.time.LocalDateTime;
 @Getter
 @Setter
 @Entity
-@Table(name = "orders")
+@Table(name = "orders",
+        indexes = {
+                @Index(name = "ix_orders_status_changed_at", columnList = "status, status_changed_at"),
+                @Index(name = "ix_orders_sla_deadline", columnList = "sla_deadline"),
+                @Index(name = "ix_orders_customer_created", columnList = "customer_id, creation_date, order_id")
+        })
 public class Order {
 
     @Id
@@ -23,9 +28,26 @@ public class Order {
     @Column(name = "status")
     private String status;
 
+    // Момент последней смены статуса: по нему считается время в статусе
+    @Column(name = "status_changed_at")
+    private LocalDateTime statusChangedAt;
+
+    // Крайний срок нахождения в текущем статусе (SlaPolicy); null - статус без SLA
+    @Column(name = "sla_deadline")
+    private LocalDateTime slaDeadline;
+
     @Column(name = "delivery_address", columnDefinition = "TEXT")
     private String deliveryAddress;
 
+    // Номер записи журнала (PendingOrderJournal), из которой оформлен заказ; уникален (ux_orders_journal_id)
+    @Column(name = "journal_id", length = 36)
+    private String journalId;
+
+    // Оптимистическая блокировка изменений статуса
+    @Version
+    @Column(name = "version", columnDefinition = "bigint default 0 not null")
+    private Long version;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "customer_id")
     private Customer customer;
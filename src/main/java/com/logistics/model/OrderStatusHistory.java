@@ -0,0 +1,33 @@
+package com.logistics.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+// Журнал изменений статуса заказа: строки только добавляются
+@Getter
+@Setter
+@Entity
+@Table(name = "order_status_history",
+        indexes = @Index(name = "ix_order_status_history_order", columnList = "order_id, changed_at"))
+public class OrderStatusHistory {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "history_id")
+    private Long id;
+
+    @Column(name = "order_id", nullable = false)
+    private Integer orderId;
+
+    @Column(name = "old_status")
+    private String oldStatus;
+
+    @Column(name = "new_status")
+    private String newStatus;
+
+    @Column(name = "changed_at", nullable = false)
+    private LocalDateTime changedAt;
+
+    public OrderStatusHistory() {}
+}
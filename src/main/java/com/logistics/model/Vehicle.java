@@ -1,5 +1,6 @@
 package com.logistics.model;
 
+import com.logistics.component.VehicleCache;
 import jakarta.persistence.*;
 import lombok.*;
 import java.util.List;
@@ -8,6 +9,7 @@ import java.util.List;
 @Setter
 @Entity
 @Table(name = "vehicle")
+@EntityListeners(VehicleCache.Listener.class)
 public class Vehicle {
 
     @Id
@@ -26,6 +28,10 @@ public class Vehicle {
     @Column(name = "status")
     private String status;
 
+    @Version
+    @Column(name = "version", columnDefinition = "bigint default 0 not null")
+    private Long version;
+
     // Связь один-ко-многим с заказами
     @OneToMany(mappedBy = "vehicle", fetch = FetchType.LAZY)
     private List<Order> orders;
@@ -1,13 +1,19 @@
 package com.logistics.repositories;
 
+import com.logistics.DTO.CustomerDTOs.CustomerRowDTO;
 import com.logistics.model.Customer;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface CustomerRepository extends JpaRepository<Customer, Integer> {
@@ -18,9 +24,6 @@ public interface CustomerRepository extends JpaRepository<Customer, Integer> {
 
     List<Customer> findByPhone(String phone);
 
-    @Query("SELECT MAX(c.customerId) FROM Customer c")
-    Integer findMaxCustomerId();
-
     @Query("SELECT c FROM Customer c WHERE " +
             "LOWER(c.fullName) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
             "LOWER(c.email) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
@@ -32,4 +35,36 @@ public interface CustomerRepository extends JpaRepository<Customer, Integer> {
                                               @Param("password") String password);
 
     boolean existsByEmail(String email);
+
+    // Создание пользователя за один запрос: при занятом email (без учета регистра) вставка
+    // пропускается уникальным индексом ux_customer_email_lower и метод возвращает null.
+    // Номер выдает последовательность customer_customer_id_seq (schema-postgresql.sql)
+    @Transactional
+    @Query(value = "INSERT INTO customer (customer_id, full_name, phone, address, email, password_hash) " +
+            "VALUES (nextval('customer_customer_id_seq'), :fullName, :phone, :address, :email, :passwordHash) " +
+            "ON CONFLICT ((LOWER(email))) DO NOTHING " +
+            "RETURNING customer_id", nativeQuery = true)
+    Integer insertIfEmailFree(@Param("fullName") String fullName,
+                              @Param("phone") String phone,
+                              @Param("address") String address,
+                              @Param("email") String email,
+                              @Param("passwordHash") String passwordHash);
+
+    // Потоковое чтение клиентов с ID больше указанного (для индекса поиска). Вызывать внутри транзакции
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT new com.logistics.DTO.CustomerDTOs.CustomerRowDTO(c.customerId, c.fullName, c.email, c.phone) " +
+            "FROM Customer c WHERE c.customerId > :afterId ORDER BY c.customerId")
+    Stream<CustomerRowDTO> streamCustomerRowsAfter(@Param("afterId") Integer afterId);
+
+    // Потоковое чтение клиентов с ID строго между границами (клиенты одного импорта). Вызывать внутри транзакции
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT new com.logistics.DTO.CustomerDTOs.CustomerRowDTO(c.customerId, c.fullName, c.email, c.phone) " +
+            "FROM Customer c WHERE c.customerId > :fromId AND c.customerId < :toId ORDER BY c.customerId")
+    Stream<CustomerRowDTO> streamCustomerRowsBetween(@Param("fromId") Integer fromId, @Param("toId") Integer toId);
 }
@@ -0,0 +1,83 @@
+package com.logistics.repositories;
+
+import com.logistics.model.CustomerStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface CustomerStatsRepository extends JpaRepository<CustomerStats, Integer> {
+
+    // Новые заказы клиента одним upsert: строка создается при первом заказе, дальше только прибавляется
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO customer_stats (customer_id, orders_total, total_weight_kg, last_order_at, status_counts, updated_at) " +
+            "VALUES (:customerId, :count, :weightKg, :orderedAt, jsonb_build_object(CAST(:status AS text), :count), LOCALTIMESTAMP) " +
+            "ON CONFLICT (customer_id) DO UPDATE SET " +
+            "orders_total = customer_stats.orders_total + EXCLUDED.orders_total, " +
+            "total_weight_kg = customer_stats.total_weight_kg + EXCLUDED.total_weight_kg, " +
+            "last_order_at = GREATEST(customer_stats.last_order_at, EXCLUDED.last_order_at), " +
+            "status_counts = jsonb_set(customer_stats.status_counts, ARRAY[CAST(:status AS text)], " +
+            "  to_jsonb(COALESCE(CAST(customer_stats.status_counts ->> CAST(:status AS text) AS bigint), 0) + :count)), " +
+            "updated_at = LOCALTIMESTAMP", nativeQuery = true)
+    int addOrders(@Param("customerId") Integer customerId,
+                  @Param("count") long count,
+                  @Param("weightKg") long weightKg,
+                  @Param("orderedAt") LocalDateTime orderedAt,
+                  @Param("status") String status);
+
+    // Смена статусов у нескольких клиентов одним запросом. deltas - JSON вида {"12": {"создан": -2, "доставлен": 2}}:
+    // приращения складываются с текущими счетчиками, нулевые статусы удаляются. Клиенту без строки статистики
+    // она собирается по его заказам (уже с новыми статусами), приращения к ней не применяются:
+    // UPDATE не видит строк, вставленных в том же запросе
+    @Modifying
+    @Transactional
+    @Query(value = "WITH c AS (SELECT CAST(key AS integer) AS customer_id, value AS delta " +
+            "           FROM jsonb_each(CAST(:deltas AS jsonb))), " +
+            "missing AS (INSERT INTO customer_stats (customer_id, orders_total, total_weight_kg, last_order_at, status_counts, updated_at) " +
+            "  SELECT g.customer_id, SUM(g.cnt), SUM(g.kg), MAX(g.last_at), jsonb_object_agg(g.status, g.cnt), LOCALTIMESTAMP " +
+            "  FROM (SELECT o.customer_id, COALESCE(o.status, 'без статуса') AS status, COUNT(*) AS cnt, " +
+            "               COALESCE(SUM(o.total_weight), 0) AS kg, MAX(o.creation_date) AS last_at " +
+            "        FROM orders o JOIN c ON c.customer_id = o.customer_id " +
+            "        WHERE NOT EXISTS (SELECT 1 FROM customer_stats e WHERE e.customer_id = o.customer_id) " +
+            "        GROUP BY o.customer_id, COALESCE(o.status, 'без статуса')) g " +
+            "  GROUP BY g.customer_id " +
+            "  ON CONFLICT (customer_id) DO NOTHING) " +
+            "UPDATE customer_stats s SET status_counts = (" +
+            "  SELECT COALESCE(jsonb_object_agg(u.key, u.total) FILTER (WHERE u.total <> 0), CAST('{}' AS jsonb)) FROM (" +
+            "    SELECT e.key, SUM(CAST(e.value AS bigint)) AS total FROM (" +
+            "      SELECT key, value FROM jsonb_each_text(s.status_counts) " +
+            "      UNION ALL SELECT key, value FROM jsonb_each_text(c.delta)) e " +
+            "    GROUP BY e.key) u), " +
+            "updated_at = LOCALTIMESTAMP " +
+            "FROM c WHERE s.customer_id = c.customer_id", nativeQuery = true)
+    int applyStatusDeltas(@Param("deltas") String deltasJson);
+
+    // Пересборка по таблице orders (исправляет расхождения после сбоев или изменений в обход приложения).
+    // Выполняется в одной транзакции с clearAll, параллельные обновления ждут блокировку таблицы
+    @Modifying
+    @Query(value = "LOCK TABLE customer_stats IN EXCLUSIVE MODE", nativeQuery = true)
+    void lockForRebuild();
+
+    @Modifying
+    @Query(value = "DELETE FROM customer_stats", nativeQuery = true)
+    int clearAll();
+
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM customer_stats)", nativeQuery = true)
+    boolean hasAnyStats();
+
+    @Modifying
+    @Query(value = "INSERT INTO customer_stats (customer_id, orders_total, total_weight_kg, last_order_at, status_counts, updated_at) " +
+            "SELECT g.customer_id, SUM(g.cnt), SUM(g.kg), MAX(g.last_at), jsonb_object_agg(g.status, g.cnt), LOCALTIMESTAMP " +
+            "FROM (SELECT customer_id, COALESCE(status, 'без статуса') AS status, COUNT(*) AS cnt, " +
+            "             COALESCE(SUM(total_weight), 0) AS kg, MAX(creation_date) AS last_at " +
+            "      FROM orders WHERE customer_id IS NOT NULL " +
+            "      GROUP BY customer_id, COALESCE(status, 'без статуса')) g " +
+            "GROUP BY g.customer_id", nativeQuery = true)
+    int insertFromOrders();
+}
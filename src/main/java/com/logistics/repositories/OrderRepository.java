@@ -1,13 +1,26 @@
 package com.logistics.repositories;
 
+import com.logistics.DTO.OrderDTOs.OrderDeadlineRow;
+import com.logistics.DTO.OrderDTOs.OrderRowDTO;
+import com.logistics.DTO.OrderDTOs.OrderSearchRow;
+import com.logistics.DTO.OrderDTOs.OrderStatusChangeRow;
 import com.logistics.model.Order;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Integer> {
@@ -34,10 +47,25 @@ public interface OrderRepository extends JpaRepository<Order, Integer> {
     @Query("SELECT o FROM Order o WHERE o.deliveryAddress LIKE %:address%")
     List<Order> findByDeliveryAddressContaining(@Param("address") String address);
 
+    // Поиск по адресу для администратора: подстрока обслуживается GIN-индексом
+    // ix_orders_delivery_address_trgm (pg_trgm), результаты ранжируются по сходству с запросом
+    @Query(value = "SELECT o.order_id AS id, o.delivery_address AS deliveryAddress, o.total_weight AS totalWeight, " +
+            "o.status AS status, o.customer_id AS customerId, similarity(o.delivery_address, :query) AS score " +
+            "FROM orders o WHERE o.delivery_address ILIKE CONCAT('%', :pattern, '%') " +
+            "ORDER BY score DESC, o.order_id DESC LIMIT :limit OFFSET :offset", nativeQuery = true)
+    List<OrderSearchRow> searchByDeliveryAddress(@Param("query") String query,
+                                                 @Param("pattern") String escapedPattern,
+                                                 @Param("limit") int limit,
+                                                 @Param("offset") int offset);
+
     // Кастомный запрос: подсчитать количество заказов по статусу для пользователя
     @Query("SELECT COUNT(o) FROM Order o WHERE o.customer.customerId = :customerId AND o.status = :status")
     Long countByCustomerIdAndStatus(@Param("customerId") Integer customerId, @Param("status") String status);
 
+    // Количество заказов по клиентам и статусам (сверка счетчиков StatusCounters)
+    @Query("SELECT c.customerId, o.status, COUNT(o) FROM Order o LEFT JOIN o.customer c GROUP BY c.customerId, o.status")
+    List<Object[]> countOrdersByCustomerAndStatus();
+
     // Кастомный запрос: найти заказы с сортировкой по дате создания (новые сначала)
     @Query("SELECT o FROM Order o WHERE o.customer.customerId = :customerId ORDER BY o.createTime DESC")
     List<Order> findByCustomerIdOrderByCreateTimeDesc(@Param("customerId") Integer customerId);
@@ -49,7 +77,142 @@ public interface OrderRepository extends JpaRepository<Order, Integer> {
     // Проверить существование заказа по ID и customer_id (для проверки прав доступа)
     boolean existsByIdAndCustomerCustomerId(Integer orderId, Integer customerId);
 
-    // Найти максимальный order_id
-    @Query("SELECT MAX(o.id) FROM Order o")
-    Integer findMaxOrderId();
+    // Смена статуса одним запросом без загрузки сущности: выполняется, только если версия не изменилась.
+    // Старый статус берется из подзапроса; пустой результат означает конфликт версий или отсутствие заказа
+    // Запись в order_status_history добавляется тем же выражением (одна транзакция).
+    // slaMinutes - порог нового статуса по SlaPolicy; null дает пустой срок (статус без SLA).
+    // changedAt - время приложения, а не LOCALTIMESTAMP базы: сроки SLA и «зависшие» заказы сравниваются с часами JVM
+    @Transactional
+    @Query(value = "WITH changed AS (" +
+            "  UPDATE orders o SET status = :status, version = o.version + 1, status_changed_at = :changedAt, " +
+            "      sla_deadline = :changedAt + make_interval(mins => :slaMinutes) " +
+            "  FROM (SELECT order_id, status AS old_status FROM orders WHERE order_id = :orderId AND version = :version) prev " +
+            "  WHERE o.order_id = prev.order_id AND o.version = :version " +
+            "  RETURNING o.order_id, prev.old_status, o.customer_id, o.status_changed_at), " +
+            "history AS (" +
+            "  INSERT INTO order_status_history (order_id, old_status, new_status, changed_at) " +
+            "  SELECT order_id, old_status, :status, status_changed_at FROM changed) " +
+            "SELECT order_id AS id, old_status AS oldStatus, customer_id AS customerId FROM changed", nativeQuery = true)
+    List<OrderStatusChangeRow> updateStatusIfVersion(@Param("orderId") Integer orderId,
+                                                     @Param("version") Long version,
+                                                     @Param("status") String status,
+                                                     @Param("slaMinutes") Integer slaMinutes,
+                                                     @Param("changedAt") LocalDateTime changedAt);
+
+    // Массовая смена статуса одним запросом. Пропускаются заказы, уже имеющие этот статус,
+    // и заказы, измененные параллельно (версия успела измениться). История пишется одним INSERT ... SELECT
+    @Transactional
+    @Query(value = "WITH changed AS (" +
+            "  UPDATE orders o SET status = :status, version = o.version + 1, status_changed_at = :changedAt, " +
+            "      sla_deadline = :changedAt + make_interval(mins => :slaMinutes) " +
+            "  FROM (SELECT order_id, status AS old_status, version FROM orders " +
+            "        WHERE order_id IN (:orderIds) AND status IS DISTINCT FROM :status) prev " +
+            "  WHERE o.order_id = prev.order_id AND o.version = prev.version " +
+            "  RETURNING o.order_id, prev.old_status, o.customer_id, o.status_changed_at), " +
+            "history AS (" +
+            "  INSERT INTO order_status_history (order_id, old_status, new_status, changed_at) " +
+            "  SELECT order_id, old_status, :status, status_changed_at FROM changed) " +
+            "SELECT order_id AS id, old_status AS oldStatus, customer_id AS customerId FROM changed", nativeQuery = true)
+    List<OrderStatusChangeRow> bulkUpdateStatus(@Param("orderIds") Collection<Integer> orderIds,
+                                                @Param("status") String status,
+                                                @Param("slaMinutes") Integer slaMinutes,
+                                                @Param("changedAt") LocalDateTime changedAt);
+
+    // Пересчет сроков SLA по текущим порогам (при запуске: заполнение старых заказов и смена порогов).
+    // Обновляются только строки, у которых срок отличается
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE orders SET sla_deadline = status_changed_at + make_interval(mins => :minutes) " +
+            "WHERE status = :status " +
+            "AND sla_deadline IS DISTINCT FROM status_changed_at + make_interval(mins => :minutes)", nativeQuery = true)
+    int applySlaThreshold(@Param("status") String status, @Param("minutes") int minutes);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE orders SET sla_deadline = NULL WHERE sla_deadline IS NOT NULL " +
+            "AND (status IS NULL OR status NOT IN (:statuses))", nativeQuery = true)
+    int clearSlaDeadlinesExcept(@Param("statuses") Collection<String> statuses);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE orders SET sla_deadline = NULL WHERE sla_deadline IS NOT NULL", nativeQuery = true)
+    int clearAllSlaDeadlines();
+
+    // Следующий номер заказа из последовательности (schema-postgresql.sql): без гонки параллельных вставок
+    @Query(value = "SELECT nextval('orders_order_id_seq')", nativeQuery = true)
+    Long nextOrderId();
+
+    // Номера для порции заказов одним запросом
+    @Query(value = "SELECT nextval('orders_order_id_seq') FROM generate_series(1, :count)", nativeQuery = true)
+    List<Long> nextOrderIds(@Param("count") int count);
+
+    // Заказ, уже оформленный из записи журнала
+    Optional<Order> findByJournalId(String journalId);
+
+    // Список заказов для администратора: один запрос, только отображаемые поля
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("SELECT new com.logistics.DTO.OrderDTOs.OrderRowDTO(o.id, o.deliveryAddress, o.totalWeight, o.status, " +
+            "c.customerId, v.vehicleId, o.createTime, o.statusChangedAt) " +
+            "FROM Order o LEFT JOIN o.customer c LEFT JOIN o.vehicle v ORDER BY o.id")
+    List<OrderRowDTO> findAllOrderRows();
+
+    // Страницы «Мои заказы» по ключу (дата создания, ID) от новых к старым: первая страница
+    // и следующая после последнего показанного заказа, без OFFSET
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("SELECT new com.logistics.DTO.OrderDTOs.OrderRowDTO(o.id, o.deliveryAddress, o.totalWeight, o.status, " +
+            "o.customer.customerId, v.vehicleId, o.createTime, o.statusChangedAt) " +
+            "FROM Order o LEFT JOIN o.vehicle v WHERE o.customer.customerId = :customerId " +
+            "ORDER BY o.createTime DESC, o.id DESC")
+    List<OrderRowDTO> findCustomerOrderRows(@Param("customerId") Integer customerId, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("SELECT new com.logistics.DTO.OrderDTOs.OrderRowDTO(o.id, o.deliveryAddress, o.totalWeight, o.status, " +
+            "o.customer.customerId, v.vehicleId, o.createTime, o.statusChangedAt) " +
+            "FROM Order o LEFT JOIN o.vehicle v WHERE o.customer.customerId = :customerId " +
+            "AND (o.createTime < :createTime OR (o.createTime = :createTime AND o.id < :orderId)) " +
+            "ORDER BY o.createTime DESC, o.id DESC")
+    List<OrderRowDTO> findCustomerOrderRowsBefore(@Param("customerId") Integer customerId,
+                                                  @Param("createTime") LocalDateTime createTime,
+                                                  @Param("orderId") Integer orderId,
+                                                  Pageable pageable);
+
+    // Заказы, находящиеся в статусе дольше указанного момента (обслуживается индексом ix_orders_status_changed_at)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("SELECT new com.logistics.DTO.OrderDTOs.OrderRowDTO(o.id, o.deliveryAddress, o.totalWeight, o.status, " +
+            "c.customerId, v.vehicleId, o.createTime, o.statusChangedAt) " +
+            "FROM Order o LEFT JOIN o.customer c LEFT JOIN o.vehicle v " +
+            "WHERE o.status = :status AND o.statusChangedAt < :before ORDER BY o.statusChangedAt")
+    List<OrderRowDTO> findStuckOrders(@Param("status") String status,
+                                      @Param("before") LocalDateTime before,
+                                      Pageable pageable);
+
+    // Следующая порция сроков SLA после позиции (afterDeadline, afterId) до момента until включительно.
+    // Диапазон по ix_orders_sla_deadline: читаются только новые строки, без сканирования таблицы
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("SELECT o.id AS id, o.status AS status, o.slaDeadline AS slaDeadline FROM Order o " +
+            "WHERE o.slaDeadline <= :until AND (o.slaDeadline > :afterDeadline " +
+            "OR (o.slaDeadline = :afterDeadline AND o.id > :afterId)) " +
+            "ORDER BY o.slaDeadline, o.id")
+    List<OrderDeadlineRow> findSlaDeadlinesAfter(@Param("afterDeadline") LocalDateTime afterDeadline,
+                                                 @Param("afterId") Integer afterId,
+                                                 @Param("until") LocalDateTime until,
+                                                 Pageable pageable);
+
+    // Какие из заказов все еще просрочены (статус мог смениться в обход приложения)
+    @Query("SELECT o.id FROM Order o WHERE o.id IN :orderIds AND o.slaDeadline <= :now")
+    List<Integer> findOverdueIds(@Param("orderIds") Collection<Integer> orderIds, @Param("now") LocalDateTime now);
+
+    // Количество просроченных заказов (диапазон по ix_orders_sla_deadline)
+    long countBySlaDeadlineLessThanEqual(LocalDateTime now);
+
+    // Потоковая выгрузка всех заказов: курсор на стороне сервера порциями по 500 строк,
+    // сущности не создаются. Вызывать только внутри транзакции
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT new com.logistics.DTO.OrderDTOs.OrderRowDTO(o.id, o.deliveryAddress, o.totalWeight, o.status, " +
+            "c.customerId, v.vehicleId, o.createTime, o.statusChangedAt) " +
+            "FROM Order o LEFT JOIN o.customer c LEFT JOIN o.vehicle v ORDER BY o.id")
+    Stream<OrderRowDTO> streamAllOrderRows();
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package com.logistics.repositories;
+
+import com.logistics.model.OrderStatusHistory;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OrderStatusHistoryRepository extends JpaRepository<OrderStatusHistory, Long> {
+
+    // История заказа в порядке изменений
+    List<OrderStatusHistory> findByOrderIdOrderByChangedAtAsc(Integer orderId);
+
+    // Запись изменения без создания сущности; вызывается в транзакции самого изменения
+    @Modifying
+    @Query(value = "INSERT INTO order_status_history (order_id, old_status, new_status, changed_at) " +
+            "VALUES (:orderId, :oldStatus, :newStatus, :changedAt)", nativeQuery = true)
+    int insertChange(@Param("orderId") Integer orderId,
+                     @Param("oldStatus") String oldStatus,
+                     @Param("newStatus") String newStatus,
+                     @Param("changedAt") LocalDateTime changedAt);
+}
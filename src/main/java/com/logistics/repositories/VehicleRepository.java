@@ -1,10 +1,16 @@
 package com.logistics.repositories;
 
+import com.logistics.DTO.VehicleDTOs.VehicleRowDTO;
 import com.logistics.model.Vehicle;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -45,4 +51,29 @@ public interface VehicleRepository extends JpaRepository<Vehicle, Integer> {
 
     // Найти все транспортные средства с сортировкой по грузоподъемности
     List<Vehicle> findAllByOrderByCapacityTonDesc();
+
+    // Смена статуса одним запросом без загрузки сущности: выполняется, только если версия не изменилась.
+    // Возвращает прежний статус; null означает конфликт версий или отсутствие транспорта
+    @Transactional
+    @Query(value = "UPDATE vehicle v SET status = :status, version = v.version + 1 " +
+            "FROM (SELECT vehicle_id, status AS old_status FROM vehicle WHERE vehicle_id = :vehicleId AND version = :version) prev " +
+            "WHERE v.vehicle_id = prev.vehicle_id AND v.version = :version " +
+            "RETURNING prev.old_status", nativeQuery = true)
+    String updateStatusIfVersion(@Param("vehicleId") Integer vehicleId,
+                                 @Param("version") Long version,
+                                 @Param("status") String status);
+
+    // Транспорт занимается под новый заказ, только если он все еще свободен.
+    // 0 - его успели занять или отправить в ремонт, заказ создается без транспорта
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE vehicle SET status = 'занят', version = version + 1 " +
+            "WHERE vehicle_id = :vehicleId AND status = 'свободен'", nativeQuery = true)
+    int claimIfFree(@Param("vehicleId") Integer vehicleId);
+
+    // Список транспорта для администратора: один запрос, только отображаемые поля
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("SELECT new com.logistics.DTO.VehicleDTOs.VehicleRowDTO(v.vehicleId, v.model, v.licensePlate, " +
+            "v.capacityTon, v.status) FROM Vehicle v ORDER BY v.vehicleId")
+    List<VehicleRowDTO> findAllVehicleRows();
 }
\ No newline at end of file
@@ -1,21 +1,50 @@
 package com.logistics.service;
 
+import com.logistics.DTO.CustomerDTOs.CustomerRowDTO;
+import com.logistics.DTO.OrderDTOs.OrderRowDTO;
+import com.logistics.DTO.OrderDTOs.OrderSearchRow;
+import com.logistics.DTO.OrderDTOs.OrderStatusChangeRow;
+import com.logistics.DTO.VehicleDTOs.VehicleRowDTO;
+import com.logistics.component.CustomerSearchIndex;
+import com.logistics.component.DatabaseCircuitBreaker;
+import com.logistics.component.IdRangeParser;
+import com.logistics.component.OrderPageCache;
+import com.logistics.component.SlaPolicy;
+import com.logistics.component.StatusCounters;
+import com.logistics.component.VehicleCache;
+import com.logistics.event.OrderStatusChangedEvent;
+import com.logistics.flow.Flow;
+import com.logistics.flow.Flow.Transition;
 import com.logistics.model.Admin;
 import com.logistics.model.Order;
 import com.logistics.model.Vehicle;
 import com.logistics.repositories.AdminRepository;
 import com.logistics.repositories.OrderRepository;
 import com.logistics.repositories.VehicleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 @Service
 public class AdminService {
 
+    private static final Logger log = LoggerFactory.getLogger(AdminService.class);
+
+    public static final int SEARCH_PAGE_SIZE = 10;
+    public static final int CUSTOMER_SEARCH_LIMIT = 20;
+    public static final int STUCK_ORDERS_LIMIT = 50;
+
     @Autowired
     private AdminRepository adminRepository;
 
@@ -25,8 +54,49 @@ public class AdminService {
     @Autowired
     private VehicleRepository vehicleRepository;
 
-    private final Map<Long, Boolean> adminSessions = new HashMap<>();
-    private final Map<Long, String> adminLoginProcess = new HashMap<>();
+    @Autowired
+    private CustomerSearchIndex customerSearchIndex;
+
+    @Autowired
+    private StatusCounters statusCounters;
+
+    @Autowired
+    private VehicleCache vehicleCache;
+
+    @Autowired
+    private OrderPageCache orderPageCache;
+
+    @Autowired
+    private IdRangeParser idRangeParser;
+
+    @Autowired
+    private SlaPolicy slaPolicy;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Допустимые статусы: с ними сверяется статус, введенный администратором текстом
+    @Value("${orders.statuses:создан,в пути,доставлен,отменен}")
+    private List<String> orderStatuses;
+
+    @Value("${vehicles.statuses:свободен,занят,на ремонте}")
+    private List<String> vehicleStatuses;
+
+    private final LongAdder statusListenerFailures = new LongAdder();
+    private final LongAdder statusUpdateFailures = new LongAdder();
+
+    // Читается также потоком SlaWatchdogService при рассылке сводки
+    private final Map<Long, Boolean> adminSessions = new ConcurrentHashMap<>();
+    // Диалог входа администратора: ID -> пароль
+    private final Flow<AdminLoginStep, AdminLogin> adminLoginFlow = Flow.builder(AdminLoginStep.class, AdminLogin::new)
+            .cancelOn("❌ Отмена", "❌ Вход администратора отменен.")
+            .onCancel(adminSessions::remove)
+            .onError("❌ Ошибка процесса входа. Попробуйте снова: /admin")
+            .step(AdminLoginStep.AWAITING_ADMIN_ID)
+                .handle(this::processAdminIdStep)
+            .step(AdminLoginStep.AWAITING_ADMIN_PASSWORD)
+                .handle(this::processAdminPasswordStep)
+            .build();
 
     public boolean authenticateAdmin(Integer adminId, String password) {
         return adminRepository.findByAdminIdAndPassword(adminId, password).isPresent();
@@ -38,15 +108,15 @@ public class AdminService {
     }
 
     public void startAdminLogin(Long chatId) {
-        adminLoginProcess.put(chatId, "AWAITING_ADMIN_ID");
+        adminLoginFlow.startAt(chatId, AdminLoginStep.AWAITING_ADMIN_ID);
     }
 
     public boolean isAdminInLoginProcess(Long chatId) {
-        return adminLoginProcess.containsKey(chatId);
+        return adminLoginFlow.isActive(chatId);
     }
 
     public void cancelAdminLogin(Long chatId) {
-        adminLoginProcess.remove(chatId);
+        adminLoginFlow.cancel(chatId);
         adminSessions.remove(chatId);
     }
 
@@ -54,110 +124,318 @@ public class AdminService {
         return adminSessions.getOrDefault(chatId, false);
     }
 
+    // Чаты администраторов, выполнивших вход
+    public List<Long> getAuthenticatedAdminChats() {
+        List<Long> chats = new ArrayList<>();
+        adminSessions.forEach((chatId, authenticated) -> {
+            if (authenticated) {
+                chats.add(chatId);
+            }
+        });
+        return chats;
+    }
+
     public void logoutAdmin(Long chatId) {
         adminSessions.remove(chatId);
-        adminLoginProcess.remove(chatId);
+        adminLoginFlow.cancel(chatId);
     }
 
     public String processAdminLoginInput(Long chatId, String input) {
-        String currentStep = adminLoginProcess.get(chatId);
+        Flow.Reply reply = adminLoginFlow.process(chatId, input);
 
-        if (currentStep == null) {
+        if (reply == null) {
             return "❌ Ошибка процесса входа. Попробуйте снова.";
         }
+        return reply.getText();
+    }
 
-        // Проверяем, начинается ли состояние с "AWAITING_ADMIN_ID"
-        if (currentStep.equals("AWAITING_ADMIN_ID")) {
-            try {
-                Integer adminId = Integer.parseInt(input);
-
-                // Проверяем существование администратора по ID
-                if (adminExists(adminId)) {
-                    adminLoginProcess.put(chatId, "AWAITING_ADMIN_PASSWORD:" + adminId);
-                    return "🔐 Вход для администратора\n\nАдминистратор с ID " + adminId + " найден.\n\nВведите пароль:";
-                } else {
-                    cancelAdminLogin(chatId);
-                    return "❌ Администратор с ID " + adminId + " не найден.\n\nПопробуйте снова: /admin";
-                }
+    private Transition<AdminLoginStep> processAdminIdStep(Long chatId, AdminLogin login, String input) {
+        try {
+            Integer adminId = Integer.parseInt(input);
 
-            } catch (NumberFormatException e) {
-                cancelAdminLogin(chatId);
-                return "❌ Неверный формат ID. ID должен быть числом.\n\nПопробуйте снова: /admin";
+            // Проверяем существование администратора по ID
+            if (adminExists(adminId)) {
+                login.adminId = adminId;
+                return Transition.to(AdminLoginStep.AWAITING_ADMIN_PASSWORD,
+                        "🔐 Вход для администратора\n\nАдминистратор с ID " + adminId + " найден.\n\nВведите пароль:");
+            } else {
+                adminSessions.remove(chatId);
+                return Transition.finish("❌ Администратор с ID " + adminId + " не найден.\n\nПопробуйте снова: /admin");
             }
+
+        } catch (NumberFormatException e) {
+            adminSessions.remove(chatId);
+            return Transition.finish("❌ Неверный формат ID. ID должен быть числом.\n\nПопробуйте снова: /admin");
         }
-        // Проверяем, начинается ли состояние с "AWAITING_ADMIN_PASSWORD"
-        else if (currentStep.startsWith("AWAITING_ADMIN_PASSWORD:")) {
-            try {
-                Integer adminId = extractIdFromState(currentStep);
-                if (adminId != null && authenticateAdmin(adminId, input)) {
-                    adminSessions.put(chatId, true);
-                    adminLoginProcess.remove(chatId);
-                    return "✅ Успешный вход как администратор!\n\nДоступные команды:\n" +
-                            "• 📋 Все заказы - просмотр всех заказов\n" +
-                            "• 🚗 Весь транспорт - просмотр всего транспорта\n" +
-                            "• ✏️ Изменить статус заказа - изменить статус заказа\n" +
-                            "• 🔄 Изменить статус транспорта - изменить статус транспорта\n" +
-                            "• 🚪 Выход - выход из режима администратора";
-                } else {
-                    cancelAdminLogin(chatId);
-                    return "❌ Неверный пароль. Доступ запрещен.\n\nПопробуйте снова: /admin";
-                }
-            } catch (Exception e) {
-                cancelAdminLogin(chatId);
-                return "❌ Ошибка процесса входа. Попробуйте снова: /admin";
-            }
+    }
+
+    private Transition<AdminLoginStep> processAdminPasswordStep(Long chatId, AdminLogin login, String input) {
+        if (login.adminId != null && authenticateAdmin(login.adminId, input)) {
+            adminSessions.put(chatId, true);
+            return Transition.finish("✅ Успешный вход как администратор!\n\nДоступные команды:\n" +
+                    "• 📋 Все заказы - просмотр всех заказов\n" +
+                    "• 🚗 Весь транспорт - просмотр всего транспорта\n" +
+                    "• ✏️ Изменить статус заказа - изменить статус заказа\n" +
+                    "• 🔄 Изменить статус транспорта - изменить статус транспорта\n" +
+                    "• 📦 Массовая смена статуса - например: 12,15,20-80 → доставлен\n" +
+                    "• 📥 Импорт клиентов - загрузка клиентов из CSV\n" +
+                    "• 🔍 Поиск заказов - поиск заказов по адресу доставки\n" +
+                    "• 👥 Поиск клиентов - по имени, email или телефону (/admin_find_stats - память индекса)\n" +
+                    "• 📊 Сводка - количество заказов и транспорта по статусам\n" +
+                    "• ⏳ Зависшие заказы - заказы, которые слишком долго в одном статусе\n" +
+                    "• /admin_rebuild_stats - пересобрать статистику клиентов по заказам\n" +
+                    "• /admin_ingress_stats - входная очередь: ожидание, отброшенные и повторные обновления\n" +
+                    "• 📤 Экспорт заказов - выгрузка всех заказов в CSV (/admin_export_orders_gz - в gzip)\n" +
+                    "• 🚪 Выход - выход из режима администратора");
+        } else {
+            adminSessions.remove(chatId);
+            return Transition.finish("❌ Неверный пароль. Доступ запрещен.\n\nПопробуйте снова: /admin");
         }
-        else {
-            cancelAdminLogin(chatId);
-            return "❌ Ошибка процесса входа. Попробуйте снова: /admin";
+    }
+
+    public List<OrderRowDTO> getAllOrders() {
+        return orderRepository.findAllOrderRows();
+    }
+
+    // Парк читается из кэша; при изменении через VehicleRepository кэш обновляется JPA-слушателем
+    public List<VehicleRowDTO> getAllVehicles() {
+        List<VehicleRowDTO> rows = new ArrayList<>();
+        for (Vehicle vehicle : vehicleCache.getAll()) {
+            rows.add(new VehicleRowDTO(vehicle.getVehicleId(), vehicle.getModel(), vehicle.getLicensePlate(),
+                    vehicle.getCapacityTon(), vehicle.getStatus()));
         }
+        return rows;
+    }
+
+    // Поиск заказов по адресу: запрашиваем на одну строку больше, чтобы знать, есть ли следующая страница
+    public List<OrderSearchRow> searchOrdersByAddress(String query, int page) {
+        String pattern = query.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return orderRepository.searchByDeliveryAddress(query, pattern, SEARCH_PAGE_SIZE + 1, page * SEARCH_PAGE_SIZE);
     }
 
-    private Integer extractIdFromState(String state) {
-        if (state != null && state.contains(":")) {
-            try {
-                return Integer.parseInt(state.split(":")[1]);
-            } catch (NumberFormatException e) {
-                return null;
+    // Поиск клиентов выполняется по индексу в памяти, без обращения к базе
+    public List<CustomerRowDTO> findCustomers(String query) {
+        return customerSearchIndex.search(query, CUSTOMER_SEARCH_LIMIT);
+    }
+
+    public boolean isCustomerIndexReady() {
+        return customerSearchIndex.isReady();
+    }
+
+    public CustomerSearchIndex.MemoryReport getCustomerIndexReport() {
+        return customerSearchIndex.memoryReport();
+    }
+
+    /**
+     * Изменение статуса заказа, который администратор видел в версии expectedVersion: один UPDATE
+     * без загрузки сущности. CONFLICT - заказ уже изменен (или удален), решение нужно принять заново;
+     * FAILED - ошибка запроса. Недоступность базы пробрасывается: на нее отвечает общий обработчик бота
+     */
+    public StatusUpdate updateOrderStatus(Integer orderId, Long expectedVersion, String newStatus) {
+        requireStatus(orderStatuses, newStatus);
+        List<OrderStatusChangeRow> changed;
+        try {
+            changed = orderRepository.updateStatusIfVersion(orderId, expectedVersion, newStatus,
+                    slaPolicy.thresholdMinutes(newStatus), LocalDateTime.now());
+        } catch (RuntimeException e) {
+            if (DatabaseCircuitBreaker.isUnavailable(e)) {
+                throw e;
             }
+            statusUpdateFailures.increment();
+            log.error("Не удалось изменить статус заказа {}", orderId, e);
+            return StatusUpdate.FAILED;
         }
-        return null;
+        if (changed.isEmpty()) {
+            return StatusUpdate.CONFLICT;
+        }
+        publishStatusChange(newStatus, toChanges(changed));
+        return StatusUpdate.UPDATED;
     }
 
-    public List<Order> getAllOrders() {
-        return orderRepository.findAll();
+    /**
+     * Массовая смена статуса: "12,15,20-80 → доставлен". Все заказы меняются одним UPDATE,
+     * изменения публикуются одним событием.
+     */
+    public BulkUpdateResult bulkUpdateOrderStatus(String command) {
+        String[] parts = command.split("\\s*(→|->|=>)\\s*", 2);
+        if (parts.length < 2 || parts[1].isBlank()) {
+            throw new IllegalArgumentException("Формат: 12,15,20-80 → новый статус");
+        }
+        String newStatus = requireStatus(orderStatuses, parts[1]);
+        int[] ids = idRangeParser.parse(parts[0]);
+
+        List<Integer> orderIds = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            orderIds.add(id);
+        }
+        List<OrderStatusChangeRow> changed = orderRepository.bulkUpdateStatus(orderIds, newStatus,
+                slaPolicy.thresholdMinutes(newStatus), LocalDateTime.now());
+        if (!changed.isEmpty()) {
+            publishStatusChange(newStatus, toChanges(changed));
+        }
+
+        Set<Integer> skipped = new TreeSet<>(orderIds);
+        for (OrderStatusChangeRow row : changed) {
+            skipped.remove(row.getId());
+        }
+        return new BulkUpdateResult(newStatus, ids.length, changed.size(), new ArrayList<>(skipped));
     }
 
-    public List<Vehicle> getAllVehicles() {
-        return vehicleRepository.findAll();
+    // Заказы, которые находятся в статусе дольше указанного количества часов (самые старые первыми)
+    public List<OrderRowDTO> findStuckOrders(String status, long hours) {
+        return orderRepository.findStuckOrders(status, LocalDateTime.now().minusHours(hours),
+                PageRequest.of(0, STUCK_ORDERS_LIMIT));
     }
 
-    public boolean updateOrderStatus(Integer orderId, String newStatus) {
+    // Время в статусе в виде "2 д 5 ч", "3 ч 10 мин" или "15 мин"
+    public static String formatTimeInStatus(LocalDateTime since) {
+        if (since == null) {
+            return "нет данных";
+        }
+        Duration duration = Duration.between(since, LocalDateTime.now());
+        if (duration.isNegative()) {
+            duration = Duration.ZERO;
+        }
+        if (duration.toDays() > 0) {
+            return duration.toDays() + " д " + duration.toHoursPart() + " ч";
+        }
+        if (duration.toHours() > 0) {
+            return duration.toHours() + " ч " + duration.toMinutesPart() + " мин";
+        }
+        return duration.toMinutes() + " мин";
+    }
+
+    private List<OrderStatusChangedEvent.Change> toChanges(List<OrderStatusChangeRow> rows) {
+        List<OrderStatusChangedEvent.Change> changes = new ArrayList<>(rows.size());
+        for (OrderStatusChangeRow row : rows) {
+            changes.add(new OrderStatusChangedEvent.Change(row.getId(), row.getCustomerId(), row.getOldStatus()));
+        }
+        return changes;
+    }
+
+    // Счетчики, история и кэши обновляются подписчиками события
+    private void publishStatusChange(String newStatus, List<OrderStatusChangedEvent.Change> changes) {
         try {
-            Order order = orderRepository.findById(orderId).orElse(null);
-            if (order != null) {
-                order.setStatus(newStatus);
-                orderRepository.save(order);
-                return true;
-            }
-            return false;
+            eventPublisher.publishEvent(new OrderStatusChangedEvent(newStatus, changes));
         } catch (Exception e) {
-            return false;
+            // Изменение уже сохранено, ошибка подписчика не должна превращаться в отказ. Но следующие
+            // подписчики событие не получили - сбой учитывается (/stats, метрика), расхождения
+            // исправят сверка счетчиков и пересборка статистики
+            statusListenerFailures.increment();
+            log.error("Подписчик смены статуса завершился ошибкой", e);
         }
     }
 
-    public boolean updateVehicleStatus(Integer vehicleId, String newStatus) {
+    public long getStatusListenerFailures() {
+        return statusListenerFailures.sum();
+    }
+
+    // Запросы смены статуса, завершившиеся ошибкой (FAILED)
+    public long getStatusUpdateFailures() {
+        return statusUpdateFailures.sum();
+    }
+
+    /**
+     * Статус заказа из orders.statuses по вводу администратора (без учета регистра и пробелов по краям);
+     * null - такого статуса нет
+     */
+    public String findOrderStatus(String input) {
+        return findStatus(orderStatuses, input);
+    }
+
+    public String findVehicleStatus(String input) {
+        return findStatus(vehicleStatuses, input);
+    }
+
+    private static String findStatus(List<String> statuses, String input) {
+        if (input == null) {
+            return null;
+        }
+        String value = input.trim();
+        for (String status : statuses) {
+            if (status.equalsIgnoreCase(value)) {
+                return status;
+            }
+        }
+        return null;
+    }
+
+    // Статус не из списка не сохраняется: опечатка создала бы статус, которого нет в кнопках и сводках
+    private static String requireStatus(List<String> statuses, String input) {
+        String status = findStatus(statuses, input);
+        if (status == null) {
+            throw new IllegalArgumentException("Неизвестный статус «" + (input != null ? input.trim() : "")
+                    + "». Допустимые: " + String.join(", ", statuses));
+        }
+        return status;
+    }
+
+    /**
+     * Изменение статуса транспорта, который администратор видел в версии expectedVersion: один UPDATE.
+     * Запрос идет в обход JPA-слушателя, поэтому запись в кэше сбрасывается явно.
+     */
+    public StatusUpdate updateVehicleStatus(Integer vehicleId, Long expectedVersion, String newStatus) {
+        requireStatus(vehicleStatuses, newStatus);
+        String oldStatus;
         try {
-            Vehicle vehicle = vehicleRepository.findById(vehicleId).orElse(null);
-            if (vehicle != null) {
-                vehicle.setStatus(newStatus);
-                vehicleRepository.save(vehicle);
-                return true;
+            oldStatus = vehicleRepository.updateStatusIfVersion(vehicleId, expectedVersion, newStatus);
+        } catch (RuntimeException e) {
+            if (DatabaseCircuitBreaker.isUnavailable(e)) {
+                throw e;
             }
-            return false;
-        } catch (Exception e) {
-            return false;
+            statusUpdateFailures.increment();
+            log.error("Не удалось изменить статус транспорта {}", vehicleId, e);
+            return StatusUpdate.FAILED;
+        }
+        // Версия в кэше могла устареть - следующее чтение возьмет запись из базы
+        vehicleCache.invalidate(vehicleId);
+        if (oldStatus == null) {
+            return StatusUpdate.CONFLICT;
+        }
+        statusCounters.vehicleStatusChanged(oldStatus, newStatus);
+        return StatusUpdate.UPDATED;
+    }
+
+    // Сводка по статусам из счетчиков в памяти
+    public String getStatusSummary() {
+        StringBuilder text = new StringBuilder("📊 Сводка\n\n📦 Заказы по статусам:\n");
+        appendCounts(text, statusCounters.getOrderCounts());
+        text.append("\n🚗 Транспорт по статусам:\n");
+        appendCounts(text, statusCounters.getVehicleCounts());
+        if (statusCounters.getLastReconciledAt() != null) {
+            text.append("\n🔄 Сверка с базой: ")
+                    .append(statusCounters.getLastReconciledAt().format(DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm")))
+                    .append(" (исправлено значений: ").append(statusCounters.getLastCorrections()).append(")");
+        }
+
+        VehicleCache.CacheStats cacheStats = vehicleCache.getStats();
+        text.append("\n\n🗄 Кэш транспорта: записей ").append(cacheStats.getSize())
+                .append(", попаданий ").append(cacheStats.getHits())
+                .append(" (").append(cacheStats.getHitRatePercent()).append("%)")
+                .append(", промахов ").append(cacheStats.getMisses())
+                .append(", сбросов ").append(cacheStats.getInvalidations());
+
+        OrderPageCache.Stats pageStats = orderPageCache.getStats();
+        text.append("\n🗄 Кэш страниц «Мои заказы»: страниц ").append(pageStats.getSize())
+                .append(", попаданий ").append(pageStats.getHits())
+                .append(" (").append(pageStats.getHitRatePercent()).append("%)")
+                .append(", промахов ").append(pageStats.getMisses())
+                .append(", сброшено ").append(pageStats.getInvalidations())
+                .append(", вытеснено ").append(pageStats.getEvictions());
+        return text.toString();
+    }
+
+    private void appendCounts(StringBuilder text, Map<String, Long> counts) {
+        if (counts.isEmpty()) {
+            text.append("• нет данных\n");
+            return;
         }
+        long total = 0;
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            text.append("• ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+            total += entry.getValue();
+        }
+        text.append("Всего: ").append(total).append("\n");
     }
 
     public Order getOrderById(Integer orderId) {
@@ -165,6 +443,44 @@ public class AdminService {
     }
 
     public Vehicle getVehicleById(Integer vehicleId) {
-        return vehicleRepository.findById(vehicleId).orElse(null);
+        return vehicleCache.get(vehicleId);
+    }
+
+    // Результат смены статуса по версии
+    public enum StatusUpdate {
+        UPDATED,
+        // Запись изменена (или удалена) после того, как ее увидел администратор
+        CONFLICT,
+        // Ошибка запроса к базе
+        FAILED
+    }
+
+    public static class BulkUpdateResult {
+        private final String newStatus;
+        private final int requested;
+        private final int updated;
+        private final List<Integer> skippedIds;
+
+        BulkUpdateResult(String newStatus, int requested, int updated, List<Integer> skippedIds) {
+            this.newStatus = newStatus;
+            this.requested = requested;
+            this.updated = updated;
+            this.skippedIds = skippedIds;
+        }
+
+        public String getNewStatus() { return newStatus; }
+        public int getRequested() { return requested; }
+        public int getUpdated() { return updated; }
+        public List<Integer> getSkippedIds() { return skippedIds; }
+    }
+
+    private enum AdminLoginStep {
+        AWAITING_ADMIN_ID,
+        AWAITING_ADMIN_PASSWORD
+    }
+
+    // ID администратора, введенный на первом шаге входа
+    private static class AdminLogin {
+        private Integer adminId;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,405 @@
+package com.logistics.service;
+
+import com.logistics.component.CsvParser;
+import com.logistics.component.InputValidator;
+import com.logistics.component.PasswordHasher;
+import com.logistics.event.CustomersImportedEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.PreparedStatement;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+@Service
+public class CustomerImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerImportService.class);
+
+    // Размер порции: столько строк одновременно находится в памяти, независимо от размера файла
+    private static final int CHUNK_SIZE = 1000;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO customer (customer_id, full_name, phone, address, email, password_hash) " +
+            "VALUES (nextval('customer_customer_id_seq'), ?, ?, ?, ?, ?) " +
+            "ON CONFLICT ((LOWER(email))) DO NOTHING";
+
+    // Вставка порции одним запросом: колонки передаются массивами, RETURNING возвращает email
+    // вставленных строк. Пропущенные из-за занятого email строки в ответ не попадают, поэтому
+    // результат по каждой строке не зависит от того, как драйвер считает строки в пакете
+    private static final String CHUNK_INSERT_SQL =
+            "INSERT INTO customer (customer_id, full_name, phone, address, email, password_hash) " +
+            "SELECT nextval('customer_customer_id_seq'), r.full_name, r.phone, r.address, r.email, r.password_hash " +
+            "FROM unnest(?::text[], ?::text[], ?::text[], ?::text[], ?::text[]) " +
+            "AS r(full_name, phone, address, email, password_hash) " +
+            "ON CONFLICT ((LOWER(email))) DO NOTHING " +
+            "RETURNING email";
+
+    private static final String NEXT_ID_SQL = "SELECT nextval('customer_customer_id_seq')";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final InputValidator inputValidator;
+    private final PasswordHasher passwordHasher;
+    private final CsvParser csvParser;
+    private final MessageSender messageSender;
+    private final ApplicationEventPublisher eventPublisher;
+    private final LongAdder failures = new LongAdder();
+
+    // Пул для валидации строк и хеширования паролей (BCrypt - самая дорогая часть импорта)
+    private ExecutorService workers;
+    // Импорты выполняются по одному, чтобы не конкурировать за пул и соединения
+    private ExecutorService importExecutor;
+
+    @Value("${import.workers:4}")
+    private int workerCount;
+
+    // Каталог на сервере, из которого администратор может запустить импорт по имени файла
+    @Value("${import.customers.dir:data/import}")
+    private String importDir;
+
+    public CustomerImportService(JdbcTemplate jdbcTemplate,
+                                 TransactionTemplate transactionTemplate,
+                                 InputValidator inputValidator,
+                                 PasswordHasher passwordHasher,
+                                 CsvParser csvParser,
+                                 MessageSender messageSender,
+                                 ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.inputValidator = inputValidator;
+        this.passwordHasher = passwordHasher;
+        this.csvParser = csvParser;
+        this.messageSender = messageSender;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostConstruct
+    public void init() {
+        workers = Executors.newFixedThreadPool(Math.max(1, workerCount));
+        importExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    /**
+     * Запуск импорта в фоне: результат и файл с ошибками отправляются в чат администратора
+     */
+    public void importAsync(Long chatId, Callable<InputStream> source) {
+        importExecutor.submit(() -> {
+            Path report = null;
+            try (InputStream in = source.call()) {
+                report = Files.createTempFile("customers-import-errors-", ".csv");
+                // Импорты идут по одному, поэтому номера клиентов этого импорта лежат между двумя отметками
+                int fromId = nextCustomerId();
+                ImportResult result = importCustomers(in, report);
+                int toId = nextCustomerId();
+                if (result.getImported() > 0) {
+                    eventPublisher.publishEvent(new CustomersImportedEvent(result.getImported(), fromId, toId));
+                }
+
+                messageSender.sendMessage(chatId, formatSummary(result));
+                if (result.getFailed() > 0) {
+                    messageSender.sendDocument(chatId, report.toFile(), "Ошибки импорта клиентов");
+                }
+            } catch (Exception e) {
+                failures.increment();
+                log.error("Импорт клиентов прерван ошибкой", e);
+                messageSender.sendMessage(chatId, "❌ Ошибка импорта клиентов: " + e.getMessage());
+            } finally {
+                if (report != null) {
+                    try {
+                        Files.deleteIfExists(report);
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        });
+    }
+
+    // Импорты, прерванные ошибкой
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    /**
+     * Файл для импорта по имени, введенному администратором. Допускаются только файлы внутри
+     * каталога импорта: абсолютные пути, «..» и ссылки, ведущие наружу, отклоняются (null)
+     */
+    public Path resolveImportFile(String name) {
+        Path requested;
+        try {
+            requested = Paths.get(name.trim());
+        } catch (InvalidPathException e) {
+            return null;
+        }
+        if (name.trim().isEmpty() || requested.isAbsolute() || requested.getRoot() != null) {
+            return null;
+        }
+        for (Path element : requested) {
+            if ("..".equals(element.toString())) {
+                return null;
+            }
+        }
+
+        try {
+            Path base = Paths.get(importDir).toRealPath();
+            Path file = base.resolve(requested).toRealPath();
+            return file.startsWith(base) && Files.isRegularFile(file) ? file : null;
+        } catch (IOException e) {
+            // Каталога или файла нет
+            return null;
+        }
+    }
+
+    private int nextCustomerId() {
+        return jdbcTemplate.queryForObject(NEXT_ID_SQL, Integer.class);
+    }
+
+    /**
+     * Потоковый импорт CSV (email,имя,телефон,адрес,пароль). Файл читается порциями,
+     * ошибки по строкам пишутся в отчет, поэтому память не зависит от числа строк.
+     */
+    public ImportResult importCustomers(InputStream in, Path errorReport) throws IOException, InterruptedException {
+        long startNanos = System.nanoTime();
+        ImportResult result = new ImportResult();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+             BufferedWriter errors = Files.newBufferedWriter(errorReport, StandardCharsets.UTF_8)) {
+
+            errors.write("line,email,error");
+            errors.newLine();
+
+            String line = reader.readLine();
+            if (line != null && line.startsWith("\uFEFF")) {
+                line = line.substring(1);
+            }
+            char delimiter = csvParser.detectDelimiter(line);
+            long lineNumber = 1;
+
+            // Заголовок необязателен
+            if (line != null && line.toLowerCase(Locale.ROOT).startsWith("email")) {
+                line = reader.readLine();
+                lineNumber++;
+            }
+
+            List<RawRow> chunk = new ArrayList<>(CHUNK_SIZE);
+            while (line != null) {
+                if (!line.isBlank()) {
+                    chunk.add(new RawRow(lineNumber, line));
+                }
+                if (chunk.size() == CHUNK_SIZE) {
+                    processChunk(chunk, delimiter, result, errors);
+                    chunk.clear();
+                }
+                line = reader.readLine();
+                lineNumber++;
+            }
+            if (!chunk.isEmpty()) {
+                processChunk(chunk, delimiter, result, errors);
+            }
+        }
+
+        result.setElapsedMillis((System.nanoTime() - startNanos) / 1_000_000);
+        return result;
+    }
+
+    private void processChunk(List<RawRow> chunk, char delimiter, ImportResult result, BufferedWriter errors)
+            throws IOException, InterruptedException {
+        // Валидация и хеширование паролей параллельно, порядок строк сохраняется
+        List<Callable<PreparedRow>> tasks = new ArrayList<>(chunk.size());
+        for (RawRow raw : chunk) {
+            tasks.add(() -> prepareRow(raw, delimiter));
+        }
+
+        List<PreparedRow> valid = new ArrayList<>(chunk.size());
+        for (Future<PreparedRow> future : workers.invokeAll(tasks)) {
+            PreparedRow row;
+            try {
+                row = future.get();
+            } catch (ExecutionException e) {
+                throw new IOException("Ошибка обработки строки", e.getCause());
+            }
+            result.total++;
+            if (row.error != null) {
+                writeError(errors, row, row.error);
+                result.failed++;
+            } else {
+                valid.add(row);
+            }
+        }
+
+        if (valid.isEmpty()) {
+            return;
+        }
+
+        // Повтор email внутри порции (без учета регистра): вставляется первая строка, остальные - ошибки
+        Map<String, PreparedRow> unique = new LinkedHashMap<>();
+        for (PreparedRow row : valid) {
+            if (unique.putIfAbsent(row.email.toLowerCase(Locale.ROOT), row) != null) {
+                writeError(errors, row, "email уже зарегистрирован");
+                result.failed++;
+            }
+        }
+        List<PreparedRow> rows = new ArrayList<>(unique.values());
+
+        Set<String> inserted;
+        try {
+            // Порция вставляется одной транзакцией: при сбое откатывается целиком
+            inserted = transactionTemplate.execute(status -> new HashSet<>(insertChunk(rows)));
+        } catch (DataAccessException e) {
+            // Порция не вставлена - повторяем построчно, чтобы ошибку получила только виноватая строка
+            insertRowByRow(rows, result, errors);
+            return;
+        }
+
+        for (PreparedRow row : rows) {
+            if (inserted != null && inserted.contains(row.email)) {
+                result.imported++;
+            } else {
+                writeError(errors, row, "email уже зарегистрирован");
+                result.failed++;
+            }
+        }
+    }
+
+    private List<String> insertChunk(List<PreparedRow> rows) {
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(CHUNK_INSERT_SQL);
+            ps.setArray(1, con.createArrayOf("text", rows.stream().map(row -> row.name).toArray()));
+            ps.setArray(2, con.createArrayOf("text", rows.stream().map(row -> row.phone).toArray()));
+            ps.setArray(3, con.createArrayOf("text", rows.stream().map(row -> row.address).toArray()));
+            ps.setArray(4, con.createArrayOf("text", rows.stream().map(row -> row.email).toArray()));
+            ps.setArray(5, con.createArrayOf("text", rows.stream().map(row -> row.passwordHash).toArray()));
+            return ps;
+        }, (rs, rowNum) -> rs.getString(1));
+    }
+
+    private void insertRowByRow(List<PreparedRow> rows, ImportResult result, BufferedWriter errors) throws IOException {
+        for (PreparedRow row : rows) {
+            try {
+                int count = jdbcTemplate.update(INSERT_SQL, row.name, row.phone, row.address, row.email, row.passwordHash);
+                if (count == 0) {
+                    writeError(errors, row, "email уже зарегистрирован");
+                    result.failed++;
+                } else {
+                    result.imported++;
+                }
+            } catch (DataAccessException e) {
+                writeError(errors, row, "ошибка базы данных: " + e.getMostSpecificCause().getMessage());
+                result.failed++;
+            }
+        }
+    }
+
+    private PreparedRow prepareRow(RawRow raw, char delimiter) {
+        PreparedRow row = new PreparedRow(raw.lineNumber);
+        List<String> fields = csvParser.parseLine(raw.line, delimiter);
+
+        if (fields.size() < 5) {
+            row.error = "ожидается 5 полей: email,имя,телефон,адрес,пароль";
+            return row;
+        }
+
+        row.email = fields.get(0);
+        row.name = fields.get(1);
+        row.phone = fields.get(2);
+        row.address = fields.get(3);
+        String password = fields.get(4);
+
+        if (!inputValidator.isValidEmail(row.email)) {
+            row.error = "неверный формат email";
+        } else if (!inputValidator.isValidName(row.name)) {
+            row.error = "имя должно содержать минимум 2 символа";
+        } else if (!inputValidator.isValidPhone(row.phone)) {
+            row.error = "неверный формат номера телефона";
+        } else if (!inputValidator.isValidAddress(row.address)) {
+            row.error = "адрес должен содержать минимум 5 символов";
+        } else if (!inputValidator.isValidPassword(password)) {
+            row.error = "пароль должен содержать минимум 6 символов";
+        } else {
+            row.passwordHash = passwordHasher.hashPassword(password);
+        }
+        return row;
+    }
+
+    private void writeError(BufferedWriter errors, PreparedRow row, String message) throws IOException {
+        errors.write(row.lineNumber + "," + csvParser.escape(row.email) + "," + csvParser.escape(message));
+        errors.newLine();
+    }
+
+    private String formatSummary(ImportResult result) {
+        return "📥 Импорт клиентов завершен\n\n" +
+                "• Строк обработано: " + result.getTotal() + "\n" +
+                "• Импортировано: " + result.getImported() + "\n" +
+                "• С ошибками: " + result.getFailed() + "\n" +
+                "• Время: " + result.getElapsedMillis() + " мс\n" +
+                "• Скорость: " + result.getRowsPerSecond() + " строк/с";
+    }
+
+    @PreDestroy
+    public void cleanup() {
+        if (importExecutor != null) {
+            importExecutor.shutdownNow();
+        }
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    // Вспомогательные классы
+    public static class ImportResult {
+        private long total;
+        private long imported;
+        private long failed;
+        private long elapsedMillis;
+
+        public long getTotal() { return total; }
+        public long getImported() { return imported; }
+        public long getFailed() { return failed; }
+
+        public long getElapsedMillis() { return elapsedMillis; }
+        public void setElapsedMillis(long elapsedMillis) { this.elapsedMillis = elapsedMillis; }
+
+        public long getRowsPerSecond() {
+            return elapsedMillis > 0 ? total * 1000 / elapsedMillis : total;
+        }
+    }
+
+    private static class RawRow {
+        private final long lineNumber;
+        private final String line;
+
+        RawRow(long lineNumber, String line) {
+            this.lineNumber = lineNumber;
+            this.line = line;
+        }
+    }
+
+    private static class PreparedRow {
+        private final long lineNumber;
+        private String email;
+        private String name;
+        private String phone;
+        private String address;
+        private String passwordHash;
+        private String error;
+
+        PreparedRow(long lineNumber) {
+            this.lineNumber = lineNumber;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.logistics.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.logistics.event.OrderCreatedEvent;
+import com.logistics.event.OrderStatusChangedEvent;
+import com.logistics.model.CustomerStats;
+import com.logistics.repositories.CustomerStatsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Статистика клиентов (заказы по статусам, общий вес, последний заказ) в таблице customer_stats.
+ * Обновляется приращениями при создании заказа и смене статуса; импорт заказов прибавляет
+ * свою порцию в транзакции вставки. Профиль читает одну строку.
+ * Пустая таблица (первый запуск после появления статистики) заполняется по заказам при старте.
+ */
+@Service
+public class CustomerStatsService {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerStatsService.class);
+
+    private static final String NO_STATUS = "без статуса";
+
+    private final CustomerStatsRepository customerStatsRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final LongAdder failures = new LongAdder();
+
+    public CustomerStatsService(CustomerStatsRepository customerStatsRepository, ObjectMapper objectMapper,
+                                TransactionTemplate transactionTemplate) {
+        this.customerStatsRepository = customerStatsRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            int customers = backfillIfEmpty();
+            if (customers > 0) {
+                log.info("Статистика клиентов заполнена по заказам: {}", customers);
+            }
+        } catch (Exception e) {
+            failures.increment();
+            log.error("Не удалось заполнить статистику клиентов", e);
+        }
+    }
+
+    /**
+     * Заполнение пустой статистики по таблице orders; возвращает количество заполненных клиентов.
+     * Проверка выполняется под блокировкой таблицы: параллельный upsert нового заказа дождется заполнения
+     */
+    public int backfillIfEmpty() {
+        Integer customers = transactionTemplate.execute(status -> {
+            customerStatsRepository.lockForRebuild();
+            if (customerStatsRepository.hasAnyStats()) {
+                return 0;
+            }
+            return customerStatsRepository.insertFromOrders();
+        });
+        return customers != null ? customers : 0;
+    }
+
+    public CustomerStats getStats(Integer customerId) {
+        return customerStatsRepository.findById(customerId).orElse(null);
+    }
+
+    // Ошибка обновления не отменяет уже сохраненный заказ: расхождение исправит пересборка
+    @EventListener
+    public void onOrderCreated(OrderCreatedEvent event) {
+        if (event.getCustomerId() == null) {
+            return;
+        }
+        try {
+            customerStatsRepository.addOrders(event.getCustomerId(), 1,
+                    event.getTotalWeight() != null ? event.getTotalWeight() : 0,
+                    event.getCreateTime(), statusKey(event.getStatus()));
+        } catch (Exception e) {
+            failures.increment();
+            log.error("Не удалось учесть заказ {} в статистике клиента {}", event.getOrderId(), event.getCustomerId(), e);
+        }
+    }
+
+    // Все изменения события (в том числе массового) применяются одним запросом
+    @EventListener
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        Map<Integer, Map<String, Long>> deltas = new HashMap<>();
+        String newStatus = statusKey(event.getNewStatus());
+        for (OrderStatusChangedEvent.Change change : event.getChanges()) {
+            String oldStatus = statusKey(change.getOldStatus());
+            if (change.getCustomerId() == null || oldStatus.equals(newStatus)) {
+                continue;
+            }
+            Map<String, Long> delta = deltas.computeIfAbsent(change.getCustomerId(), id -> new HashMap<>());
+            delta.merge(oldStatus, -1L, Long::sum);
+            delta.merge(newStatus, 1L, Long::sum);
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try {
+            customerStatsRepository.applyStatusDeltas(objectMapper.writeValueAsString(deltas));
+        } catch (Exception e) {
+            failures.increment();
+            log.error("Не удалось учесть смену статуса в статистике клиентов", e);
+        }
+    }
+
+    // Неудачные обновления статистики: расхождения исправит пересборка
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    /**
+     * Пересборка всей статистики по таблице orders; возвращает количество клиентов со статистикой
+     */
+    @Transactional
+    public int rebuild() {
+        customerStatsRepository.lockForRebuild();
+        customerStatsRepository.clearAll();
+        return customerStatsRepository.insertFromOrders();
+    }
+
+    private static String statusKey(String status) {
+        return status != null ? status : NO_STATUS;
+    }
+}
@@ -1,10 +1,10 @@
 package com.logistics.service;
 
+import com.logistics.flow.Flow;
+import com.logistics.flow.Flow.Transition;
 import com.logistics.model.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import java.util.HashMap;
-import java.util.Map;
 
 @Service
 public class LoginService {
@@ -15,16 +15,22 @@ public class LoginService {
     @Autowired
     private SessionService sessionService;
 
-    // Храним временные данные для процесса логина
-    private final Map<Long, LoginProcess> loginProcesses = new HashMap<>();
+    // Диалог входа: email -> пароль
+    private final Flow<LoginStep, LoginProcess> loginFlow = Flow.builder(LoginStep.class, LoginProcess::new)
+            .cancelOn("❌ Отмена", "❌ Вход отменен.")
+            .onCancel(chatId -> sessionService.updateSessionState(chatId, "UNAUTHENTICATED"))
+            .step(LoginStep.WAITING_EMAIL)
+                .accept(this::isValidEmail, "❌ Неверный формат email. Пожалуйста, введите корректный email:")
+                .handle(this::processEmailStep)
+            .step(LoginStep.WAITING_PASSWORD)
+                .handle(this::processPasswordStep)
+            .build();
 
     /**
      * Начало процесса логина
      */
     public void startLoginProcess(Long chatId) {
-        LoginProcess process = new LoginProcess();
-        process.setCurrentStep(LoginStep.WAITING_EMAIL);
-        loginProcesses.put(chatId, process);
+        loginFlow.startAt(chatId, LoginStep.WAITING_EMAIL);
 
         sessionService.updateSessionState(chatId, "LOGIN_IN_PROGRESS");
     }
@@ -33,55 +39,37 @@ public class LoginService {
      * Обработка ввода пользователя в процессе логина
      */
     public String processLoginInput(Long chatId, String input) {
-        LoginProcess process = loginProcesses.get(chatId);
-        if (process == null) {
+        Flow.Reply reply = loginFlow.process(chatId, input);
+        if (reply == null) {
             return "Процесс логина не начат. Используйте /login для входа.";
         }
-
-        switch (process.getCurrentStep()) {
-            case WAITING_EMAIL:
-                return processEmailStep(chatId, process, input);
-
-            case WAITING_PASSWORD:
-                return processPasswordStep(chatId, process, input);
-
-            default:
-                return "Неизвестный шаг процесса логина.";
-        }
+        return reply.getText();
     }
 
-    private String processEmailStep(Long chatId, LoginProcess process, String email) {
-        if (!isValidEmail(email)) {
-            return "❌ Неверный формат email. Пожалуйста, введите корректный email:";
-        }
-
+    private Transition<LoginStep> processEmailStep(Long chatId, LoginProcess process, String email) {
         if (!authService.customerExists(email)) {
-            loginProcesses.remove(chatId);
             sessionService.updateSessionState(chatId, "UNAUTHENTICATED");
-            return "❌ Пользователь с таким email не найден. Используйте /sign для регистрации.";
+            return Transition.finish("❌ Пользователь с таким email не найден. Используйте /sign для регистрации.");
         }
 
         process.setEmail(email);
-        process.setCurrentStep(LoginStep.WAITING_PASSWORD);
 
-        return "✅ Email принят. Теперь введите ваш пароль:";
+        return Transition.to(LoginStep.WAITING_PASSWORD, "✅ Email принят. Теперь введите ваш пароль:");
     }
 
-    private String processPasswordStep(Long chatId, LoginProcess process, String password) {
+    // Процесс логина завершается независимо от результата
+    private Transition<LoginStep> processPasswordStep(Long chatId, LoginProcess process, String password) {
         boolean isAuthenticated = authService.authenticate(chatId, process.getEmail(), password);
 
-        // Очищаем процесс логина независимо от результата
-        loginProcesses.remove(chatId);
-
         if (isAuthenticated) {
             sessionService.updateSessionState(chatId, "AUTHENTICATED");
             Customer customer = authService.getAuthenticatedCustomer(chatId);
-            return "✅ Вход выполнен успешно!\n\n" +
+            return Transition.finish("✅ Вход выполнен успешно!\n\n" +
                     "Добро пожаловать, " + customer.getFullName() + "!\n" +
-                    "Теперь вам доступны все функции бота.";
+                    "Теперь вам доступны все функции бота.");
         } else {
             sessionService.updateSessionState(chatId, "UNAUTHENTICATED");
-            return "❌ Неверный пароль. Попробуйте снова используя /login";
+            return Transition.finish("❌ Неверный пароль. Попробуйте снова используя /login");
         }
     }
 
@@ -89,7 +77,7 @@ public class LoginService {
      * Отмена процесса логина
      */
     public void cancelLoginProcess(Long chatId) {
-        loginProcesses.remove(chatId);
+        loginFlow.cancel(chatId);
         sessionService.updateSessionState(chatId, "UNAUTHENTICATED");
     }
 
@@ -97,7 +85,12 @@ public class LoginService {
      * Проверка, находится ли пользователь в процессе логина
      */
     public boolean isUserInLoginProcess(Long chatId) {
-        return loginProcesses.containsKey(chatId);
+        return loginFlow.isActive(chatId);
+    }
+
+    // Диалог со счетчиками (начато, завершено, отменено, ошибок) - для метрик
+    public Flow<?, ?> getFlow() {
+        return loginFlow;
     }
 
     private boolean isValidEmail(String email) {
@@ -106,12 +99,8 @@ public class LoginService {
 
     // Вспомогательные классы для процесса логина
     private static class LoginProcess {
-        private LoginStep currentStep;
         private String email;
 
-        public LoginStep getCurrentStep() { return currentStep; }
-        public void setCurrentStep(LoginStep currentStep) { this.currentStep = currentStep; }
-
         public String getEmail() { return email; }
         public void setEmail(String email) { this.email = email; }
     }
@@ -120,4 +109,4 @@ public class LoginService {
         WAITING_EMAIL,
         WAITING_PASSWORD
     }
-}
\ No newline at end of file
+}
@@ -1,33 +1,190 @@
 package com.logistics.service;
 
+import com.logistics.component.BotMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.*;
 import org.telegram.telegrambots.bots.*;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
 import org.telegram.telegrambots.meta.api.methods.send.*;
+import org.telegram.telegrambots.meta.api.objects.InputFile;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.*;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.*;
 import org.telegram.telegrambots.meta.exceptions.*;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
 
 @Service
 public class MessageSender {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageSender.class);
+
+    // Предел длины текста одного сообщения Telegram
+    static final int MAX_MESSAGE_LENGTH = 4096;
+    private static final String PART_SEPARATOR = "\n\n";
+
     private static TelegramLongPollingBot bot;
 
+    // Ответы текущего обновления (открывается в beginUpdate, отправляется в flushUpdate).
+    // Вне обработки обновления (фоновые задачи, планировщики) сообщения уходят сразу.
+    private final ThreadLocal<List<SendMessage>> updateReplies = new ThreadLocal<>();
+
+    private final LongAdder sentMessages = new LongAdder();
+    private final LongAdder mergedMessages = new LongAdder();
+
+    // Время и результат запросов к Telegram (в тестах без метрик - null)
+    @Autowired(required = false)
+    private BotMetrics botMetrics;
+
     public static void setBot(TelegramLongPollingBot botInstance) {
         bot = botInstance;
     }
 
-    public void sendMessage(Long chatId, String text) {
-        sendMessage(chatId, text, false);
+    /**
+     * Начало обработки обновления: ответы копятся и подряд идущие сообщения в один чат
+     * склеиваются в одно (клавиатура - последняя из переданных)
+     */
+    public void beginUpdate() {
+        updateReplies.set(new ArrayList<>());
     }
 
-    public void sendMessage(Long chatId, String text, boolean withMenu) {
+    /**
+     * Конец обработки обновления: отправка накопленных ответов
+     */
+    public void flushUpdate() {
+        List<SendMessage> replies = updateReplies.get();
+        updateReplies.remove();
+        if (replies != null) {
+            for (SendMessage reply : replies) {
+                execute(reply);
+            }
+        }
+    }
+
+    /**
+     * Отмена накопленных ответов обновления (буфер остается открытым)
+     */
+    public void discardUpdate() {
+        List<SendMessage> replies = updateReplies.get();
+        if (replies != null) {
+            replies.clear();
+        }
+    }
+
+    /**
+     * Отправка готового сообщения: в буфер обновления, если он открыт, иначе сразу
+     */
+    public void send(SendMessage message) {
+        List<SendMessage> replies = updateReplies.get();
+        if (replies == null) {
+            execute(message);
+            return;
+        }
+        SendMessage last = replies.isEmpty() ? null : replies.get(replies.size() - 1);
+        if (last != null && canMerge(last, message)) {
+            merge(last, message);
+            mergedMessages.increment();
+        } else {
+            replies.add(message);
+        }
+    }
+
+    private static boolean canMerge(SendMessage previous, SendMessage next) {
+        if (!previous.getChatId().equals(next.getChatId())
+                || !Objects.equals(previous.getParseMode(), next.getParseMode())) {
+            return false;
+        }
+        // Inline-кнопки относятся к своему сообщению: чужая клавиатура их не заменяет
+        if (previous.getReplyMarkup() instanceof InlineKeyboardMarkup && next.getReplyMarkup() != null) {
+            return false;
+        }
+        // Повтор того же текста (например, двойное «Регистрация отменена») просто поглощается
+        return previous.getText().equals(next.getText())
+                || previous.getText().length() + PART_SEPARATOR.length() + next.getText().length() <= MAX_MESSAGE_LENGTH;
+    }
+
+    private static void merge(SendMessage previous, SendMessage next) {
+        if (!previous.getText().equals(next.getText())) {
+            previous.setText(previous.getText() + PART_SEPARATOR + next.getText());
+        }
+        if (next.getReplyMarkup() != null) {
+            previous.setReplyMarkup(next.getReplyMarkup());
+        }
+    }
+
+    private void execute(SendMessage message) {
+        if (bot == null) {
+            log.error("Bot is not initialized in MessageSender");
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+        try {
+            bot.execute(message);
+            sentMessages.increment();
+            recordSend("sendMessage", startNanos, null);
+        } catch (TelegramApiException e) {
+            recordSend("sendMessage", startNanos, e);
+            log.error("Ошибка запроса sendMessage к Telegram", e);
+        }
+    }
+
+    private void recordSend(String method, long startNanos, TelegramApiException error) {
+        if (botMetrics == null) {
+            return;
+        }
+        String outcome = "ok";
+        if (error instanceof TelegramApiRequestException && ((TelegramApiRequestException) error).getErrorCode() != null) {
+            outcome = String.valueOf(((TelegramApiRequestException) error).getErrorCode());
+        } else if (error != null) {
+            outcome = "error";
+        }
+        botMetrics.recordSend(method, outcome, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Ответ на нажатие inline-кнопки (убирает индикатор загрузки у кнопки). Отправляется сразу,
+     * не дожидаясь конца обработки обновления; text - всплывающая подсказка или null
+     */
+    public void answerCallback(String callbackQueryId, String text) {
         if (bot == null) {
-            System.err.println("Bot is not initialized in MessageSender");
+            log.error("Bot is not initialized in MessageSender");
             return;
         }
 
+        AnswerCallbackQuery answer = new AnswerCallbackQuery();
+        answer.setCallbackQueryId(callbackQueryId);
+        answer.setText(text);
+
+        long startNanos = System.nanoTime();
+        try {
+            bot.execute(answer);
+            recordSend("answerCallbackQuery", startNanos, null);
+        } catch (TelegramApiException e) {
+            recordSend("answerCallbackQuery", startNanos, e);
+            log.error("Ошибка запроса answerCallbackQuery к Telegram", e);
+        }
+    }
+
+    // Отправленные сообщения и сообщения, склеенные с предыдущими вместо отдельного запроса
+    public long getSentCount() {
+        return sentMessages.sum();
+    }
+
+    public long getMergedCount() {
+        return mergedMessages.sum();
+    }
+
+    public void sendMessage(Long chatId, String text) {
+        sendMessage(chatId, text, false);
+    }
+
+    public void sendMessage(Long chatId, String text, boolean withMenu) {
         SendMessage message = new SendMessage();
         message.setChatId(String.valueOf(chatId));
         message.setText(text);
@@ -37,11 +194,7 @@ public class MessageSender {
             message.setReplyMarkup(keyboardMarkup);
         }
 
-        try {
-            bot.execute(message);
-        } catch (TelegramApiException e) {
-            e.printStackTrace();
-        }
+        send(message);
     }
 
     private ReplyKeyboardMarkup createMainMenuKeyboard() {
@@ -69,11 +222,6 @@ public class MessageSender {
 
     // Метод для отправки сообщения с клавиатурой отмены (во время регистрации)
     public void sendMessageWithCancel(Long chatId, String text) {
-        if (bot == null) {
-            System.err.println("Bot is not initialized in MessageSender");
-            return;
-        }
-
         SendMessage message = new SendMessage();
         message.setChatId(String.valueOf(chatId));
         message.setText(text);
@@ -91,10 +239,37 @@ public class MessageSender {
         keyboardMarkup.setKeyboard(keyboard);
         message.setReplyMarkup(keyboardMarkup);
 
+        send(message);
+    }
+
+    // Метод для отправки файла (отчеты импорта, выгрузки)
+    public void sendDocument(Long chatId, File file, String caption) {
+        if (bot == null) {
+            log.error("Bot is not initialized in MessageSender");
+            return;
+        }
+
+        // Документ не склеивается с текстом: сначала уходят накопленные ответы, чтобы сохранить порядок
+        List<SendMessage> replies = updateReplies.get();
+        if (replies != null) {
+            for (SendMessage reply : replies) {
+                execute(reply);
+            }
+            replies.clear();
+        }
+
+        SendDocument document = new SendDocument();
+        document.setChatId(String.valueOf(chatId));
+        document.setDocument(new InputFile(file));
+        document.setCaption(caption);
+
+        long startNanos = System.nanoTime();
         try {
-            bot.execute(message);
+            bot.execute(document);
+            recordSend("sendDocument", startNanos, null);
         } catch (TelegramApiException e) {
-            e.printStackTrace();
+            recordSend("sendDocument", startNanos, e);
+            log.error("Ошибка запроса sendDocument к Telegram", e);
         }
     }
 }
\ No newline at end of file
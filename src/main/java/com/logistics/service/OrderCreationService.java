@@ -1,219 +1,365 @@
 package com.logistics.service;
 
+import com.logistics.component.DatabaseCircuitBreaker;
+import com.logistics.component.MessageTemplates;
+import com.logistics.component.PendingOrderJournal;
+import com.logistics.component.PendingOrderJournal.PendingOrder;
+import com.logistics.component.SlaPolicy;
+import com.logistics.component.StatusCounters;
+import com.logistics.component.VehicleCache;
+import com.logistics.event.DatabaseRecoveredEvent;
+import com.logistics.event.OrderCreatedEvent;
+import com.logistics.flow.Flow;
+import com.logistics.flow.Flow.Transition;
 import com.logistics.model.Customer;
 import com.logistics.model.Order;
 import com.logistics.model.Vehicle;
+import com.logistics.repositories.CustomerRepository;
 import com.logistics.repositories.OrderRepository;
+import com.logistics.repositories.OrderStatusHistoryRepository;
 import com.logistics.repositories.VehicleRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
 
 @Service
 public class OrderCreationService {
 
+    private static final Logger log = LoggerFactory.getLogger(OrderCreationService.class);
+
     @Autowired
     private OrderRepository orderRepository;
 
+    @Autowired
+    private OrderStatusHistoryRepository orderStatusHistoryRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     @Autowired
     private VehicleRepository vehicleRepository;
 
     @Autowired
     private AuthService authService;
 
-    // Хранилище состояний создания заказа
-    private final Map<Long, OrderCreationState> orderCreationStates = new ConcurrentHashMap<>();
+    @Autowired
+    private StatusCounters statusCounters;
 
-    // Временное хранилище данных заказа
-    private final Map<Long, OrderData> orderData = new ConcurrentHashMap<>();
+    @Autowired
+    private VehicleCache vehicleCache;
 
-    public void startOrderCreation(Long chatId) {
-        orderCreationStates.put(chatId, OrderCreationState.AWAITING_ADDRESS);
-        orderData.put(chatId, new OrderData());
-    }
+    @Autowired
+    private SlaPolicy slaPolicy;
 
-    public String processOrderCreationInput(Long chatId, String input) {
-        OrderCreationState currentState = orderCreationStates.get(chatId);
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
-        if (currentState == null) {
-            return "❌ Сессия создания заказа не начата. Используйте /new_order для начала.";
-        }
+    @Autowired
+    private MessageTemplates messageTemplates;
 
-        switch (currentState) {
-            case AWAITING_ADDRESS:
-                return processAddress(chatId, input);
-            case AWAITING_WEIGHT:
-                return processWeight(chatId, input);
-            case AWAITING_CONFIRMATION:
-                return processConfirmation(chatId, input);
-            default:
-                cancelOrderCreation(chatId);
-                return "❌ Произошла ошибка при создании заказа. Попробуйте снова.";
-        }
-    }
+    @Autowired
+    private CustomerRepository customerRepository;
 
-    private String processAddress(Long chatId, String address) {
-        if (address == null || address.trim().isEmpty()) {
-            return "❌ Адрес не может быть пустым. Пожалуйста, введите корректный адрес доставки:";
-        }
+    @Autowired
+    private PendingOrderJournal pendingOrderJournal;
 
-        if (address.length() < 5) {
-            return "❌ Адрес слишком короткий. Пожалуйста, введите полный адрес доставки:";
-        }
+    @Autowired
+    private MessageSender messageSender;
+
+    // Оформление заказов из журнала: по одному потоку, чтобы заказ не оформился дважды
+    // Сбои оформления заказа и работы с журналом отложенных заказов
+    private final LongAdder failures = new LongAdder();
+
+    private final ExecutorService replayExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "pending-orders-replay");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Диалог создания заказа: адрес -> вес -> подтверждение
+    private final Flow<OrderCreationState, OrderData> orderFlow = Flow.builder(OrderCreationState.class, OrderData::new)
+            .cancelOn("❌ Отмена", "❌ Создание заказа отменено.")
+            .step(OrderCreationState.AWAITING_ADDRESS)
+                .accept(address -> address != null && !address.trim().isEmpty(),
+                        "❌ Адрес не может быть пустым. Пожалуйста, введите корректный адрес доставки:")
+                .accept(address -> address.length() >= 5,
+                        "❌ Адрес слишком короткий. Пожалуйста, введите полный адрес доставки:")
+                .store((data, address) -> data.setDeliveryAddress(address.trim()))
+                .next(OrderCreationState.AWAITING_WEIGHT, "✅ Адрес доставки сохранен.")
+            .step(OrderCreationState.AWAITING_WEIGHT, "📦 Теперь введите вес посылки в килограммах (целое число):")
+                .handle(this::processWeight)
+            .step(OrderCreationState.AWAITING_CONFIRMATION)
+                .handle(this::processConfirmation)
+            .build();
+
+    public void startOrderCreation(Long chatId) {
+        orderFlow.startAt(chatId, OrderCreationState.AWAITING_ADDRESS);
+    }
 
-        OrderData data = orderData.get(chatId);
-        data.setDeliveryAddress(address.trim());
-        orderCreationStates.put(chatId, OrderCreationState.AWAITING_WEIGHT);
+    public String processOrderCreationInput(Long chatId, String input) {
+        Flow.Reply reply = orderFlow.process(chatId, input);
 
-        return "✅ Адрес доставки сохранен.\n\n📦 Теперь введите вес посылки в килограммах (целое число):";
+        if (reply == null) {
+            return "❌ Сессия создания заказа не начата. Используйте /new_order для начала.";
+        }
+        return reply.getText();
     }
 
-    private String processWeight(Long chatId, String weightInput) {
+    private Transition<OrderCreationState> processWeight(Long chatId, OrderData data, String weightInput) {
         try {
             int weight = Integer.parseInt(weightInput.trim());
 
             if (weight <= 2000) {
-                return "❌ Минимальный вес заказа 2000 кг:";
+                return Transition.stay(messageTemplates.render("order.weight.too_small"));
             }
 
             if (weight > 21000) {
-                return "❌ Вес слишком большой. Максимальный вес - 21000 кг. Введите меньший вес:";
+                return Transition.stay(messageTemplates.render("order.weight.too_large"));
             }
 
-            OrderData data = orderData.get(chatId);
             data.setTotalWeight(weight);
 
-            // Поиск подходящего транспорта
-            List<Vehicle> availableVehicles = vehicleRepository.findAvailableVehiclesWithCapacity(weight / 1000.0);
+            // Поиск подходящего транспорта (по кэшу парка, без запроса к базе)
+            List<Vehicle> availableVehicles = vehicleCache.findAvailableWithCapacity(weight / 1000.0);
 
             if (availableVehicles.isEmpty()) {
-                orderCreationStates.put(chatId, OrderCreationState.AWAITING_CONFIRMATION);
                 data.setVehicle(null);
-                return String.format(
-                        "⚠️ Внимание! На данный момент нет свободного транспорта для заказа весом %d кг.\n\n" +
-                                "📋 Данные заказа:\n" +
-                                "• Адрес доставки: %s\n" +
-                                "• Вес: %d кг\n" +
-                                "• Транспорт: будет назначен позже\n\n" +
-                                "Вы хотите создать заказ? (да/нет)",
-                        weight, data.getDeliveryAddress(), weight
-                );
+                return Transition.to(OrderCreationState.AWAITING_CONFIRMATION,
+                        messageTemplates.render("order.weight.no_vehicle", weight, data.getDeliveryAddress()));
             } else {
                 Vehicle selectedVehicle = availableVehicles.get(0);
                 data.setVehicle(selectedVehicle);
 
-                orderCreationStates.put(chatId, OrderCreationState.AWAITING_CONFIRMATION);
-
-                return String.format(
-                        "✅ Найден подходящий транспорт!\n\n" +
-                                "📋 Данные заказа:\n" +
-                                "• Адрес доставки: %s\n" +
-                                "• Вес: %d кг\n" +
-                                "• Транспорт: %s (%s, грузоподъемность: %.1f т)\n\n" +
-                                "Вы подтверждаете создание заказа? (да/нет)",
-                        data.getDeliveryAddress(), weight,
-                        selectedVehicle.getModel(), selectedVehicle.getLicensePlate(),
-                        selectedVehicle.getCapacityTon()
-                );
+                return Transition.to(OrderCreationState.AWAITING_CONFIRMATION,
+                        messageTemplates.render("order.weight.vehicle_found",
+                                data.getDeliveryAddress(), weight,
+                                selectedVehicle.getModel(), selectedVehicle.getLicensePlate(),
+                                selectedVehicle.getCapacityTon()));
             }
 
         } catch (NumberFormatException e) {
-            return "❌ Неверный формат веса. Пожалуйста, введите целое число (вес в килограммах):";
+            return Transition.stay(messageTemplates.render("order.weight.invalid"));
         }
     }
 
-    private String processConfirmation(Long chatId, String confirmation) {
+    private Transition<OrderCreationState> processConfirmation(Long chatId, OrderData data, String confirmation) {
         String lowerConfirmation = confirmation.trim().toLowerCase();
 
         if (lowerConfirmation.equals("да") || lowerConfirmation.equals("yes") ||
                 lowerConfirmation.equals("y") || lowerConfirmation.equals("д")) {
 
-            return createOrder(chatId);
+            return Transition.finish(createOrder(chatId, data));
 
         } else if (lowerConfirmation.equals("нет") || lowerConfirmation.equals("no") ||
                 lowerConfirmation.equals("n") || lowerConfirmation.equals("н")) {
 
-            cancelOrderCreation(chatId);
-            return "❌ Создание заказа отменено.";
+            return Transition.finish("❌ Создание заказа отменено.");
 
         } else {
-            return "❌ Пожалуйста, ответьте 'да' или 'нет':";
+            return Transition.stay("❌ Пожалуйста, ответьте 'да' или 'нет':");
         }
     }
 
-    private String createOrder(Long chatId) {
+    // Диалог завершается и при успехе, и при ошибке сохранения. Если база недоступна,
+    // заказ записывается в журнал и оформляется после ее восстановления
+    private String createOrder(Long chatId, OrderData data) {
+        Customer customer = null;
+        LocalDateTime createTime = LocalDateTime.now();
         try {
-            Customer customer = authService.getAuthenticatedCustomer(chatId);
-            OrderData data = orderData.get(chatId);
-
-            // Создание нового заказа
-            Order order = new Order();
-            order.setId(orderRepository.findMaxOrderId() + 1);
-            order.setCreateTime(LocalDateTime.now());
-            order.setDeliveryAddress(data.getDeliveryAddress());
-            order.setTotalWeight(data.getTotalWeight());
-            order.setStatus("создан");
-            order.setCustomer(customer);
-
-            if (data.getVehicle() != null) {
-                order.setVehicle(data.getVehicle());
+            customer = authService.getAuthenticatedCustomer(chatId);
+            if (customer == null) {
+                return messageTemplates.render("order.create.failed");
             }
+            Order savedOrder = saveOrder(customer, data.getDeliveryAddress(), data.getTotalWeight(),
+                    data.getVehicle(), createTime, null);
+            return renderCreated(savedOrder, savedOrder.getVehicle() == null);
 
-            // Генерация ID заказа
-            Integer maxOrderId = orderRepository.findMaxOrderId();
-            int newOrderId = (maxOrderId != null) ? maxOrderId + 1 : 1;
-
-            // Сохранение заказа
-            Order savedOrder = orderRepository.save(order);
-
-            // Очистка состояния
-            orderCreationStates.remove(chatId);
-            orderData.remove(chatId);
-
-            String successMessage = String.format(
-                    "✅ Заказ успешно создан!\n\n" +
-                            "📦 Номер заказа: #%d\n" +
-                            "📍 Адрес доставки: %s\n" +
-                            "⚖️ Вес: %d кг\n" +
-                            "📊 Статус: %s\n" +
-                            "📅 Дата создания: %s\n\n" +
-                            "Вы можете отслеживать статус заказа в разделе 'Мои заказы'.",
-                    savedOrder.getId(),
-                    savedOrder.getDeliveryAddress(),
-                    savedOrder.getTotalWeight(),
-                    savedOrder.getStatus(),
-                    savedOrder.getCreateTime()
-            );
-
-            if (data.getVehicle() == null) {
-                successMessage += "\n\n⚠️ Транспорт для заказа будет назначен позже менеджером.";
+        } catch (Exception e) {
+            if (customer != null && DatabaseCircuitBreaker.isUnavailable(e)) {
+                return queueOrder(chatId, customer, data, createTime);
             }
+            failures.increment();
+            log.error("Не удалось оформить заказ, чат {}", chatId, e);
+            return messageTemplates.render("order.create.failed");
+        }
+    }
 
-            return successMessage;
+    private Order saveOrder(Customer customer, String deliveryAddress, Integer totalWeight, Vehicle vehicle,
+                            LocalDateTime createTime, String journalId) {
+        // Создание нового заказа
+        Order order = new Order();
+        order.setId(orderRepository.nextOrderId().intValue());
+        order.setJournalId(journalId);
+        order.setCreateTime(createTime);
+        order.setDeliveryAddress(deliveryAddress);
+        order.setTotalWeight(totalWeight);
+        order.setStatus("создан");
+        order.setStatusChangedAt(order.getCreateTime());
+        order.setSlaDeadline(slaPolicy.deadline(order.getStatus(), order.getCreateTime()));
+        order.setCustomer(customer);
+
+        // Заказ, занятие транспорта и первая запись истории (без прежнего статуса) сохраняются в одной
+        // транзакции. Транспорт, который успели занять после подбора, не назначается (как и при импорте)
+        Order savedOrder = transactionTemplate.execute(status -> {
+            if (vehicle != null && vehicleRepository.claimIfFree(vehicle.getVehicleId()) > 0) {
+                order.setVehicle(vehicle);
+            }
+            Order saved = orderRepository.save(order);
+            orderStatusHistoryRepository.insertChange(saved.getId(), null, saved.getStatus(), saved.getStatusChangedAt());
+            return saved;
+        });
+        if (savedOrder.getVehicle() != null) {
+            // Статус транспорта изменен запросом в обход JPA-слушателя кэша
+            vehicleCache.invalidate(savedOrder.getVehicle().getVehicleId());
+            statusCounters.vehicleStatusChanged("свободен", "занят");
+        }
+        Integer customerId = customer != null ? customer.getCustomerId() : null;
+        statusCounters.orderCreated(customerId, savedOrder.getStatus());
+        eventPublisher.publishEvent(new OrderCreatedEvent(savedOrder.getId(), customerId, savedOrder.getStatus(),
+                savedOrder.getTotalWeight(), savedOrder.getCreateTime(), savedOrder.getSlaDeadline()));
+        return savedOrder;
+    }
+
+    private String renderCreated(Order savedOrder, boolean vehicleLater) {
+        String successMessage = messageTemplates.render("order.created",
+                savedOrder.getId(),
+                savedOrder.getDeliveryAddress(),
+                savedOrder.getTotalWeight(),
+                savedOrder.getStatus(),
+                savedOrder.getCreateTime()
+        );
+
+        if (vehicleLater) {
+            successMessage += messageTemplates.render("order.created.vehicle_later");
+        }
 
+        return successMessage;
+    }
+
+    private String queueOrder(Long chatId, Customer customer, OrderData data, LocalDateTime createTime) {
+        try {
+            pendingOrderJournal.append(new PendingOrder(UUID.randomUUID().toString(), chatId,
+                    customer.getCustomerId(), data.getDeliveryAddress(), data.getTotalWeight(),
+                    data.getVehicle() != null ? data.getVehicle().getVehicleId() : null, createTime));
+            return messageTemplates.render("order.queued");
         } catch (Exception e) {
-            e.printStackTrace();
-            cancelOrderCreation(chatId);
-            return "❌ Произошла ошибка при создании заказа. Пожалуйста, попробуйте позже.";
+            failures.increment();
+            log.error("Не удалось записать заказ в журнал, чат {}", chatId, e);
+            return messageTemplates.render("order.create.failed");
+        }
+    }
+
+    @EventListener({DatabaseRecoveredEvent.class, ApplicationReadyEvent.class})
+    public void onDatabaseAvailable() {
+        // Событие приходит из потока, получившего соединение: оформление идет отдельно
+        if (pendingOrderJournal.getPendingCount() > 0) {
+            replayExecutor.submit(this::replayPendingOrders);
         }
     }
 
+    /**
+     * Оформление заказов из журнала в порядке подтверждения; клиент получает обычное сообщение
+     * о созданном заказе. Если база снова недоступна, остаток ждет следующего восстановления.
+     * Номер записи журнала сохраняется в заказе, поэтому запись, оформленная до сбоя, но не удаленная
+     * из журнала, второй раз не оформляется. Заказ, который оформить нельзя, переносится в отклоненные
+     */
+    void replayPendingOrders() {
+        List<PendingOrder> pending;
+        try {
+            pending = pendingOrderJournal.readAll();
+        } catch (Exception e) {
+            failures.increment();
+            log.error("Не удалось прочитать журнал отложенных заказов", e);
+            return;
+        }
+
+        for (PendingOrder entry : pending) {
+            Order savedOrder;
+            try {
+                savedOrder = orderRepository.findByJournalId(entry.getId()).orElse(null);
+                if (savedOrder == null) {
+                    Customer customer = customerRepository.findById(entry.getCustomerId()).orElse(null);
+                    if (customer == null) {
+                        rejectPendingOrder(entry, "клиент " + entry.getCustomerId() + " не найден");
+                        continue;
+                    }
+                    Vehicle vehicle = entry.getVehicleId() != null
+                            ? vehicleRepository.findById(entry.getVehicleId()).orElse(null)
+                            : null;
+                    savedOrder = saveOrder(customer, entry.getDeliveryAddress(), entry.getTotalWeight(),
+                            vehicle, entry.getCreateTime(), entry.getId());
+                }
+            } catch (Exception e) {
+                failures.increment();
+                log.error("Не удалось оформить отложенный заказ {}", entry.getId(), e);
+                if (DatabaseCircuitBreaker.isUnavailable(e)) {
+                    return;
+                }
+                rejectPendingOrder(entry, String.valueOf(e.getMessage()));
+                continue;
+            }
+
+            try {
+                pendingOrderJournal.remove(entry.getId());
+            } catch (Exception e) {
+                // Заказ уже в базе: при следующем проходе он найдется по journal_id, и запись будет удалена
+                failures.increment();
+                log.error("Не удалось удалить запись {} из журнала", entry.getId(), e);
+                continue;
+            }
+            messageSender.sendMessage(entry.getChatId(), renderCreated(savedOrder, savedOrder.getVehicle() == null));
+        }
+    }
+
+    private void rejectPendingOrder(PendingOrder entry, String failure) {
+        try {
+            pendingOrderJournal.deadLetter(entry, failure);
+            messageSender.sendMessage(entry.getChatId(), messageTemplates.render("order.queued.rejected",
+                    entry.getDeliveryAddress()));
+        } catch (Exception e) {
+            // Файл недоступен: запись остается в журнале до следующей попытки
+            failures.increment();
+            log.error("Не удалось перенести запись {} в отклоненные", entry.getId(), e);
+        }
+    }
+
+    @PreDestroy
+    public void cleanup() {
+        replayExecutor.shutdownNow();
+    }
+
     public void cancelOrderCreation(Long chatId) {
-        orderCreationStates.remove(chatId);
-        orderData.remove(chatId);
+        orderFlow.cancel(chatId);
     }
 
     public boolean isUserInOrderCreationProcess(Long chatId) {
-        return orderCreationStates.containsKey(chatId);
+        return orderFlow.isActive(chatId);
+    }
+
+    // Диалог со счетчиками (начато, завершено, отменено, ошибок) - для метрик
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    public Flow<?, ?> getFlow() {
+        return orderFlow;
     }
 
     public OrderCreationState getCurrentState(Long chatId) {
-        return orderCreationStates.get(chatId);
+        return orderFlow.getStep(chatId);
     }
 
     // Вспомогательные классы
@@ -0,0 +1,122 @@
+package com.logistics.service;
+
+import com.logistics.DTO.OrderDTOs.OrderRowDTO;
+import com.logistics.component.Bulkheads;
+import com.logistics.component.CsvParser;
+import com.logistics.repositories.OrderRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+@Service
+public class OrderExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderExportService.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final OrderRepository orderRepository;
+    private final CsvParser csvParser;
+    private final MessageSender messageSender;
+    // Отдельный шаблон только для чтения: потоковый запрос требует открытой транзакции
+    private final TransactionTemplate readOnlyTransaction;
+    private final Bulkheads bulkheads;
+    private final LongAdder failures = new LongAdder();
+
+    public OrderExportService(OrderRepository orderRepository,
+                              CsvParser csvParser,
+                              MessageSender messageSender,
+                              PlatformTransactionManager transactionManager,
+                              Bulkheads bulkheads) {
+        this.orderRepository = orderRepository;
+        this.csvParser = csvParser;
+        this.messageSender = messageSender;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.bulkheads = bulkheads;
+    }
+
+    /**
+     * Выгрузка в фоне (пул reporting): файл отправляется документом в чат администратора и затем удаляется.
+     * false - пул отчетов занят, выгрузка не поставлена
+     */
+    public boolean exportAsync(Long chatId, boolean gzip) {
+        return bulkheads.getReporting().trySubmit(() -> {
+            Path file = null;
+            try {
+                file = Files.createTempFile("orders-", gzip ? ".csv.gz" : ".csv");
+                long rows = exportOrders(file, gzip);
+                messageSender.sendDocument(chatId, file.toFile(), "📤 Выгрузка заказов: " + rows + " шт.");
+            } catch (Exception e) {
+                failures.increment();
+                log.error("Выгрузка заказов прервана ошибкой", e);
+                messageSender.sendMessage(chatId, "❌ Ошибка выгрузки заказов: " + e.getMessage());
+            } finally {
+                if (file != null) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        });
+    }
+
+    // Выгрузки, прерванные ошибкой
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    /**
+     * Построчная запись заказов в CSV (опционально gzip). Строки читаются курсором и сразу
+     * пишутся в файл, поэтому расход памяти не зависит от количества заказов.
+     */
+    public long exportOrders(Path file, boolean gzip) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             OutputStream raw = Channels.newOutputStream(channel);
+             OutputStream out = gzip ? new GZIPOutputStream(raw, BUFFER_SIZE) : raw;
+             Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+
+            writer.write("order_id,creation_date,total_weight,status,delivery_address,customer_id,vehicle_id\n");
+
+            Long rows = readOnlyTransaction.execute(status -> {
+                try (Stream<OrderRowDTO> stream = orderRepository.streamAllOrderRows()) {
+                    long count = 0;
+                    for (OrderRowDTO row : (Iterable<OrderRowDTO>) stream::iterator) {
+                        writer.write(formatRow(row));
+                        count++;
+                    }
+                    return count;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return rows != null ? rows : 0;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private String formatRow(OrderRowDTO row) {
+        return row.getId() + "," +
+                (row.getCreateTime() != null ? row.getCreateTime() : "") + "," +
+                (row.getTotalWeight() != null ? row.getTotalWeight() : "") + "," +
+                csvParser.escape(row.getStatus()) + "," +
+                csvParser.escape(row.getDeliveryAddress()) + "," +
+                (row.getCustomerId() != null ? row.getCustomerId() : "") + "," +
+                (row.getVehicleId() != null ? row.getVehicleId() : "") + "\n";
+    }
+}
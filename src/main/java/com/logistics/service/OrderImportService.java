@@ -0,0 +1,497 @@
+package com.logistics.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.logistics.component.CsvParser;
+import com.logistics.component.SlaPolicy;
+import com.logistics.component.StatusCounters;
+import com.logistics.component.VehicleCache;
+import com.logistics.event.OrderCreatedEvent;
+import com.logistics.model.Vehicle;
+import com.logistics.repositories.OrderRepository;
+import com.logistics.repositories.VehicleRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+@Service
+public class OrderImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderImportService.class);
+
+    // Размер порции: столько строк одновременно находится в памяти и вставляется одним пакетом
+    private static final int CHUNK_SIZE = 1000;
+
+    // Заказ и первая запись его истории (без прежнего статуса) - одним выражением
+    private static final String INSERT_SQL =
+            "WITH o AS (INSERT INTO orders (order_id, creation_date, total_weight, status, delivery_address, customer_id, " +
+            "vehicle_id, status_changed_at, sla_deadline) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "RETURNING order_id, status, status_changed_at) " +
+            "INSERT INTO order_status_history (order_id, old_status, new_status, changed_at) " +
+            "SELECT order_id, NULL, status, status_changed_at FROM o";
+
+    // Формат файла по расширению: .ndjson/.jsonl - объект в строке, .json - массив объектов, остальное - CSV
+    public enum Format { CSV, NDJSON, JSON }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final OrderRepository orderRepository;
+    private final VehicleRepository vehicleRepository;
+    private final CsvParser csvParser;
+    private final ObjectMapper objectMapper;
+    private final MessageSender messageSender;
+    private final StatusCounters statusCounters;
+    private final SlaPolicy slaPolicy;
+    private final VehicleCache vehicleCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final LongAdder failures = new LongAdder();
+
+    // Пользователи, от которых ожидается файл с заказами
+    private final Map<Long, Boolean> awaitingFile = new ConcurrentHashMap<>();
+
+    private ExecutorService importExecutor;
+
+    public OrderImportService(JdbcTemplate jdbcTemplate,
+                              TransactionTemplate transactionTemplate,
+                              OrderRepository orderRepository,
+                              VehicleRepository vehicleRepository,
+                              CsvParser csvParser,
+                              ObjectMapper objectMapper,
+                              MessageSender messageSender,
+                              StatusCounters statusCounters,
+                              SlaPolicy slaPolicy,
+                              VehicleCache vehicleCache,
+                              ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.orderRepository = orderRepository;
+        this.vehicleRepository = vehicleRepository;
+        this.csvParser = csvParser;
+        this.objectMapper = objectMapper;
+        this.messageSender = messageSender;
+        this.statusCounters = statusCounters;
+        this.slaPolicy = slaPolicy;
+        this.vehicleCache = vehicleCache;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostConstruct
+    public void init() {
+        importExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    public void startImport(Long chatId) {
+        awaitingFile.put(chatId, true);
+    }
+
+    public boolean isAwaitingFile(Long chatId) {
+        return awaitingFile.containsKey(chatId);
+    }
+
+    public void cancelImport(Long chatId) {
+        awaitingFile.remove(chatId);
+    }
+
+    /**
+     * Запуск импорта в фоне: итог и файл с результатом по каждой строке отправляются в чат
+     */
+    public void importAsync(Long chatId, Integer customerId, String fileName, Callable<InputStream> source) {
+        awaitingFile.remove(chatId);
+        importExecutor.submit(() -> {
+            Path report = null;
+            try (InputStream in = source.call()) {
+                report = Files.createTempFile("orders-import-result-", ".csv");
+                ImportResult result = importOrders(in, formatOf(fileName), customerId, report);
+
+                messageSender.sendMessage(chatId, formatSummary(result));
+                messageSender.sendDocument(chatId, report.toFile(), "Результат импорта заказов");
+            } catch (Exception e) {
+                failures.increment();
+                log.error("Импорт заказов прерван ошибкой", e);
+                messageSender.sendMessage(chatId, "❌ Ошибка импорта заказов: " + e.getMessage());
+            } finally {
+                if (report != null) {
+                    try {
+                        Files.deleteIfExists(report);
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        });
+    }
+
+    // Импорты, прерванные ошибкой
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    /**
+     * Потоковый импорт заказов: CSV (адрес,вес), NDJSON ({"address": ..., "weight": ...} в строке)
+     * или JSON-массив таких объектов. Транспорт подбирается по парку, загруженному один раз на весь файл,
+     * заказы вставляются пакетами.
+     */
+    public ImportResult importOrders(InputStream in, Format format, Integer customerId, Path resultReport)
+            throws IOException {
+        long startNanos = System.nanoTime();
+        ImportResult result = new ImportResult();
+
+        // Свободный транспорт по возрастанию грузоподъемности. Каждой строке достается наименьший
+        // подходящий, и он сразу занимается: крупный транспорт остается для тяжелых заказов
+        List<Vehicle> freeVehicles = new ArrayList<>(vehicleRepository.findAvailableVehiclesWithCapacity(0.0));
+        freeVehicles.sort(Comparator.comparing(Vehicle::getCapacityTon));
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+             BufferedWriter out = Files.newBufferedWriter(resultReport, StandardCharsets.UTF_8)) {
+
+            out.write("line,result,order_id,vehicle,error");
+            out.newLine();
+
+            ChunkWriter writer = new ChunkWriter(customerId, freeVehicles, result, out);
+            if (format == Format.JSON) {
+                readJsonArray(reader, writer);
+            } else {
+                readLines(reader, format == Format.NDJSON, writer);
+            }
+            writer.flush();
+        }
+
+        result.elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        return result;
+    }
+
+    private void readLines(BufferedReader reader, boolean ndjson, ChunkWriter writer) throws IOException {
+        String line = reader.readLine();
+        if (line != null && line.startsWith("\uFEFF")) {
+            line = line.substring(1);
+        }
+        char delimiter = csvParser.detectDelimiter(line);
+        long lineNumber = 1;
+
+        // Заголовок CSV необязателен
+        if (!ndjson && line != null && line.toLowerCase(Locale.ROOT).startsWith("address")) {
+            line = reader.readLine();
+            lineNumber++;
+        }
+
+        while (line != null) {
+            if (!line.isBlank()) {
+                writer.add(ndjson ? parseJson(lineNumber, line) : parseCsv(lineNumber, line, delimiter));
+            }
+            line = reader.readLine();
+            lineNumber++;
+        }
+    }
+
+    // Массив читается потоково, по одному элементу; в отчете - строка файла, где начинается элемент
+    private void readJsonArray(BufferedReader reader, ChunkWriter writer) throws IOException {
+        reader.mark(1);
+        if (reader.read() != '\uFEFF') {
+            reader.reset();
+        }
+        try (JsonParser parser = objectMapper.getFactory().createParser(reader)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("ожидается JSON-массив заказов");
+            }
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.currentToken() == null) {
+                    throw new IOException("JSON-массив заказов не закрыт");
+                }
+                long lineNumber = parser.currentTokenLocation().getLineNr();
+                JsonNode node = objectMapper.readTree(parser);
+                if (node == null || !node.isObject()) {
+                    OrderRow row = new OrderRow(lineNumber);
+                    row.error = "ожидается объект {\"address\": ..., \"weight\": ...}";
+                    writer.add(row);
+                } else {
+                    writer.add(validate(lineNumber, node.path("address").asText(null), node.path("weight").asText(null)));
+                }
+            }
+        }
+    }
+
+    private static Vehicle takeVehicle(List<Vehicle> freeVehicles, int weight) {
+        for (Iterator<Vehicle> it = freeVehicles.iterator(); it.hasNext(); ) {
+            Vehicle vehicle = it.next();
+            if (vehicle.getCapacityTon() != null && vehicle.getCapacityTon() >= weight / 1000.0) {
+                it.remove();
+                return vehicle;
+            }
+        }
+        return null;
+    }
+
+    private void insertChunk(List<OrderRow> chunk, Integer customerId, List<Vehicle> freeVehicles,
+                             ImportResult result, BufferedWriter out) throws IOException {
+        // Номера заказов выдает последовательность, как и в диалоге; при ошибке вставки
+        // порция откатывается и повторяется один раз с новыми номерами
+        LocalDateTime createTime = tryInsert(chunk, customerId);
+        if (createTime == null) {
+            createTime = tryInsert(chunk, customerId);
+        }
+
+        if (createTime != null) {
+            // После сохранения - то же, что при создании заказа в диалоге (OrderCreationService):
+            // счетчики напрямую, остальное (кэш страниц, статистика клиента, контроль SLA) - по событию
+            statusCounters.ordersCreated(customerId, "создан", chunk.size());
+            LocalDateTime deadline = slaPolicy.deadline("создан", createTime);
+            for (OrderRow row : chunk) {
+                if (row.vehicle != null) {
+                    vehicleCache.invalidate(row.vehicle.getVehicleId());
+                    statusCounters.vehicleStatusChanged("свободен", "занят");
+                }
+                eventPublisher.publishEvent(new OrderCreatedEvent(row.orderId, customerId, "создан",
+                        row.weight, createTime, deadline));
+            }
+        } else {
+            // Порция не сохранена: подобранный ей транспорт свободен для следующих строк
+            for (OrderRow row : chunk) {
+                if (row.plannedVehicle != null) {
+                    freeVehicles.add(row.plannedVehicle);
+                }
+            }
+            freeVehicles.sort(Comparator.comparing(Vehicle::getCapacityTon));
+        }
+        for (OrderRow row : chunk) {
+            if (createTime != null) {
+                result.imported++;
+            } else {
+                row.orderId = null;
+                row.vehicle = null;
+                row.error = "ошибка сохранения, повторите загрузку";
+                result.failed++;
+            }
+            writeRow(out, row);
+        }
+    }
+
+    // Выбранный транспорт занимается в транзакции порции тем же правилом, что и в диалоге
+    // (VehicleRepository.claimIfFree): если его успели занять после загрузки парка, заказ создается без транспорта
+    private void claimVehicles(List<OrderRow> chunk) {
+        for (OrderRow row : chunk) {
+            // Повтор после отката начинает с подобранного транспорта: занятия первой попытки отменены
+            row.vehicle = row.plannedVehicle;
+            if (row.vehicle != null && vehicleRepository.claimIfFree(row.vehicle.getVehicleId()) == 0) {
+                row.vehicle = null;
+            }
+        }
+    }
+
+    // Время создания сохраненной порции; null - порция откатилась
+    private LocalDateTime tryInsert(List<OrderRow> chunk, Integer customerId) {
+        try {
+            return transactionTemplate.execute(status -> {
+                claimVehicles(chunk);
+                List<Long> orderIds = orderRepository.nextOrderIds(chunk.size());
+                LocalDateTime createTime = LocalDateTime.now();
+                Timestamp now = Timestamp.valueOf(createTime);
+                LocalDateTime deadline = slaPolicy.deadline("создан", createTime);
+
+                for (int i = 0; i < chunk.size(); i++) {
+                    chunk.get(i).orderId = orderIds.get(i).intValue();
+                }
+
+                jdbcTemplate.batchUpdate(INSERT_SQL, chunk, chunk.size(), (ps, row) -> {
+                    ps.setInt(1, row.orderId);
+                    ps.setTimestamp(2, now);
+                    ps.setInt(3, row.weight);
+                    ps.setString(4, "создан");
+                    ps.setString(5, row.address);
+                    ps.setInt(6, customerId);
+                    if (row.vehicle != null) {
+                        ps.setInt(7, row.vehicle.getVehicleId());
+                    } else {
+                        ps.setNull(7, Types.INTEGER);
+                    }
+                    ps.setTimestamp(8, now);
+                    if (deadline != null) {
+                        ps.setTimestamp(9, Timestamp.valueOf(deadline));
+                    } else {
+                        ps.setNull(9, Types.TIMESTAMP);
+                    }
+                });
+
+                return createTime;
+            });
+        } catch (DataAccessException e) {
+            return null;
+        }
+    }
+
+    private OrderRow parseCsv(long lineNumber, String line, char delimiter) {
+        List<String> fields = csvParser.parseLine(line, delimiter);
+        if (fields.size() < 2) {
+            OrderRow row = new OrderRow(lineNumber);
+            row.error = "ожидается 2 поля: адрес,вес";
+            return row;
+        }
+        return validate(lineNumber, fields.get(0), fields.get(1));
+    }
+
+    private OrderRow parseJson(long lineNumber, String line) {
+        try {
+            JsonNode node = objectMapper.readTree(line);
+            return validate(lineNumber, node.path("address").asText(null), node.path("weight").asText(null));
+        } catch (IOException e) {
+            OrderRow row = new OrderRow(lineNumber);
+            row.error = "некорректный JSON";
+            return row;
+        }
+    }
+
+    // Те же правила, что и при создании заказа в диалоге (OrderCreationService)
+    private OrderRow validate(long lineNumber, String address, String weightInput) {
+        OrderRow row = new OrderRow(lineNumber);
+        row.address = address != null ? address.trim() : null;
+
+        if (row.address == null || row.address.isEmpty()) {
+            row.error = "адрес не может быть пустым";
+            return row;
+        }
+        if (row.address.length() < 5) {
+            row.error = "адрес слишком короткий";
+            return row;
+        }
+
+        try {
+            row.weight = Integer.parseInt(weightInput == null ? "" : weightInput.trim());
+        } catch (NumberFormatException e) {
+            row.error = "неверный формат веса";
+            return row;
+        }
+        if (row.weight <= 2000) {
+            row.error = "минимальный вес заказа 2000 кг";
+        } else if (row.weight > 21000) {
+            row.error = "максимальный вес 21000 кг";
+        }
+        return row;
+    }
+
+    private void writeRow(BufferedWriter out, OrderRow row) throws IOException {
+        out.write(row.lineNumber + "," +
+                (row.error == null ? "ok" : "error") + "," +
+                (row.orderId != null ? row.orderId : "") + "," +
+                (row.vehicle != null ? csvParser.escape(row.vehicle.getLicensePlate()) : "") + "," +
+                csvParser.escape(row.error));
+        out.newLine();
+    }
+
+    static Format formatOf(String fileName) {
+        if (fileName == null) {
+            return Format.CSV;
+        }
+        String lower = fileName.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".ndjson") || lower.endsWith(".jsonl")) {
+            return Format.NDJSON;
+        }
+        return lower.endsWith(".json") ? Format.JSON : Format.CSV;
+    }
+
+    private String formatSummary(ImportResult result) {
+        return "📥 Импорт заказов завершен\n\n" +
+                "• Строк обработано: " + result.getTotal() + "\n" +
+                "• Создано заказов: " + result.getImported() + "\n" +
+                "• С ошибками: " + result.getFailed() + "\n" +
+                "• Время: " + result.getElapsedMillis() + " мс\n\n" +
+                "Результат по каждой строке - в файле ниже.";
+    }
+
+    @PreDestroy
+    public void cleanup() {
+        if (importExecutor != null) {
+            importExecutor.shutdownNow();
+        }
+    }
+
+    // Накопление корректных строк в порции: транспорт подбирается при добавлении строки,
+    // ошибочные строки сразу пишутся в отчет
+    private class ChunkWriter {
+        private final Integer customerId;
+        private final List<Vehicle> freeVehicles;
+        private final ImportResult result;
+        private final BufferedWriter out;
+        private final List<OrderRow> chunk = new ArrayList<>(CHUNK_SIZE);
+
+        ChunkWriter(Integer customerId, List<Vehicle> freeVehicles, ImportResult result, BufferedWriter out) {
+            this.customerId = customerId;
+            this.freeVehicles = freeVehicles;
+            this.result = result;
+            this.out = out;
+        }
+
+        void add(OrderRow row) throws IOException {
+            result.total++;
+            if (row.error != null) {
+                result.failed++;
+                writeRow(out, row);
+                return;
+            }
+            row.plannedVehicle = takeVehicle(freeVehicles, row.weight);
+            chunk.add(row);
+            if (chunk.size() == CHUNK_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            if (!chunk.isEmpty()) {
+                insertChunk(chunk, customerId, freeVehicles, result, out);
+                chunk.clear();
+            }
+        }
+    }
+
+    // Вспомогательные классы
+    public static class ImportResult {
+        private long total;
+        private long imported;
+        private long failed;
+        private long elapsedMillis;
+
+        public long getTotal() { return total; }
+        public long getImported() { return imported; }
+        public long getFailed() { return failed; }
+        public long getElapsedMillis() { return elapsedMillis; }
+    }
+
+    private static class OrderRow {
+        private final long lineNumber;
+        private String address;
+        private int weight;
+        // Подобранный при чтении и фактически занятый транспорт
+        private Vehicle plannedVehicle;
+        private Vehicle vehicle;
+        private Integer orderId;
+        private String error;
+
+        OrderRow(long lineNumber) {
+            this.lineNumber = lineNumber;
+        }
+    }
+}
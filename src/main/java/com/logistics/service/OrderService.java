@@ -1,8 +1,14 @@
 package com.logistics.service;
 
+import com.logistics.DTO.OrderDTOs.OrderRowDTO;
+import com.logistics.component.DatabaseCircuitBreaker;
+import com.logistics.component.MessageTemplates;
+import com.logistics.component.OrderPageCache;
+import com.logistics.component.StatusCounters;
 import com.logistics.model.Order;
 import com.logistics.repositories.OrderRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -11,13 +17,75 @@ import java.util.Optional;
 @Service
 public class OrderService {
 
+    public static final int USER_ORDERS_PAGE_SIZE = 10;
+
     @Autowired
     private OrderRepository orderRepository;
 
+    @Autowired
+    private StatusCounters statusCounters;
+
+    @Autowired
+    private OrderPageCache orderPageCache;
+
+    @Autowired
+    private MessageTemplates messageTemplates;
+
     public List<Order> getUserOrders(Integer customerId) {
         return orderRepository.findByCustomerIdOrderByCreateTimeDesc(customerId);
     }
 
+    /**
+     * Страница «Мои заказы» (cursor null - первая). Текст берется из кэша страниц,
+     * который сбрасывается при создании заказа клиента или смене статуса его заказов.
+     * Пока база недоступна, страницы из кэша по-прежнему отдаются, вместо остальных - предупреждение.
+     */
+    public OrderPageCache.RenderedPage getUserOrdersPage(Integer customerId, OrderPageCache.Cursor cursor) {
+        try {
+            return orderPageCache.getOrRender(customerId, cursor, () -> renderUserOrdersPage(customerId, cursor));
+        } catch (RuntimeException e) {
+            if (!DatabaseCircuitBreaker.isUnavailable(e)) {
+                throw e;
+            }
+            return new OrderPageCache.RenderedPage(messageTemplates.render("orders.unavailable"), null);
+        }
+    }
+
+    private OrderPageCache.RenderedPage renderUserOrdersPage(Integer customerId, OrderPageCache.Cursor cursor) {
+        // Запрашиваем на одну строку больше, чтобы знать, есть ли следующая страница
+        PageRequest limit = PageRequest.of(0, USER_ORDERS_PAGE_SIZE + 1);
+        List<OrderRowDTO> rows = cursor == null
+                ? orderRepository.findCustomerOrderRows(customerId, limit)
+                : orderRepository.findCustomerOrderRowsBefore(customerId, cursor.getCreateTime(), cursor.getOrderId(), limit);
+        int pageNumber = cursor != null ? cursor.getPageNumber() : 1;
+
+        if (rows.isEmpty()) {
+            return new OrderPageCache.RenderedPage(
+                    messageTemplates.render(pageNumber == 1 ? "orders.empty" : "orders.no_more"), null);
+        }
+
+        boolean hasNext = rows.size() > USER_ORDERS_PAGE_SIZE;
+        List<OrderRowDTO> pageRows = rows.subList(0, Math.min(rows.size(), USER_ORDERS_PAGE_SIZE));
+        StringBuilder text = new StringBuilder(256 * pageRows.size());
+        if (hasNext || pageNumber > 1) {
+            messageTemplates.renderTo(text, "orders.header.paged", pageNumber);
+        } else {
+            messageTemplates.renderTo(text, "orders.header");
+        }
+        for (OrderRowDTO row : pageRows) {
+            messageTemplates.renderTo(text, "orders.item", row.getId(), row.getDeliveryAddress(),
+                    row.getTotalWeight(), row.getStatus(), row.getCreateTime());
+        }
+
+        OrderPageCache.Cursor next = null;
+        if (hasNext) {
+            OrderRowDTO last = pageRows.get(pageRows.size() - 1);
+            next = new OrderPageCache.Cursor(last.getCreateTime(), last.getId(), pageNumber + 1);
+            messageTemplates.renderTo(text, "orders.next");
+        }
+        return new OrderPageCache.RenderedPage(text.toString(), next);
+    }
+
     public List<Order> getUserOrdersByStatus(Integer customerId, String status) {
         return orderRepository.findByCustomerCustomerIdAndStatus(customerId, status);
     }
@@ -34,8 +102,9 @@ public class OrderService {
         return orderRepository.findRecentOrdersByCustomerId(customerId, limit);
     }
 
+    // Значение из счетчиков в памяти, без COUNT по таблице заказов
     public long getOrderCountByStatus(Integer customerId, String status) {
-        return orderRepository.countByCustomerIdAndStatus(customerId, status);
+        return statusCounters.getCustomerOrderCount(customerId, status);
     }
 
     public Order saveOrder(Order order) {
@@ -1,185 +1,140 @@
 package com.logistics.service;
 
+import com.logistics.DTO.CustomerDTOs.CustomerRowDTO;
 import com.logistics.DTO.RegistrationDTOs.*;
 import com.logistics.component.*;
+import com.logistics.event.CustomerChangedEvent;
+import com.logistics.flow.Flow;
+import com.logistics.flow.Flow.Transition;
 import com.logistics.model.*;
 import com.logistics.repositories.CustomerRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.*;
-import java.util.*;
-import java.util.concurrent.*;
 
 @Service
 public class RegistrationService {
 
-    private Map<Long, RegistrationState> userStates = new ConcurrentHashMap<>();
-    private Map<Long, UserRegistrationDTO> userData = new ConcurrentHashMap<>();
     private final MessageSender messageSender;
     private final InputValidator inputValidator;
     private final PasswordHasher passwordHasher;
     private final CustomerRepository customerRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MessageTemplates messageTemplates;
+
+    // Диалог регистрации: email -> имя -> телефон -> адрес -> пароль -> подтверждение пароля
+    private final Flow<RegistrationState, UserRegistrationDTO> registrationFlow;
 
     public RegistrationService(MessageSender messageSender,
                                InputValidator inputValidator,
                                PasswordHasher passwordHasher,
-                               CustomerRepository customerRepository) {
+                               CustomerRepository customerRepository,
+                               ApplicationEventPublisher eventPublisher,
+                               MessageTemplates messageTemplates) {
         this.messageSender = messageSender;
         this.inputValidator = inputValidator;
         this.passwordHasher = passwordHasher;
         this.customerRepository = customerRepository;
+        this.eventPublisher = eventPublisher;
+        this.messageTemplates = messageTemplates;
+
+        // Собирается после присваивания полей: проверки ссылаются на inputValidator
+        this.registrationFlow = Flow.builder(RegistrationState.class, UserRegistrationDTO::new)
+                .start(RegistrationState.WAITING_FOR_EMAIL, "📝 Начинаем регистрацию!")
+                .cancelOn("❌ Отмена", "❌ Регистрация отменена.")
+                // Занятость email проверяется уникальным индексом при сохранении (completeRegistration)
+                .step(RegistrationState.WAITING_FOR_EMAIL, "Введите ваш email:")
+                    .accept(inputValidator::isValidEmail, "❌ Неверный формат email. Попробуйте еще раз:")
+                    .store(UserRegistrationDTO::setEmail)
+                    .next(RegistrationState.WAITING_FOR_NAME, "✅ Email принят!")
+                .step(RegistrationState.WAITING_FOR_NAME, "Теперь введите ваше полное имя:")
+                    .accept(inputValidator::isValidName, "❌ Имя должно содержать минимум 2 символа. Попробуйте еще раз:")
+                    .store(UserRegistrationDTO::setName)
+                    .next(RegistrationState.WAITING_FOR_PHONE, "✅ Имя принято!")
+                .step(RegistrationState.WAITING_FOR_PHONE, "Теперь введите ваш номер телефона:")
+                    .accept(inputValidator::isValidPhone, "❌ Неверный формат номера телефона. Попробуйте еще раз:")
+                    .store(UserRegistrationDTO::setPhone)
+                    .next(RegistrationState.WAITING_FOR_ADDRESS, "✅ Номер телефона принят!")
+                .step(RegistrationState.WAITING_FOR_ADDRESS, "Теперь введите ваш адрес:")
+                    .accept(inputValidator::isValidAddress, "❌ Адрес должен содержать минимум 5 символов. Попробуйте еще раз:")
+                    .store(UserRegistrationDTO::setAddress)
+                    .next(RegistrationState.WAITING_FOR_PASSWORD, "✅ Адрес принят!")
+                .step(RegistrationState.WAITING_FOR_PASSWORD, "Придумайте и введите пароль (минимум 6 символов):")
+                    .accept(inputValidator::isValidPassword, "❌ Пароль должен содержать минимум 6 символов. Попробуйте еще раз:")
+                    .store(UserRegistrationDTO::setPassword)
+                    .next(RegistrationState.WAITING_FOR_CONFIRMATION, "✅ Пароль принят!")
+                .step(RegistrationState.WAITING_FOR_CONFIRMATION, "Повторите пароль для подтверждения:")
+                    .handle(this::processConfirmation)
+                // Email оказался занят при сохранении: остальные данные уже введены, пробуем сразу сохранить
+                .step(RegistrationState.WAITING_FOR_NEW_EMAIL)
+                    .accept(inputValidator::isValidEmail, "❌ Неверный формат email. Попробуйте еще раз:")
+                    .store(UserRegistrationDTO::setEmail)
+                    .handle((chatId, data, message) -> completeRegistration(data))
+                .build();
     }
 
     // Метод для проверки, находится ли пользователь в процессе регистрации
     public boolean isUserInRegistrationProcess(Long chatId) {
-        return userStates.containsKey(chatId);
+        return registrationFlow.isActive(chatId);
     }
 
-    public void startRegistration(Long chatId) {
-        userStates.put(chatId, RegistrationState.WAITING_FOR_EMAIL);
-        userData.put(chatId, new UserRegistrationDTO());
+    // Диалог со счетчиками (начато, завершено, отменено, ошибок) - для метрик
+    public Flow<?, ?> getFlow() {
+        return registrationFlow;
+    }
 
-        messageSender.sendMessageWithCancel(chatId,  // используем новый метод
-                "📝 Начинаем регистрацию!\n\n" +
-                        "Введите ваш email:");
+    public void startRegistration(Long chatId) {
+        messageSender.sendMessageWithCancel(chatId, registrationFlow.start(chatId));
     }
 
     public void processInput(Long chatId, String message) {
-        RegistrationState currentState = userStates.get(chatId);
+        Flow.Reply reply = registrationFlow.process(chatId, message);
 
-        if (currentState == null) {
+        if (reply == null) {
             messageSender.sendMessage(chatId, "Начните регистрацию с помощью команды /sign");
             return;
         }
 
-        // ПРОВЕРЯЕМ ОТМЕНУ ПЕРВЫМ ДЕЛОМ
-        if ("❌ Отмена".equals(message)) {
-            cancelRegistration(chatId);
-            return;
+        if (reply.isFinished()) {
+            messageSender.sendMessage(chatId, reply.getText(), true); // true - показать главное меню
+        } else {
+            messageSender.sendMessageWithCancel(chatId, reply.getText());
         }
+    }
 
-        UserRegistrationDTO data = userData.get(chatId);
-
-        switch (currentState) {
-            case WAITING_FOR_EMAIL:
-                if (inputValidator.isValidEmail(message)) {
-                    // Проверяем, не занят ли email
-                    if (customerRepository.findByEmail(message).isPresent()) {
-                        messageSender.sendMessageWithCancel(chatId,
-                                "❌ Этот email уже зарегистрирован. Введите другой email:");
-                        return;
-                    }
-                    data.setEmail(message);
-                    userStates.put(chatId, RegistrationState.WAITING_FOR_NAME);
-                    messageSender.sendMessageWithCancel(chatId,
-                            "✅ Email принят!\n\n" +
-                                    "Теперь введите ваше полное имя:");
-                } else {
-                    messageSender.sendMessageWithCancel(chatId,
-                            "❌ Неверный формат email. Попробуйте еще раз:");
-                }
-                break;
-
-            case WAITING_FOR_NAME:
-                if (inputValidator.isValidName(message)) {
-                    data.setName(message);
-                    userStates.put(chatId, RegistrationState.WAITING_FOR_PHONE);
-                    messageSender.sendMessageWithCancel(chatId,
-                            "✅ Имя принято!\n\n" +
-                                    "Теперь введите ваш номер телефона:");
-                } else {
-                    messageSender.sendMessageWithCancel(chatId,
-                            "❌ Имя должно содержать минимум 2 символа. Попробуйте еще раз:");
-                }
-                break;
-
-            case WAITING_FOR_PHONE:
-                if (inputValidator.isValidPhone(message)) {
-                    data.setPhone(message);
-                    userStates.put(chatId, RegistrationState.WAITING_FOR_ADDRESS);
-                    messageSender.sendMessageWithCancel(chatId,
-                            "✅ Номер телефона принят!\n\n" +
-                                    "Теперь введите ваш адрес:");
-                } else {
-                    messageSender.sendMessageWithCancel(chatId,
-                            "❌ Неверный формат номера телефона. Попробуйте еще раз:");
-                }
-                break;
-
-            case WAITING_FOR_ADDRESS:
-                if (inputValidator.isValidAddress(message)) {
-                    data.setAddress(message);
-                    userStates.put(chatId, RegistrationState.WAITING_FOR_PASSWORD);
-                    messageSender.sendMessageWithCancel(chatId,
-                            "✅ Адрес принят!\n\n" +
-                                    "Придумайте и введите пароль (минимум 6 символов):");
-                } else {
-                    messageSender.sendMessageWithCancel(chatId,
-                            "❌ Адрес должен содержать минимум 5 символов. Попробуйте еще раз:");
-                }
-                break;
-
-            case WAITING_FOR_PASSWORD:
-                if (inputValidator.isValidPassword(message)) {
-                    data.setPassword(message);
-                    userStates.put(chatId, RegistrationState.WAITING_FOR_CONFIRMATION);
-                    messageSender.sendMessageWithCancel(chatId,
-                            "✅ Пароль принят!\n\n" +
-                                    "Повторите пароль для подтверждения:");
-                } else {
-                    messageSender.sendMessageWithCancel(chatId,
-                            "❌ Пароль должен содержать минимум 6 символов. Попробуйте еще раз:");
-                }
-                break;
-
-            case WAITING_FOR_CONFIRMATION:
-                if (data.getPassword().equals(message)) {
-                    data.setPassword(passwordHasher.hashPassword(message));
-                    completeRegistration(chatId, data);
-                } else {
-                    messageSender.sendMessageWithCancel(chatId,
-                            "❌ Пароли не совпадают. Введите пароль еще раз:");
-                    userStates.put(chatId, RegistrationState.WAITING_FOR_PASSWORD);
-                }
-                break;
+    private Transition<RegistrationState> processConfirmation(Long chatId, UserRegistrationDTO data, String message) {
+        if (data.getPassword().equals(message)) {
+            data.setPassword(passwordHasher.hashPassword(message));
+            return completeRegistration(data);
         }
+        return Transition.to(RegistrationState.WAITING_FOR_PASSWORD, "❌ Пароли не совпадают. Введите пароль еще раз:");
     }
 
-    private void completeRegistration(Long chatId, UserRegistrationDTO data) {
+    private Transition<RegistrationState> completeRegistration(UserRegistrationDTO data) {
         try {
-            // Создаем нового пользователя в базе данных
-            data.setUserId(customerRepository.findMaxCustomerId() + 1);
-            Customer customer = new Customer(data);
-
-            // Сохраняем в базу данных
-            Customer savedCustomer = customerRepository.save(customer);
-
-            // Очищаем состояния
-            userStates.remove(chatId);
-            userData.remove(chatId);
-
-            messageSender.sendMessage(chatId,
-                    "🎉 Регистрация завершена успешно!\n\n" +
-                            "✅ Ваши данные:\n" +
-                            "• Email: " + data.getEmail() + "\n" +
-                            "• Имя: " + data.getName() + "\n" +
-                            "• Телефон: " + data.getPhone() + "\n" +
-                            "• Адрес: " + data.getAddress() + "\n\n" +
-                            "Добро пожаловать! Ваш ID: " + savedCustomer.getCustomerId(),
-                    true); // true - показать главное меню
+            // Создаем нового пользователя одним запросом; null - email уже зарегистрирован
+            Integer customerId = customerRepository.insertIfEmailFree(
+                    data.getName(), data.getPhone(), data.getAddress(), data.getEmail(), data.getPassword());
+
+            if (customerId == null) {
+                return Transition.to(RegistrationState.WAITING_FOR_NEW_EMAIL,
+                        messageTemplates.render("registration.email_taken"));
+            }
+            data.setUserId(customerId);
+            eventPublisher.publishEvent(new CustomerChangedEvent(
+                    new CustomerRowDTO(customerId, data.getName(), data.getEmail(), data.getPhone())));
+
+            return Transition.finish(messageTemplates.render("registration.completed", data.getEmail(), data.getName(),
+                    data.getPhone(), data.getAddress(), data.getUserId()));
 
         } catch (Exception e) {
-            messageSender.sendMessage(chatId,
-                    "❌ Ошибка при регистрации: " + e.getMessage() + "\n" +
-                            "Попробуйте снова с командой /sign",
-                    true); // показываем меню даже при ошибке
-            userStates.remove(chatId);
-            userData.remove(chatId);
+            // Меню показывается и при ошибке
+            return Transition.finish(messageTemplates.render("registration.failed", e.getMessage()));
         }
     }
 
     // Метод для отмены регистрации
     public void cancelRegistration(Long chatId) {
-        userStates.remove(chatId);
-        userData.remove(chatId);
+        registrationFlow.cancel(chatId);
         messageSender.sendMessage(chatId, "❌ Регистрация отменена.", true);
     }
 }
@@ -190,5 +145,6 @@ enum RegistrationState {
     WAITING_FOR_PHONE,
     WAITING_FOR_ADDRESS,
     WAITING_FOR_PASSWORD,
-    WAITING_FOR_CONFIRMATION
+    WAITING_FOR_CONFIRMATION,
+    WAITING_FOR_NEW_EMAIL
 }
\ No newline at end of file
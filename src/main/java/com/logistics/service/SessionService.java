@@ -73,6 +73,13 @@ public class SessionService {
         return session != null && !session.isExpired(sessionTimeoutMinutes);
     }
 
+    // Неистекшие сессии (считаются при каждом съеме метрик)
+    public long getActiveSessionCount() {
+        return sessions.values().stream()
+                .filter(session -> !session.isExpired(sessionTimeoutMinutes))
+                .count();
+    }
+
     private void cleanupExpiredSessions() {
         sessions.entrySet().removeIf(entry ->
                 entry.getValue().isExpired(sessionTimeoutMinutes)
@@ -0,0 +1,344 @@
+package com.logistics.service;
+
+import com.logistics.DTO.OrderDTOs.OrderDeadlineRow;
+import com.logistics.component.SlaPolicy;
+import com.logistics.event.OrderCreatedEvent;
+import com.logistics.event.OrderStatusChangedEvent;
+import com.logistics.repositories.OrderRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Контроль SLA: находит заказы, которые дольше допустимого находятся в одном статусе,
+ * и раз в интервал отправляет каждому вошедшему администратору одну сводку.
+ *
+ * Ближайшие сроки держатся в очереди с приоритетом. Из базы по индексу ix_orders_sla_deadline
+ * дочитываются только сроки, попавшие в окно [позиция; сейчас + горизонт], поэтому проверка
+ * не сканирует таблицу заказов. Изменения статусов из приложения попадают в очередь через события.
+ */
+@Service
+public class SlaWatchdogService {
+
+    private static final Logger log = LoggerFactory.getLogger(SlaWatchdogService.class);
+
+    // Порция строк за одно чтение из базы и предел очереди
+    static final int LOAD_BATCH = 1000;
+    static final int MAX_QUEUE_SIZE = 20000;
+    // Сколько заказов перечислять в сводке и сколько держать, пока нет ни одного администратора
+    static final int DIGEST_LIMIT = 20;
+    static final int MAX_PENDING = 1000;
+
+    private static final LocalDateTime INITIAL_POSITION = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final OrderRepository orderRepository;
+    private final SlaPolicy slaPolicy;
+    private final AdminService adminService;
+    private final MessageSender messageSender;
+
+    private final PriorityQueue<Deadline> queue = new PriorityQueue<>();
+    // Актуальный срок по каждому заказу в очереди: записи с другим сроком устарели и пропускаются
+    private final Map<Integer, LocalDateTime> current = new HashMap<>();
+    // Просроченные заказы, еще не попавшие в сводку
+    private final Map<Integer, Deadline> pending = new LinkedHashMap<>();
+    private long droppedPending;
+
+    // Позиция чтения из базы: все сроки до нее включительно уже загружены в очередь
+    private LocalDateTime loadedDeadline = INITIAL_POSITION;
+    private Integer loadedOrderId = 0;
+    // Окно идущего чтения и заказы, изменившиеся за время чтения (их строки из базы могли устареть)
+    private LocalDateTime loadingUntil;
+    private final Set<Integer> trackedDuringLoad = new HashSet<>();
+    private final LongAdder failures = new LongAdder();
+
+    private ScheduledExecutorService scheduler;
+
+    @Value("${sla.check.interval.minutes:15}")
+    private int checkIntervalMinutes;
+
+    public SlaWatchdogService(OrderRepository orderRepository,
+                              SlaPolicy slaPolicy,
+                              AdminService adminService,
+                              MessageSender messageSender) {
+        this.orderRepository = orderRepository;
+        this.slaPolicy = slaPolicy;
+        this.adminService = adminService;
+        this.messageSender = messageSender;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        scheduler = Executors.newScheduledThreadPool(1);
+        scheduler.execute(this::recomputeDeadlinesSafely);
+        scheduler.scheduleAtFixedRate(
+                this::checkSafely,
+                checkIntervalMinutes,
+                checkIntervalMinutes,
+                TimeUnit.MINUTES
+        );
+    }
+
+    /**
+     * Приведение сроков в базе к текущим порогам: заполняет заказы, созданные до появления SLA,
+     * и пересчитывает сроки после изменения настроек. Обновляются только отличающиеся строки.
+     */
+    public void recomputeDeadlines() {
+        Map<String, Duration> thresholds = slaPolicy.getThresholds();
+        for (Map.Entry<String, Duration> entry : thresholds.entrySet()) {
+            orderRepository.applySlaThreshold(entry.getKey(), (int) entry.getValue().toMinutes());
+        }
+        if (thresholds.isEmpty()) {
+            orderRepository.clearAllSlaDeadlines();
+        } else {
+            orderRepository.clearSlaDeadlinesExcept(thresholds.keySet());
+        }
+    }
+
+    @EventListener
+    public void onOrderCreated(OrderCreatedEvent event) {
+        track(event.getOrderId(), event.getStatus(), event.getSlaDeadline());
+    }
+
+    @EventListener
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        LocalDateTime deadline = slaPolicy.deadline(event.getNewStatus(), LocalDateTime.now());
+        for (OrderStatusChangedEvent.Change change : event.getChanges()) {
+            track(change.getOrderId(), event.getNewStatus(), deadline);
+        }
+    }
+
+    /**
+     * Новый срок заказа. Сроки за позицией чтения сюда не кладутся: их загрузит следующее чтение из базы
+     */
+    public synchronized void track(Integer orderId, String status, LocalDateTime deadline) {
+        current.remove(orderId);
+        pending.remove(orderId);
+        if (loadingUntil != null) {
+            trackedDuringLoad.add(orderId);
+        }
+        if (deadline != null && (!isAfterLoadedPosition(deadline, orderId)
+                || (loadingUntil != null && !deadline.isAfter(loadingUntil)))) {
+            enqueue(new Deadline(orderId, status, deadline));
+        }
+        // Устаревшие записи удаляются при извлечении; если их накопилось много, очередь чистится сразу
+        if (queue.size() > 2 * current.size() + LOAD_BATCH) {
+            queue.removeIf(entry -> !entry.deadline.equals(current.get(entry.orderId)));
+        }
+    }
+
+    /**
+     * Одна проверка: дочитать сроки в окне, извлечь наступившие и разослать сводку
+     */
+    public void check() {
+        LocalDateTime now = LocalDateTime.now();
+        loadUntil(now.plusMinutes(2L * checkIntervalMinutes));
+
+        List<Deadline> due = pollDue(now);
+        if (!due.isEmpty()) {
+            // Статус мог смениться в обход приложения - оставляем только действительно просроченные
+            List<Integer> ids = new ArrayList<>(due.size());
+            for (Deadline deadline : due) {
+                ids.add(deadline.orderId);
+            }
+            Set<Integer> stillOverdue = new HashSet<>(orderRepository.findOverdueIds(ids, now));
+            synchronized (this) {
+                for (Deadline deadline : due) {
+                    if (stillOverdue.contains(deadline.orderId)) {
+                        addPending(deadline);
+                    }
+                }
+            }
+        }
+
+        sendDigest(now);
+    }
+
+    private void loadUntil(LocalDateTime until) {
+        synchronized (this) {
+            loadingUntil = until;
+        }
+        try {
+            boolean more;
+            do {
+                more = loadBatch(until);
+            } while (more);
+        } finally {
+            synchronized (this) {
+                loadingUntil = null;
+                trackedDuringLoad.clear();
+            }
+        }
+    }
+
+    // Одна порция; true - окно прочитано не до конца
+    private boolean loadBatch(LocalDateTime until) {
+        LocalDateTime afterDeadline;
+        Integer afterId;
+        synchronized (this) {
+            if (current.size() >= MAX_QUEUE_SIZE) {
+                return false;
+            }
+            afterDeadline = loadedDeadline;
+            afterId = loadedOrderId;
+        }
+
+        List<OrderDeadlineRow> rows = orderRepository.findSlaDeadlinesAfter(afterDeadline, afterId, until,
+                PageRequest.of(0, LOAD_BATCH));
+        synchronized (this) {
+            for (OrderDeadlineRow row : rows) {
+                // Заказ уже в очереди с этим сроком, ждет сводки или изменился, пока шло чтение
+                if (!row.getSlaDeadline().equals(current.get(row.getId())) && !pending.containsKey(row.getId())
+                        && !trackedDuringLoad.contains(row.getId())) {
+                    enqueue(new Deadline(row.getId(), row.getStatus(), row.getSlaDeadline()));
+                }
+            }
+            if (rows.size() < LOAD_BATCH) {
+                loadedDeadline = until;
+                loadedOrderId = Integer.MAX_VALUE;
+                return false;
+            }
+            OrderDeadlineRow last = rows.get(rows.size() - 1);
+            loadedDeadline = last.getSlaDeadline();
+            loadedOrderId = last.getId();
+            return true;
+        }
+    }
+
+    private synchronized List<Deadline> pollDue(LocalDateTime now) {
+        List<Deadline> due = new ArrayList<>();
+        while (!queue.isEmpty() && !queue.peek().deadline.isAfter(now)) {
+            Deadline deadline = queue.poll();
+            if (deadline.deadline.equals(current.get(deadline.orderId))) {
+                current.remove(deadline.orderId);
+                due.add(deadline);
+            }
+        }
+        return due;
+    }
+
+    private void sendDigest(LocalDateTime now) {
+        List<Long> adminChats = adminService.getAuthenticatedAdminChats();
+        List<Deadline> overdue;
+        long dropped;
+        synchronized (this) {
+            if (pending.isEmpty() || adminChats.isEmpty()) {
+                return;
+            }
+            overdue = new ArrayList<>(pending.values());
+            dropped = droppedPending;
+            pending.clear();
+            droppedPending = 0;
+        }
+
+        overdue.sort(Comparator.naturalOrder());
+        long totalOverdue = orderRepository.countBySlaDeadlineLessThanEqual(now);
+        String text = formatDigest(overdue, dropped, totalOverdue);
+        for (Long chatId : adminChats) {
+            messageSender.sendMessage(chatId, text);
+        }
+    }
+
+    static String formatDigest(List<Deadline> overdue, long dropped, long totalOverdue) {
+        StringBuilder text = new StringBuilder("⏰ Нарушение SLA: новых просроченных заказов - ")
+                .append(overdue.size() + dropped).append("\n\n");
+        for (Deadline deadline : overdue.subList(0, Math.min(overdue.size(), DIGEST_LIMIT))) {
+            text.append("• Заказ #").append(deadline.orderId)
+                    .append(" (").append(deadline.status).append(") - просрочен на ")
+                    .append(AdminService.formatTimeInStatus(deadline.deadline)).append("\n");
+        }
+        long more = overdue.size() - Math.min(overdue.size(), DIGEST_LIMIT) + dropped;
+        if (more > 0) {
+            text.append("и еще ").append(more).append("\n");
+        }
+        text.append("\nВсего просрочено сейчас: ").append(totalOverdue)
+                .append("\nПодробнее: ⏳ Зависшие заказы (/admin_stuck)");
+        return text.toString();
+    }
+
+    // Вызывается под блокировкой
+    private void enqueue(Deadline deadline) {
+        current.put(deadline.orderId, deadline.deadline);
+        queue.add(deadline);
+    }
+
+    // Вызывается под блокировкой
+    private void addPending(Deadline deadline) {
+        if (pending.size() < MAX_PENDING || pending.containsKey(deadline.orderId)) {
+            pending.put(deadline.orderId, deadline);
+        } else {
+            droppedPending++;
+        }
+    }
+
+    // Вызывается под блокировкой
+    private boolean isAfterLoadedPosition(LocalDateTime deadline, Integer orderId) {
+        int compare = deadline.compareTo(loadedDeadline);
+        return compare > 0 || (compare == 0 && orderId > loadedOrderId);
+    }
+
+    public synchronized int getQueueSize() {
+        return current.size();
+    }
+
+    // Неудачные пересчеты и проверки сроков
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    private void recomputeDeadlinesSafely() {
+        try {
+            recomputeDeadlines();
+        } catch (Exception e) {
+            failures.increment();
+            log.error("Не удалось пересчитать сроки SLA", e);
+        }
+    }
+
+    private void checkSafely() {
+        try {
+            check();
+        } catch (Exception e) {
+            failures.increment();
+            log.error("Проверка сроков SLA не удалась", e);
+        }
+    }
+
+    @PreDestroy
+    public void cleanup() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    // Срок заказа в очереди: раньше срок - раньше извлекается
+    static class Deadline implements Comparable<Deadline> {
+        private final Integer orderId;
+        private final String status;
+        private final LocalDateTime deadline;
+
+        Deadline(Integer orderId, String status, LocalDateTime deadline) {
+            this.orderId = orderId;
+            this.status = status;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public int compareTo(Deadline other) {
+            int compare = deadline.compareTo(other.deadline);
+            return compare != 0 ? compare : orderId.compareTo(other.orderId);
+        }
+    }
+}
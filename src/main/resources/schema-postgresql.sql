@@ -0,0 +1,55 @@
+-- Выполняется после обновления схемы Hibernate (spring.jpa.defer-datasource-initialization=true).
+-- Здесь только то, что нельзя описать аннотациями JPA. Все выражения должны быть идемпотентными.
+
+-- Уникальность email без учета регистра: на этот индекс опирается INSERT ... ON CONFLICT при регистрации.
+-- Если в базе уже есть клиенты с email, различающимися только регистром, индекс не создать: запуск
+-- останавливается с их списком, объединять клиентов (и их заказы) нужно вручную.
+-- Тело блока в одинарных кавычках, а не $$: скрипт делится на выражения по «;» вне кавычек
+DO '
+DECLARE
+    duplicates TEXT;
+BEGIN
+    IF to_regclass(''ux_customer_email_lower'') IS NULL THEN
+        SELECT string_agg(d.email, '', '') INTO duplicates
+        FROM (SELECT LOWER(email) AS email FROM customer WHERE email IS NOT NULL
+              GROUP BY LOWER(email) HAVING COUNT(*) > 1 ORDER BY 1 LIMIT 20) d;
+        IF duplicates IS NOT NULL THEN
+            RAISE EXCEPTION ''Нельзя создать индекс ux_customer_email_lower: email клиентов совпадают без учета регистра (%). Объедините или исправьте этих клиентов и перезапустите бота'', duplicates;
+        END IF;
+    END IF;
+END';
+CREATE UNIQUE INDEX IF NOT EXISTS ux_customer_email_lower ON customer (LOWER(email));
+
+-- Номера клиентов выдает последовательность: MAX + 1 в INSERT ... SELECT давал одинаковые номера
+-- параллельным регистрациям, а нарушение первичного ключа ON CONFLICT по email не перехватывает
+CREATE SEQUENCE IF NOT EXISTS customer_customer_id_seq;
+SELECT setval('customer_customer_id_seq', m.max_id)
+FROM (SELECT MAX(customer_id) AS max_id FROM customer) m, customer_customer_id_seq s
+WHERE m.max_id IS NOT NULL AND m.max_id > CASE WHEN s.is_called THEN s.last_value ELSE 0 END;
+
+-- Номера заказов выдает последовательность (MAX + 1 давал одинаковые номера параллельным вставкам).
+-- Последовательность догоняет уже существующие номера; назад не сдвигается
+CREATE SEQUENCE IF NOT EXISTS orders_order_id_seq;
+SELECT setval('orders_order_id_seq', m.max_id)
+FROM (SELECT MAX(order_id) AS max_id FROM orders) m, orders_order_id_seq s
+WHERE m.max_id IS NOT NULL AND m.max_id > CASE WHEN s.is_called THEN s.last_value ELSE 0 END;
+
+-- Заказ из журнала оформляется не больше одного раза
+CREATE UNIQUE INDEX IF NOT EXISTS ux_orders_journal_id ON orders (journal_id);
+
+-- Триграммный индекс для поиска заказов по адресу доставки (ILIKE '%...%' и similarity)
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS ix_orders_delivery_address_trgm ON orders USING gin (delivery_address gin_trgm_ops);
+
+-- Время смены статуса для заказов, созданных до появления колонки status_changed_at. Выполняется один раз:
+-- после заполнения колонка становится NOT NULL (все пути создания заказа ее заполняют), и при следующих
+-- запусках блок ограничивается проверкой каталога вместо просмотра всей таблицы
+DO '
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_schema = current_schema() AND table_name = ''orders''
+                 AND column_name = ''status_changed_at'' AND is_nullable = ''YES'') THEN
+        UPDATE orders SET status_changed_at = COALESCE(creation_date, LOCALTIMESTAMP) WHERE status_changed_at IS NULL;
+        ALTER TABLE orders ALTER COLUMN status_changed_at SET NOT NULL;
+    END IF;
+END';
@@ -0,0 +1,105 @@
+package com.logistics.benchmark;
+
+import com.logistics.component.MessageTemplates;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение каталога сообщений с прежним форматированием (String.format и конкатенация)
+ * на ответах создания заказа и регистрации.
+ *
+ * Запуск после mvn test-compile:
+ * java -cp target/test-classes:target/classes:<classpath из mvn dependency:build-classpath>
+ *      com.logistics.benchmark.MessageTemplatesBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageTemplatesBenchmark {
+
+    private MessageTemplates templates;
+
+    private int orderId = 1042;
+    private String address = "г. Москва, ул. Примерная, д. 123, кв. 45";
+    private int weight = 2500;
+    private String status = "создан";
+    private LocalDateTime createTime = LocalDateTime.of(2025, 3, 1, 10, 15, 30);
+    private String model = "ГАЗель Next";
+    private String licensePlate = "А123БВ77";
+    private double capacityTon = 2.5;
+    private String email = "test@example.com";
+    private String name = "Иван Петров";
+    private String phone = "+79991234567";
+
+    @Setup
+    public void setUp() {
+        templates = new MessageTemplates("");
+    }
+
+    @Benchmark
+    public String orderCreatedFormat() {
+        return String.format(
+                "✅ Заказ успешно создан!\n\n" +
+                        "📦 Номер заказа: #%d\n" +
+                        "📍 Адрес доставки: %s\n" +
+                        "⚖️ Вес: %d кг\n" +
+                        "📊 Статус: %s\n" +
+                        "📅 Дата создания: %s\n\n" +
+                        "Вы можете отслеживать статус заказа в разделе 'Мои заказы'.",
+                orderId, address, weight, status, createTime);
+    }
+
+    @Benchmark
+    public String orderCreatedTemplate() {
+        return templates.render("order.created", orderId, address, weight, status, createTime);
+    }
+
+    @Benchmark
+    public String vehicleFoundFormat() {
+        return String.format(
+                "✅ Найден подходящий транспорт!\n\n" +
+                        "📋 Данные заказа:\n" +
+                        "• Адрес доставки: %s\n" +
+                        "• Вес: %d кг\n" +
+                        "• Транспорт: %s (%s, грузоподъемность: %.1f т)\n\n" +
+                        "Вы подтверждаете создание заказа? (да/нет)",
+                address, weight, model, licensePlate, capacityTon);
+    }
+
+    @Benchmark
+    public String vehicleFoundTemplate() {
+        return templates.render("order.weight.vehicle_found", address, weight, model, licensePlate, capacityTon);
+    }
+
+    @Benchmark
+    public String registrationConcat() {
+        return "🎉 Регистрация завершена успешно!\n\n" +
+                "✅ Ваши данные:\n" +
+                "• Email: " + email + "\n" +
+                "• Имя: " + name + "\n" +
+                "• Телефон: " + phone + "\n" +
+                "• Адрес: " + address + "\n\n" +
+                "Добро пожаловать! Ваш ID: " + orderId;
+    }
+
+    @Benchmark
+    public String registrationTemplate() {
+        return templates.render("registration.completed", email, name, phone, address, orderId);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MessageTemplatesBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
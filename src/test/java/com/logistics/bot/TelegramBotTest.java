@@ -0,0 +1,170 @@
+package com.logistics.bot;
+
+import com.logistics.component.CallbackCodec;
+import com.logistics.flow.Flow;
+import com.logistics.model.Vehicle;
+import com.logistics.service.AdminService;
+import com.logistics.service.AuthService;
+import com.logistics.service.LoginService;
+import com.logistics.service.MessageSender;
+import com.logistics.service.OrderCreationService;
+import com.logistics.service.RegistrationService;
+import com.logistics.service.SessionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+
+import java.sql.SQLTransientConnectionException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TelegramBotTest {
+
+    private static final Long CHAT_ID = 42L;
+
+    @Mock
+    private RegistrationService registrationService;
+
+    @Mock
+    private MessageSender messageSender;
+
+    @Mock
+    private SessionService sessionService;
+
+    @Mock
+    private AdminService adminService;
+
+    @Mock
+    private AuthService authService;
+
+    @Mock
+    private LoginService loginService;
+
+    @Mock
+    private OrderCreationService orderCreationService;
+
+    private TelegramBot bot;
+
+    @BeforeEach
+    void setUp() {
+        bot = new TelegramBot("test-token", registrationService, messageSender, sessionService);
+        ReflectionTestUtils.setField(bot, "adminService", adminService);
+        ReflectionTestUtils.setField(bot, "authService", authService);
+        ReflectionTestUtils.setField(bot, "loginService", loginService);
+        ReflectionTestUtils.setField(bot, "orderCreationService", orderCreationService);
+    }
+
+    @Test
+    void testAdminStuckCommand_RepliesOnlyWithPrompt() {
+        when(sessionService.isSessionActive(CHAT_ID)).thenReturn(true);
+        when(adminService.isAdminAuthenticated(CHAT_ID)).thenReturn(true);
+
+        ReflectionTestUtils.invokeMethod(bot, "processMessage", "/admin_stuck", CHAT_ID);
+
+        // Команда администратора не доходит до обычных команд и не получает «Я не понял вашу команду»
+        ArgumentCaptor<SendMessage> sent = ArgumentCaptor.forClass(SendMessage.class);
+        verify(messageSender, times(1)).send(sent.capture());
+        assertTrue(sent.getValue().getText().startsWith("⏳ Зависшие заказы"));
+    }
+
+    @Test
+    void testStuckOrdersButton_RepliesOnlyWithPrompt() {
+        when(sessionService.isSessionActive(CHAT_ID)).thenReturn(true);
+        when(adminService.isAdminAuthenticated(CHAT_ID)).thenReturn(true);
+
+        ReflectionTestUtils.invokeMethod(bot, "processMessage", "⏳ Зависшие заказы", CHAT_ID);
+
+        ArgumentCaptor<SendMessage> sent = ArgumentCaptor.forClass(SendMessage.class);
+        verify(messageSender, times(1)).send(sent.capture());
+        assertFalse(sent.getValue().getText().contains("Я не понял"));
+    }
+
+    @Test
+    void testApplyOrderStatus_DatabaseErrorIsNotReportedAsConflict() {
+        when(adminService.findOrderStatus("доставлен")).thenReturn("доставлен");
+        when(adminService.updateOrderStatus(7, 3L, "доставлен")).thenReturn(AdminService.StatusUpdate.FAILED);
+
+        ReflectionTestUtils.invokeMethod(bot, "applyOrderStatus", CHAT_ID, new TelegramBot.ActionTarget(7, 3L), "доставлен");
+
+        ArgumentCaptor<SendMessage> sent = ArgumentCaptor.forClass(SendMessage.class);
+        verify(messageSender, times(1)).send(sent.capture());
+        assertTrue(sent.getValue().getText().startsWith("❌ Ошибка при обновлении статуса заказа"));
+        verify(adminService, never()).getOrderById(any());
+    }
+
+    @Test
+    void testApplyVehicleStatus_ConflictShowsCurrentStatus() {
+        Vehicle vehicle = new Vehicle();
+        vehicle.setVehicleId(5);
+        vehicle.setStatus("занят");
+        vehicle.setVersion(4L);
+        when(adminService.findVehicleStatus("на ремонте")).thenReturn("на ремонте");
+        when(adminService.updateVehicleStatus(5, 3L, "на ремонте")).thenReturn(AdminService.StatusUpdate.CONFLICT);
+        when(adminService.getVehicleById(5)).thenReturn(vehicle);
+        ReflectionTestUtils.setField(bot, "vehicleStatuses", List.of("свободен", "занят", "на ремонте"));
+        ReflectionTestUtils.setField(bot, "callbackCodec", new CallbackCodec());
+
+        ReflectionTestUtils.invokeMethod(bot, "applyVehicleStatus", CHAT_ID, new TelegramBot.ActionTarget(5, 3L), "на ремонте");
+
+        ArgumentCaptor<SendMessage> sent = ArgumentCaptor.forClass(SendMessage.class);
+        verify(messageSender, times(1)).send(sent.capture());
+        assertTrue(sent.getValue().getText().contains("уже изменен другим администратором"));
+    }
+
+    @Test
+    void testApplyOrderStatus_UnknownTextStatusAsksAgain() {
+        ReflectionTestUtils.setField(bot, "orderStatuses", List.of("создан", "в пути", "доставлен", "отменен"));
+        when(adminService.findOrderStatus("доставленн")).thenReturn(null);
+
+        Flow.Transition<?> result = ReflectionTestUtils.invokeMethod(bot, "applyOrderStatus", CHAT_ID,
+                new TelegramBot.ActionTarget(7, 3L), "доставленн");
+
+        assertFalse(result.isFinished());
+        assertTrue(result.getReply().contains("Неизвестный статус «доставленн»"));
+        verify(adminService, never()).updateOrderStatus(any(), any(), any());
+    }
+
+    @Test
+    void testBulkOrderStatus_DatabaseErrorRepliesAndEndsAction() {
+        when(adminService.isAdminAuthenticated(CHAT_ID)).thenReturn(true);
+        when(adminService.bulkUpdateOrderStatus("12-15 → доставлен"))
+                .thenThrow(new DataIntegrityViolationException("value too long"));
+        ReflectionTestUtils.invokeMethod(bot, "startBulkOrderStatus", CHAT_ID);
+
+        ReflectionTestUtils.invokeMethod(bot, "handleAdminActionInput", CHAT_ID, "12-15 → доставлен");
+
+        ArgumentCaptor<SendMessage> sent = ArgumentCaptor.forClass(SendMessage.class);
+        verify(messageSender, times(2)).send(sent.capture());
+        assertTrue(sent.getAllValues().get(1).getText().startsWith("❌ Ошибка при массовом обновлении статусов"));
+        Flow<?, ?> adminActions = (Flow<?, ?>) ReflectionTestUtils.getField(bot, "adminActions");
+        assertFalse(adminActions.isActive(CHAT_ID));
+        assertEquals(1, bot.getFailureCount());
+    }
+
+    @Test
+    void testBulkOrderStatus_DatabaseUnavailableEndsAction() {
+        when(adminService.isAdminAuthenticated(CHAT_ID)).thenReturn(true);
+        when(adminService.bulkUpdateOrderStatus("12-15 → доставлен")).thenThrow(new DataAccessResourceFailureException(
+                "no connection", new SQLTransientConnectionException("connection is not available")));
+        ReflectionTestUtils.invokeMethod(bot, "startBulkOrderStatus", CHAT_ID);
+
+        ReflectionTestUtils.invokeMethod(bot, "handleAdminActionInput", CHAT_ID, "12-15 → доставлен");
+
+        ArgumentCaptor<SendMessage> sent = ArgumentCaptor.forClass(SendMessage.class);
+        verify(messageSender, times(2)).send(sent.capture());
+        assertTrue(sent.getAllValues().get(1).getText().contains("База данных временно недоступна"));
+        Flow<?, ?> adminActions = (Flow<?, ?>) ReflectionTestUtils.getField(bot, "adminActions");
+        assertFalse(adminActions.isActive(CHAT_ID));
+    }
+}
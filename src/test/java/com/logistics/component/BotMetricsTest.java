@@ -0,0 +1,56 @@
+package com.logistics.component;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BotMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final BotMetrics metrics = new BotMetrics(registry);
+
+    @Test
+    void testUpdateReceived_CountsByType() {
+        metrics.updateReceived("text");
+        metrics.updateReceived("text");
+        metrics.updateReceived("callback");
+
+        assertEquals(2.0, registry.get("bot.updates").tag("type", "text").counter().count());
+        assertEquals(1.0, registry.get("bot.updates").tag("type", "callback").counter().count());
+    }
+
+    @Test
+    void testRecordHandler_TimesByHandlerAndOutcome() {
+        metrics.recordHandler("flow:login", "ok", TimeUnit.MILLISECONDS.toNanos(40));
+        metrics.recordHandler("flow:login", "ok", TimeUnit.MILLISECONDS.toNanos(60));
+        metrics.recordHandler("flow:login", "overrun", TimeUnit.SECONDS.toNanos(5));
+
+        Timer ok = registry.get("bot.handler.latency").tags("handler", "flow:login", "outcome", "ok").timer();
+        assertEquals(2, ok.count());
+        assertEquals(100.0, ok.totalTime(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(1, registry.get("bot.handler.latency").tags("outcome", "overrun").timer().count());
+    }
+
+    @Test
+    void testRecordHandler_LimitsDistinctHandlerTags() {
+        for (int i = 0; i < BotMetrics.MAX_HANDLERS + 10; i++) {
+            metrics.recordHandler("/command" + i, "ok", 1);
+        }
+
+        assertEquals(10, registry.get("bot.handler.latency").tag("handler", BotMetrics.OTHER).timer().count());
+        assertEquals(BotMetrics.MAX_HANDLERS + 1, registry.get("bot.handler.latency").timers().size());
+    }
+
+    @Test
+    void testRecordSend_TimesByMethodAndErrorCode() {
+        metrics.recordSend("sendMessage", "ok", 1_000_000);
+        metrics.recordSend("sendMessage", "429", 2_000_000);
+
+        assertEquals(1, registry.get("bot.telegram.send").tags("method", "sendMessage", "outcome", "429").timer().count());
+        assertEquals(2, registry.get("bot.telegram.send").tag("method", "sendMessage").timers().size());
+    }
+}
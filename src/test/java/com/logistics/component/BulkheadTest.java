@@ -0,0 +1,83 @@
+package com.logistics.component;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkheadTest {
+
+    @Test
+    void testTrySubmit_RejectsWhenThreadsAndQueueAreFull() throws InterruptedException {
+        Bulkhead bulkhead = new Bulkhead("admin", 1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            assertTrue(bulkhead.trySubmit(() -> {
+                started.countDown();
+                await(release);
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertTrue(bulkhead.trySubmit(() -> { }));
+
+            assertFalse(bulkhead.trySubmit(() -> { }));
+            assertEquals(1, bulkhead.getRejectedCount());
+            assertEquals(1, bulkhead.getActiveCount());
+            assertEquals(1, bulkhead.getQueued());
+            assertEquals(1.0, bulkhead.getSaturation(), 0.001);
+        } finally {
+            release.countDown();
+            bulkhead.shutdown();
+        }
+    }
+
+    @Test
+    void testTrySubmit_FailedTaskDoesNotStopPool() throws InterruptedException {
+        Bulkhead bulkhead = new Bulkhead("reporting", 1, 5);
+        CountDownLatch done = new CountDownLatch(1);
+        try {
+            bulkhead.trySubmit(() -> {
+                throw new IllegalStateException("ошибка выгрузки не останавливает пул");
+            });
+            bulkhead.trySubmit(done::countDown);
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(1, bulkhead.getFailedCount());
+        } finally {
+            bulkhead.shutdown();
+        }
+    }
+
+    @Test
+    void testBulkheads_AreIsolated() throws InterruptedException {
+        Bulkheads bulkheads = new Bulkheads(1, 0, 1, 0);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch reportDone = new CountDownLatch(1);
+        try {
+            assertTrue(bulkheads.getAdmin().trySubmit(() -> await(release)));
+
+            // Занятый пул администратора не мешает отчетам
+            assertTrue(bulkheads.getReporting().trySubmit(reportDone::countDown));
+            assertTrue(reportDone.await(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            bulkheads.shutdown();
+        }
+    }
+
+    @Test
+    void testConstructor_RejectsInvalidSizes() {
+        assertThrows(IllegalArgumentException.class, () -> new Bulkhead("admin", 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new Bulkhead("admin", 1, -1));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.logistics.component;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallbackCodecTest {
+
+    private final CallbackCodec codec = new CallbackCodec();
+
+    @Test
+    void testEncodeDecode_RoundTrip() {
+        String data = codec.encode(1, 125_000, 7, 2);
+
+        CallbackCodec.Callback callback = codec.decode(data);
+
+        assertNotNull(callback);
+        assertEquals(1, callback.getAction());
+        assertEquals(3, callback.getArgCount());
+        assertEquals(125_000, callback.getInt(0));
+        assertEquals(7L, callback.getLong(1));
+        assertEquals(2, callback.getInt(2));
+    }
+
+    @Test
+    void testEncode_NegativeAndExtremeValues() {
+        String data = codec.encode(255, -1, Long.MIN_VALUE, Long.MAX_VALUE, 0);
+
+        CallbackCodec.Callback callback = codec.decode(data);
+
+        assertEquals(255, callback.getAction());
+        assertEquals(-1L, callback.getLong(0));
+        assertEquals(Long.MIN_VALUE, callback.getLong(1));
+        assertEquals(Long.MAX_VALUE, callback.getLong(2));
+        assertEquals(0L, callback.getLong(3));
+    }
+
+    @Test
+    void testEncode_IsCompactAndUrlSafe() {
+        String data = codec.encode(1, Integer.MAX_VALUE, 1_000_000L, 3);
+
+        assertTrue(data.length() <= 16, data);
+        assertTrue(data.matches("[A-Za-z0-9_-]+"), data);
+        assertEquals(2, codec.encode(3).length());
+    }
+
+    @Test
+    void testEncode_TooLong() {
+        long[] args = new long[5];
+        java.util.Arrays.fill(args, Long.MIN_VALUE);
+
+        // 1 + 5 * 10 байт > 48 байт, которые помещаются в 64 символа base64
+        assertThrows(IllegalArgumentException.class, () -> codec.encode(1, args));
+        assertThrows(IllegalArgumentException.class, () -> codec.encode(256));
+    }
+
+    @Test
+    void testDecode_ForeignData() {
+        assertNull(codec.decode(null));
+        assertNull(codec.decode(""));
+        assertNull(codec.decode("AWAITING:12"));
+        // Последний varint оборван (старший бит продолжения без следующего байта)
+        assertNull(codec.decode("AYA"));
+    }
+
+    @Test
+    void testGetInt_RejectsOverflow() {
+        CallbackCodec.Callback callback = codec.decode(codec.encode(1, Long.MAX_VALUE));
+
+        assertThrows(ArithmeticException.class, () -> callback.getInt(0));
+    }
+}
@@ -0,0 +1,50 @@
+package com.logistics.component;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvParserTest {
+
+    private final CsvParser csvParser = new CsvParser();
+
+    @Test
+    void testParseLine_QuotedFieldsWithDelimiterAndEscapedQuotes() {
+        List<String> fields = csvParser.parseLine(
+                "ivan@example.com,\"Иванов, Иван\",\"ООО \"\"Ромашка\"\"\",  +79001234567  ,", ',');
+
+        assertEquals(List.of("ivan@example.com", "Иванов, Иван", "ООО \"Ромашка\"", "+79001234567", ""), fields);
+    }
+
+    @Test
+    void testParseLine_SemicolonDelimiter() {
+        assertEquals(List.of("a@b.ru", "Иван", "ул. Лесная, 5"), csvParser.parseLine("a@b.ru;Иван;ул. Лесная, 5", ';'));
+    }
+
+    @Test
+    void testParseLine_UnclosedQuoteKeepsRestOfLine() {
+        // Незакрытая кавычка: остаток строки - одно поле, число полей меньше ожидаемого
+        assertEquals(List.of("a@b.ru", "Иван,8900"), csvParser.parseLine("a@b.ru,\"Иван,8900", ','));
+    }
+
+    @Test
+    void testDetectDelimiter() {
+        assertEquals(';', csvParser.detectDelimiter("email;name;phone"));
+        assertEquals(',', csvParser.detectDelimiter("email,name,phone"));
+        assertEquals(',', csvParser.detectDelimiter("\"a;b\",c"));
+        assertEquals(',', csvParser.detectDelimiter(null));
+    }
+
+    @Test
+    void testEscape_RoundTrip() {
+        assertEquals("", csvParser.escape(null));
+        assertEquals("plain", csvParser.escape("plain"));
+        assertEquals("\"a,b\"", csvParser.escape("a,b"));
+        assertEquals("\"say \"\"hi\"\"\"", csvParser.escape("say \"hi\""));
+
+        String value = "Иванов, \"Иван\"";
+        assertEquals(List.of(value, "x"), csvParser.parseLine(csvParser.escape(value) + ",x", ','));
+    }
+}
@@ -0,0 +1,135 @@
+package com.logistics.component;
+
+import com.logistics.DTO.CustomerDTOs.CustomerRowDTO;
+import com.logistics.event.CustomersImportedEvent;
+import com.logistics.repositories.CustomerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CustomerSearchIndexTest {
+
+    private CustomerSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new CustomerSearchIndex(mock(CustomerRepository.class), mock(PlatformTransactionManager.class));
+        index.put(new CustomerRowDTO(1, "Иванов Иван", "ivanov@example.com", "+7 (900) 123-45-67"));
+        index.put(new CustomerRowDTO(2, "Петров Петр", "petrov@mail.ru", "89001112233"));
+        index.put(new CustomerRowDTO(3, "Иваненко Ольга", "olga@example.com", null));
+    }
+
+    @Test
+    void testSearch_ByNameCaseInsensitive() {
+        List<Integer> ids = ids(index.search("ИВАН", 10));
+
+        assertEquals(List.of(1, 3), ids);
+    }
+
+    @Test
+    void testSearch_ByEmail() {
+        assertEquals(List.of(2), ids(index.search("mail.ru", 10)));
+        assertEquals(List.of(1, 3), ids(index.search("example", 10)));
+    }
+
+    @Test
+    void testSearch_ByPhoneIgnoresFormatting() {
+        assertEquals(List.of(1), ids(index.search("900 123", 10)));
+        assertEquals(List.of(2), ids(index.search("1112233", 10)));
+    }
+
+    @Test
+    void testSearch_ShortOrUnknownQuery_ReturnsEmpty() {
+        assertTrue(index.search("ив", 10).isEmpty());
+        assertTrue(index.search("сидоров", 10).isEmpty());
+    }
+
+    @Test
+    void testPut_UpdateReplacesOldTerms() {
+        index.put(new CustomerRowDTO(2, "Сидоров Петр", "sidorov@mail.ru", "89001112233"));
+
+        assertTrue(index.search("petrov", 10).isEmpty());
+        assertEquals(List.of(2), ids(index.search("сидор", 10)));
+        assertEquals(3, index.memoryReport().getCustomers());
+    }
+
+    @Test
+    void testSearch_MatchesFullScan() {
+        index = new CustomerSearchIndex(mock(CustomerRepository.class), mock(PlatformTransactionManager.class));
+        List<CustomerRowDTO> customers = IntStream.rangeClosed(1, 20_000)
+                .mapToObj(i -> new CustomerRowDTO(i, "Клиент " + (i * 7919 % 100_000), "user" + i + "@example.com",
+                        "8900" + String.format("%07d", i * 31)))
+                .collect(Collectors.toList());
+        customers.forEach(index::put);
+
+        for (String query : List.of("клиент 123", "user77", "0003", "ент 99")) {
+            String needle = query.toLowerCase(Locale.ROOT);
+            List<Integer> expected = customers.stream()
+                    .filter(c -> c.getFullName().toLowerCase(Locale.ROOT).contains(needle)
+                            || c.getEmail().contains(needle) || c.getPhone().contains(needle))
+                    .map(CustomerRowDTO::getCustomerId)
+                    .collect(Collectors.toList());
+
+            assertEquals(expected, ids(index.search(query, Integer.MAX_VALUE)), query);
+        }
+        assertTrue(index.memoryReport().projectBytes(1_000_000) > 0);
+    }
+
+    @Test
+    void testOnCustomersImported_LoadsImportedRangeDespiteNewerRegistration() {
+        CustomerRepository repository = mock(CustomerRepository.class);
+        index = new CustomerSearchIndex(repository, mock(PlatformTransactionManager.class));
+        when(repository.streamCustomerRowsAfter(0)).thenReturn(Stream.empty());
+        index.onApplicationReady();
+        awaitReady();
+
+        // Во время импорта (номера 10..20) зарегистрировался клиент 21
+        index.put(new CustomerRowDTO(21, "Новиков Андрей", "novikov@example.com", null));
+        when(repository.streamCustomerRowsBetween(10, 20)).thenReturn(
+                Stream.of(new CustomerRowDTO(11, "Импортов Иван", "import@example.com", null)));
+
+        index.onCustomersImported(new CustomersImportedEvent(1, 10, 20));
+
+        assertEquals(List.of(11), ids(index.search("импортов", 10)));
+        assertEquals(List.of(21), ids(index.search("новиков", 10)));
+    }
+
+    @Test
+    void testOnCustomersImported_BeforeReadyIsLoadedAfterInitialLoad() {
+        CustomerRepository repository = mock(CustomerRepository.class);
+        index = new CustomerSearchIndex(repository, mock(PlatformTransactionManager.class));
+        when(repository.streamCustomerRowsAfter(0)).thenReturn(
+                Stream.of(new CustomerRowDTO(1, "Иванов Иван", "ivanov@example.com", null)));
+        when(repository.streamCustomerRowsBetween(5, 9)).thenReturn(
+                Stream.of(new CustomerRowDTO(6, "Импортов Иван", "import@example.com", null)));
+
+        index.onCustomersImported(new CustomersImportedEvent(1, 5, 9));
+        verify(repository, never()).streamCustomerRowsBetween(anyInt(), anyInt());
+        index.onApplicationReady();
+        awaitReady();
+
+        verify(repository, timeout(5000)).streamCustomerRowsBetween(5, 9);
+        assertEquals(List.of(1, 6), ids(index.search("иван", 10)));
+    }
+
+    private void awaitReady() {
+        long until = System.currentTimeMillis() + 5000;
+        while (!index.isReady() && System.currentTimeMillis() < until) {
+            Thread.onSpinWait();
+        }
+        assertTrue(index.isReady());
+    }
+
+    private List<Integer> ids(List<CustomerRowDTO> rows) {
+        return rows.stream().map(CustomerRowDTO::getCustomerId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,109 @@
+package com.logistics.component;
+
+import com.logistics.component.DatabaseCircuitBreaker.State;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseCircuitBreakerTest {
+
+    private long now = 0;
+    private int recoveries = 0;
+
+    private final DatabaseCircuitBreaker breaker = new DatabaseCircuitBreaker(3, 30, () -> now, () -> recoveries++);
+
+    private void fail(int times) {
+        for (int i = 0; i < times; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure();
+        }
+    }
+
+    @Test
+    void testOpensAfterConsecutiveFailures() {
+        fail(2);
+        assertEquals(State.CLOSED, breaker.getState());
+
+        fail(1);
+
+        assertEquals(State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(1, breaker.getRejectedCount());
+        assertEquals(1, breaker.getOpenedCount());
+    }
+
+    @Test
+    void testSuccessResetsFailureCount() {
+        fail(2);
+        breaker.onSuccess();
+        fail(2);
+
+        assertEquals(State.CLOSED, breaker.getState());
+        assertEquals(0, recoveries);
+    }
+
+    @Test
+    void testHalfOpenLetsSingleProbeThroughAndClosesOnSuccess() {
+        fail(3);
+        now += TimeUnit.SECONDS.toNanos(30);
+
+        assertTrue(breaker.tryAcquire());
+        assertEquals(State.HALF_OPEN, breaker.getState());
+        // Пока проверка не закончилась, остальные обращения отклоняются
+        assertFalse(breaker.tryAcquire());
+
+        breaker.onSuccess();
+
+        assertEquals(State.CLOSED, breaker.getState());
+        assertEquals(1, recoveries);
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void testFailedProbeReopens() {
+        fail(3);
+        now += TimeUnit.SECONDS.toNanos(30);
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onFailure();
+
+        assertEquals(State.OPEN, breaker.getState());
+        now += TimeUnit.SECONDS.toNanos(29);
+        assertFalse(breaker.tryAcquire());
+        assertEquals(0, recoveries);
+    }
+
+    @Test
+    void testAbandonedProbeIsNotCountedAndRetriedAtOnce() {
+        fail(3);
+        now += TimeUnit.SECONDS.toNanos(30);
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onAbandoned();
+
+        // Прерванная проверка не продлевает размыкание: следующий запрос проверяет базу сразу
+        assertEquals(3, breaker.getFailureCount());
+        assertTrue(breaker.tryAcquire());
+        assertEquals(State.HALF_OPEN, breaker.getState());
+    }
+
+    @Test
+    void testIsUnavailable_DetectsConnectionErrorsInCauseChain() {
+        Exception wrapped = new IllegalStateException("JDBC", new SQLTransientConnectionException("нет соединения"));
+
+        assertTrue(DatabaseCircuitBreaker.isUnavailable(wrapped));
+        assertTrue(DatabaseCircuitBreaker.isUnavailable(new SQLException("connection refused", "08001")));
+        assertFalse(DatabaseCircuitBreaker.isUnavailable(new SQLException("duplicate key", "23505")));
+        assertFalse(DatabaseCircuitBreaker.isUnavailable(new RuntimeException("Database error")));
+    }
+
+    @Test
+    void testConstructor_RejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new DatabaseCircuitBreaker(0, 30, () -> 0, () -> { }));
+        assertThrows(IllegalArgumentException.class, () -> new DatabaseCircuitBreaker(3, 0, () -> 0, () -> { }));
+    }
+}
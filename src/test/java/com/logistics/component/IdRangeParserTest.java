@@ -0,0 +1,35 @@
+package com.logistics.component;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdRangeParserTest {
+
+    private final IdRangeParser parser = new IdRangeParser();
+
+    @Test
+    void testParse_ListsAndRanges() {
+        assertArrayEquals(new int[]{12, 15, 20, 21, 22}, parser.parse("12,15,20-22"));
+    }
+
+    @Test
+    void testParse_SortsAndRemovesDuplicates() {
+        assertArrayEquals(new int[]{1, 2, 3, 5}, parser.parse("5; 3 1-3 2"));
+    }
+
+    @Test
+    void testParse_InvalidInput() {
+        assertThrows(IllegalArgumentException.class, () -> parser.parse(""));
+        assertThrows(IllegalArgumentException.class, () -> parser.parse("abc"));
+        assertThrows(IllegalArgumentException.class, () -> parser.parse("10-5"));
+        assertThrows(IllegalArgumentException.class, () -> parser.parse("0"));
+    }
+
+    @Test
+    void testParse_TooManyIds() {
+        assertEquals(IdRangeParser.MAX_IDS, parser.parse("1-" + IdRangeParser.MAX_IDS).length);
+        assertThrows(IllegalArgumentException.class, () -> parser.parse("1-" + (IdRangeParser.MAX_IDS + 1)));
+        assertThrows(IllegalArgumentException.class, () -> parser.parse("1-2147483647"));
+    }
+}
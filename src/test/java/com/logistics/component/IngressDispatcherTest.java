@@ -0,0 +1,126 @@
+package com.logistics.component;
+
+import com.logistics.component.IngressDispatcher.Admission;
+import com.logistics.component.IngressDispatcher.Lane;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngressDispatcherTest {
+
+    private long now = 0;
+    private final List<String> executed = new ArrayList<>();
+
+    // Емкость 10: NORMAL до 8, LOW до 4; ведро - 3 сообщения подряд и 1 в секунду
+    private final IngressDispatcher dispatcher = new IngressDispatcher(10, 2, 4, 3, 1.0, () -> now);
+
+    private Runnable record(String name) {
+        return () -> executed.add(name);
+    }
+
+    private void drain() {
+        IngressDispatcher.Task task;
+        while (dispatcher.getQueued() > 0 && (task = dispatcher.take()) != null) {
+            task.run();
+        }
+    }
+
+    @Test
+    void testTake_HighLaneFirst() {
+        dispatcher.submit(1L, Lane.LOW, record("help"));
+        dispatcher.submit(2L, Lane.NORMAL, record("order"));
+        dispatcher.submit(3L, Lane.HIGH, record("admin"));
+
+        drain();
+
+        assertEquals(List.of("admin", "order", "help"), executed);
+    }
+
+    @Test
+    void testSubmit_ChatMessagesKeepOrderAcrossLanes() {
+        dispatcher.submit(1L, Lane.LOW, record("help"));
+        dispatcher.submit(1L, Lane.HIGH, record("confirm"));
+        dispatcher.submit(2L, Lane.NORMAL, record("other"));
+
+        drain();
+
+        // «confirm» чата 1 не обгоняет его же «help»
+        assertEquals(List.of("other", "help", "confirm"), executed);
+    }
+
+    @Test
+    void testSubmit_TokenBucketLimitsChat() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Admission.ACCEPTED, dispatcher.submit(1L, Lane.NORMAL, record("m" + i)));
+        }
+
+        assertEquals(Admission.RATE_LIMITED, dispatcher.submit(1L, Lane.NORMAL, record("spam")));
+        // Повторный отказ без уведомления, другие чаты не затронуты
+        assertEquals(Admission.SUPPRESSED, dispatcher.submit(1L, Lane.NORMAL, record("spam")));
+        assertEquals(Admission.ACCEPTED, dispatcher.submit(2L, Lane.NORMAL, record("other")));
+        assertEquals(2, dispatcher.getRateLimitedCount());
+
+        now += TimeUnit.SECONDS.toNanos(1);
+        assertEquals(Admission.ACCEPTED, dispatcher.submit(1L, Lane.NORMAL, record("later")));
+    }
+
+    @Test
+    void testSubmit_HighLaneIsNotRateLimited() {
+        for (int i = 0; i < 8; i++) {
+            assertEquals(Admission.ACCEPTED, dispatcher.submit(1L, Lane.HIGH, record("admin" + i)));
+        }
+    }
+
+    @Test
+    void testSubmit_ShedsLowThenNormalKeepsHighReserve() {
+        for (long chatId = 1; chatId <= 4; chatId++) {
+            dispatcher.submit(chatId, Lane.NORMAL, record("n" + chatId));
+        }
+
+        assertEquals(Admission.SHED, dispatcher.submit(10L, Lane.LOW, record("help")));
+
+        for (long chatId = 5; chatId <= 8; chatId++) {
+            assertEquals(Admission.ACCEPTED, dispatcher.submit(chatId, Lane.NORMAL, record("n" + chatId)));
+        }
+        assertEquals(Admission.SHED, dispatcher.submit(9L, Lane.NORMAL, record("n9")));
+
+        assertEquals(Admission.ACCEPTED, dispatcher.submit(20L, Lane.HIGH, record("admin1")));
+        assertEquals(Admission.ACCEPTED, dispatcher.submit(21L, Lane.HIGH, record("admin2")));
+        assertEquals(Admission.SHED, dispatcher.submit(22L, Lane.HIGH, record("admin3")));
+
+        assertEquals(1, dispatcher.getShedCount(Lane.LOW));
+        assertEquals(1, dispatcher.getShedCount(Lane.NORMAL));
+        assertEquals(1, dispatcher.getShedCount(Lane.HIGH));
+        assertEquals(10, dispatcher.getQueued());
+        assertEquals(2, dispatcher.getQueued(Lane.HIGH));
+    }
+
+    @Test
+    void testWorker_ProcessesSubmittedTasks() throws InterruptedException {
+        IngressDispatcher running = new IngressDispatcher(10, 2, 4, 3, 1.0, System::nanoTime);
+        running.start();
+        try {
+            CountDownLatch done = new CountDownLatch(2);
+            running.submit(1L, Lane.NORMAL, () -> {
+                throw new IllegalStateException("ошибка обработчика не останавливает очередь");
+            });
+            running.submit(2L, Lane.NORMAL, done::countDown);
+            running.submit(3L, Lane.NORMAL, done::countDown);
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        } finally {
+            running.stop();
+        }
+    }
+
+    @Test
+    void testConstructor_RejectsInvalidLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new IngressDispatcher(10, 10, 4, 3, 1.0, () -> 0));
+        assertThrows(IllegalArgumentException.class, () -> new IngressDispatcher(10, 2, 4, 0, 1.0, () -> 0));
+    }
+}
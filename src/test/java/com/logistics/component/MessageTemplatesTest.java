@@ -0,0 +1,98 @@
+package com.logistics.component;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageTemplatesTest {
+
+    private final MessageTemplates templates = new MessageTemplates("");
+
+    @Test
+    void testCompile_SplitsLiteralsAndArguments() {
+        MessageTemplates.Template template = MessageTemplates.compile("Заказ #{0}: {1} кг, {{без параметра}");
+        StringBuilder text = new StringBuilder();
+
+        template.render(text, new Object[]{7, 2500}, ",");
+
+        assertEquals(2, template.getArgumentCount());
+        assertEquals("Заказ #7: 2500 кг, {без параметра}", text.toString());
+    }
+
+    @Test
+    void testCompile_InvalidTemplate() {
+        assertThrows(IllegalArgumentException.class, () -> MessageTemplates.compile("Заказ #{0"));
+        assertThrows(IllegalArgumentException.class, () -> MessageTemplates.compile("Заказ #{id}"));
+        assertThrows(IllegalArgumentException.class, () -> MessageTemplates.compile("{0:x}"));
+    }
+
+    @Test
+    void testRender_MissingArgument() {
+        MessageTemplates.Template template = MessageTemplates.compile("{0} и {1}");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> template.render(new StringBuilder(), new Object[]{"один"}, ","));
+    }
+
+    @Test
+    void testAppendDecimal_RoundsHalfUp() {
+        assertEquals("5,3", decimal(5.25, 1));
+        assertEquals("25,0", decimal(25.0, 1));
+        assertEquals("0,05", decimal(0.049, 2));
+        assertEquals("-1,5", decimal(-1.45, 1));
+        assertEquals("3", decimal(2.5, 0));
+        assertEquals("0,0", decimal(-0.01, 1));
+    }
+
+    @Test
+    void testRender_MatchesPreviousFormatting() {
+        LocalDateTime createTime = LocalDateTime.of(2025, 3, 1, 10, 0);
+
+        String expected = String.format(
+                "✅ Заказ успешно создан!\n\n" +
+                        "📦 Номер заказа: #%d\n" +
+                        "📍 Адрес доставки: %s\n" +
+                        "⚖️ Вес: %d кг\n" +
+                        "📊 Статус: %s\n" +
+                        "📅 Дата создания: %s\n\n" +
+                        "Вы можете отслеживать статус заказа в разделе 'Мои заказы'.",
+                100, "ул. Примерная, 1", 2500, "создан", createTime);
+
+        assertEquals(expected, templates.render("order.created", 100, "ул. Примерная, 1", 2500, "создан", createTime));
+    }
+
+    @Test
+    void testRender_CapacityWithCatalogSeparator() {
+        String text = templates.render("order.weight.vehicle_found", "ул. Примерная, 1", 2500, "ГАЗель", "А123БВ", 1.5);
+
+        assertTrue(text.contains("• Транспорт: ГАЗель (А123БВ, грузоподъемность: 1,5 т)"));
+    }
+
+    @Test
+    void testRenderTo_AppendsSeveralTemplates() {
+        StringBuilder text = templates.renderTo(new StringBuilder(), "orders.header.paged", 2);
+        templates.renderTo(text, "orders.next");
+
+        assertEquals("📋 Ваши заказы (стр. 2):\n\n➡️ Следующая страница: /my_orders_next", text.toString());
+    }
+
+    @Test
+    void testRender_UnknownLanguageFallsBackToDefault() {
+        assertFalse(templates.supports(Locale.ENGLISH));
+        assertEquals(templates.render("orders.no_more"), templates.render(Locale.ENGLISH, "orders.no_more"));
+    }
+
+    @Test
+    void testRender_UnknownKey() {
+        assertThrows(IllegalArgumentException.class, () -> templates.render("no.such.key"));
+    }
+
+    private static String decimal(double value, int scale) {
+        StringBuilder text = new StringBuilder();
+        MessageTemplates.appendDecimal(text, value, scale, ",");
+        return text.toString();
+    }
+}
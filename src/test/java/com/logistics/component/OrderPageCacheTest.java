@@ -0,0 +1,86 @@
+package com.logistics.component;
+
+import com.logistics.event.OrderCreatedEvent;
+import com.logistics.event.OrderStatusChangedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderPageCacheTest {
+
+    private final OrderPageCache cache = new OrderPageCache(3);
+    private final AtomicInteger renders = new AtomicInteger();
+
+    @Test
+    void testGetOrRender_RendersOncePerPage() {
+        OrderPageCache.Cursor second = new OrderPageCache.Cursor(LocalDateTime.of(2025, 3, 1, 10, 0), 50, 2);
+
+        assertEquals("1:null", render(1, null).getText());
+        assertEquals("1:null", render(1, null).getText());
+        render(1, second);
+        render(1, new OrderPageCache.Cursor(LocalDateTime.of(2025, 3, 1, 10, 0), 50, 2));
+
+        assertEquals(2, renders.get());
+        OrderPageCache.Stats stats = cache.getStats();
+        assertEquals(2, stats.getHits());
+        assertEquals(2, stats.getMisses());
+        assertEquals(50, stats.getHitRatePercent());
+    }
+
+    @Test
+    void testEvents_InvalidateOnlyAffectedCustomers() {
+        render(1, null);
+        render(2, null);
+        render(3, null);
+
+        cache.onOrderCreated(new OrderCreatedEvent(100, 1, "создан", 2500, LocalDateTime.now(), null));
+        cache.onOrderStatusChanged(new OrderStatusChangedEvent("доставлен",
+                List.of(new OrderStatusChangedEvent.Change(7, 2, "создан"), new OrderStatusChangedEvent.Change(8, 2, "создан"))));
+        render(1, null);
+        render(2, null);
+        render(3, null);
+
+        assertEquals(5, renders.get());
+        assertEquals(2, cache.getStats().getInvalidations());
+    }
+
+    @Test
+    void testPut_EvictsLeastRecentlyUsedPage() {
+        render(1, null);
+        render(2, null);
+        render(3, null);
+        render(1, null);
+        render(4, null);
+
+        // Клиент 2 читался дольше всех, его страница вытеснена
+        render(1, null);
+        render(2, null);
+
+        assertEquals(5, renders.get());
+        assertEquals(3, cache.getStats().getSize());
+        assertTrue(cache.getStats().getEvictions() >= 1);
+    }
+
+    @Test
+    void testGetOrRender_PageRenderedBeforeInvalidationIsNotCached() {
+        cache.getOrRender(1, null, () -> {
+            // Заказ клиента изменился, пока страница отрисовывалась
+            cache.invalidateCustomer(1);
+            return new OrderPageCache.RenderedPage("устаревшая", null);
+        });
+
+        assertEquals("1:null", render(1, null).getText());
+        assertEquals(1, renders.get());
+    }
+
+    private OrderPageCache.RenderedPage render(Integer customerId, OrderPageCache.Cursor cursor) {
+        return cache.getOrRender(customerId, cursor, () -> {
+            renders.incrementAndGet();
+            return new OrderPageCache.RenderedPage(customerId + ":" + (cursor != null ? cursor.getPageNumber() : null), null);
+        });
+    }
+}
@@ -0,0 +1,118 @@
+package com.logistics.component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.logistics.component.PendingOrderJournal.PendingOrder;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PendingOrderJournalTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private final LocalDateTime createTime = LocalDateTime.of(2025, 3, 1, 12, 30);
+
+    private Path journalFile() throws IOException {
+        Path dir = Files.createTempDirectory("journal-");
+        dir.toFile().deleteOnExit();
+        return dir.resolve("pending-orders.ndjson");
+    }
+
+    private PendingOrder order(String id, Integer vehicleId) {
+        return new PendingOrder(id, 100L, 7, "ул. Примерная, 1", 2500, vehicleId, createTime);
+    }
+
+    @Test
+    void testAppend_SurvivesReopen() throws IOException {
+        Path file = journalFile();
+        PendingOrderJournal journal = new PendingOrderJournal(file.toString(), objectMapper);
+
+        journal.append(order("a", 3));
+        journal.append(order("b", null));
+
+        PendingOrderJournal reopened = new PendingOrderJournal(file.toString(), objectMapper);
+        List<PendingOrder> orders = reopened.readAll();
+        assertEquals(2, reopened.getPendingCount());
+        assertEquals("a", orders.get(0).getId());
+        assertEquals(Integer.valueOf(3), orders.get(0).getVehicleId());
+        assertEquals(createTime, orders.get(0).getCreateTime());
+        assertNull(orders.get(1).getVehicleId());
+    }
+
+    @Test
+    void testRemove_KeepsOtherOrdersInOrder() throws IOException {
+        PendingOrderJournal journal = new PendingOrderJournal(journalFile().toString(), objectMapper);
+        journal.append(order("a", null));
+        journal.append(order("b", null));
+        journal.append(order("c", null));
+
+        journal.remove("b");
+
+        List<PendingOrder> orders = journal.readAll();
+        assertEquals(2, journal.getPendingCount());
+        assertEquals("a", orders.get(0).getId());
+        assertEquals("c", orders.get(1).getId());
+    }
+
+    @Test
+    void testReadAll_SkipsTornLastLine() throws IOException {
+        Path file = journalFile();
+        PendingOrderJournal journal = new PendingOrderJournal(file.toString(), objectMapper);
+        journal.append(order("a", null));
+        Files.write(file, "{\"id\":\"b\",\"chat".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        PendingOrderJournal reopened = new PendingOrderJournal(file.toString(), objectMapper);
+
+        assertEquals(1, reopened.getPendingCount());
+        assertEquals(1, reopened.getFailureCount());
+        assertEquals("a", reopened.readAll().get(0).getId());
+    }
+
+    @Test
+    void testAppend_SurvivesInterruptedThread() throws IOException {
+        PendingOrderJournal journal = new PendingOrderJournal(journalFile().toString(), objectMapper);
+
+        // Сторож бюджета прерывает обработчик, уже подтверждающий заказ
+        Thread.currentThread().interrupt();
+        try {
+            journal.append(order("a", null));
+        } finally {
+            Thread.interrupted();
+        }
+
+        assertEquals(1, journal.getPendingCount());
+        assertEquals("a", journal.readAll().get(0).getId());
+    }
+
+    @Test
+    void testDeadLetter_MovesOrderWithFailureAndSurvivesReopen() throws IOException {
+        Path file = journalFile();
+        PendingOrderJournal journal = new PendingOrderJournal(file.toString(), objectMapper);
+        journal.append(order("a", null));
+        journal.append(order("b", null));
+
+        journal.deadLetter(journal.readAll().get(0), "клиент 7 не найден");
+
+        assertEquals(1, journal.getPendingCount());
+        assertEquals("b", journal.readAll().get(0).getId());
+        assertTrue(Files.exists(file.resolveSibling("pending-orders.dead.ndjson")));
+
+        PendingOrderJournal reopened = new PendingOrderJournal(file.toString(), objectMapper);
+        assertEquals(1, reopened.getDeadLetterCount());
+        PendingOrder dead = reopened.readDeadLetters().get(0);
+        assertEquals("a", dead.getId());
+        assertEquals("клиент 7 не найден", dead.getFailure());
+    }
+}
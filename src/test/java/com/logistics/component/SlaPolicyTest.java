@@ -0,0 +1,44 @@
+package com.logistics.component;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlaPolicyTest {
+
+    private static final LocalDateTime CHANGED_AT = LocalDateTime.of(2025, 3, 1, 10, 0);
+
+    @Test
+    void testDeadline_UsesThresholdOfStatus() {
+        SlaPolicy policy = new SlaPolicy("создан=48, в пути = 1.5");
+
+        assertEquals(CHANGED_AT.plusHours(48), policy.deadline("создан", CHANGED_AT));
+        assertEquals(CHANGED_AT.plusMinutes(90), policy.deadline("в пути", CHANGED_AT));
+        assertEquals(90, policy.thresholdMinutes("в пути"));
+        assertEquals(Duration.ofHours(48), policy.getThresholds().get("создан"));
+    }
+
+    @Test
+    void testDeadline_StatusWithoutThreshold() {
+        SlaPolicy policy = new SlaPolicy("создан=48");
+
+        assertNull(policy.deadline("доставлен", CHANGED_AT));
+        assertNull(policy.deadline(null, CHANGED_AT));
+        assertNull(policy.thresholdMinutes("доставлен"));
+    }
+
+    @Test
+    void testEmptyConfiguration() {
+        assertTrue(new SlaPolicy("").getThresholds().isEmpty());
+    }
+
+    @Test
+    void testInvalidThreshold() {
+        assertThrows(IllegalArgumentException.class, () -> new SlaPolicy("создан"));
+        assertThrows(IllegalArgumentException.class, () -> new SlaPolicy("создан=много"));
+        assertThrows(IllegalArgumentException.class, () -> new SlaPolicy("создан=-1"));
+    }
+}
@@ -0,0 +1,148 @@
+package com.logistics.component;
+
+import com.logistics.repositories.OrderRepository;
+import com.logistics.repositories.VehicleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StatusCountersTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private VehicleRepository vehicleRepository;
+
+    @InjectMocks
+    private StatusCounters statusCounters;
+
+    @BeforeEach
+    void setUp() {
+        List<Object[]> orderRows = new ArrayList<>();
+        orderRows.add(new Object[]{1, "создан", 3L});
+        orderRows.add(new Object[]{2, "создан", 2L});
+        orderRows.add(new Object[]{2, "доставлен", 1L});
+        List<Object[]> vehicleRows = new ArrayList<>();
+        vehicleRows.add(new Object[]{"свободен", 4L});
+        when(orderRepository.countOrdersByCustomerAndStatus()).thenReturn(orderRows);
+        when(vehicleRepository.countVehiclesByStatus()).thenReturn(vehicleRows);
+
+        statusCounters.reconcile();
+    }
+
+    @Test
+    void testReconcile_LoadsCountsFromDatabase() {
+        assertEquals(Map.of("создан", 5L, "доставлен", 1L), statusCounters.getOrderCounts());
+        assertEquals(Map.of("свободен", 4L), statusCounters.getVehicleCounts());
+        assertEquals(2, statusCounters.getCustomerOrderCount(2, "создан"));
+        assertNotNull(statusCounters.getLastReconciledAt());
+    }
+
+    @Test
+    void testStatusChanges_MoveCountsBetweenStatuses() {
+        statusCounters.orderCreated(1, "создан");
+        statusCounters.orderStatusChanged(1, "создан", "в пути");
+        statusCounters.vehicleStatusChanged("свободен", "в рейсе");
+
+        assertEquals(Map.of("создан", 5L, "в пути", 1L, "доставлен", 1L), statusCounters.getOrderCounts());
+        assertEquals(3, statusCounters.getCustomerOrderCount(1, "создан"));
+        assertEquals(1, statusCounters.getCustomerOrderCount(1, "в пути"));
+        assertEquals(Map.of("свободен", 3L, "в рейсе", 1L), statusCounters.getVehicleCounts());
+    }
+
+    @Test
+    void testConcurrentUpdates_NoLostIncrements() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8_000; i++) {
+            int customerId = i % 4;
+            executor.submit(() -> statusCounters.orderStatusChanged(customerId, "создан", "доставлен"));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        Map<String, Long> counts = statusCounters.getOrderCounts();
+        assertEquals(5 - 8_000L, counts.get("создан"));
+        assertEquals(1 + 8_000L, counts.get("доставлен"));
+        assertEquals(2_000 + 1, statusCounters.getCustomerOrderCount(2, "доставлен"));
+    }
+
+    @Test
+    void testReconcile_CorrectsDrift() {
+        statusCounters.orderCreated(1, "создан");
+
+        statusCounters.reconcile();
+
+        assertEquals(Map.of("создан", 5L, "доставлен", 1L), statusCounters.getOrderCounts());
+        assertEquals(1, statusCounters.getLastCorrections());
+    }
+
+    @Test
+    void testReconcile_KeepsChangesMadeDuringQuery() {
+        List<Object[]> orderRows = new ArrayList<>();
+        orderRows.add(new Object[]{1, "создан", 3L});
+        orderRows.add(new Object[]{2, "создан", 2L});
+        orderRows.add(new Object[]{2, "доставлен", 1L});
+        // Заказ создан и доставлен, пока выполнялся запрос сверки: в результат запроса он не попал
+        when(orderRepository.countOrdersByCustomerAndStatus()).thenAnswer(invocation -> {
+            statusCounters.orderCreated(1, "создан");
+            statusCounters.orderStatusChanged(2, "создан", "доставлен");
+            return orderRows;
+        });
+
+        statusCounters.reconcile();
+
+        assertEquals(Map.of("создан", 5L, "доставлен", 2L), statusCounters.getOrderCounts());
+        assertEquals(4, statusCounters.getCustomerOrderCount(1, "создан"));
+        assertEquals(2, statusCounters.getCustomerOrderCount(2, "доставлен"));
+        assertEquals(0, statusCounters.getLastCorrections());
+
+        // Следующая сверка видит эти изменения в базе и ничего не исправляет
+        orderRows.set(0, new Object[]{1, "создан", 4L});
+        orderRows.set(1, new Object[]{2, "создан", 1L});
+        orderRows.set(2, new Object[]{2, "доставлен", 2L});
+        doReturn(orderRows).when(orderRepository).countOrdersByCustomerAndStatus();
+        statusCounters.reconcile();
+
+        assertEquals(Map.of("создан", 5L, "доставлен", 2L), statusCounters.getOrderCounts());
+        assertEquals(0, statusCounters.getLastCorrections());
+    }
+
+    @Test
+    void testReconcile_RemovesStatusesMissingInDatabase() {
+        statusCounters.orderStatusChanged(1, "создан", "в пути");
+        statusCounters.vehicleStatusChanged("свободен", "занят");
+
+        statusCounters.reconcile();
+
+        assertEquals(Map.of("создан", 5L, "доставлен", 1L), statusCounters.getOrderCounts());
+        assertEquals(0, statusCounters.getCustomerOrderCount(1, "в пути"));
+        assertEquals(Map.of("свободен", 4L), statusCounters.getVehicleCounts());
+    }
+
+    @Test
+    void testFirstRead_ReconcilesBeforeAnswering() {
+        StatusCounters fresh = new StatusCounters(orderRepository, vehicleRepository);
+        fresh.orderCreated(1, "создан");
+
+        // Первая сверка еще не прошла - чтение выполняет ее, а не отвечает нулями
+        assertEquals(3, fresh.getCustomerOrderCount(1, "создан"));
+        assertEquals(Map.of("создан", 5L, "доставлен", 1L), fresh.getOrderCounts());
+        assertNotNull(fresh.getLastReconciledAt());
+        verify(orderRepository, times(2)).countOrdersByCustomerAndStatus();
+    }
+}
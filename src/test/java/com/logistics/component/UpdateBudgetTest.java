@@ -0,0 +1,176 @@
+package com.logistics.component;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpdateBudgetTest {
+
+    private long now = 0;
+
+    private final UpdateBudget budget = new UpdateBudget(2000, () -> now);
+
+    @Test
+    void testRemainingMillis_UnlimitedOutsideUpdate() {
+        assertEquals(Long.MAX_VALUE, budget.remainingMillis());
+    }
+
+    @Test
+    void testRemainingMillis_CountsDownInsideUpdate() {
+        long[] remaining = new long[2];
+
+        assertTrue(budget.run("/orders", () -> {
+            remaining[0] = budget.remainingMillis();
+            now += TimeUnit.MILLISECONDS.toNanos(1500);
+            remaining[1] = budget.remainingMillis();
+        }));
+
+        assertEquals(2000, remaining[0]);
+        assertEquals(500, remaining[1]);
+        assertEquals(Long.MAX_VALUE, budget.remainingMillis());
+    }
+
+    @Test
+    void testRun_OverrunRecordedByHandlerAndCancellationSwallowed() {
+        boolean inBudget = budget.run("flow:order-creation", () -> {
+            now += TimeUnit.SECONDS.toNanos(3);
+            throw new IllegalStateException("таймаут запроса");
+        });
+
+        assertFalse(inBudget);
+        assertEquals(1, budget.getOverrunCount());
+        assertEquals(Map.of("flow:order-creation", 1L), budget.getOverrunsByHandler());
+    }
+
+    @Test
+    void testRun_CompletedAfterBudgetKeepsResultAndRecordsOverrun() {
+        boolean[] replied = new boolean[1];
+
+        boolean inBudget = budget.run("flow:order-creation:CONFIRMATION", () -> {
+            now += TimeUnit.MILLISECONDS.toNanos(2100);
+            replied[0] = true;
+        });
+
+        // Обработчик закончил работу: его ответ не отменяется, превышение только учитывается
+        assertTrue(inBudget);
+        assertTrue(replied[0]);
+        assertEquals(1, budget.getOverrunCount());
+        assertEquals(Map.of("flow:order-creation:CONFIRMATION", 1L), budget.getOverrunsByHandler());
+    }
+
+    @Test
+    void testRun_CaughtCancellationStillCancelsHandler() {
+        boolean inBudget = budget.run("callback:ORDER_STATUS", () -> {
+            now += TimeUnit.SECONDS.toNanos(3);
+            // Обработчик сам перехватил отмененный запрос и ответил своим текстом
+            budget.markCancelled();
+        });
+
+        assertFalse(inBudget);
+        assertEquals(1, budget.getOverrunCount());
+    }
+
+    @Test
+    void testConnectionAcquisition_RefusedAfterBudget() {
+        boolean[] acquired = new boolean[1];
+
+        budget.run("/orders", () -> {
+            now += TimeUnit.SECONDS.toNanos(2);
+            acquired[0] = budget.beginConnectionAcquisition();
+        });
+
+        assertFalse(acquired[0]);
+        assertTrue(budget.beginConnectionAcquisition());
+        assertFalse(budget.endConnectionAcquisition());
+    }
+
+    @Test
+    void testWatchdog_DefersInterruptWhileAcquiringConnection() {
+        UpdateBudget running = new UpdateBudget(50);
+        running.start();
+        try {
+            boolean[] interruptedInPool = new boolean[1];
+            boolean[] expiredInPool = new boolean[1];
+            boolean[] interruptedAfter = new boolean[1];
+
+            boolean inBudget = running.run("callback:ORDER_STATUS", () -> {
+                assertTrue(running.beginConnectionAcquisition());
+                long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+                while (System.nanoTime() < until) {
+                    Thread.onSpinWait();
+                }
+                interruptedInPool[0] = Thread.currentThread().isInterrupted();
+                expiredInPool[0] = running.endConnectionAcquisition();
+                interruptedAfter[0] = Thread.currentThread().isInterrupted();
+            });
+
+            // Пока поток ждал пул, прерывания не было; после ожидания оно доставлено
+            assertFalse(interruptedInPool[0]);
+            assertTrue(expiredInPool[0]);
+            assertTrue(interruptedAfter[0]);
+            assertTrue(inBudget);
+            assertFalse(Thread.currentThread().isInterrupted());
+        } finally {
+            running.stop();
+        }
+    }
+
+    @Test
+    void testWatchdog_HandlerThatSurvivesInterruptIsNotCancelled() {
+        UpdateBudget running = new UpdateBudget(50);
+        running.start();
+        try {
+            boolean inBudget = running.run("flow:order-creation:CONFIRMATION", () -> {
+                long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+                while (System.nanoTime() < until) {
+                    Thread.onSpinWait();
+                }
+            });
+
+            assertTrue(inBudget);
+            assertFalse(Thread.currentThread().isInterrupted());
+            assertEquals(1, running.getOverrunCount());
+        } finally {
+            running.stop();
+        }
+    }
+
+    @Test
+    void testRun_ErrorWithinBudgetIsRethrown() {
+        assertThrows(IllegalStateException.class, () -> budget.run("/start", () -> {
+            throw new IllegalStateException("ошибка обработчика");
+        }));
+        assertEquals(0, budget.getOverrunCount());
+    }
+
+    @Test
+    void testWatchdog_InterruptsStuckHandlerAndClearsFlag() {
+        UpdateBudget running = new UpdateBudget(100);
+        running.start();
+        try {
+            boolean inBudget = running.run("callback:ORDER_STATUS", () -> {
+                try {
+                    new CountDownLatch(1).await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+
+            assertFalse(inBudget);
+            // Прерывание не переходит к следующему обновлению этого потока
+            assertFalse(Thread.currentThread().isInterrupted());
+            assertEquals(1, running.getOverrunCount());
+        } finally {
+            running.stop();
+        }
+    }
+
+    @Test
+    void testConstructor_RejectsNonPositiveBudget() {
+        assertThrows(IllegalArgumentException.class, () -> new UpdateBudget(0));
+    }
+}
@@ -0,0 +1,119 @@
+package com.logistics.component;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpdateDeduplicatorTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final UpdateDeduplicator deduplicator = new UpdateDeduplicator(128, 16, 60, clock::get);
+
+    @Test
+    void testFirstDelivery_DropsRepeatedUpdate() {
+        assertTrue(deduplicator.firstDelivery(1000));
+        assertTrue(deduplicator.firstDelivery(1001));
+
+        assertFalse(deduplicator.firstDelivery(1000));
+        assertFalse(deduplicator.firstDelivery(1001));
+        assertEquals(2, deduplicator.getDroppedUpdates());
+    }
+
+    @Test
+    void testFirstDelivery_AcceptsGapFilledOutOfOrder() {
+        assertTrue(deduplicator.firstDelivery(10));
+        assertTrue(deduplicator.firstDelivery(13));
+
+        assertTrue(deduplicator.firstDelivery(11));
+        assertFalse(deduplicator.firstDelivery(11));
+    }
+
+    @Test
+    void testFirstDelivery_SlidingWindowReusesBits() {
+        for (int id = 0; id < 1000; id++) {
+            assertTrue(deduplicator.firstDelivery(id));
+        }
+
+        // Номера внутри окна помнятся, номера старше окна считаются повтором
+        assertFalse(deduplicator.firstDelivery(999 - 127));
+        assertFalse(deduplicator.firstDelivery(999 - 128));
+        assertFalse(deduplicator.firstDelivery(5));
+        assertEquals(0, deduplicator.getSequenceResets());
+    }
+
+    @Test
+    void testFirstDelivery_FarLowerIdResetsSequence() {
+        for (int id = 500_000; id < 500_010; id++) {
+            assertTrue(deduplicator.firstDelivery(id));
+        }
+        clock.addAndGet(TimeUnit.DAYS.toNanos(7));
+
+        // После долгого простоя Telegram начал update_id заново: новые обновления принимаются,
+        // их повторы по-прежнему отбрасываются
+        assertTrue(deduplicator.firstDelivery(1000));
+        assertTrue(deduplicator.firstDelivery(1001));
+        assertFalse(deduplicator.firstDelivery(1000));
+        assertTrue(deduplicator.firstDelivery(1003));
+        assertTrue(deduplicator.firstDelivery(1002));
+        assertEquals(1, deduplicator.getSequenceResets());
+        assertEquals(1, deduplicator.getDroppedUpdates());
+    }
+
+    @Test
+    void testFirstDelivery_OldIdWithoutIdleIsRepeat() {
+        assertTrue(deduplicator.firstDelivery(500_000));
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(59));
+
+        // Простоя не было - старый номер считается повтором, окно не сбрасывается
+        assertFalse(deduplicator.firstDelivery(1000));
+        assertTrue(deduplicator.firstDelivery(500_001));
+        assertEquals(0, deduplicator.getSequenceResets());
+    }
+
+    @Test
+    void testFirstDelivery_LargeJumpClearsWindow() {
+        assertTrue(deduplicator.firstDelivery(5));
+        assertTrue(deduplicator.firstDelivery(5 + 128 * 10));
+
+        assertTrue(deduplicator.firstDelivery(5 + 128 * 10 - 1));
+        assertFalse(deduplicator.firstDelivery(5));
+    }
+
+    @Test
+    void testFirstMessage_DropsRepeatedMessageOfChat() {
+        assertTrue(deduplicator.firstMessage(100L, 7));
+        assertTrue(deduplicator.firstMessage(200L, 7));
+
+        assertFalse(deduplicator.firstMessage(100L, 7));
+        assertFalse(deduplicator.firstMessage(100L, 6));
+        assertTrue(deduplicator.firstMessage(100L, 8));
+        assertEquals(2, deduplicator.getDroppedMessages());
+    }
+
+    @Test
+    void testFirstMessage_FixedTableEvictsOldChats() {
+        // Чатов больше, чем ячеек (16): помнятся только последние, вытесненные принимают повтор
+        for (long chatId = 1; chatId <= 1000; chatId++) {
+            assertTrue(deduplicator.firstMessage(chatId, 1));
+        }
+
+        assertFalse(deduplicator.firstMessage(1000L, 1));
+        int remembered = 0;
+        for (long chatId = 1; chatId < 1000; chatId++) {
+            if (!deduplicator.firstMessage(chatId, 1)) {
+                remembered++;
+            }
+        }
+        assertTrue(remembered < 16, "remembered: " + remembered);
+    }
+
+    @Test
+    void testConstructor_RejectsNonPositiveSizes() {
+        assertThrows(IllegalArgumentException.class, () -> new UpdateDeduplicator(0, 16, 60));
+        assertThrows(IllegalArgumentException.class, () -> new UpdateDeduplicator(128, 0, 60));
+        assertThrows(IllegalArgumentException.class, () -> new UpdateDeduplicator(128, 16, 0));
+    }
+}
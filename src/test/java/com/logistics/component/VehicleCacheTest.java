@@ -0,0 +1,162 @@
+package com.logistics.component;
+
+import com.logistics.model.Vehicle;
+import com.logistics.repositories.VehicleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class VehicleCacheTest {
+
+    private static final int VEHICLE_COUNT = 4;
+
+    @Mock
+    private VehicleRepository vehicleRepository;
+
+    private VehicleCache vehicleCache;
+
+    // Состояние "базы данных", из которого отвечает мок репозитория
+    private final Map<Integer, Vehicle> database = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 1; i <= VEHICLE_COUNT; i++) {
+            database.put(i, vehicle(i, 5.0 * i, "свободен"));
+        }
+        vehicleCache = new VehicleCache(vehicleRepository);
+    }
+
+    @Test
+    void testLoadAll_ServesReadsWithoutDatabase() {
+        when(vehicleRepository.findAll()).thenReturn(new ArrayList<>(database.values()));
+        vehicleCache.loadAll();
+
+        List<Vehicle> available = vehicleCache.findAvailableWithCapacity(8.0);
+        Vehicle vehicle = vehicleCache.get(2);
+
+        assertEquals(List.of(4, 3, 2), available.stream().map(Vehicle::getVehicleId).toList());
+        assertEquals(10.0, vehicle.getCapacityTon());
+        verify(vehicleRepository, never()).findById(anyInt());
+        assertTrue(vehicleCache.getStats().getHits() > 0);
+        assertEquals(0, vehicleCache.getStats().getMisses());
+    }
+
+    @Test
+    void testGet_MissReadsThroughOnce() {
+        when(vehicleRepository.findById(1)).thenReturn(Optional.of(database.get(1)));
+
+        vehicleCache.get(1);
+        vehicleCache.get(1);
+
+        verify(vehicleRepository, times(1)).findById(1);
+        assertEquals(1, vehicleCache.getStats().getHits());
+        assertEquals(1, vehicleCache.getStats().getMisses());
+    }
+
+    @Test
+    void testReturnedCopy_DoesNotChangeCache() {
+        when(vehicleRepository.findById(1)).thenReturn(Optional.of(database.get(1)));
+
+        vehicleCache.get(1).setStatus("в ремонте");
+
+        assertEquals("свободен", vehicleCache.get(1).getStatus());
+    }
+
+    @Test
+    void testListener_UpdatesCacheOnSave() {
+        when(vehicleRepository.findAll()).thenReturn(new ArrayList<>(database.values()));
+        vehicleCache.loadAll();
+
+        Vehicle saved = vehicle(3, 15.0, "в рейсе");
+        new VehicleCache.Listener().onSave(saved);
+
+        assertEquals("в рейсе", vehicleCache.get(3).getStatus());
+        assertFalse(vehicleCache.findAvailableWithCapacity(0.0).stream().anyMatch(v -> v.getVehicleId() == 3));
+    }
+
+    @Test
+    void testConcurrentAdminUpdates_CacheMatchesDatabase() throws Exception {
+        when(vehicleRepository.findAll()).thenReturn(new ArrayList<>(database.values()));
+        when(vehicleRepository.findById(anyInt())).thenAnswer(invocation -> {
+            Integer id = invocation.getArgument(0);
+            Vehicle snapshot;
+            synchronized (database.get(id)) {
+                snapshot = vehicle(id, database.get(id).getCapacityTon(), database.get(id).getStatus());
+            }
+            // Медленное чтение увеличивает шанс гонки с параллельным обновлением
+            Thread.sleep(ThreadLocalRandom.current().nextInt(2));
+            return Optional.of(snapshot);
+        });
+        vehicleCache.loadAll();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int writer = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 200; i++) {
+                    int id = 1 + ThreadLocalRandom.current().nextInt(VEHICLE_COUNT);
+                    long generation;
+                    Vehicle saved;
+                    // Блокировка строки: изменения одной записи фиксируются последовательно
+                    synchronized (database.get(id)) {
+                        generation = vehicleCache.invalidate(id);
+                        saved = vehicle(id, database.get(id).getCapacityTon(), "статус-" + writer + "-" + i);
+                        database.get(id).setStatus(saved.getStatus());
+                    }
+                    // Обработчик после коммита может выполниться с задержкой и не по порядку
+                    sleepRandomly();
+                    vehicleCache.install(saved, generation);
+                }
+                return null;
+            }));
+        }
+        for (int t = 0; t < 4; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 400; i++) {
+                    vehicleCache.get(1 + ThreadLocalRandom.current().nextInt(VEHICLE_COUNT));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        for (int id = 1; id <= VEHICLE_COUNT; id++) {
+            assertEquals(database.get(id).getStatus(), vehicleCache.get(id).getStatus(), "vehicle " + id);
+        }
+    }
+
+    private static void sleepRandomly() {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Vehicle vehicle(int id, double capacity, String status) {
+        Vehicle vehicle = new Vehicle();
+        vehicle.setVehicleId(id);
+        vehicle.setModel("Volvo FH16");
+        vehicle.setLicensePlate("A12" + id + "BC");
+        vehicle.setCapacityTon(capacity);
+        vehicle.setStatus(status);
+        return vehicle;
+    }
+}
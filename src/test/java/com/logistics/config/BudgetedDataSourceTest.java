@@ -0,0 +1,142 @@
+package com.logistics.config;
+
+import com.logistics.component.UpdateBudget;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BudgetedDataSourceTest {
+
+    @Mock
+    private DataSource target;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private PreparedStatement statement;
+
+    @Mock
+    private UpdateBudget updateBudget;
+
+    private BudgetedDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        dataSource = new BudgetedDataSource(target, () -> updateBudget);
+        lenient().when(target.getConnection()).thenReturn(connection);
+        lenient().when(updateBudget.beginConnectionAcquisition()).thenReturn(true);
+    }
+
+    @Test
+    void testPrepareStatement_TimeoutRoundedUpToSeconds() throws SQLException {
+        when(connection.prepareStatement("select 1")).thenReturn(statement);
+        when(updateBudget.remainingMillis()).thenReturn(1500L, 2000L, 1L);
+
+        Connection budgeted = dataSource.getConnection();
+        budgeted.prepareStatement("select 1");
+        budgeted.prepareStatement("select 1");
+        budgeted.prepareStatement("select 1");
+
+        // 1,5 с и 2 с -> 2 с, 1 мс -> 1 с: таймаут не бывает нулевым, что в JDBC означает «без ограничения»
+        verify(statement, times(2)).setQueryTimeout(2);
+        verify(statement).setQueryTimeout(1);
+    }
+
+    @Test
+    void testPrepareStatement_BudgetSpentClosesStatement() throws SQLException {
+        when(connection.prepareStatement("select 1")).thenReturn(statement);
+        when(updateBudget.remainingMillis()).thenReturn(0L);
+
+        Connection budgeted = dataSource.getConnection();
+
+        assertThrows(SQLTimeoutException.class, () -> budgeted.prepareStatement("select 1"));
+        verify(statement).close();
+        verify(statement, never()).setQueryTimeout(anyInt());
+        verify(updateBudget).markCancelled();
+    }
+
+    @Test
+    void testGetConnection_BudgetSpentSkipsPool() throws SQLException {
+        when(updateBudget.beginConnectionAcquisition()).thenReturn(false);
+
+        assertThrows(SQLTimeoutException.class, () -> dataSource.getConnection());
+
+        verify(target, never()).getConnection();
+        verify(updateBudget).markCancelled();
+    }
+
+    @Test
+    void testGetConnection_BudgetSpentWhileWaitingReturnsConnectionToPool() throws SQLException {
+        when(updateBudget.endConnectionAcquisition()).thenReturn(true);
+        when(updateBudget.isExhausted()).thenReturn(true);
+
+        assertThrows(SQLTimeoutException.class, () -> dataSource.getConnection());
+
+        verify(updateBudget).beginConnectionAcquisition();
+        verify(connection).close();
+        verify(updateBudget, atLeastOnce()).markCancelled();
+    }
+
+    @Test
+    void testStatement_ErrorAfterBudgetMarksCancellation() throws SQLException {
+        when(connection.prepareStatement("select 1")).thenReturn(statement);
+        when(updateBudget.remainingMillis()).thenReturn(1000L);
+        when(statement.executeQuery()).thenThrow(new SQLException("canceling statement due to statement timeout", "57014"));
+        when(updateBudget.isExhausted()).thenReturn(false, true);
+
+        PreparedStatement budgeted = dataSource.getConnection().prepareStatement("select 1");
+
+        assertThrows(SQLException.class, budgeted::executeQuery);
+        verify(updateBudget).markCancelled();
+    }
+
+    @Test
+    void testStatement_ErrorWithinBudgetIsNotCancellation() throws SQLException {
+        when(connection.prepareStatement("select 1")).thenReturn(statement);
+        when(updateBudget.remainingMillis()).thenReturn(1000L);
+        when(statement.executeUpdate()).thenThrow(new SQLException("duplicate key", "23505"));
+
+        PreparedStatement budgeted = dataSource.getConnection().prepareStatement("select 1");
+
+        assertThrows(SQLException.class, budgeted::executeUpdate);
+        verify(updateBudget, never()).markCancelled();
+    }
+
+    @Test
+    void testCreateStatement_NoTimeoutOutsideUpdate() throws SQLException {
+        Statement plain = mock(Statement.class);
+        when(connection.createStatement()).thenReturn(plain);
+        when(updateBudget.remainingMillis()).thenReturn(Long.MAX_VALUE);
+
+        dataSource.getConnection().createStatement();
+
+        verify(plain, never()).setQueryTimeout(anyInt());
+    }
+
+    @Test
+    void testConnection_OtherCallsPassThrough() throws SQLException {
+        Connection budgeted = dataSource.getConnection();
+
+        budgeted.setAutoCommit(false);
+        budgeted.close();
+
+        verify(connection).setAutoCommit(false);
+        verify(connection).close();
+        verify(updateBudget, never()).remainingMillis();
+        assertEquals(budgeted, budgeted);
+    }
+}
@@ -0,0 +1,66 @@
+package com.logistics.config;
+
+import com.logistics.component.DatabaseCircuitBreaker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CircuitBreakerDataSourceTest {
+
+    @Mock
+    private DataSource target;
+
+    @Mock
+    private DatabaseCircuitBreaker breaker;
+
+    private CircuitBreakerDataSource dataSource;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new CircuitBreakerDataSource(target, () -> breaker);
+        when(breaker.tryAcquire()).thenReturn(true);
+    }
+
+    @Test
+    void testGetConnection_SuccessReported() throws SQLException {
+        Connection connection = mock(Connection.class);
+        when(target.getConnection()).thenReturn(connection);
+
+        assertSame(connection, dataSource.getConnection());
+
+        verify(breaker).onSuccess();
+    }
+
+    @Test
+    void testGetConnection_PoolTimeoutCountsAsFailure() throws SQLException {
+        when(target.getConnection()).thenThrow(new SQLTransientConnectionException("Connection is not available"));
+
+        assertThrows(SQLException.class, () -> dataSource.getConnection());
+
+        verify(breaker).onFailure();
+        verify(breaker, never()).onAbandoned();
+    }
+
+    @Test
+    void testGetConnection_InterruptedWaitIsNotDatabaseFailure() throws SQLException {
+        // Так пул сообщает о прерванном ожидании соединения
+        when(target.getConnection()).thenThrow(new SQLException("Interrupted during connection acquisition",
+                new InterruptedException()));
+
+        assertThrows(SQLException.class, () -> dataSource.getConnection());
+
+        verify(breaker).onAbandoned();
+        verify(breaker, never()).onFailure();
+    }
+}
@@ -0,0 +1,197 @@
+package com.logistics.flow;
+
+import com.logistics.flow.Flow.Transition;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlowTest {
+
+    private static final Long CHAT_ID = 42L;
+
+    private enum Step { NAME, AGE, CONFIRM }
+
+    private static class Data {
+        private String name;
+        private int age;
+    }
+
+    private final List<Long> cancelled = new ArrayList<>();
+    private final List<String> asyncReplies = new ArrayList<>();
+    private CompletableFuture<Transition<Step>> pendingCheck;
+
+    private final Flow<Step, Data> flow = Flow.builder(Step.class, Data::new)
+            .start(Step.NAME, "👋 Анкета")
+            .cancelOn("❌ Отмена", "❌ Анкета отменена.")
+            .onCancel(cancelled::add)
+            .onError("❌ Ошибка анкеты.")
+            .asyncReplies((chatId, reply) -> asyncReplies.add(reply.getText()))
+            .step(Step.NAME, "Введите имя:")
+                .accept(input -> input != null && !input.isBlank(), "❌ Имя не может быть пустым:")
+                .accept(input -> input.length() >= 2, "❌ Имя слишком короткое:")
+                .store((data, input) -> data.name = input)
+                .next(Step.AGE, "✅ Имя принято!")
+            .step(Step.AGE, "Введите возраст:")
+                .handle((chatId, data, input) -> {
+                    data.age = Integer.parseInt(input);
+                    pendingCheck = new CompletableFuture<>();
+                    return Transition.async(pendingCheck, "⏳ Проверяем...");
+                })
+            .step(Step.CONFIRM, "Подтвердите (да/нет):")
+                .handle((chatId, data, input) -> "да".equals(input)
+                        ? Transition.finish("✅ " + data.name + ", " + data.age)
+                        : Transition.to(Step.NAME))
+            .build();
+
+    @Test
+    void testStart_ReturnsIntroAndFirstPrompt() {
+        assertEquals("👋 Анкета\n\nВведите имя:", flow.start(CHAT_ID));
+
+        assertTrue(flow.isActive(CHAT_ID));
+        assertEquals(Step.NAME, flow.getStep(CHAT_ID));
+    }
+
+    @Test
+    void testProcess_NoFlow() {
+        assertNull(flow.process(CHAT_ID, "Иван"));
+    }
+
+    @Test
+    void testValidators_StayOnStepWithFirstFailedError() {
+        flow.start(CHAT_ID);
+
+        assertEquals("❌ Имя не может быть пустым:", flow.process(CHAT_ID, null).getText());
+        assertEquals("❌ Имя слишком короткое:", flow.process(CHAT_ID, "И").getText());
+        assertEquals(Step.NAME, flow.getStep(CHAT_ID));
+        assertNull(flow.getContext(CHAT_ID).name);
+    }
+
+    @Test
+    void testNext_StoresInputAndJoinsAckWithNextPrompt() {
+        flow.start(CHAT_ID);
+
+        Flow.Reply reply = flow.process(CHAT_ID, "Иван");
+
+        assertEquals("✅ Имя принято!\n\nВведите возраст:", reply.getText());
+        assertFalse(reply.isFinished());
+        assertEquals(Step.AGE, flow.getStep(CHAT_ID));
+        assertEquals("Иван", flow.getContext(CHAT_ID).name);
+    }
+
+    @Test
+    void testCancelInput_RunsHookAndEndsFlow() {
+        flow.start(CHAT_ID);
+
+        Flow.Reply reply = flow.process(CHAT_ID, "❌ Отмена");
+
+        assertEquals("❌ Анкета отменена.", reply.getText());
+        assertTrue(reply.isFinished());
+        assertFalse(flow.isActive(CHAT_ID));
+        assertEquals(List.of(CHAT_ID), cancelled);
+    }
+
+    @Test
+    void testCancel_DoesNotRunHook() {
+        flow.start(CHAT_ID);
+
+        assertTrue(flow.cancel(CHAT_ID));
+        assertFalse(flow.cancel(CHAT_ID));
+        assertTrue(cancelled.isEmpty());
+    }
+
+    @Test
+    void testHandlerException_EndsFlowWithErrorReply() {
+        flow.startAt(CHAT_ID, Step.AGE);
+
+        Flow.Reply reply = flow.process(CHAT_ID, "не число");
+
+        assertEquals("❌ Ошибка анкеты.", reply.getText());
+        assertTrue(reply.isFinished());
+        assertFalse(flow.isActive(CHAT_ID));
+    }
+
+    @Test
+    void testAsyncStage_RejectsInputUntilCompletedThenMoves() {
+        flow.startAt(CHAT_ID, Step.AGE).name = "Иван";
+
+        assertEquals("⏳ Проверяем...", flow.process(CHAT_ID, "30").getText());
+        assertEquals("⏳ Подождите, предыдущий шаг еще выполняется.", flow.process(CHAT_ID, "31").getText());
+
+        pendingCheck.complete(Transition.to(Step.CONFIRM));
+
+        assertEquals(List.of("Подтвердите (да/нет):"), asyncReplies);
+        assertEquals(Step.CONFIRM, flow.getStep(CHAT_ID));
+        Flow.Reply reply = flow.process(CHAT_ID, "да");
+        assertEquals("✅ Иван, 30", reply.getText());
+        assertTrue(reply.isFinished());
+    }
+
+    @Test
+    void testAsyncStage_CancelledWhilePendingIsDropped() {
+        flow.startAt(CHAT_ID, Step.AGE);
+        flow.process(CHAT_ID, "30");
+
+        flow.process(CHAT_ID, "❌ Отмена");
+        pendingCheck.complete(Transition.to(Step.CONFIRM));
+
+        assertTrue(asyncReplies.isEmpty());
+        assertFalse(flow.isActive(CHAT_ID));
+    }
+
+    @Test
+    void testAsyncStage_FailureEndsFlowWithErrorReply() {
+        flow.startAt(CHAT_ID, Step.AGE);
+        flow.process(CHAT_ID, "30");
+
+        pendingCheck.completeExceptionally(new IllegalStateException("сервис недоступен"));
+
+        assertEquals(List.of("❌ Ошибка анкеты."), asyncReplies);
+        assertFalse(flow.isActive(CHAT_ID));
+    }
+
+    @Test
+    void testTransitionToStepWithoutReply_UsesStepPrompt() {
+        flow.startAt(CHAT_ID, Step.CONFIRM);
+
+        assertEquals("Введите имя:", flow.process(CHAT_ID, "нет").getText());
+        assertEquals(Step.NAME, flow.getStep(CHAT_ID));
+    }
+
+    @Test
+    void testCounters_TrackStartedCompletedCancelledFailed() {
+        flow.start(CHAT_ID);
+        flow.process(CHAT_ID, "❌ Отмена");
+        flow.startAt(CHAT_ID, Step.CONFIRM).name = "Иван";
+        flow.process(CHAT_ID, "да");
+        flow.startAt(CHAT_ID, Step.AGE);
+        flow.process(CHAT_ID, "не число");
+        flow.start(43L);
+
+        assertEquals(4, flow.getStartedCount());
+        assertEquals(1, flow.getCompletedCount());
+        assertEquals(1, flow.getCancelledCount());
+        assertEquals(1, flow.getFailedCount());
+        assertEquals(1, flow.getActiveCount());
+    }
+
+    @Test
+    void testBuild_FailsOnUndeclaredStep() {
+        Flow.Builder<Step, Data> builder = Flow.builder(Step.class, Data::new);
+        builder.step(Step.NAME).next(Step.AGE);
+        builder.step(Step.AGE).next(Step.NAME);
+
+        assertThrows(IllegalStateException.class, builder::build);
+    }
+
+    @Test
+    void testBuild_FailsOnDuplicateStep() {
+        Flow.Builder<Step, Data> builder = Flow.builder(Step.class, Data::new);
+        builder.step(Step.NAME).next(Step.AGE);
+
+        assertThrows(IllegalStateException.class, () -> builder.step(Step.NAME));
+    }
+}
@@ -0,0 +1,102 @@
+package com.logistics.repositories;
+
+import com.logistics.DTO.OrderDTOs.OrderRowDTO;
+import com.logistics.DTO.VehicleDTOs.VehicleRowDTO;
+import com.logistics.model.Customer;
+import com.logistics.model.Order;
+import com.logistics.model.Vehicle;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Списки администратора должны выполняться одним SQL-запросом без загрузки сущностей
+@DataJpaTest(properties = {
+        "spring.sql.init.mode=never",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class AdminListingQueriesTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        Customer customer = new Customer();
+        customer.setCustomerId(1);
+        customer.setFullName("Test Customer");
+        customer.setEmail("test@example.com");
+        customer.setPasswordHash("hash");
+        entityManager.persist(customer);
+
+        Vehicle vehicle = null;
+        for (int i = 1; i <= 3; i++) {
+            vehicle = new Vehicle();
+            vehicle.setVehicleId(i);
+            vehicle.setModel("Volvo FH16");
+            vehicle.setLicensePlate("A12" + i + "BC");
+            vehicle.setCapacityTon(10.0 * i);
+            vehicle.setStatus("свободен");
+            entityManager.persist(vehicle);
+        }
+
+        for (int i = 1; i <= 5; i++) {
+            Order order = new Order();
+            order.setId(i);
+            order.setCreateTime(LocalDateTime.now());
+            order.setDeliveryAddress("ул. Примерная, д. " + i);
+            order.setTotalWeight(2500 * i);
+            order.setStatus("создан");
+            order.setCustomer(customer);
+            // У последнего заказа транспорт еще не назначен
+            order.setVehicle(i < 5 ? vehicle : null);
+            entityManager.persist(order);
+        }
+
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void testFindAllOrderRows_SingleStatementWithoutEntities() {
+        List<OrderRowDTO> rows = orderRepository.findAllOrderRows();
+
+        assertEquals(5, rows.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+
+        OrderRowDTO last = rows.get(4);
+        assertEquals(1, last.getCustomerId());
+        assertNull(last.getVehicleId());
+    }
+
+    @Test
+    void testFindAllVehicleRows_SingleStatementWithoutEntities() {
+        List<VehicleRowDTO> rows = vehicleRepository.findAllVehicleRows();
+
+        assertEquals(3, rows.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+}
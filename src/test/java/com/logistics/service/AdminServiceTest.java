@@ -1,5 +1,14 @@
 package com.logistics.service;
 
+import com.logistics.DTO.OrderDTOs.OrderRowDTO;
+import com.logistics.DTO.OrderDTOs.OrderStatusChangeRow;
+import com.logistics.DTO.VehicleDTOs.VehicleRowDTO;
+import com.logistics.component.IdRangeParser;
+import com.logistics.component.OrderPageCache;
+import com.logistics.component.SlaPolicy;
+import com.logistics.component.StatusCounters;
+import com.logistics.component.VehicleCache;
+import com.logistics.event.OrderStatusChangedEvent;
 import com.logistics.model.Admin;
 import com.logistics.model.Order;
 import com.logistics.model.Vehicle;
@@ -11,8 +20,14 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.*;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.sql.SQLTransientConnectionException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -31,6 +46,24 @@ class AdminServiceTest {
     @Mock
     private VehicleRepository vehicleRepository;
 
+    @Mock
+    private StatusCounters statusCounters;
+
+    @Mock
+    private OrderPageCache orderPageCache;
+
+    @Mock
+    private VehicleCache vehicleCache;
+
+    @Spy
+    private IdRangeParser idRangeParser = new IdRangeParser();
+
+    @Spy
+    private SlaPolicy slaPolicy = new SlaPolicy("создан=48,IN_TRANSIT=24");
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private AdminService adminService;
 
@@ -45,6 +78,10 @@ class AdminServiceTest {
 
     @BeforeEach
     void setUp() {
+        ReflectionTestUtils.setField(adminService, "orderStatuses",
+                List.of("PENDING", "IN_TRANSIT", "DELIVERED", "создан", "доставлен"));
+        ReflectionTestUtils.setField(adminService, "vehicleStatuses", List.of("AVAILABLE", "IN_USE"));
+
         testOrder = new Order();
         testOrder.setId(ORDER_ID);
         testOrder.setStatus("PENDING");
@@ -231,70 +268,187 @@ class AdminServiceTest {
 
     @Test
     void testGetAllOrders() {
-        List<Order> expectedOrders = Arrays.asList(testOrder, new Order());
-        when(orderRepository.findAll()).thenReturn(expectedOrders);
+        List<OrderRowDTO> expectedOrders = Arrays.asList(
+                new OrderRowDTO(ORDER_ID, "ул. Примерная, 1", 2500, "PENDING", 1, VEHICLE_ID, null, null),
+                new OrderRowDTO(ORDER_ID + 1, "ул. Лесная, 5", 3000, "PENDING", 1, null, null, null));
+        when(orderRepository.findAllOrderRows()).thenReturn(expectedOrders);
 
-        List<Order> result = adminService.getAllOrders();
+        List<OrderRowDTO> result = adminService.getAllOrders();
 
         assertEquals(expectedOrders.size(), result.size());
-        verify(orderRepository).findAll();
+        verify(orderRepository).findAllOrderRows();
+        verify(orderRepository, never()).findAll();
     }
 
     @Test
     void testGetAllVehicles() {
-        List<Vehicle> expectedVehicles = Arrays.asList(testVehicle, new Vehicle());
-        when(vehicleRepository.findAll()).thenReturn(expectedVehicles);
+        Vehicle secondVehicle = new Vehicle();
+        secondVehicle.setVehicleId(VEHICLE_ID + 1);
+        secondVehicle.setStatus("IN_USE");
+        when(vehicleCache.getAll()).thenReturn(Arrays.asList(testVehicle, secondVehicle));
 
-        List<Vehicle> result = adminService.getAllVehicles();
+        List<VehicleRowDTO> result = adminService.getAllVehicles();
 
-        assertEquals(expectedVehicles.size(), result.size());
-        verify(vehicleRepository).findAll();
+        assertEquals(2, result.size());
+        assertEquals("AVAILABLE", result.get(0).getStatus());
+        verify(vehicleCache).getAll();
+        verifyNoInteractions(vehicleRepository);
     }
 
     @Test
-    void testUpdateOrderStatus_Success() {
-        when(orderRepository.findById(ORDER_ID)).thenReturn(Optional.of(testOrder));
-        when(orderRepository.save(any(Order.class))).thenReturn(testOrder);
-
-        boolean result = adminService.updateOrderStatus(ORDER_ID, "DELIVERED");
+    void testUpdateOrderStatus_SetsSlaThresholdForStatusWithThreshold() {
+        when(orderRepository.updateStatusIfVersion(eq(ORDER_ID), eq(3L), eq("IN_TRANSIT"), eq(24 * 60), any()))
+                .thenReturn(List.of(mock(OrderStatusChangeRow.class)));
 
-        assertTrue(result);
-        verify(orderRepository).findById(ORDER_ID);
-        verify(orderRepository).save(testOrder);
+        assertEquals(AdminService.StatusUpdate.UPDATED, adminService.updateOrderStatus(ORDER_ID, 3L, "IN_TRANSIT"));
     }
 
     @Test
-    void testUpdateOrderStatus_OrderNotFound() {
-        when(orderRepository.findById(ORDER_ID)).thenReturn(Optional.empty());
+    void testUpdateOrderStatus_VersionedSingleStatement() {
+        OrderStatusChangeRow changed = mock(OrderStatusChangeRow.class);
+        when(changed.getOldStatus()).thenReturn("PENDING");
+        when(changed.getCustomerId()).thenReturn(7);
+        when(orderRepository.updateStatusIfVersion(eq(ORDER_ID), eq(3L), eq("DELIVERED"), isNull(), any())).thenReturn(List.of(changed));
 
-        boolean result = adminService.updateOrderStatus(ORDER_ID, "DELIVERED");
+        AdminService.StatusUpdate result = adminService.updateOrderStatus(ORDER_ID, 3L, "DELIVERED");
 
-        assertFalse(result);
-        verify(orderRepository).findById(ORDER_ID);
+        assertEquals(AdminService.StatusUpdate.UPDATED, result);
+        verify(orderRepository, never()).findById(any());
         verify(orderRepository, never()).save(any(Order.class));
+        verify(eventPublisher).publishEvent(argThat((Object event) -> isStatusChange(event, "DELIVERED", 1)
+                && ((OrderStatusChangedEvent) event).getChanges().get(0).getCustomerId() == 7));
     }
 
     @Test
-    void testUpdateVehicleStatus_Success() {
-        when(vehicleRepository.findById(VEHICLE_ID)).thenReturn(Optional.of(testVehicle));
-        when(vehicleRepository.save(any(Vehicle.class))).thenReturn(testVehicle);
+    void testUpdateOrderStatus_VersionedUsesApplicationClock() {
+        when(orderRepository.updateStatusIfVersion(eq(ORDER_ID), eq(3L), eq("DELIVERED"), isNull(), any()))
+                .thenReturn(Collections.emptyList());
+        java.time.LocalDateTime before = java.time.LocalDateTime.now();
 
-        boolean result = adminService.updateVehicleStatus(VEHICLE_ID, "IN_USE");
+        adminService.updateOrderStatus(ORDER_ID, 3L, "DELIVERED");
 
-        assertTrue(result);
-        verify(vehicleRepository).findById(VEHICLE_ID);
-        verify(vehicleRepository).save(testVehicle);
+        // Время смены статуса задает приложение, как и при создании заказа, а не часы базы
+        verify(orderRepository).updateStatusIfVersion(eq(ORDER_ID), eq(3L), eq("DELIVERED"), isNull(),
+                argThat(changedAt -> !changedAt.isBefore(before) && !changedAt.isAfter(java.time.LocalDateTime.now())));
     }
 
     @Test
-    void testUpdateVehicleStatus_VehicleNotFound() {
-        when(vehicleRepository.findById(VEHICLE_ID)).thenReturn(Optional.empty());
+    void testUpdateOrderStatus_VersionConflict() {
+        when(orderRepository.updateStatusIfVersion(eq(ORDER_ID), eq(3L), eq("DELIVERED"), isNull(), any())).thenReturn(Collections.emptyList());
 
-        boolean result = adminService.updateVehicleStatus(VEHICLE_ID, "IN_USE");
+        AdminService.StatusUpdate result = adminService.updateOrderStatus(ORDER_ID, 3L, "DELIVERED");
 
-        assertFalse(result);
-        verify(vehicleRepository).findById(VEHICLE_ID);
+        assertEquals(AdminService.StatusUpdate.CONFLICT, result);
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void testUpdateOrderStatus_VersionedQueryErrorIsFailureNotConflict() {
+        when(orderRepository.updateStatusIfVersion(eq(ORDER_ID), eq(3L), eq("DELIVERED"), isNull(), any()))
+                .thenThrow(new DataIntegrityViolationException("value too long"));
+
+        AdminService.StatusUpdate result = adminService.updateOrderStatus(ORDER_ID, 3L, "DELIVERED");
+
+        assertEquals(AdminService.StatusUpdate.FAILED, result);
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void testUpdateOrderStatus_VersionedDatabaseUnavailablePropagates() {
+        when(orderRepository.updateStatusIfVersion(eq(ORDER_ID), eq(3L), eq("DELIVERED"), isNull(), any()))
+                .thenThrow(new DataAccessResourceFailureException("no connection",
+                        new SQLTransientConnectionException("connection is not available")));
+
+        assertThrows(DataAccessResourceFailureException.class,
+                () -> adminService.updateOrderStatus(ORDER_ID, 3L, "DELIVERED"));
+    }
+
+    @Test
+    void testUpdateVehicleStatus_VersionedSingleStatement_InvalidatesCache() {
+        when(vehicleRepository.updateStatusIfVersion(VEHICLE_ID, 5L, "IN_USE")).thenReturn("AVAILABLE");
+
+        AdminService.StatusUpdate result = adminService.updateVehicleStatus(VEHICLE_ID, 5L, "IN_USE");
+
+        assertEquals(AdminService.StatusUpdate.UPDATED, result);
+        verify(vehicleRepository, never()).findById(any());
+        verify(vehicleCache).invalidate(VEHICLE_ID);
+        verify(statusCounters).vehicleStatusChanged("AVAILABLE", "IN_USE");
+    }
+
+    @Test
+    void testUpdateVehicleStatus_VersionedConflictAndFailure() {
+        when(vehicleRepository.updateStatusIfVersion(VEHICLE_ID, 5L, "IN_USE"))
+                .thenReturn(null)
+                .thenThrow(new DataIntegrityViolationException("value too long"));
+
+        assertEquals(AdminService.StatusUpdate.CONFLICT, adminService.updateVehicleStatus(VEHICLE_ID, 5L, "IN_USE"));
+        assertEquals(AdminService.StatusUpdate.FAILED, adminService.updateVehicleStatus(VEHICLE_ID, 5L, "IN_USE"));
+        verifyNoInteractions(statusCounters);
+    }
+
+    @Test
+    void testBulkUpdateOrderStatus_SingleStatementAndSingleEvent() {
+        OrderStatusChangeRow first = mock(OrderStatusChangeRow.class);
+        when(first.getId()).thenReturn(12);
+        OrderStatusChangeRow second = mock(OrderStatusChangeRow.class);
+        when(second.getId()).thenReturn(20);
+        when(orderRepository.bulkUpdateStatus(eq(List.of(12, 15, 20, 21, 22)), eq("доставлен"), isNull(), any()))
+                .thenReturn(List.of(first, second));
+
+        AdminService.BulkUpdateResult result = adminService.bulkUpdateOrderStatus("12, 15, 20-22 → доставлен");
+
+        assertEquals(5, result.getRequested());
+        assertEquals(2, result.getUpdated());
+        assertEquals(List.of(15, 21, 22), result.getSkippedIds());
+        verify(orderRepository, times(1)).bulkUpdateStatus(anyCollection(), eq("доставлен"), isNull(), any());
+        verify(orderRepository, never()).findById(any());
+        verify(eventPublisher, times(1)).publishEvent(argThat((Object event) -> isStatusChange(event, "доставлен", 2)));
+    }
+
+    @Test
+    void testBulkUpdateOrderStatus_InvalidCommand() {
+        assertThrows(IllegalArgumentException.class, () -> adminService.bulkUpdateOrderStatus("12,15 доставлен"));
+        assertThrows(IllegalArgumentException.class, () -> adminService.bulkUpdateOrderStatus("80-20 -> доставлен"));
+        verifyNoInteractions(orderRepository, eventPublisher);
+    }
+
+    @Test
+    void testFindStuckOrders_UsesStatusAndCutoff() {
+        when(orderRepository.findStuckOrders(eq("создан"), any(), any())).thenReturn(Collections.emptyList());
+
+        adminService.findStuckOrders("создан", 24);
+
+        verify(orderRepository).findStuckOrders(eq("создан"),
+                argThat(before -> before.isBefore(java.time.LocalDateTime.now().minusHours(23))), any());
+    }
+
+    @Test
+    void testFormatTimeInStatus() {
+        assertEquals("2 д 3 ч", AdminService.formatTimeInStatus(
+                java.time.LocalDateTime.now().minusDays(2).minusHours(3).minusMinutes(1)));
+        assertEquals("5 ч 0 мин", AdminService.formatTimeInStatus(
+                java.time.LocalDateTime.now().minusHours(5).minusSeconds(10)));
+        assertEquals("нет данных", AdminService.formatTimeInStatus(null));
+    }
+
+    @Test
+    void testUpdateOrderStatus_OrderNotFound() {
+        // Удаленный заказ не обновляется: как и при конфликте версий, решение принимается заново
+        when(orderRepository.updateStatusIfVersion(eq(ORDER_ID), eq(3L), eq("DELIVERED"), isNull(), any()))
+                .thenReturn(Collections.emptyList());
+
+        assertEquals(AdminService.StatusUpdate.CONFLICT, adminService.updateOrderStatus(ORDER_ID, 3L, "DELIVERED"));
+        verify(orderRepository, never()).save(any(Order.class));
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void testUpdateVehicleStatus_VehicleNotFound() {
+        when(vehicleRepository.updateStatusIfVersion(VEHICLE_ID, 5L, "IN_USE")).thenReturn(null);
+
+        assertEquals(AdminService.StatusUpdate.CONFLICT, adminService.updateVehicleStatus(VEHICLE_ID, 5L, "IN_USE"));
         verify(vehicleRepository, never()).save(any(Vehicle.class));
+        verifyNoInteractions(statusCounters);
     }
 
     @Test
@@ -320,22 +474,67 @@ class AdminServiceTest {
 
     @Test
     void testGetVehicleById_Found() {
-        when(vehicleRepository.findById(VEHICLE_ID)).thenReturn(Optional.of(testVehicle));
+        when(vehicleCache.get(VEHICLE_ID)).thenReturn(testVehicle);
 
         Vehicle result = adminService.getVehicleById(VEHICLE_ID);
 
         assertNotNull(result);
         assertEquals(VEHICLE_ID, result.getVehicleId());
-        verify(vehicleRepository).findById(VEHICLE_ID);
+        verify(vehicleCache).get(VEHICLE_ID);
+        verifyNoInteractions(vehicleRepository);
     }
 
     @Test
     void testGetVehicleById_NotFound() {
-        when(vehicleRepository.findById(VEHICLE_ID)).thenReturn(Optional.empty());
+        when(vehicleCache.get(VEHICLE_ID)).thenReturn(null);
 
         Vehicle result = adminService.getVehicleById(VEHICLE_ID);
 
         assertNull(result);
-        verify(vehicleRepository).findById(VEHICLE_ID);
+        verify(vehicleCache).get(VEHICLE_ID);
+    }
+
+    @Test
+    void testUpdateOrderStatus_UnknownStatusIsRejectedBeforeQuery() {
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> adminService.updateOrderStatus(ORDER_ID, 3L, "доставленн"));
+
+        assertTrue(error.getMessage().contains("доставленн"));
+        assertThrows(IllegalArgumentException.class, () -> adminService.bulkUpdateOrderStatus("12 → доствлен"));
+        assertThrows(IllegalArgumentException.class, () -> adminService.updateVehicleStatus(VEHICLE_ID, 5L, "в ремонте"));
+        verifyNoInteractions(orderRepository, vehicleRepository, eventPublisher);
+    }
+
+    @Test
+    void testFindOrderStatus_IgnoresCaseAndSpaces() {
+        assertEquals("доставлен", adminService.findOrderStatus("  Доставлен "));
+        assertEquals("IN_USE", adminService.findVehicleStatus("in_use"));
+        assertNull(adminService.findOrderStatus("потерян"));
+    }
+
+    @Test
+    void testBulkUpdateOrderStatus_UsesConfiguredSpelling() {
+        when(orderRepository.bulkUpdateStatus(eq(List.of(12)), eq("доставлен"), isNull(), any())).thenReturn(Collections.emptyList());
+
+        AdminService.BulkUpdateResult result = adminService.bulkUpdateOrderStatus("12 → ДОСТАВЛЕН");
+
+        assertEquals("доставлен", result.getNewStatus());
+    }
+
+    @Test
+    void testStatusChange_ListenerFailureIsCounted() {
+        OrderStatusChangeRow changed = mock(OrderStatusChangeRow.class);
+        when(orderRepository.updateStatusIfVersion(eq(ORDER_ID), eq(3L), eq("DELIVERED"), isNull(), any())).thenReturn(List.of(changed));
+        doThrow(new IllegalStateException("listener")).when(eventPublisher).publishEvent(any(Object.class));
+
+        // Изменение сохранено - результат успешный, сбой подписчика учитывается отдельно
+        assertEquals(AdminService.StatusUpdate.UPDATED, adminService.updateOrderStatus(ORDER_ID, 3L, "DELIVERED"));
+        assertEquals(1, adminService.getStatusListenerFailures());
+    }
+
+    private boolean isStatusChange(Object event, String newStatus, int changes) {
+        return event instanceof OrderStatusChangedEvent
+                && newStatus.equals(((OrderStatusChangedEvent) event).getNewStatus())
+                && ((OrderStatusChangedEvent) event).getChanges().size() == changes;
     }
-}
\ No newline at end of file
+}
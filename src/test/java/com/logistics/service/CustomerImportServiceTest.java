@@ -0,0 +1,247 @@
+package com.logistics.service;
+
+import com.logistics.component.CsvParser;
+import com.logistics.component.InputValidator;
+import com.logistics.component.PasswordHasher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.*;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerImportServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private PasswordHasher passwordHasher;
+
+    @Mock
+    private MessageSender messageSender;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @TempDir
+    Path tempDir;
+
+    private CustomerImportService customerImportService;
+
+    @BeforeEach
+    void setUp() {
+        customerImportService = new CustomerImportService(jdbcTemplate, transactionTemplate, new InputValidator(),
+                passwordHasher, new CsvParser(), messageSender, eventPublisher);
+        ReflectionTestUtils.setField(customerImportService, "workerCount", 2);
+        ReflectionTestUtils.setField(customerImportService, "importDir", tempDir.resolve("import").toString());
+        customerImportService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        customerImportService.cleanup();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testImportCustomers_QuotedFieldsAndBadRows() throws Exception {
+        when(passwordHasher.hashPassword("secret1")).thenReturn("hash");
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+        List<List<Object>> chunks = stubChunkInsert(email -> false);
+
+        String csv = "email,name,phone,address,password\n" +
+                "ivan@example.com,\"Иванов, Иван\",+79001234567,\"г. Москва, ул. Лесная, 5\",secret1\n" +
+                "not-an-email,Петр,+79001234568,ул. Полевая 7,secret2\n" +
+                "short@example.com,Ольга\n" +
+                "\n" +
+                "olga@example.com,Ольга,123,ул. Садовая 1,secret3\n";
+        Path report = tempDir.resolve("errors.csv");
+
+        CustomerImportService.ImportResult result = customerImportService.importCustomers(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), report);
+
+        assertEquals(4, result.getTotal());
+        assertEquals(1, result.getImported());
+        assertEquals(3, result.getFailed());
+
+        assertEquals(List.of(List.of("ivan@example.com")), chunks);
+
+        List<String> errors = Files.readAllLines(report, StandardCharsets.UTF_8);
+        assertEquals("line,email,error", errors.get(0));
+        assertTrue(errors.contains("3,not-an-email,неверный формат email"));
+        assertTrue(errors.stream().anyMatch(l -> l.startsWith("4,") && l.contains("ожидается 5 полей")));
+        // Номер строки считается по файлу, пустые строки тоже учитываются
+        assertTrue(errors.contains("6,olga@example.com,неверный формат номера телефона"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testImportCustomers_DuplicateEmailsReportedPerRow() throws Exception {
+        when(passwordHasher.hashPassword(anyString())).thenReturn("hash");
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+        // Второй email совпадает с первым без учета регистра, третий уже был в базе - вставка пропущена
+        List<List<Object>> chunks = stubChunkInsert(email -> email.equals("old@example.com"));
+
+        String csv = "anna@example.com;Анна;+79001234567;ул. Лесная 5;secret1\n" +
+                "ANNA@example.com;Анна;+79001234567;ул. Лесная 5;secret1\n" +
+                "old@example.com;Олег;+79001234569;ул. Полевая 7;secret1\n";
+        Path report = tempDir.resolve("errors.csv");
+
+        CustomerImportService.ImportResult result = customerImportService.importCustomers(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), report);
+
+        assertEquals(3, result.getTotal());
+        assertEquals(1, result.getImported());
+        assertEquals(2, result.getFailed());
+        List<String> errors = Files.readAllLines(report, StandardCharsets.UTF_8);
+        assertTrue(errors.contains("2,ANNA@example.com,email уже зарегистрирован"));
+        assertTrue(errors.contains("3,old@example.com,email уже зарегистрирован"));
+        // Повтор внутри файла в базу не отправляется
+        assertEquals(List.of(List.of("anna@example.com", "old@example.com")), chunks);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testImportCustomers_ResultTakenFromReturnedEmails() throws Exception {
+        when(passwordHasher.hashPassword(anyString())).thenReturn("hash");
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+        // Занятые email в середине порции: импортированными считаются только строки, вернувшиеся из RETURNING,
+        // а не все строки порции (при пакетной вставке драйвер мог вернуть SUCCESS_NO_INFO для каждой)
+        List<List<Object>> chunks = stubChunkInsert(email -> email.startsWith("taken"));
+
+        StringBuilder csv = new StringBuilder();
+        for (int i = 1; i <= 1500; i++) {
+            String email = (i % 10 == 0 ? "taken" : "user") + i + "@example.com";
+            csv.append(email).append(",Клиент,+79001234567,ул. Лесная 5,secret1\n");
+        }
+        csv.append("USER1@example.com,Клиент,+79001234567,ул. Лесная 5,secret1\n");
+        Path report = tempDir.resolve("errors.csv");
+
+        CustomerImportService.ImportResult result = customerImportService.importCustomers(
+                new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)), report);
+
+        assertEquals(1501, result.getTotal());
+        assertEquals(1350, result.getImported());
+        assertEquals(151, result.getFailed());
+        assertEquals(2, chunks.size());
+        assertEquals(1000, chunks.get(0).size());
+        // Email, уже вставленный первой порцией, второй порцией в базу отправляется и пропускается ON CONFLICT
+        assertEquals(501, chunks.get(1).size());
+        List<String> errors = Files.readAllLines(report, StandardCharsets.UTF_8);
+        assertTrue(errors.contains("10,taken10@example.com,email уже зарегистрирован"));
+        assertTrue(errors.contains("1501,USER1@example.com,email уже зарегистрирован"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testImportCustomers_FailedChunkRetriedRowByRow() throws Exception {
+        when(passwordHasher.hashPassword(anyString())).thenReturn("hash");
+        when(transactionTemplate.execute(any())).thenThrow(new DataIntegrityViolationException("value too long"));
+        when(jdbcTemplate.update(anyString(), eq("Анна"), any(), any(), eq("anna@example.com"), any())).thenReturn(1);
+        when(jdbcTemplate.update(anyString(), eq("Олег"), any(), any(), eq("oleg@example.com"), any()))
+                .thenThrow(new DataIntegrityViolationException("value too long"));
+
+        String csv = "anna@example.com,Анна,+79001234567,ул. Лесная 5,secret1\n" +
+                "oleg@example.com,Олег,+79001234569,ул. Полевая 7,secret1\n";
+        Path report = tempDir.resolve("errors.csv");
+
+        CustomerImportService.ImportResult result = customerImportService.importCustomers(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), report);
+
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getFailed());
+        assertTrue(Files.readAllLines(report, StandardCharsets.UTF_8)
+                .contains("2,oleg@example.com,ошибка базы данных: value too long"));
+    }
+
+    @Test
+    void testResolveImportFile_OnlyInsideImportDirectory() throws Exception {
+        Path importDir = Files.createDirectories(tempDir.resolve("import"));
+        Path file = Files.writeString(importDir.resolve("customers.csv"), "email,name\n");
+        Files.createDirectories(importDir.resolve("2025"));
+        Path nested = Files.writeString(importDir.resolve("2025").resolve("march.csv"), "email,name\n");
+        Path outside = Files.writeString(tempDir.resolve("secret.txt"), "password");
+
+        assertEquals(file.toRealPath(), customerImportService.resolveImportFile(" customers.csv "));
+        assertEquals(nested.toRealPath(), customerImportService.resolveImportFile("2025/march.csv"));
+
+        assertNull(customerImportService.resolveImportFile("../secret.txt"));
+        assertNull(customerImportService.resolveImportFile("2025/../../secret.txt"));
+        assertNull(customerImportService.resolveImportFile(outside.toString()));
+        assertNull(customerImportService.resolveImportFile("missing.csv"));
+        assertNull(customerImportService.resolveImportFile("2025"));
+        assertNull(customerImportService.resolveImportFile(""));
+    }
+
+    @Test
+    void testResolveImportFile_SymlinkOutsideIsRejected() throws Exception {
+        Path importDir = Files.createDirectories(tempDir.resolve("import"));
+        Path outside = Files.writeString(tempDir.resolve("secret.txt"), "password");
+        Files.createSymbolicLink(importDir.resolve("link.csv"), outside);
+
+        assertNull(customerImportService.resolveImportFile("link.csv"));
+    }
+
+    /**
+     * Вставка порции: запрос выполняется на мок-соединении, массив email каждой порции запоминается.
+     * RETURNING возвращает email, которых нет в базе (registered ложно) и которые еще не вставлены
+     * без учета регистра - как ON CONFLICT ((LOWER(email))) DO NOTHING
+     */
+    @SuppressWarnings("unchecked")
+    private List<List<Object>> stubChunkInsert(Predicate<String> registered) throws Exception {
+        List<List<Object>> chunks = new ArrayList<>();
+        Set<String> stored = new HashSet<>();
+        when(jdbcTemplate.query(any(PreparedStatementCreator.class), any(RowMapper.class))).thenAnswer(invocation -> {
+            Connection connection = mock(Connection.class);
+            when(connection.prepareStatement(anyString())).thenReturn(mock(PreparedStatement.class));
+            List<Object[]> columns = new ArrayList<>();
+            when(connection.createArrayOf(eq("text"), any())).thenAnswer(call -> {
+                columns.add(call.getArgument(1));
+                return mock(Array.class);
+            });
+            invocation.<PreparedStatementCreator>getArgument(0).createPreparedStatement(connection);
+
+            List<Object> emails = List.of(columns.get(3));
+            chunks.add(emails);
+            List<String> returned = new ArrayList<>();
+            for (Object email : emails) {
+                if (!registered.test((String) email) && stored.add(((String) email).toLowerCase(Locale.ROOT))) {
+                    returned.add((String) email);
+                }
+            }
+            return returned;
+        });
+        return chunks;
+    }
+}
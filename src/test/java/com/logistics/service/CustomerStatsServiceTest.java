@@ -0,0 +1,142 @@
+package com.logistics.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.logistics.event.OrderCreatedEvent;
+import com.logistics.event.OrderStatusChangedEvent;
+import com.logistics.repositories.CustomerStatsRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerStatsServiceTest {
+
+    @Mock
+    private CustomerStatsRepository customerStatsRepository;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private CustomerStatsService customerStatsService;
+
+    @Test
+    void testOrderCreated_AddsOrderToCustomerStats() {
+        LocalDateTime createTime = LocalDateTime.of(2025, 3, 1, 10, 0);
+
+        customerStatsService.onOrderCreated(new OrderCreatedEvent(100, 1, "создан", 2500, createTime, null));
+
+        verify(customerStatsRepository).addOrders(1, 1, 2500, createTime, "создан");
+    }
+
+    @Test
+    void testOrderCreated_WithoutCustomerIsIgnored() {
+        customerStatsService.onOrderCreated(new OrderCreatedEvent(100, null, "создан", 2500, LocalDateTime.now(), null));
+
+        verifyNoInteractions(customerStatsRepository);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testStatusChanged_AppliesAllCustomersInOneUpdate() throws Exception {
+        customerStatsService.onOrderStatusChanged(new OrderStatusChangedEvent("доставлен", List.of(
+                new OrderStatusChangedEvent.Change(10, 1, "создан"),
+                new OrderStatusChangedEvent.Change(11, 1, "в пути"),
+                new OrderStatusChangedEvent.Change(12, 1, "создан"),
+                new OrderStatusChangedEvent.Change(13, 2, null),
+                new OrderStatusChangedEvent.Change(14, 3, "доставлен"),
+                new OrderStatusChangedEvent.Change(15, null, "создан"))));
+
+        ArgumentCaptor<String> deltas = ArgumentCaptor.forClass(String.class);
+        verify(customerStatsRepository, times(1)).applyStatusDeltas(deltas.capture());
+        Map<String, Map<String, Integer>> parsed = objectMapper.readValue(deltas.getValue(), Map.class);
+        assertEquals(Map.of(
+                "1", Map.of("создан", -2, "в пути", -1, "доставлен", 3),
+                "2", Map.of("без статуса", -1, "доставлен", 1)), parsed);
+    }
+
+    @Test
+    void testStatusChanged_NothingToApply() {
+        customerStatsService.onOrderStatusChanged(new OrderStatusChangedEvent("доставлен",
+                List.of(new OrderStatusChangedEvent.Change(14, 3, "доставлен"))));
+
+        verifyNoInteractions(customerStatsRepository);
+    }
+
+    @Test
+    void testStatusChanged_RepositoryErrorDoesNotPropagate() {
+        when(customerStatsRepository.applyStatusDeltas(anyString())).thenThrow(new RuntimeException("db down"));
+
+        assertDoesNotThrow(() -> customerStatsService.onOrderStatusChanged(new OrderStatusChangedEvent("доставлен",
+                List.of(new OrderStatusChangedEvent.Change(10, 1, "создан")))));
+        assertEquals(1, customerStatsService.getFailureCount());
+    }
+
+    @Test
+    void testRebuild_ReplacesStatsFromOrders() {
+        when(customerStatsRepository.insertFromOrders()).thenReturn(42);
+
+        assertEquals(42, customerStatsService.rebuild());
+
+        var order = inOrder(customerStatsRepository);
+        order.verify(customerStatsRepository).lockForRebuild();
+        order.verify(customerStatsRepository).clearAll();
+        order.verify(customerStatsRepository).insertFromOrders();
+    }
+
+    @Test
+    void testBackfill_FillsEmptyTableFromOrders() {
+        runTransactionCallbacks();
+        when(customerStatsRepository.hasAnyStats()).thenReturn(false);
+        when(customerStatsRepository.insertFromOrders()).thenReturn(7);
+
+        assertEquals(7, customerStatsService.backfillIfEmpty());
+
+        var order = inOrder(customerStatsRepository);
+        order.verify(customerStatsRepository).lockForRebuild();
+        order.verify(customerStatsRepository).hasAnyStats();
+        order.verify(customerStatsRepository).insertFromOrders();
+        verify(customerStatsRepository, never()).clearAll();
+    }
+
+    @Test
+    void testBackfill_SkipsFilledTable() {
+        runTransactionCallbacks();
+        when(customerStatsRepository.hasAnyStats()).thenReturn(true);
+
+        assertEquals(0, customerStatsService.backfillIfEmpty());
+
+        verify(customerStatsRepository, never()).insertFromOrders();
+    }
+
+    @Test
+    void testApplicationReady_BackfillErrorDoesNotPropagate() {
+        when(transactionTemplate.execute(any())).thenThrow(new RuntimeException("db down"));
+
+        assertDoesNotThrow(() -> customerStatsService.onApplicationReady());
+        assertEquals(1, customerStatsService.getFailureCount());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runTransactionCallbacks() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+    }
+}
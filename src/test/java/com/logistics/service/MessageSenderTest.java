@@ -6,7 +6,9 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.KeyboardRow;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
@@ -264,4 +266,112 @@ class MessageSenderTest {
         // Assert - проверяем, что новый экземпляр использует установленного бота
         assertDoesNotThrow(() -> newMessageSender.sendMessage(CHAT_ID, TEST_MESSAGE));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testUpdateBuffer_MergesConsecutiveMessagesToSameChat() throws TelegramApiException {
+        // Act
+        messageSender.beginUpdate();
+        messageSender.sendMessage(CHAT_ID, "Статус");
+        messageSender.sendMessage(CHAT_ID, "Меню", true);
+        verify(bot, never()).execute(any(SendMessage.class));
+        messageSender.flushUpdate();
+
+        // Assert - один запрос с обоими текстами и клавиатурой последнего сообщения
+        ArgumentCaptor<SendMessage> messageCaptor = ArgumentCaptor.forClass(SendMessage.class);
+        verify(bot).execute(messageCaptor.capture());
+
+        SendMessage sentMessage = messageCaptor.getValue();
+        assertEquals("Статус\n\nМеню", sentMessage.getText());
+        assertFalse(((ReplyKeyboardMarkup) sentMessage.getReplyMarkup()).getOneTimeKeyboard());
+        assertEquals(1, messageSender.getMergedCount());
+    }
+
+    @Test
+    void testUpdateBuffer_KeepsLastKeyboard() throws TelegramApiException {
+        // Act
+        messageSender.beginUpdate();
+        messageSender.sendMessageWithCancel(CHAT_ID, "Введите email:");
+        messageSender.sendMessage(CHAT_ID, "Без клавиатуры");
+        messageSender.flushUpdate();
+
+        // Assert - сообщение без клавиатуры не сбрасывает клавиатуру предыдущего
+        ArgumentCaptor<SendMessage> messageCaptor = ArgumentCaptor.forClass(SendMessage.class);
+        verify(bot).execute(messageCaptor.capture());
+        assertTrue(((ReplyKeyboardMarkup) messageCaptor.getValue().getReplyMarkup()).getOneTimeKeyboard());
+    }
+
+    @Test
+    void testUpdateBuffer_SkipsRepeatedText() throws TelegramApiException {
+        // Act
+        messageSender.beginUpdate();
+        messageSender.sendMessage(CHAT_ID, "❌ Регистрация отменена.", true);
+        messageSender.sendMessage(CHAT_ID, "❌ Регистрация отменена.");
+        messageSender.flushUpdate();
+
+        // Assert
+        ArgumentCaptor<SendMessage> messageCaptor = ArgumentCaptor.forClass(SendMessage.class);
+        verify(bot).execute(messageCaptor.capture());
+        assertEquals("❌ Регистрация отменена.", messageCaptor.getValue().getText());
+        assertNotNull(messageCaptor.getValue().getReplyMarkup());
+    }
+
+    @Test
+    void testUpdateBuffer_DoesNotMergeDifferentChatsOrLongTexts() throws TelegramApiException {
+        // Act
+        messageSender.beginUpdate();
+        messageSender.sendMessage(CHAT_ID, "Первый чат");
+        messageSender.sendMessage(222222222L, "Второй чат");
+        messageSender.sendMessage(CHAT_ID, "A".repeat(MessageSender.MAX_MESSAGE_LENGTH - 1));
+        messageSender.sendMessage(CHAT_ID, "Хвост");
+        messageSender.flushUpdate();
+
+        // Assert - склеиваются только соседние сообщения одного чата в пределах длины
+        ArgumentCaptor<SendMessage> messageCaptor = ArgumentCaptor.forClass(SendMessage.class);
+        verify(bot, times(4)).execute(messageCaptor.capture());
+        assertEquals("Хвост", messageCaptor.getAllValues().get(3).getText());
+    }
+
+    @Test
+    void testUpdateBuffer_ClosedAfterFlush() throws TelegramApiException {
+        // Act
+        messageSender.beginUpdate();
+        messageSender.flushUpdate();
+        messageSender.sendMessage(CHAT_ID, TEST_MESSAGE);
+
+        // Assert - вне обработки обновления сообщение уходит сразу
+        verify(bot).execute(any(SendMessage.class));
+    }
+
+    @Test
+    void testUpdateBuffer_KeepsInlineKeyboardOfItsMessage() throws TelegramApiException {
+        // Arrange
+        SendMessage prompt = new SendMessage(String.valueOf(CHAT_ID), "Выберите статус");
+        prompt.setReplyMarkup(new InlineKeyboardMarkup(List.of()));
+
+        // Act
+        messageSender.beginUpdate();
+        messageSender.send(prompt);
+        messageSender.sendMessage(CHAT_ID, "Меню", true);
+        messageSender.flushUpdate();
+
+        // Assert - сообщение с inline-кнопками не склеивается с сообщением с другой клавиатурой
+        ArgumentCaptor<SendMessage> messageCaptor = ArgumentCaptor.forClass(SendMessage.class);
+        verify(bot, times(2)).execute(messageCaptor.capture());
+        assertTrue(messageCaptor.getAllValues().get(0).getReplyMarkup() instanceof InlineKeyboardMarkup);
+    }
+
+    @Test
+    void testAnswerCallback_SentImmediately() throws TelegramApiException {
+        // Act
+        messageSender.beginUpdate();
+        messageSender.answerCallback("query-1", "⚠️ Кнопка устарела");
+
+        // Assert
+        ArgumentCaptor<AnswerCallbackQuery> answerCaptor = ArgumentCaptor.forClass(AnswerCallbackQuery.class);
+        verify(bot).execute(answerCaptor.capture());
+        assertEquals("query-1", answerCaptor.getValue().getCallbackQueryId());
+        assertEquals("⚠️ Кнопка устарела", answerCaptor.getValue().getText());
+
+        messageSender.flushUpdate();
+    }
+}
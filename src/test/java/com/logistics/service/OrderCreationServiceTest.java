@@ -1,17 +1,35 @@
 package com.logistics.service;
 
+import com.logistics.component.MessageTemplates;
+import com.logistics.component.PendingOrderJournal;
+import com.logistics.component.PendingOrderJournal.PendingOrder;
+import com.logistics.component.SlaPolicy;
+import com.logistics.component.StatusCounters;
+import com.logistics.component.VehicleCache;
+import com.logistics.event.OrderCreatedEvent;
 import com.logistics.model.Customer;
 import com.logistics.model.Order;
 import com.logistics.model.Vehicle;
+import com.logistics.repositories.CustomerRepository;
 import com.logistics.repositories.OrderRepository;
+import com.logistics.repositories.OrderStatusHistoryRepository;
 import com.logistics.repositories.VehicleRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.sql.SQLTransientConnectionException;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collections;
@@ -34,6 +52,36 @@ class OrderCreationServiceTest {
     @Mock
     private AuthService authService;
 
+    @Mock
+    private StatusCounters statusCounters;
+
+    @Mock
+    private VehicleCache vehicleCache;
+
+    @Mock
+    private SlaPolicy slaPolicy;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PendingOrderJournal pendingOrderJournal;
+
+    @Mock
+    private CustomerRepository customerRepository;
+
+    @Mock
+    private MessageSender messageSender;
+
+    @Mock
+    private OrderStatusHistoryRepository orderStatusHistoryRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private MessageTemplates messageTemplates = new MessageTemplates("");
+
     @InjectMocks
     private OrderCreationService orderCreationService;
 
@@ -67,6 +115,10 @@ class OrderCreationServiceTest {
         testOrder.setTotalWeight(2500);
         testOrder.setStatus("создан");
         testOrder.setCreateTime(LocalDateTime.now());
+
+        // Не каждый тест доходит до сохранения заказа
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
     }
 
     @Test
@@ -155,7 +207,7 @@ class OrderCreationServiceTest {
         orderCreationService.processOrderCreationInput(CHAT_ID, ADDRESS); // Переходим к весу
 
         List<Vehicle> availableVehicles = Arrays.asList(testVehicle);
-        when(vehicleRepository.findAvailableVehiclesWithCapacity(2.5)).thenReturn(availableVehicles);
+        when(vehicleCache.findAvailableWithCapacity(2.5)).thenReturn(availableVehicles);
 
         // Act
         String result = orderCreationService.processOrderCreationInput(CHAT_ID, VALID_WEIGHT);
@@ -168,7 +220,7 @@ class OrderCreationServiceTest {
         assertTrue(result.contains(testVehicle.getLicensePlate()));
         assertEquals(OrderCreationService.OrderCreationState.AWAITING_CONFIRMATION,
                 orderCreationService.getCurrentState(CHAT_ID));
-        verify(vehicleRepository).findAvailableVehiclesWithCapacity(2.5);
+        verify(vehicleCache).findAvailableWithCapacity(2.5);
     }
 
     @Test
@@ -177,7 +229,7 @@ class OrderCreationServiceTest {
         orderCreationService.startOrderCreation(CHAT_ID);
         orderCreationService.processOrderCreationInput(CHAT_ID, ADDRESS); // Переходим к весу
 
-        when(vehicleRepository.findAvailableVehiclesWithCapacity(2.5)).thenReturn(Collections.emptyList());
+        when(vehicleCache.findAvailableWithCapacity(2.5)).thenReturn(Collections.emptyList());
 
         // Act
         String result = orderCreationService.processOrderCreationInput(CHAT_ID, VALID_WEIGHT);
@@ -187,7 +239,7 @@ class OrderCreationServiceTest {
         assertTrue(result.contains("будет назначен позже"));
         assertEquals(OrderCreationService.OrderCreationState.AWAITING_CONFIRMATION,
                 orderCreationService.getCurrentState(CHAT_ID));
-        verify(vehicleRepository).findAvailableVehiclesWithCapacity(2.5);
+        verify(vehicleCache).findAvailableWithCapacity(2.5);
     }
 
     @Test
@@ -203,7 +255,7 @@ class OrderCreationServiceTest {
         assertTrue(result.contains("❌ Минимальный вес заказа 2000 кг"));
         assertEquals(OrderCreationService.OrderCreationState.AWAITING_WEIGHT,
                 orderCreationService.getCurrentState(CHAT_ID));
-        verify(vehicleRepository, never()).findAvailableVehiclesWithCapacity(anyDouble());
+        verify(vehicleCache, never()).findAvailableWithCapacity(anyDouble());
     }
 
     @Test
@@ -219,7 +271,7 @@ class OrderCreationServiceTest {
         assertTrue(result.contains("❌ Вес слишком большой"));
         assertEquals(OrderCreationService.OrderCreationState.AWAITING_WEIGHT,
                 orderCreationService.getCurrentState(CHAT_ID));
-        verify(vehicleRepository, never()).findAvailableVehiclesWithCapacity(anyDouble());
+        verify(vehicleCache, never()).findAvailableWithCapacity(anyDouble());
     }
 
     @Test
@@ -235,7 +287,7 @@ class OrderCreationServiceTest {
         assertTrue(result.contains("❌ Неверный формат веса"));
         assertEquals(OrderCreationService.OrderCreationState.AWAITING_WEIGHT,
                 orderCreationService.getCurrentState(CHAT_ID));
-        verify(vehicleRepository, never()).findAvailableVehiclesWithCapacity(anyDouble());
+        verify(vehicleCache, never()).findAvailableWithCapacity(anyDouble());
     }
 
     @Test
@@ -245,7 +297,7 @@ class OrderCreationServiceTest {
         orderCreationService.processOrderCreationInput(CHAT_ID, ADDRESS); // Переходим к весу
 
         List<Vehicle> availableVehicles = Arrays.asList(testVehicle);
-        when(vehicleRepository.findAvailableVehiclesWithCapacity(2.5)).thenReturn(availableVehicles);
+        when(vehicleCache.findAvailableWithCapacity(2.5)).thenReturn(availableVehicles);
 
         // Act
         String result = orderCreationService.processOrderCreationInput(CHAT_ID, "  2500  ");
@@ -261,7 +313,7 @@ class OrderCreationServiceTest {
         // Arrange - полный процесс до подтверждения
         setupOrderCreationUntilConfirmation();
         when(authService.getAuthenticatedCustomer(CHAT_ID)).thenReturn(testCustomer);
-        when(orderRepository.findMaxOrderId()).thenReturn(99);
+        when(orderRepository.nextOrderId()).thenReturn(100L);
         when(orderRepository.save(any(Order.class))).thenReturn(testOrder);
 
         // Act
@@ -274,6 +326,11 @@ class OrderCreationServiceTest {
         assertTrue(result.contains("2500"));
         assertFalse(orderCreationService.isUserInOrderCreationProcess(CHAT_ID));
         verify(orderRepository).save(any(Order.class));
+        verify(orderStatusHistoryRepository).insertChange(100, null, "создан", testOrder.getStatusChangedAt());
+        verify(statusCounters).orderCreated(testCustomer.getCustomerId(), testOrder.getStatus());
+        verify(slaPolicy).deadline(eq("создан"), any(LocalDateTime.class));
+        verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof OrderCreatedEvent
+                && ((OrderCreatedEvent) event).getCustomerId().equals(testCustomer.getCustomerId())));
     }
 
     @Test
@@ -312,7 +369,7 @@ class OrderCreationServiceTest {
         for (String confirmation : confirmations) {
             setupOrderCreationUntilConfirmation();
             when(authService.getAuthenticatedCustomer(CHAT_ID)).thenReturn(testCustomer);
-            when(orderRepository.findMaxOrderId()).thenReturn(99);
+            when(orderRepository.nextOrderId()).thenReturn(100L);
             when(orderRepository.save(any(Order.class))).thenReturn(testOrder);
 
             // Act
@@ -351,11 +408,11 @@ class OrderCreationServiceTest {
         orderCreationService.startOrderCreation(CHAT_ID);
         orderCreationService.processOrderCreationInput(CHAT_ID, ADDRESS);
 
-        when(vehicleRepository.findAvailableVehiclesWithCapacity(2.5)).thenReturn(Collections.emptyList());
+        when(vehicleCache.findAvailableWithCapacity(2.5)).thenReturn(Collections.emptyList());
         orderCreationService.processOrderCreationInput(CHAT_ID, VALID_WEIGHT);
 
         when(authService.getAuthenticatedCustomer(CHAT_ID)).thenReturn(testCustomer);
-        when(orderRepository.findMaxOrderId()).thenReturn(99);
+        when(orderRepository.nextOrderId()).thenReturn(100L);
         when(orderRepository.save(any(Order.class))).thenReturn(testOrder);
 
         // Act
@@ -367,12 +424,49 @@ class OrderCreationServiceTest {
         assertFalse(orderCreationService.isUserInOrderCreationProcess(CHAT_ID));
     }
 
+    @Test
+    void testCreateOrder_ClaimsSelectedVehicle() {
+        setupOrderCreationUntilConfirmation();
+        when(authService.getAuthenticatedCustomer(CHAT_ID)).thenReturn(testCustomer);
+        when(orderRepository.nextOrderId()).thenReturn(100L);
+        when(vehicleRepository.claimIfFree(1)).thenReturn(1);
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        String result = orderCreationService.processOrderCreationInput(CHAT_ID, "да");
+
+        ArgumentCaptor<Order> saved = ArgumentCaptor.forClass(Order.class);
+        verify(orderRepository).save(saved.capture());
+        assertSame(testVehicle, saved.getValue().getVehicle());
+        assertFalse(result.contains("Транспорт для заказа будет назначен позже"));
+        verify(vehicleCache).invalidate(1);
+        verify(statusCounters).vehicleStatusChanged("свободен", "занят");
+    }
+
+    @Test
+    void testCreateOrder_VehicleTakenMeanwhile_OrderCreatedWithoutVehicle() {
+        // Транспорт показан клиенту свободным, но до подтверждения его занял другой заказ
+        setupOrderCreationUntilConfirmation();
+        when(authService.getAuthenticatedCustomer(CHAT_ID)).thenReturn(testCustomer);
+        when(orderRepository.nextOrderId()).thenReturn(100L);
+        when(vehicleRepository.claimIfFree(1)).thenReturn(0);
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        String result = orderCreationService.processOrderCreationInput(CHAT_ID, "да");
+
+        ArgumentCaptor<Order> saved = ArgumentCaptor.forClass(Order.class);
+        verify(orderRepository).save(saved.capture());
+        assertNull(saved.getValue().getVehicle());
+        assertTrue(result.contains("Транспорт для заказа будет назначен позже"));
+        verify(vehicleCache, never()).invalidate(any());
+        verify(statusCounters, never()).vehicleStatusChanged(any(), any());
+    }
+
     @Test
     void testCreateOrder_ExceptionDuringCreation() {
         // Arrange - полный процесс до подтверждения
         setupOrderCreationUntilConfirmation();
         when(authService.getAuthenticatedCustomer(CHAT_ID)).thenReturn(testCustomer);
-        when(orderRepository.findMaxOrderId()).thenReturn(99);
+        when(orderRepository.nextOrderId()).thenReturn(100L);
         when(orderRepository.save(any(Order.class))).thenThrow(new RuntimeException("Database error"));
 
         // Act
@@ -383,6 +477,133 @@ class OrderCreationServiceTest {
         assertFalse(orderCreationService.isUserInOrderCreationProcess(CHAT_ID));
     }
 
+    @Test
+    void testCreateOrder_DatabaseUnavailable_QueuesOrderToJournal() throws Exception {
+        // Arrange - база недоступна в момент подтверждения
+        setupOrderCreationUntilConfirmation();
+        when(authService.getAuthenticatedCustomer(CHAT_ID)).thenReturn(testCustomer);
+        when(orderRepository.nextOrderId()).thenThrow(new DataAccessResourceFailureException("Connection refused",
+                new SQLTransientConnectionException("Connection is not available", "08001")));
+
+        // Act
+        String result = orderCreationService.processOrderCreationInput(CHAT_ID, "да");
+
+        // Assert
+        assertTrue(result.contains("заказ принят и сохранен"));
+        ArgumentCaptor<PendingOrder> queued = ArgumentCaptor.forClass(PendingOrder.class);
+        verify(pendingOrderJournal).append(queued.capture());
+        assertEquals(CHAT_ID, queued.getValue().getChatId());
+        assertEquals(Integer.valueOf(1), queued.getValue().getCustomerId());
+        assertEquals(ADDRESS, queued.getValue().getDeliveryAddress());
+        assertEquals(Integer.valueOf(2500), queued.getValue().getTotalWeight());
+        assertEquals(Integer.valueOf(1), queued.getValue().getVehicleId());
+        verify(orderRepository, never()).save(any(Order.class));
+        assertFalse(orderCreationService.isUserInOrderCreationProcess(CHAT_ID));
+    }
+
+    @Test
+    void testReplayPendingOrders_SavesOrderWithJournalIdAndNotifiesCustomer() throws Exception {
+        PendingOrder entry = pendingOrder("j-1", 1);
+        when(pendingOrderJournal.readAll()).thenReturn(List.of(entry));
+        when(orderRepository.findByJournalId("j-1")).thenReturn(Optional.empty());
+        when(customerRepository.findById(1)).thenReturn(Optional.of(testCustomer));
+        when(vehicleRepository.findById(1)).thenReturn(Optional.of(testVehicle));
+        when(orderRepository.nextOrderId()).thenReturn(100L);
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        orderCreationService.replayPendingOrders();
+
+        ArgumentCaptor<Order> saved = ArgumentCaptor.forClass(Order.class);
+        verify(orderRepository).save(saved.capture());
+        assertEquals(Integer.valueOf(100), saved.getValue().getId());
+        assertEquals("j-1", saved.getValue().getJournalId());
+        assertSame(testCustomer, saved.getValue().getCustomer());
+        assertEquals(entry.getCreateTime(), saved.getValue().getCreateTime());
+        verify(pendingOrderJournal).remove("j-1");
+        verify(messageSender).sendMessage(eq(CHAT_ID), argThat((String text) -> text.contains("#100")));
+    }
+
+    @Test
+    void testReplayPendingOrders_AlreadySavedEntryIsNotSavedAgain() throws Exception {
+        // Заказ оформлен, но запись не удалена из журнала (сбой между сохранением и удалением)
+        when(pendingOrderJournal.readAll()).thenReturn(List.of(pendingOrder("j-1", 1)));
+        testOrder.setJournalId("j-1");
+        when(orderRepository.findByJournalId("j-1")).thenReturn(Optional.of(testOrder));
+
+        orderCreationService.replayPendingOrders();
+
+        verify(orderRepository, never()).save(any(Order.class));
+        verify(statusCounters, never()).orderCreated(any(), any());
+        verify(pendingOrderJournal).remove("j-1");
+        verify(messageSender).sendMessage(eq(CHAT_ID), argThat((String text) -> text.contains("#100")));
+    }
+
+    @Test
+    void testReplayPendingOrders_DeletedCustomerMovesEntryToDeadLetters() throws Exception {
+        PendingOrder entry = pendingOrder("j-1", 7);
+        when(pendingOrderJournal.readAll()).thenReturn(List.of(entry));
+        when(orderRepository.findByJournalId("j-1")).thenReturn(Optional.empty());
+        when(customerRepository.findById(7)).thenReturn(Optional.empty());
+
+        orderCreationService.replayPendingOrders();
+
+        verify(orderRepository, never()).save(any(Order.class));
+        verify(pendingOrderJournal).deadLetter(same(entry), contains("7"));
+        verify(pendingOrderJournal, never()).remove(any());
+        verify(messageSender).sendMessage(eq(CHAT_ID), argThat((String text) -> text.contains("оформить не удалось")));
+    }
+
+    @Test
+    void testReplayPendingOrders_DataFailureDeadLettersAndContinues() throws Exception {
+        PendingOrder rejected = pendingOrder("j-1", 1);
+        PendingOrder next = pendingOrder("j-2", 1);
+        when(pendingOrderJournal.readAll()).thenReturn(List.of(rejected, next));
+        when(orderRepository.findByJournalId(anyString())).thenReturn(Optional.empty());
+        when(customerRepository.findById(1)).thenReturn(Optional.of(testCustomer));
+        when(vehicleRepository.findById(1)).thenReturn(Optional.of(testVehicle));
+        when(orderRepository.nextOrderId()).thenReturn(100L, 101L);
+        when(orderRepository.save(any(Order.class)))
+                .thenThrow(new DataIntegrityViolationException("value too long for type character varying"))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        orderCreationService.replayPendingOrders();
+
+        verify(pendingOrderJournal).deadLetter(same(rejected), contains("value too long"));
+        verify(pendingOrderJournal).remove("j-2");
+        verify(messageSender).sendMessage(eq(CHAT_ID), argThat((String text) -> text.contains("#101")));
+    }
+
+    @Test
+    void testReplayPendingOrders_DatabaseDownAgainKeepsRemainingEntries() throws Exception {
+        when(pendingOrderJournal.readAll()).thenReturn(List.of(pendingOrder("j-1", 1), pendingOrder("j-2", 1)));
+        when(orderRepository.findByJournalId("j-1")).thenThrow(new DataAccessResourceFailureException(
+                "Connection refused", new SQLTransientConnectionException("Connection is not available", "08001")));
+
+        orderCreationService.replayPendingOrders();
+
+        verify(orderRepository, never()).findByJournalId("j-2");
+        verify(pendingOrderJournal, never()).remove(any());
+        verify(pendingOrderJournal, never()).deadLetter(any(), any());
+        verifyNoInteractions(messageSender);
+    }
+
+    @Test
+    void testReplayPendingOrders_JournalRemoveFailureLeavesEntryForNextPass() throws Exception {
+        when(pendingOrderJournal.readAll()).thenReturn(List.of(pendingOrder("j-1", 1)));
+        when(orderRepository.findByJournalId("j-1")).thenReturn(Optional.empty());
+        when(customerRepository.findById(1)).thenReturn(Optional.of(testCustomer));
+        when(vehicleRepository.findById(1)).thenReturn(Optional.of(testVehicle));
+        when(orderRepository.nextOrderId()).thenReturn(100L);
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        doThrow(new IOException("No space left on device")).when(pendingOrderJournal).remove("j-1");
+
+        orderCreationService.replayPendingOrders();
+
+        // Заказ уже в базе - запись не отклоняется, а при следующем проходе найдется по journal_id
+        verify(pendingOrderJournal, never()).deadLetter(any(), any());
+        verifyNoInteractions(messageSender);
+    }
+
     @Test
     void testCreateOrder_NoAuthenticatedCustomer() {
         // Arrange - полный процесс до подтверждения
@@ -484,7 +705,11 @@ class OrderCreationServiceTest {
         orderCreationService.processOrderCreationInput(CHAT_ID, ADDRESS);
 
         List<Vehicle> availableVehicles = Arrays.asList(testVehicle);
-        when(vehicleRepository.findAvailableVehiclesWithCapacity(2.5)).thenReturn(availableVehicles);
+        when(vehicleCache.findAvailableWithCapacity(2.5)).thenReturn(availableVehicles);
         orderCreationService.processOrderCreationInput(CHAT_ID, VALID_WEIGHT);
     }
-}
\ No newline at end of file
+
+    private PendingOrder pendingOrder(String id, Integer customerId) {
+        return new PendingOrder(id, CHAT_ID, customerId, ADDRESS, 2500, 1, LocalDateTime.of(2025, 3, 1, 12, 30));
+    }
+}
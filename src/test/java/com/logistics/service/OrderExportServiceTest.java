@@ -0,0 +1,165 @@
+package com.logistics.service;
+
+import com.logistics.DTO.OrderDTOs.OrderRowDTO;
+import com.logistics.component.Bulkhead;
+import com.logistics.component.Bulkheads;
+import com.logistics.component.CsvParser;
+import com.logistics.repositories.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderExportServiceTest {
+
+    private static final String HEADER = "order_id,creation_date,total_weight,status,delivery_address,customer_id,vehicle_id";
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private MessageSender messageSender;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private Bulkheads bulkheads;
+
+    @Mock
+    private Bulkhead reporting;
+
+    @TempDir
+    private Path tempDir;
+
+    private OrderExportService orderExportService;
+
+    @BeforeEach
+    void setUp() {
+        orderExportService = new OrderExportService(orderRepository, new CsvParser(), messageSender,
+                transactionManager, bulkheads);
+    }
+
+    @Test
+    void testExportOrders_EscapesCsvFields() throws IOException {
+        LocalDateTime createTime = LocalDateTime.of(2025, 3, 1, 10, 0);
+        when(orderRepository.streamAllOrderRows()).thenReturn(Stream.of(
+                new OrderRowDTO(1, "г. Москва, ул. Ленина, 1", 1500, "создан", 10, 20, createTime, createTime),
+                new OrderRowDTO(2, "ТЦ \"Европа\"", 300, "в пути", 11, null, createTime, createTime),
+                new OrderRowDTO(3, "склад\n2 этаж", null, null, null, null, null, null)));
+        Path file = Files.createFile(tempDir.resolve("orders.csv"));
+
+        assertEquals(3, orderExportService.exportOrders(file, false));
+
+        assertEquals(List.of(
+                HEADER,
+                "1,2025-03-01T10:00,1500,создан,\"г. Москва, ул. Ленина, 1\",10,20",
+                "2,2025-03-01T10:00,300,в пути,\"ТЦ \"\"Европа\"\"\",11,",
+                "3,,,,\"склад",
+                "2 этаж\",,"), Files.readAllLines(file, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testExportOrders_WritesEveryStreamedRowInOrder() throws IOException {
+        when(orderRepository.streamAllOrderRows()).thenReturn(Stream.iterate(1, id -> id + 1).limit(5_000)
+                .map(id -> new OrderRowDTO(id, "адрес " + id, id, "создан", null, null, null, null)));
+        Path file = Files.createFile(tempDir.resolve("orders.csv"));
+
+        assertEquals(5_000, orderExportService.exportOrders(file, false));
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(5_001, lines.size());
+        assertEquals("1,,1,создан,адрес 1,,", lines.get(1));
+        assertEquals("5000,,5000,создан,адрес 5000,,", lines.get(5_000));
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void testExportOrders_EmptyTableWritesOnlyHeader() throws IOException {
+        when(orderRepository.streamAllOrderRows()).thenReturn(Stream.empty());
+        Path file = Files.writeString(tempDir.resolve("orders.csv"), "старое содержимое файла, длиннее заголовка ".repeat(5));
+
+        assertEquals(0, orderExportService.exportOrders(file, false));
+
+        // Прежнее содержимое файла не остается в выгрузке
+        assertEquals(List.of(HEADER), Files.readAllLines(file, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testExportOrders_GzipRoundTrip() throws IOException {
+        when(orderRepository.streamAllOrderRows()).thenReturn(Stream.of(
+                new OrderRowDTO(7, "ул. Мира, 5", 100, "доставлен", 1, 2, null, null)));
+        Path file = Files.createFile(tempDir.resolve("orders.csv.gz"));
+
+        assertEquals(1, orderExportService.exportOrders(file, true));
+
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            assertEquals(HEADER + "\n7,,100,доставлен,\"ул. Мира, 5\",1,2\n",
+                    new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testExportAsync_SendsDocumentAndDeletesFile() {
+        when(bulkheads.getReporting()).thenReturn(reporting);
+        when(reporting.trySubmit(any())).thenAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return true;
+        });
+        when(orderRepository.streamAllOrderRows()).thenReturn(Stream.of(
+                new OrderRowDTO(1, "адрес", 10, "создан", null, null, null, null)));
+        ArgumentCaptor<File> document = ArgumentCaptor.forClass(File.class);
+
+        assertTrue(orderExportService.exportAsync(100L, false));
+
+        verify(messageSender).sendDocument(eq(100L), document.capture(), eq("📤 Выгрузка заказов: 1 шт."));
+        assertTrue(document.getValue().getName().endsWith(".csv"));
+        assertFalse(document.getValue().exists());
+    }
+
+    @Test
+    void testExportAsync_ReportsErrorToChat() {
+        when(bulkheads.getReporting()).thenReturn(reporting);
+        when(reporting.trySubmit(any())).thenAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return true;
+        });
+        when(orderRepository.streamAllOrderRows()).thenThrow(new RuntimeException("db down"));
+
+        assertTrue(orderExportService.exportAsync(100L, true));
+
+        verify(messageSender).sendMessage(100L, "❌ Ошибка выгрузки заказов: db down");
+        verify(messageSender, never()).sendDocument(anyLong(), any(), anyString());
+        assertEquals(1, orderExportService.getFailureCount());
+    }
+
+    @Test
+    void testExportAsync_RejectedWhenReportingPoolBusy() {
+        when(bulkheads.getReporting()).thenReturn(reporting);
+        when(reporting.trySubmit(any())).thenReturn(false);
+
+        assertFalse(orderExportService.exportAsync(100L, false));
+
+        verifyNoInteractions(orderRepository, messageSender);
+    }
+}
@@ -0,0 +1,327 @@
+package com.logistics.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.logistics.component.CsvParser;
+import com.logistics.component.SlaPolicy;
+import com.logistics.component.StatusCounters;
+import com.logistics.component.VehicleCache;
+import com.logistics.event.OrderCreatedEvent;
+import com.logistics.model.Vehicle;
+import com.logistics.repositories.OrderRepository;
+import com.logistics.repositories.VehicleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderImportServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private VehicleRepository vehicleRepository;
+
+    @Spy
+    private CsvParser csvParser = new CsvParser();
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    private MessageSender messageSender;
+
+    @Mock
+    private StatusCounters statusCounters;
+
+    @Spy
+    private SlaPolicy slaPolicy = new SlaPolicy("создан=48");
+
+    @Mock
+    private VehicleCache vehicleCache;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private OrderImportService orderImportService;
+
+    @TempDir
+    Path tempDir;
+
+    private Vehicle testVehicle;
+
+    @BeforeEach
+    void setUp() {
+        testVehicle = new Vehicle();
+        testVehicle.setVehicleId(1);
+        testVehicle.setLicensePlate("A123BC");
+        testVehicle.setCapacityTon(10.0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testImportOrders_Csv_InsertsValidRowsInOneBatch() throws Exception {
+        when(vehicleRepository.findAvailableVehiclesWithCapacity(0.0)).thenReturn(List.of(testVehicle));
+        when(orderRepository.nextOrderIds(2)).thenReturn(List.of(100L, 101L));
+        runTransactionCallbacks();
+        when(vehicleRepository.claimIfFree(1)).thenReturn(1);
+
+        String csv = "address,weight\n" +
+                "\"ул. Примерная, д. 1\",2500\n" +
+                "\"ул. Лесная, д. 5\",15000\n" +
+                "кор,2500\n" +
+                "\"ул. Полевая, д. 7\",abc\n";
+        Path report = tempDir.resolve("result.csv");
+
+        OrderImportService.ImportResult result = orderImportService.importOrders(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), OrderImportService.Format.CSV, 1, report);
+
+        assertEquals(4, result.getTotal());
+        assertEquals(2, result.getImported());
+        assertEquals(2, result.getFailed());
+        verify(vehicleRepository, times(1)).findAvailableVehiclesWithCapacity(0.0);
+        // Заказы и первые записи их истории - одним пакетом
+        verify(jdbcTemplate, times(1)).batchUpdate(contains("INSERT INTO order_status_history"), any(Collection.class), eq(2),
+                any(ParameterizedPreparedStatementSetter.class));
+        verify(statusCounters).ordersCreated(1, "создан", 2);
+        verify(vehicleCache).invalidate(1);
+        verify(statusCounters).vehicleStatusChanged("свободен", "занят");
+        // Кэш страниц, статистика клиента и контроль SLA узнают о заказах из события, как при создании в диалоге
+        ArgumentCaptor<OrderCreatedEvent> events = ArgumentCaptor.forClass(OrderCreatedEvent.class);
+        verify(eventPublisher, times(2)).publishEvent(events.capture());
+        assertEquals(List.of(100, 101), events.getAllValues().stream().map(OrderCreatedEvent::getOrderId).toList());
+        assertEquals(List.of(2500, 15000), events.getAllValues().stream().map(OrderCreatedEvent::getTotalWeight).toList());
+        OrderCreatedEvent first = events.getAllValues().get(0);
+        assertEquals(1, first.getCustomerId());
+        assertEquals("создан", first.getStatus());
+        assertEquals(first.getCreateTime().plusHours(48), first.getSlaDeadline());
+
+        List<String> lines = Files.readAllLines(report, StandardCharsets.UTF_8);
+        assertEquals(5, lines.size());
+        assertTrue(lines.stream().anyMatch(l -> l.startsWith("2,ok,100,A123BC")));
+        // 15 т не помещается в транспорт на 10 т - заказ создается без транспорта
+        assertTrue(lines.stream().anyMatch(l -> l.startsWith("3,ok,101,,")));
+        assertTrue(lines.stream().anyMatch(l -> l.startsWith("4,error") && l.contains("адрес слишком короткий")));
+        assertTrue(lines.stream().anyMatch(l -> l.startsWith("5,error") && l.contains("неверный формат веса")));
+    }
+
+    @Test
+    void testImportOrders_Ndjson_ValidatesRows() throws Exception {
+        when(vehicleRepository.findAvailableVehiclesWithCapacity(0.0)).thenReturn(Collections.emptyList());
+
+        String ndjson = "{\"address\": \"ул. Примерная, д. 1\", \"weight\": 1500}\n" +
+                "not json\n";
+        Path report = tempDir.resolve("result.csv");
+
+        OrderImportService.ImportResult result = orderImportService.importOrders(
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), OrderImportService.Format.NDJSON, 1, report);
+
+        assertEquals(2, result.getTotal());
+        assertEquals(0, result.getImported());
+        assertEquals(2, result.getFailed());
+        verifyNoInteractions(jdbcTemplate);
+
+        String content = Files.readString(report, StandardCharsets.UTF_8);
+        assertTrue(content.contains("минимальный вес заказа 2000 кг"));
+        assertTrue(content.contains("некорректный JSON"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testImportOrders_EachVehicleGoesToOneOrder() throws Exception {
+        Vehicle large = new Vehicle();
+        large.setVehicleId(2);
+        large.setLicensePlate("B456CD");
+        large.setCapacityTon(20.0);
+        when(vehicleRepository.findAvailableVehiclesWithCapacity(0.0)).thenReturn(List.of(large, testVehicle));
+        when(orderRepository.nextOrderIds(3)).thenReturn(List.of(100L, 101L, 102L));
+        runTransactionCallbacks();
+        when(vehicleRepository.claimIfFree(anyInt())).thenReturn(1);
+
+        String csv = "address,weight\n" +
+                "\"ул. Примерная, д. 1\",3000\n" +
+                "\"ул. Лесная, д. 5\",4000\n" +
+                "\"ул. Полевая, д. 7\",5000\n";
+        Path report = tempDir.resolve("result.csv");
+
+        OrderImportService.ImportResult result = orderImportService.importOrders(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), OrderImportService.Format.CSV, 1, report);
+
+        assertEquals(3, result.getImported());
+        // Первому заказу - наименьший подходящий транспорт, второму - следующий, третьему транспорта не хватило
+        var claims = inOrder(vehicleRepository);
+        claims.verify(vehicleRepository).claimIfFree(1);
+        claims.verify(vehicleRepository).claimIfFree(2);
+        verify(vehicleCache).invalidate(1);
+        verify(vehicleCache).invalidate(2);
+        verify(statusCounters, times(2)).vehicleStatusChanged("свободен", "занят");
+
+        List<String> lines = Files.readAllLines(report, StandardCharsets.UTF_8);
+        assertTrue(lines.contains("2,ok,100,A123BC,"));
+        assertTrue(lines.contains("3,ok,101,B456CD,"));
+        assertTrue(lines.contains("4,ok,102,,"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testImportOrders_VehicleTakenMeanwhile_OrderCreatedWithoutVehicle() throws Exception {
+        when(vehicleRepository.findAvailableVehiclesWithCapacity(0.0)).thenReturn(List.of(testVehicle));
+        when(orderRepository.nextOrderIds(1)).thenReturn(List.of(100L));
+        runTransactionCallbacks();
+        // Транспорт успели занять после загрузки парка
+        when(vehicleRepository.claimIfFree(1)).thenReturn(0);
+
+        Path report = tempDir.resolve("result.csv");
+        orderImportService.importOrders(new ByteArrayInputStream(
+                "\"ул. Примерная, д. 1\",3000\n".getBytes(StandardCharsets.UTF_8)),
+                OrderImportService.Format.CSV, 1, report);
+
+        assertTrue(Files.readAllLines(report, StandardCharsets.UTF_8).contains("1,ok,100,,"));
+        verify(vehicleCache, never()).invalidate(anyInt());
+        verify(statusCounters, never()).vehicleStatusChanged(any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testImportOrders_RetryAfterRollbackClaimsPlannedVehicleAgain() throws Exception {
+        when(vehicleRepository.findAvailableVehiclesWithCapacity(0.0)).thenReturn(List.of(testVehicle));
+        when(orderRepository.nextOrderIds(1)).thenReturn(List.of(100L), List.of(101L));
+        when(vehicleRepository.claimIfFree(1)).thenReturn(1);
+        // Первая попытка откатывается после занятия транспорта, вторая проходит
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> {
+                    ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null);
+                    throw new DataIntegrityViolationException("duplicate key");
+                })
+                .thenAnswer(invocation -> ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+
+        Path report = tempDir.resolve("result.csv");
+        OrderImportService.ImportResult result = orderImportService.importOrders(new ByteArrayInputStream(
+                "\"ул. Примерная, д. 1\",3000\n".getBytes(StandardCharsets.UTF_8)),
+                OrderImportService.Format.CSV, 1, report);
+
+        assertEquals(1, result.getImported());
+        verify(vehicleRepository, times(2)).claimIfFree(1);
+        assertTrue(Files.readAllLines(report, StandardCharsets.UTF_8).contains("1,ok,101,A123BC,"));
+        verify(vehicleCache, times(1)).invalidate(1);
+        verify(statusCounters, times(1)).vehicleStatusChanged("свободен", "занят");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testImportOrders_FailedChunkReturnsVehiclesForNextRows() throws Exception {
+        when(vehicleRepository.findAvailableVehiclesWithCapacity(0.0)).thenReturn(List.of(testVehicle));
+        when(orderRepository.nextOrderIds(anyInt())).thenAnswer(invocation -> {
+            int count = invocation.getArgument(0);
+            return LongStream.rangeClosed(1, count).boxed().toList();
+        });
+        when(vehicleRepository.claimIfFree(1)).thenReturn(1);
+        // Первая порция (1000 строк) не сохраняется обе попытки, вторая сохраняется
+        when(transactionTemplate.execute(any()))
+                .thenThrow(new DataIntegrityViolationException("value too long"))
+                .thenThrow(new DataIntegrityViolationException("value too long"))
+                .thenAnswer(invocation -> ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 1001; i++) {
+            csv.append("\"ул. Примерная, д. ").append(i).append("\",3000\n");
+        }
+        Path report = tempDir.resolve("result.csv");
+        OrderImportService.ImportResult result = orderImportService.importOrders(
+                new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)),
+                OrderImportService.Format.CSV, 1, report);
+
+        assertEquals(1, result.getImported());
+        assertEquals(1000, result.getFailed());
+        List<String> lines = Files.readAllLines(report, StandardCharsets.UTF_8);
+        // Транспорт, подобранный несохраненной порции, достается следующей строке
+        assertTrue(lines.contains("1,error,,,\"ошибка сохранения, повторите загрузку\""));
+        assertTrue(lines.contains("1001,ok,1,A123BC,"));
+        verify(eventPublisher, times(1)).publishEvent(any(OrderCreatedEvent.class));
+        verify(statusCounters).ordersCreated(1, "создан", 1);
+    }
+
+    @Test
+    void testImportOrders_JsonArray_ReportsElementLines() throws Exception {
+        when(vehicleRepository.findAvailableVehiclesWithCapacity(0.0)).thenReturn(Collections.emptyList());
+
+        String json = "[\n" +
+                "  {\"address\": \"ул. Примерная, д. 1\",\n" +
+                "   \"weight\": 1500},\n" +
+                "  42,\n" +
+                "  {\"address\": \"кор\", \"weight\": 3000}\n" +
+                "]\n";
+        Path report = tempDir.resolve("result.csv");
+
+        OrderImportService.ImportResult result = orderImportService.importOrders(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), OrderImportService.Format.JSON, 1, report);
+
+        assertEquals(3, result.getTotal());
+        assertEquals(3, result.getFailed());
+        verifyNoInteractions(jdbcTemplate);
+
+        List<String> lines = Files.readAllLines(report, StandardCharsets.UTF_8);
+        assertTrue(lines.stream().anyMatch(l -> l.startsWith("2,error") && l.contains("минимальный вес заказа 2000 кг")));
+        assertTrue(lines.stream().anyMatch(l -> l.startsWith("4,error") && l.contains("ожидается объект")));
+        assertTrue(lines.stream().anyMatch(l -> l.startsWith("5,error") && l.contains("адрес слишком короткий")));
+    }
+
+    @Test
+    void testImportOrders_JsonWithoutArray_Fails() {
+        when(vehicleRepository.findAvailableVehiclesWithCapacity(0.0)).thenReturn(Collections.emptyList());
+
+        String json = "{\"address\": \"ул. Примерная, д. 1\", \"weight\": 3000}\n";
+
+        assertThrows(IOException.class, () -> orderImportService.importOrders(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), OrderImportService.Format.JSON, 1,
+                tempDir.resolve("result.csv")));
+    }
+
+    @Test
+    void testFormatOf() {
+        assertEquals(OrderImportService.Format.CSV, OrderImportService.formatOf("orders.csv"));
+        assertEquals(OrderImportService.Format.NDJSON, OrderImportService.formatOf("orders.ndjson"));
+        assertEquals(OrderImportService.Format.NDJSON, OrderImportService.formatOf("orders.JSONL"));
+        assertEquals(OrderImportService.Format.JSON, OrderImportService.formatOf("orders.json"));
+        assertEquals(OrderImportService.Format.CSV, OrderImportService.formatOf(null));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runTransactionCallbacks() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+    }
+}
@@ -0,0 +1,105 @@
+package com.logistics.service;
+
+import com.logistics.component.InputValidator;
+import com.logistics.component.MessageTemplates;
+import com.logistics.component.PasswordHasher;
+import com.logistics.event.CustomerChangedEvent;
+import com.logistics.repositories.CustomerRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RegistrationServiceTest {
+
+    @Mock
+    private MessageSender messageSender;
+
+    @Spy
+    private InputValidator inputValidator = new InputValidator();
+
+    @Mock
+    private PasswordHasher passwordHasher;
+
+    @Mock
+    private CustomerRepository customerRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    private MessageTemplates messageTemplates = new MessageTemplates("");
+
+    @InjectMocks
+    private RegistrationService registrationService;
+
+    private final Long CHAT_ID = 123456789L;
+    private final String EMAIL = "test@example.com";
+    private final String OTHER_EMAIL = "other@example.com";
+    private final String PASSWORD = "password123";
+    private final String HASH = "hashed";
+
+    @Test
+    void testEmailStep_DoesNotQueryDatabase() {
+        registrationService.startRegistration(CHAT_ID);
+
+        registrationService.processInput(CHAT_ID, EMAIL);
+
+        verifyNoInteractions(customerRepository);
+        verify(messageSender).sendMessageWithCancel(eq(CHAT_ID), contains("Email принят"));
+    }
+
+    @Test
+    void testCompleteRegistration_SingleInsert() {
+        when(passwordHasher.hashPassword(PASSWORD)).thenReturn(HASH);
+        when(customerRepository.insertIfEmailFree(anyString(), anyString(), anyString(), eq(EMAIL), eq(HASH)))
+                .thenReturn(42);
+
+        fillRegistration();
+
+        assertFalse(registrationService.isUserInRegistrationProcess(CHAT_ID));
+        verify(customerRepository).insertIfEmailFree(anyString(), anyString(), anyString(), eq(EMAIL), eq(HASH));
+        verifyNoMoreInteractions(customerRepository);
+        verify(messageSender).sendMessage(eq(CHAT_ID), contains("Ваш ID: 42"), eq(true));
+        verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof CustomerChangedEvent
+                && ((CustomerChangedEvent) event).getCustomer().getCustomerId() == 42));
+    }
+
+    @Test
+    void testCompleteRegistration_EmailConflict_AsksForAnotherEmail() {
+        when(passwordHasher.hashPassword(PASSWORD)).thenReturn(HASH);
+        when(customerRepository.insertIfEmailFree(anyString(), anyString(), anyString(), eq(EMAIL), eq(HASH)))
+                .thenReturn(null);
+        when(customerRepository.insertIfEmailFree(anyString(), anyString(), anyString(), eq(OTHER_EMAIL), eq(HASH)))
+                .thenReturn(43);
+
+        fillRegistration();
+
+        assertTrue(registrationService.isUserInRegistrationProcess(CHAT_ID));
+        verify(messageSender).sendMessageWithCancel(eq(CHAT_ID), contains("уже зарегистрирован"));
+
+        // Остальные данные сохранены: после нового email регистрация сразу завершается
+        registrationService.processInput(CHAT_ID, OTHER_EMAIL);
+
+        assertFalse(registrationService.isUserInRegistrationProcess(CHAT_ID));
+        verify(messageSender).sendMessage(eq(CHAT_ID), contains("Ваш ID: 43"), eq(true));
+    }
+
+    private void fillRegistration() {
+        registrationService.startRegistration(CHAT_ID);
+        registrationService.processInput(CHAT_ID, EMAIL);
+        registrationService.processInput(CHAT_ID, "Test User");
+        registrationService.processInput(CHAT_ID, "+7 900 123-45-67");
+        registrationService.processInput(CHAT_ID, "ул. Примерная, д. 1");
+        registrationService.processInput(CHAT_ID, PASSWORD);
+        registrationService.processInput(CHAT_ID, PASSWORD);
+    }
+}
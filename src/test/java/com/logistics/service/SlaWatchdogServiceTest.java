@@ -0,0 +1,135 @@
+package com.logistics.service;
+
+import com.logistics.DTO.OrderDTOs.OrderDeadlineRow;
+import com.logistics.component.SlaPolicy;
+import com.logistics.event.OrderStatusChangedEvent;
+import com.logistics.repositories.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SlaWatchdogServiceTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private AdminService adminService;
+
+    @Mock
+    private MessageSender messageSender;
+
+    private SlaWatchdogService watchdog;
+
+    @BeforeEach
+    void setUp() {
+        watchdog = new SlaWatchdogService(orderRepository, new SlaPolicy("создан=48"), adminService, messageSender);
+        ReflectionTestUtils.setField(watchdog, "checkIntervalMinutes", 15);
+    }
+
+    @Test
+    void testCheck_SendsOneDigestPerAdmin() {
+        LocalDateTime overdue = LocalDateTime.now().minusHours(3);
+        when(orderRepository.findSlaDeadlinesAfter(any(), any(), any(), any(Pageable.class)))
+                .thenReturn(List.of(row(7, overdue), row(9, LocalDateTime.now().plusMinutes(20))));
+        when(orderRepository.findOverdueIds(eq(List.of(7)), any())).thenReturn(List.of(7));
+        when(orderRepository.countBySlaDeadlineLessThanEqual(any())).thenReturn(1L);
+        when(adminService.getAuthenticatedAdminChats()).thenReturn(List.of(100L, 200L));
+
+        watchdog.check();
+
+        verify(messageSender).sendMessage(eq(100L), argThat(text -> text.contains("Заказ #7") && !text.contains("#9")));
+        verify(messageSender).sendMessage(eq(200L), argThat(text -> text.contains("Заказ #7")));
+        // Еще не наступивший срок остается в очереди
+        assertEquals(1, watchdog.getQueueSize());
+    }
+
+    @Test
+    void testCheck_ReadsOnlyNewDeadlinesOnNextCheck() {
+        LocalDateTime overdue = LocalDateTime.now().minusHours(3);
+        when(orderRepository.findSlaDeadlinesAfter(any(), any(), any(), any(Pageable.class)))
+                .thenReturn(List.of(row(7, overdue)))
+                .thenReturn(Collections.emptyList());
+        when(orderRepository.findOverdueIds(anyList(), any())).thenReturn(List.of(7));
+        when(orderRepository.countBySlaDeadlineLessThanEqual(any())).thenReturn(1L);
+        when(adminService.getAuthenticatedAdminChats()).thenReturn(List.of(100L));
+
+        watchdog.check();
+        watchdog.check();
+
+        // Второе чтение продолжает с позиции первого, заказ не попадает в сводку повторно
+        verify(orderRepository).findSlaDeadlinesAfter(any(), eq(0), any(), any(Pageable.class));
+        verify(orderRepository).findSlaDeadlinesAfter(any(), eq(Integer.MAX_VALUE), any(), any(Pageable.class));
+        verify(messageSender, times(1)).sendMessage(eq(100L), anyString());
+    }
+
+    @Test
+    void testCheck_KeepsDigestUntilAdminLogsIn_AndDropsChangedOrders() {
+        LocalDateTime overdue = LocalDateTime.now().minusHours(3);
+        when(orderRepository.findSlaDeadlinesAfter(any(), any(), any(), any(Pageable.class)))
+                .thenReturn(List.of(row(7, overdue), row(8, overdue)))
+                .thenReturn(Collections.emptyList());
+        when(orderRepository.findOverdueIds(anyList(), any())).thenReturn(List.of(7, 8));
+        when(orderRepository.countBySlaDeadlineLessThanEqual(any())).thenReturn(1L);
+        when(adminService.getAuthenticatedAdminChats())
+                .thenReturn(Collections.emptyList())
+                .thenReturn(List.of(100L));
+
+        watchdog.check();
+        verifyNoInteractions(messageSender);
+
+        // Заказ 8 доставлен до того, как сводку увидел администратор
+        watchdog.onOrderStatusChanged(new OrderStatusChangedEvent("доставлен",
+                List.of(new OrderStatusChangedEvent.Change(8, 1, "создан"))));
+        watchdog.check();
+
+        verify(messageSender).sendMessage(eq(100L), argThat(text -> text.contains("Заказ #7") && !text.contains("#8")));
+    }
+
+    @Test
+    void testCheck_SkipsOrdersNoLongerOverdueInDatabase() {
+        when(orderRepository.findSlaDeadlinesAfter(any(), any(), any(), any(Pageable.class)))
+                .thenReturn(List.of(row(7, LocalDateTime.now().minusHours(1))));
+        when(orderRepository.findOverdueIds(anyList(), any())).thenReturn(Collections.emptyList());
+        when(adminService.getAuthenticatedAdminChats()).thenReturn(List.of(100L));
+
+        watchdog.check();
+
+        verifyNoInteractions(messageSender);
+    }
+
+    @Test
+    void testRecomputeDeadlines_AppliesConfiguredThresholds() {
+        watchdog.recomputeDeadlines();
+
+        verify(orderRepository).applySlaThreshold("создан", 48 * 60);
+        verify(orderRepository).clearSlaDeadlinesExcept(Set.of("создан"));
+    }
+
+    private static OrderDeadlineRow row(Integer id, LocalDateTime deadline) {
+        return new OrderDeadlineRow() {
+            @Override
+            public Integer getId() { return id; }
+
+            @Override
+            public String getStatus() { return "создан"; }
+
+            @Override
+            public LocalDateTime getSlaDeadline() { return deadline; }
+        };
+    }
+}
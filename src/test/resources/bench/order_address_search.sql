@@ -0,0 +1,41 @@
+-- Сравнение поиска заказов по адресу: текущий LIKE '%...%' против триграммного GIN-индекса.
+-- Запуск на отдельной базе: psql -d logistics_bench -f order_address_search.sql
+-- Таблица синтетическая (5 000 000 строк), рабочие таблицы не затрагиваются.
+
+\timing on
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+DROP TABLE IF EXISTS bench_orders;
+CREATE TABLE bench_orders (
+    order_id         integer PRIMARY KEY,
+    delivery_address text,
+    status           varchar(255)
+);
+
+INSERT INTO bench_orders (order_id, delivery_address, status)
+SELECT i,
+       'г. ' || (ARRAY['Москва', 'Казань', 'Самара', 'Пермь', 'Тверь', 'Омск'])[1 + i % 6] ||
+       ', ул. ' || (ARRAY['Ленина', 'Гагарина', 'Советская', 'Лесная', 'Садовая', 'Полевая', 'Заводская'])[1 + (i / 6) % 7] ||
+       ', д. ' || (1 + (i / 42) % 200) || ', кв. ' || (1 + i % 317),
+       'создан'
+FROM generate_series(1, 5000000) AS i;
+
+ANALYZE bench_orders;
+
+-- 1. Текущий запрос OrderRepository.findByDeliveryAddressContaining (без индекса - полный просмотр)
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT * FROM bench_orders WHERE delivery_address LIKE '%Садовая, д. 17,%';
+
+-- 2. Новый запрос OrderRepository.searchByDeliveryAddress с индексом
+CREATE INDEX ix_bench_orders_delivery_address_trgm ON bench_orders USING gin (delivery_address gin_trgm_ops);
+ANALYZE bench_orders;
+
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT order_id, delivery_address, status, similarity(delivery_address, 'Садовая, д. 17,') AS score
+FROM bench_orders
+WHERE delivery_address ILIKE CONCAT('%', 'Садовая, д. 17,', '%')
+ORDER BY score DESC, order_id DESC
+LIMIT 11 OFFSET 0;
+
+DROP TABLE bench_orders;